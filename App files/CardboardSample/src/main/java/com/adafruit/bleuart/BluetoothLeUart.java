@@ -8,6 +8,7 @@ import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.content.Context;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
@@ -15,7 +16,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
-import java.util.WeakHashMap;
 import java.lang.String;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -38,13 +38,19 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
 
     // Internal UART state.
     private Context context;
-    private WeakHashMap<Callback, Object> callbacks;
+    // Registered callbacks, weakly held. The array is never modified once published: registering
+    // or unregistering swaps in a new copy, so the GATT binder thread can walk it without locking
+    // or allocating while the UI thread changes registrations.
+    private volatile WeakReference<Callback>[] callbacks;
     private BluetoothAdapter adapter;
-    private BluetoothGatt gatt;
-    private BluetoothGattCharacteristic tx;
-    private BluetoothGattCharacteristic rx;
+    // The connection is replaced from the caller's thread, the GATT callback thread and the
+    // reconnector's timer thread, so each has to see the others' latest writes.
+    private volatile BluetoothGatt gatt;
+    private volatile BluetoothGattCharacteristic tx;
+    private volatile BluetoothGattCharacteristic rx;
     private boolean connectFirst;
-    private boolean writeInProgress; // Flag to indicate a write is currently in progress
+    private UartWriteQueue writeQueue; // Outbound chunks waiting for the previous write to complete
+    private volatile UartReconnector reconnector; // Set while automatic reconnection is enabled
 
     // Device Information state.
     private BluetoothGattCharacteristic disManuf;
@@ -69,7 +75,7 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
     public BluetoothLeUart(Context context) {
         super();
         this.context = context;
-        this.callbacks = new WeakHashMap<Callback, Object>();
+        this.callbacks = newCallbackArray(0);
         this.adapter = BluetoothAdapter.getDefaultAdapter();
         this.gatt = null;
         this.tx = null;
@@ -80,7 +86,12 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
         this.disSWRev = null;
         this.disAvailable = false;
         this.connectFirst = false;
-        this.writeInProgress = false;
+        this.writeQueue = new UartWriteQueue(new UartWriteQueue.Writer() {
+            @Override
+            public boolean write(byte[] chunk) {
+                return writeTx(chunk);
+            }
+        });
         this.readQueue = new ConcurrentLinkedQueue<BluetoothGattCharacteristic>();
     }
 
@@ -108,18 +119,31 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
 
     public boolean deviceInfoAvailable() { return disAvailable; }
 
-    // Send data to connected UART device.
+    // Send data to connected UART device.  Returns immediately; data is written in the background.
     public void send(byte[] data) {
+        send(data, null);
+    }
+
+    // Send data to connected UART device.  The callback is told whether the data was written, and
+    // false is returned if the data could not be queued at all.
+    public boolean send(byte[] data, UartWriteQueue.SendCallback callback) {
         if (tx == null || data == null || data.length == 0) {
             // Do nothing if there is no connection or message to send.
-            return;
+            return false;
+        }
+        return writeQueue.send(data, callback);
+    }
+
+    // Start writing a single chunk queued by writeQueue.
+    private boolean writeTx(byte[] chunk) {
+        BluetoothGatt gatt = this.gatt;
+        BluetoothGattCharacteristic tx = this.tx;
+        if (gatt == null || tx == null) {
+            return false;
         }
         // Update TX characteristic value.  Note the setValue overload that takes a byte array must be used.
-        tx.setValue(data);
-        writeInProgress = true; // Set the write in progress flag
-        gatt.writeCharacteristic(tx);
-        // ToDo: Update to include a timeout in case this goes into the weeds
-        while (writeInProgress); // Wait for the flag to clear in onCharacteristicWrite
+        tx.setValue(chunk);
+        return gatt.writeCharacteristic(tx);
     }
 
     // Send data to connected UART device.
@@ -130,23 +154,109 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
     }
 
     // Register the specified callback to receive UART callbacks.
-    public void registerCallback(Callback callback) {
-        callbacks.put(callback, null);
+    public synchronized void registerCallback(Callback callback) {
+        WeakReference<Callback>[] current = callbacks;
+        // Copy the live callbacks, dropping ones that were collected and the new one if it's
+        // already registered, then add it at the end.
+        WeakReference<Callback>[] next = newCallbackArray(current.length + 1);
+        int count = 0;
+        for (WeakReference<Callback> ref : current) {
+            Callback cb = ref.get();
+            if (cb != null && cb != callback) {
+                next[count++] = ref;
+            }
+        }
+        next[count++] = new WeakReference<Callback>(callback);
+        callbacks = trimCallbacks(next, count);
     }
 
     // Unregister the specified callback.
-    public void unregisterCallback(Callback callback) {
-        callbacks.remove(callback);
+    public synchronized void unregisterCallback(Callback callback) {
+        WeakReference<Callback>[] current = callbacks;
+        WeakReference<Callback>[] next = newCallbackArray(current.length);
+        int count = 0;
+        for (WeakReference<Callback> ref : current) {
+            Callback cb = ref.get();
+            if (cb != null && cb != callback) {
+                next[count++] = ref;
+            }
+        }
+        callbacks = trimCallbacks(next, count);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static WeakReference<Callback>[] newCallbackArray(int length) {
+        return (WeakReference<Callback>[]) new WeakReference[length];
+    }
+
+    private static WeakReference<Callback>[] trimCallbacks(WeakReference<Callback>[] refs, int count) {
+        if (count == refs.length) {
+            return refs;
+        }
+        WeakReference<Callback>[] trimmed = newCallbackArray(count);
+        System.arraycopy(refs, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    // Reconnect automatically to the last connected device when the connection drops.  See
+    // UartReconnector for how.
+    public void setAutoReconnect(boolean enabled) {
+        if (enabled && reconnector == null) {
+            reconnector = new UartReconnector(new UartReconnector.Link() {
+                @Override
+                public boolean connect(String address) {
+                    return reconnect(address);
+                }
+
+                @Override
+                public boolean startScan() {
+                    // Not filtered by the adapter, see parseUUIDs; onLeScan picks out the device.
+                    return adapter != null && adapter.startLeScan(BluetoothLeUart.this);
+                }
+
+                @Override
+                public void stopScan() {
+                    BluetoothLeUart.this.stopScan();
+                }
+            });
+        } else if (!enabled && reconnector != null) {
+            reconnector.shutdown();
+            reconnector = null;
+        }
+    }
+
+    // Return the automatic reconnection state and metrics, or null if it isn't enabled.
+    public UartReconnector getReconnector() {
+        return reconnector;
     }
 
     // Disconnect to a device if currently connected.
     public void disconnect() {
+        // A disconnect on purpose is not to be recovered from.
+        UartReconnector reconnector = this.reconnector;
+        if (reconnector != null) {
+            reconnector.cancel();
+        }
+        BluetoothGatt gatt = this.gatt;
         if (gatt != null) {
             gatt.disconnect();
         }
-        gatt = null;
+        this.gatt = null;
         tx = null;
         rx = null;
+        writeQueue.clear();
+    }
+
+    // Disconnect and release the connection in the Bluetooth stack, which only has room for a
+    // few.  Unlike after disconnect, the stack won't reconnect to the device on its own.  Also
+    // stops the write timeout thread until the next connection writes again.
+    public void close() {
+        BluetoothGatt gatt = this.gatt;
+        disconnect();
+        if (gatt != null) {
+            gatt.close();
+        }
+        writeQueue.shutdown();
     }
 
     // Stop any in progress UART device scan.
@@ -175,6 +285,38 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
         startScan();
     }
 
+    // Connect directly to a known device, without scanning for it first.
+    public void connect(BluetoothDevice device) {
+        // Disconnect to any connected device.
+        disconnect();
+        // Stop any in progress device scan.
+        stopScan();
+        connectFirst = false;
+        gatt = device.connectGatt(context, true, this);
+    }
+
+    // Connect straight to a device by address, for the reconnector.  Unlike connect this doesn't
+    // cancel the recovery it is part of, and it doesn't wait for the device to show up: the attempt
+    // fails quickly if it isn't in range, so the reconnector can move on.
+    private boolean reconnect(String address) {
+        if (adapter == null || !BluetoothAdapter.checkBluetoothAddress(address)) {
+            return false;
+        }
+        // Let go of the dropped connection so the stack doesn't keep reconnecting it as well.
+        BluetoothGatt dropped = gatt;
+        if (dropped != null) {
+            dropped.close();
+        }
+        rx = null;
+        tx = null;
+        writeQueue.clear();
+        // Device information reads the dropped connection didn't get to.
+        readQueue.clear();
+        BluetoothGatt gatt = adapter.getRemoteDevice(address).connectGatt(context, false, this);
+        this.gatt = gatt;
+        return gatt != null;
+    }
+
     // Handlers for BluetoothGatt and LeScan events.
     @Override
     public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
@@ -196,7 +338,12 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
             // Disconnected, notify callbacks of disconnection.
             rx = null;
             tx = null;
+            writeQueue.clear();
             notifyOnDisconnected(this);
+            UartReconnector reconnector = this.reconnector;
+            if (reconnector != null) {
+                reconnector.onDisconnected();
+            }
         }
     }
 
@@ -209,9 +356,12 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
             return;
         }
 
-        // Save reference to each UART characteristic.
-        tx = gatt.getService(UART_UUID).getCharacteristic(TX_UUID);
-        rx = gatt.getService(UART_UUID).getCharacteristic(RX_UUID);
+        // Save reference to each UART characteristic.  Kept in locals too, since the fields can
+        // be cleared by a disconnect on another thread.
+        BluetoothGattCharacteristic tx = gatt.getService(UART_UUID).getCharacteristic(TX_UUID);
+        BluetoothGattCharacteristic rx = gatt.getService(UART_UUID).getCharacteristic(RX_UUID);
+        this.tx = tx;
+        this.rx = rx;
 
         // Save reference to each DIS characteristic.
         disManuf = gatt.getService(DIS_UUID).getCharacteristic(DIS_MANUF_UUID);
@@ -252,6 +402,10 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
             return;
         }
         // Notify of connection completion.
+        UartReconnector reconnector = this.reconnector;
+        if (reconnector != null) {
+            reconnector.onConnected(gatt.getDevice().getAddress());
+        }
         notifyOnConnected(this);
     }
 
@@ -291,7 +445,8 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
         if (status == BluetoothGatt.GATT_SUCCESS) {
             // Log.d(TAG,"Characteristic write successful");
         }
-        writeInProgress = false;
+        // Move on to the next queued chunk.
+        writeQueue.onWriteComplete(status == BluetoothGatt.GATT_SUCCESS);
     }
 
     @Override
@@ -302,6 +457,11 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
         }
         // Notify registered callbacks of found device.
         notifyOnDeviceFound(device);
+        // Hand it to a reconnection waiting for its device to show up.
+        UartReconnector reconnector = this.reconnector;
+        if (reconnector != null) {
+            reconnector.onDeviceFound(device.getAddress());
+        }
         // Connect to first found device if required.
         if (connectFirst) {
             // Stop scanning for devices.
@@ -314,8 +474,13 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
     }
 
     // Private functions to simplify the notification of all callbacks of a certain event.
-    private void notifyOnConnected(BluetoothLeUart uart) {
-        for (Callback cb : callbacks.keySet()) {
+    // Each walks the callback array as it was when the notification started, with an indexed loop
+    // so no iterator is allocated per received chunk.  notifyOnConnected is package-private so
+    // tests can complete a connection without a real GATT server.
+    void notifyOnConnected(BluetoothLeUart uart) {
+        WeakReference<Callback>[] cbs = callbacks;
+        for (int i = 0; i < cbs.length; i++) {
+            Callback cb = cbs[i].get();
             if (cb != null) {
                 cb.onConnected(uart);
             }
@@ -323,7 +488,9 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
     }
 
     private void notifyOnConnectFailed(BluetoothLeUart uart) {
-        for (Callback cb : callbacks.keySet()) {
+        WeakReference<Callback>[] cbs = callbacks;
+        for (int i = 0; i < cbs.length; i++) {
+            Callback cb = cbs[i].get();
             if (cb != null) {
                 cb.onConnectFailed(uart);
             }
@@ -331,7 +498,9 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
     }
 
     private void notifyOnDisconnected(BluetoothLeUart uart) {
-        for (Callback cb : callbacks.keySet()) {
+        WeakReference<Callback>[] cbs = callbacks;
+        for (int i = 0; i < cbs.length; i++) {
+            Callback cb = cbs[i].get();
             if (cb != null) {
                 cb.onDisconnected(uart);
             }
@@ -339,15 +508,19 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
     }
 
     private void notifyOnReceive(BluetoothLeUart uart, BluetoothGattCharacteristic rx) {
-        for (Callback cb : callbacks.keySet()) {
-            if (cb != null ) {
+        WeakReference<Callback>[] cbs = callbacks;
+        for (int i = 0; i < cbs.length; i++) {
+            Callback cb = cbs[i].get();
+            if (cb != null) {
                 cb.onReceive(uart, rx);
             }
         }
     }
 
     private void notifyOnDeviceFound(BluetoothDevice device) {
-        for (Callback cb : callbacks.keySet()) {
+        WeakReference<Callback>[] cbs = callbacks;
+        for (int i = 0; i < cbs.length; i++) {
+            Callback cb = cbs[i].get();
             if (cb != null) {
                 cb.onDeviceFound(device);
             }
@@ -355,7 +528,9 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
     }
 
     private void notifyOnDeviceInfoAvailable() {
-        for (Callback cb : callbacks.keySet()) {
+        WeakReference<Callback>[] cbs = callbacks;
+        for (int i = 0; i < cbs.length; i++) {
+            Callback cb = cbs[i].get();
             if (cb != null) {
                 cb.onDeviceInfoAvailable();
             }
@@ -366,13 +541,18 @@ public class BluetoothLeUart extends BluetoothGattCallback implements BluetoothA
     private void connectFailure() {
         rx = null;
         tx = null;
+        writeQueue.clear();
         notifyOnConnectFailed(this);
+        UartReconnector reconnector = this.reconnector;
+        if (reconnector != null) {
+            reconnector.onConnectFailed();
+        }
     }
 
     // Filtering by custom UUID is broken in Android 4.3 and 4.4, see:
     //   http://stackoverflow.com/questions/18019161/startlescan-with-128-bit-uuids-doesnt-work-on-native-android-ble-implementation?noredirect=1#comment27879874_18019161
     // This is a workaround function from the SO thread to manually parse advertisement data.
-    private List<UUID> parseUUIDs(final byte[] advertisedData) {
+    static List<UUID> parseUUIDs(final byte[] advertisedData) {
         List<UUID> uuids = new ArrayList<UUID>();
 
         int offset = 0;
@@ -0,0 +1,350 @@
+package com.adafruit.bleuart;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.content.Context;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Connects to several BLE UART devices at once and streams from all of them.
+//
+// Every UART device found by the scan gets its own BluetoothLeUart, and with it its own GATT
+// connection, read queue and write queue, until maxDevices are tracked. Devices are keyed by
+// address and numbered in the order they were first found; a device keeps its number, and its
+// BluetoothLeUart, across reconnects for as long as the hub lives.
+//
+// The devices' callbacks arrive on Binder threads. They are funneled into a single ring of
+// preallocated events, tagged with the device's number, and delivered to the listener one at a
+// time on the hub's dispatch thread, so the listener never sees two devices at once. If the
+// listener falls behind, received data is dropped rather than waiting for room, and the listener
+// is told before the device's next chunk that made it through.
+public class BluetoothLeUartHub implements BluetoothAdapter.LeScanCallback {
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    // Default BLE notification payload; longer ones grow the event's buffer.
+    private static final int NOTIFICATION_BYTES = 20;
+    // Ring slots beyond the queue capacity, so connection events find room when received data
+    // has filled the queue.
+    private static final int CONNECTION_EVENTS_PER_DEVICE = 4;
+
+    // Interface for a hub client, called on the hub's dispatch thread.
+    public interface Listener {
+        public void onDeviceConnected(int device, String address);
+        public void onDeviceDisconnected(int device, String address);
+        // The data is only valid until this returns.
+        public void onDeviceReceive(int device, byte[] data, int offset, int length,
+                long timeNanos);
+        // Chunks of the device's data were dropped since the previous call, so a line may have
+        // been cut short. Called right before the next chunk that made it through.
+        public void onDeviceDataLost(int device, int chunks);
+    }
+
+    private static final int EVENT_CONNECTED = 0;
+    private static final int EVENT_DISCONNECTED = 1;
+    private static final int EVENT_RECEIVE = 2;
+
+    private static class Event {
+        int type;
+        int device;
+        byte[] data = new byte[NOTIFICATION_BYTES];
+        int length;
+        long timeNanos;
+        // Chunks of the device dropped right before this one.
+        int lostBefore;
+    }
+
+    // One tracked device: its number, address and connection, and the callback tagging its events.
+    private class Device implements BluetoothLeUart.Callback {
+        final int number;
+        final String address;
+        final BluetoothLeUart uart;
+
+        Device(int number, String address) {
+            this.number = number;
+            this.address = address;
+            this.uart = createUart();
+        }
+
+        @Override
+        public void onConnected(BluetoothLeUart uart) {
+            post(EVENT_CONNECTED, number, null, 0);
+        }
+
+        @Override
+        public void onConnectFailed(BluetoothLeUart uart) {
+            // Release the connection so the scan can find the device again.
+            uart.close();
+            devices.remove(address, this);
+            post(EVENT_DISCONNECTED, number, null, 0);
+            startScan();
+        }
+
+        @Override
+        public void onDisconnected(BluetoothLeUart uart) {
+            // The connection was made with autoConnect, Android reconnects on its own.
+            post(EVENT_DISCONNECTED, number, null, 0);
+        }
+
+        @Override
+        public void onReceive(BluetoothLeUart uart, BluetoothGattCharacteristic rx) {
+            byte[] value = rx.getValue();
+            if (value != null) {
+                post(EVENT_RECEIVE, number, value, System.nanoTime());
+            }
+        }
+
+        @Override
+        public void onDeviceFound(BluetoothDevice device) {}
+
+        @Override
+        public void onDeviceInfoAvailable() {}
+    }
+
+    private final Context context;
+    private final BluetoothAdapter adapter;
+    private final Listener listener;
+    private final int maxDevices;
+    private final int queueCapacity;
+    private final Thread dispatcher;
+    private volatile boolean scanning;
+
+    // The tracked devices, connected or connecting.
+    private final ConcurrentHashMap<String, Device> devices =
+            new ConcurrentHashMap<String, Device>();
+    // Every device ever found, guarded by this. Devices stay with their address for the life of
+    // the hub.
+    private final HashMap<String, Device> known = new HashMap<String, Device>();
+    private final String[] addresses;
+    private int nextNumber;
+
+    // The fan-in ring. Binder threads claim a slot by advancing tail, fill it and publish it by
+    // setting its sequence to one past its position. The dispatch thread takes the slots in order
+    // and hands each back by moving its sequence a lap ahead, to the position it is next used at.
+    private final Event[] ring;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicInteger droppedEvents = new AtomicInteger();
+    private final AtomicIntegerArray lostChunks;
+
+    public BluetoothLeUartHub(Context context, int maxDevices, Listener listener) {
+        this(context, BluetoothAdapter.getDefaultAdapter(), maxDevices, DEFAULT_QUEUE_CAPACITY,
+                listener);
+    }
+
+    // The adapter may be null, then nothing is ever found.
+    public BluetoothLeUartHub(Context context, BluetoothAdapter adapter, int maxDevices,
+            int queueCapacity, Listener listener) {
+        this.context = context;
+        this.adapter = adapter;
+        this.maxDevices = maxDevices;
+        this.queueCapacity = queueCapacity;
+        this.listener = listener;
+        this.addresses = new String[maxDevices];
+        this.lostChunks = new AtomicIntegerArray(maxDevices);
+        int slots = Integer.highestOneBit(
+                queueCapacity + CONNECTION_EVENTS_PER_DEVICE * maxDevices - 1) << 1;
+        this.ring = new Event[slots];
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            ring[i] = new Event();
+            sequences.set(i, i);
+        }
+        this.dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "BluetoothLeUartHub");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    // Start scanning and connecting until maxDevices are tracked.
+    public void start() {
+        startScan();
+    }
+
+    // Stop scanning and close the connection to every device. Their numbers are kept for the next
+    // start.
+    public void stop() {
+        stopScan();
+        for (Device device : devices.values()) {
+            device.uart.unregisterCallback(device);
+            device.uart.close();
+            post(EVENT_DISCONNECTED, device.number, null, 0);
+        }
+        devices.clear();
+    }
+
+    // Return the number of devices currently tracked, connected or connecting.
+    public int getDeviceCount() {
+        return devices.size();
+    }
+
+    // Return the address of the device with the given number, or null if there is none yet.
+    public String getAddress(int device) {
+        return addresses[device];
+    }
+
+    // Return the connection to the device with the given number, or null if it isn't tracked.
+    public BluetoothLeUart getUart(int device) {
+        String address = addresses[device];
+        Device tracked = address != null ? devices.get(address) : null;
+        return tracked != null ? tracked.uart : null;
+    }
+
+    // Return how many received chunks were dropped because the listener fell behind.
+    public int getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    @Override
+    public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+        // Stop if the device doesn't have the UART service.
+        if (!BluetoothLeUart.parseUUIDs(scanRecord).contains(BluetoothLeUart.UART_UUID)) {
+            return;
+        }
+        onUartFound(device.getAddress(), device);
+    }
+
+    // Track and connect to a device with the UART service, unless it is already tracked or
+    // maxDevices other devices have been found.
+    void onUartFound(String address, BluetoothDevice device) {
+        if (devices.containsKey(address)) {
+            return;
+        }
+        Device tracked = getDevice(address);
+        if (tracked == null || devices.putIfAbsent(address, tracked) != null) {
+            // No number left, or found twice at once and the other scan result won.
+            return;
+        }
+        if (devices.size() >= maxDevices) {
+            stopScan();
+        }
+        // Registering again is harmless; the callback was unregistered if the hub was stopped.
+        tracked.uart.registerCallback(tracked);
+        tracked.uart.connect(device);
+    }
+
+    // Return the device with this address, numbering it if it is new, or null if maxDevices have
+    // been numbered already.
+    private synchronized Device getDevice(String address) {
+        Device device = known.get(address);
+        if (device == null && nextNumber < maxDevices) {
+            device = new Device(nextNumber, address);
+            addresses[nextNumber++] = address;
+            known.put(address, device);
+        }
+        return device;
+    }
+
+    // Create the connection to a newly found device.
+    BluetoothLeUart createUart() {
+        return new BluetoothLeUart(context);
+    }
+
+    private synchronized void startScan() {
+        if (adapter != null && !scanning && devices.size() < maxDevices) {
+            scanning = true;
+            adapter.startLeScan(this);
+        }
+    }
+
+    private synchronized void stopScan() {
+        if (adapter != null && scanning) {
+            scanning = false;
+            adapter.stopLeScan(this);
+        }
+    }
+
+    // Queue an event for the dispatch thread. Only received data is ever dropped; other events
+    // wait for a free slot in the unlikely case that they find the whole ring taken.
+    private void post(int type, int device, byte[] data, long timeNanos) {
+        long position;
+        while (true) {
+            position = tail.get();
+            if (type == EVENT_RECEIVE && position - head.get() >= queueCapacity) {
+                droppedEvents.incrementAndGet();
+                lostChunks.incrementAndGet(device);
+                return;
+            }
+            long sequence = sequences.get(slot(position));
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                // Not yet handed back by the dispatch thread.
+                Thread.yield();
+            }
+            // Otherwise another thread claimed the slot first, try again with the next one.
+        }
+        Event event = ring[slot(position)];
+        event.type = type;
+        event.device = device;
+        event.timeNanos = timeNanos;
+        // A device's chunks are posted from one Binder thread in order, so this pins the loss
+        // to exactly the chunk after it.
+        event.lostBefore = type == EVENT_RECEIVE ? lostChunks.getAndSet(device, 0) : 0;
+        if (data != null) {
+            if (event.data.length < data.length) {
+                event.data = new byte[data.length];
+            }
+            System.arraycopy(data, 0, event.data, 0, data.length);
+            event.length = data.length;
+        } else {
+            event.length = 0;
+        }
+        sequences.lazySet(slot(position), position + 1);
+        LockSupport.unpark(dispatcher);
+    }
+
+    private void dispatch() {
+        long position = 0;
+        while (true) {
+            int slot = slot(position);
+            if (sequences.get(slot) != position + 1) {
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                deliver(ring[slot]);
+            } finally {
+                position++;
+                sequences.lazySet(slot, position - 1 + ring.length);
+                head.lazySet(position);
+            }
+        }
+    }
+
+    private int slot(long position) {
+        return (int) position & (ring.length - 1);
+    }
+
+    private void deliver(Event event) {
+        String address = addresses[event.device];
+        switch (event.type) {
+            case EVENT_CONNECTED:
+                listener.onDeviceConnected(event.device, address);
+                break;
+            case EVENT_DISCONNECTED:
+                listener.onDeviceDisconnected(event.device, address);
+                break;
+            default:
+                if (event.lostBefore > 0) {
+                    listener.onDeviceDataLost(event.device, event.lostBefore);
+                }
+                listener.onDeviceReceive(event.device, event.data, 0, event.length,
+                        event.timeNanos);
+                break;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.adafruit.bleuart;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// Gets a UART connection back after it drops.  The address of the last connected device is kept,
+// and the first attempts connect straight to it, which is much quicker than scanning when the
+// device is still in range.  Failed attempts are retried with exponentially growing waits in
+// between, and once the direct attempts are used up every further round scans for the device
+// first, connecting only when it is seen advertising again.
+//
+// Knows nothing about Android; the actual connecting and scanning is done through a Link.  Also
+// measures how long each recovery took, from the drop until the connection was usable again.
+public class UartReconnector {
+
+    public static final int DEFAULT_DIRECT_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 250;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 8000;
+    // A direct connection to a device that is gone can take the stack 30 seconds to give up on.
+    public static final long DEFAULT_ATTEMPT_TIMEOUT_MS = 5000;
+    public static final long DEFAULT_SCAN_TIMEOUT_MS = 10000;
+
+    private static final long NANOS_PER_MS = 1000000L;
+
+    // Nothing to recover, either never connected or disconnected on purpose.
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_CONNECTED = 1;
+    // Waiting for a connection attempt to complete.
+    private static final int STATE_CONNECTING = 2;
+    // Backing off before the next attempt.
+    private static final int STATE_WAITING = 3;
+    // Scanning for the device before attempting again.
+    private static final int STATE_SCANNING = 4;
+
+    // Performs the connection attempts and scans asked for by the reconnector.
+    public interface Link {
+        // Start connecting straight to the device with this address, ending in one of onConnected,
+        // onConnectFailed or onDisconnected.  Returns false if the attempt could not be started.
+        public boolean connect(String address);
+        // Start scanning, passing found devices to onDeviceFound.  Returns false if the scan could
+        // not be started.
+        public boolean startScan();
+        public void stopScan();
+    }
+
+    private final Link link;
+    private final int directAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long attemptTimeoutMs;
+    private final long scanTimeoutMs;
+    private final ScheduledExecutorService timer;
+
+    // Guarded by this.
+    private int state = STATE_IDLE;
+    private String address;
+    private ScheduledFuture<?> timeout;
+    // Bumped on every state change so a late timeout can't act on a newer state.
+    private int generation;
+    // Failed attempts and scans since the connection dropped.
+    private int failures;
+    private long lostNanos;
+    private boolean scanned;
+    // Set by shutdown, after which drops are no longer recovered from.
+    private boolean shutDown;
+
+    // Recovery metrics, guarded by this.
+    private int recoveries;
+    private int directRecoveries;
+    private int scanRecoveries;
+    private int attempts;
+    private int scans;
+    private long lastRecoveryMs;
+    private long maxRecoveryMs;
+    private long totalRecoveryMs;
+
+    public UartReconnector(Link link) {
+        this(link, DEFAULT_DIRECT_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS,
+                DEFAULT_ATTEMPT_TIMEOUT_MS, DEFAULT_SCAN_TIMEOUT_MS);
+    }
+
+    public UartReconnector(Link link, int directAttempts, long initialBackoffMs,
+            long maxBackoffMs, long attemptTimeoutMs, long scanTimeoutMs) {
+        this.link = link;
+        this.directAttempts = directAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.attemptTimeoutMs = attemptTimeoutMs;
+        this.scanTimeoutMs = scanTimeoutMs;
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "UartReconnect");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    // Must be called once a connection is ready for use, whoever started it.
+    public synchronized void onConnected(String address) {
+        if (state != STATE_IDLE && state != STATE_CONNECTED) {
+            long recoveryMs = (System.nanoTime() - lostNanos) / NANOS_PER_MS;
+            recoveries++;
+            if (scanned) {
+                scanRecoveries++;
+            } else {
+                directRecoveries++;
+            }
+            lastRecoveryMs = recoveryMs;
+            maxRecoveryMs = Math.max(maxRecoveryMs, recoveryMs);
+            totalRecoveryMs += recoveryMs;
+        }
+        this.address = address;
+        enter(STATE_CONNECTED);
+    }
+
+    // Must be called when the connection drops or a connection attempt ends without connecting.
+    public synchronized void onDisconnected() {
+        if (state == STATE_CONNECTED) {
+            if (address == null || shutDown) {
+                enter(STATE_IDLE);
+                return;
+            }
+            lostNanos = System.nanoTime();
+            failures = 0;
+            scanned = false;
+            attempt();
+        } else if (state == STATE_CONNECTING) {
+            fail();
+        }
+    }
+
+    // Must be called when a connection attempt fails, e.g. service discovery didn't work out.
+    public synchronized void onConnectFailed() {
+        if (state == STATE_CONNECTING) {
+            fail();
+        }
+    }
+
+    // Must be called for every device found while scanning.
+    public synchronized void onDeviceFound(String address) {
+        if (state == STATE_SCANNING && address != null && address.equals(this.address)) {
+            link.stopScan();
+            attempt();
+        }
+    }
+
+    // Stop recovering, e.g. because the connection was closed on purpose.  The last device is still
+    // remembered for the next drop.
+    public synchronized void cancel() {
+        if (state == STATE_SCANNING) {
+            link.stopScan();
+        }
+        enter(STATE_IDLE);
+    }
+
+    // Stop recovering for good and end the timer thread.  A callback that still arrives, e.g. from
+    // a GATT thread that got hold of the reconnector just before, is ignored.
+    public void shutdown() {
+        synchronized (this) {
+            shutDown = true;
+            cancel();
+        }
+        timer.shutdownNow();
+    }
+
+    // True between a drop and the connection being back, or recovery being cancelled.
+    public synchronized boolean isRecovering() {
+        return state != STATE_IDLE && state != STATE_CONNECTED;
+    }
+
+    public synchronized String getAddress() {
+        return address;
+    }
+
+    public synchronized int getRecoveries() {
+        return recoveries;
+    }
+
+    public synchronized long getLastRecoveryMs() {
+        return lastRecoveryMs;
+    }
+
+    public synchronized long getMaxRecoveryMs() {
+        return maxRecoveryMs;
+    }
+
+    public synchronized long getMeanRecoveryMs() {
+        return recoveries > 0 ? totalRecoveryMs / recoveries : 0;
+    }
+
+    public synchronized String summary() {
+        return "Recovered " + recoveries + " times (" + directRecoveries + " direct, "
+                + scanRecoveries + " after scanning) with " + attempts + " connection attempts and "
+                + scans + " scans.  Time to recover: last " + lastRecoveryMs + " ms, mean "
+                + getMeanRecoveryMs() + " ms, max " + maxRecoveryMs + " ms.";
+    }
+
+    // Start a direct connection attempt to the remembered device.  Caller holds the lock.
+    private void attempt() {
+        attempts++;
+        enter(STATE_CONNECTING);
+        if (!link.connect(address)) {
+            fail();
+            return;
+        }
+        schedule(attemptTimeoutMs);
+    }
+
+    // Count a failed attempt or scan and back off before the next one.  Caller holds the lock.
+    private void fail() {
+        failures++;
+        enter(STATE_WAITING);
+        long backoffMs = initialBackoffMs << Math.min(failures - 1, 30);
+        schedule(Math.min(backoffMs, maxBackoffMs));
+    }
+
+    // Start scanning for the remembered device.  Caller holds the lock.
+    private void scan() {
+        scans++;
+        scanned = true;
+        enter(STATE_SCANNING);
+        if (!link.startScan()) {
+            fail();
+            return;
+        }
+        schedule(scanTimeoutMs);
+    }
+
+    private void onTimeout(int generation) {
+        synchronized (this) {
+            if (generation != this.generation) {
+                return;
+            }
+            switch (state) {
+                case STATE_CONNECTING:
+                    // Give up on an attempt that neither connected nor failed in time.
+                    fail();
+                    break;
+                case STATE_SCANNING:
+                    link.stopScan();
+                    fail();
+                    break;
+                case STATE_WAITING:
+                    if (failures < directAttempts) {
+                        attempt();
+                    } else {
+                        scan();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Switch state, disarming any timeout of the previous one.  Caller holds the lock.
+    private void enter(int newState) {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+        generation = (generation + 1) & Integer.MAX_VALUE;
+        state = newState;
+    }
+
+    // Arm a timeout for the current state.  Caller holds the lock.
+    private void schedule(long delayMs) {
+        final int generation = this.generation;
+        timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                onTimeout(generation);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+}
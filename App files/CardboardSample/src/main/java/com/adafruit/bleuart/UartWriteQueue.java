@@ -0,0 +1,278 @@
+package com.adafruit.bleuart;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// Bounded outbound queue for the UART TX characteristic.  Payloads are split into chunks that fit
+// the MTU and written one at a time; the next chunk goes out as soon as the previous write is
+// acknowledged through onWriteComplete, so callers never wait on the GATT.
+public class UartWriteQueue {
+
+    // Largest payload of a single write with the default 23 byte ATT MTU.
+    public static final int DEFAULT_CHUNK_SIZE = 20;
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final long DEFAULT_TIMEOUT_MS = 1000;
+
+    // Writes that may still be acknowledged, normally one or two.
+    private static final int MAX_UNACKED = 8;
+
+    // Starts an asynchronous write of a single chunk.  Returns false if the write could not be
+    // started, e.g. because there is no connection.
+    public interface Writer {
+        public boolean write(byte[] chunk);
+    }
+
+    // Told once whether the whole payload of a send was written.
+    public interface SendCallback {
+        public void onSendComplete(boolean success);
+    }
+
+    private static class PendingSend {
+        final byte[] data;
+        final SendCallback callback;
+        int offset;
+
+        PendingSend(byte[] data, SendCallback callback) {
+            this.data = data;
+            this.callback = callback;
+        }
+    }
+
+    private final Writer writer;
+    private final int chunkSize;
+    private final int capacity;
+    private final long timeoutMs;
+
+    // Guarded by this.
+    private final ArrayDeque<PendingSend> queue;
+    // Runs the write timeouts.  Started by the first write, stopped by shutdown.
+    private ScheduledExecutorService timer;
+    private PendingSend current;
+    // True while a chunk of current is being started or waiting to be acknowledged.
+    private boolean writing;
+    private ScheduledFuture<?> timeout;
+    // Every chunk written gets a new generation, and this is bumped again once it completes, so a
+    // late timeout or acknowledgement can't complete a newer write.
+    private int writeGeneration;
+    // Generations of the writes started but not acknowledged yet, oldest first, including the ones
+    // that already timed out.  The GATT acknowledges writes in the order they were started, so the
+    // oldest of these is what the next acknowledgement belongs to.
+    private final int[] unacked = new int[MAX_UNACKED];
+    private int unackedHead;
+    private int unackedCount;
+
+    public UartWriteQueue(Writer writer) {
+        this(writer, DEFAULT_CHUNK_SIZE, DEFAULT_CAPACITY, DEFAULT_TIMEOUT_MS);
+    }
+
+    public UartWriteQueue(Writer writer, int chunkSize, int capacity, long timeoutMs) {
+        this.writer = writer;
+        this.chunkSize = chunkSize;
+        this.capacity = capacity;
+        this.timeoutMs = timeoutMs;
+        this.queue = new ArrayDeque<PendingSend>(capacity);
+    }
+
+    // Queue data to be written.  Returns false without queueing anything if the queue is full.
+    // The callback, if any, is called from the thread that completes the last write.
+    public boolean send(byte[] data, SendCallback callback) {
+        synchronized (this) {
+            if (queue.size() >= capacity) {
+                return false;
+            }
+            queue.offer(new PendingSend(data, callback));
+            if (current != null) {
+                // The send in progress will pick it up when it completes.
+                return true;
+            }
+        }
+        writeNext();
+        return true;
+    }
+
+    // Must be called from onCharacteristicWrite for every write started by this queue.  An
+    // acknowledgement that arrives after its write timed out is ignored instead of being credited
+    // to the write that followed.
+    public void onWriteComplete(boolean success) {
+        int generation;
+        synchronized (this) {
+            if (unackedCount == 0) {
+                return;
+            }
+            generation = unacked[unackedHead];
+            unackedHead = (unackedHead + 1) % MAX_UNACKED;
+            unackedCount--;
+        }
+        finishWrite(success, generation);
+    }
+
+    // Complete the chunk in flight, if it is still the one with the given generation.
+    private void finishWrite(boolean success, int generation) {
+        PendingSend finished = null;
+        synchronized (this) {
+            if (!writing || generation != writeGeneration) {
+                return;
+            }
+            cancelTimeout();
+            writing = false;
+            if (success) {
+                current.offset = Math.min(current.offset + chunkSize, current.data.length);
+            }
+            if (!success || current.offset == current.data.length) {
+                finished = current;
+                current = null;
+            }
+            // Otherwise there are more chunks of this payload to go.
+        }
+        if (finished != null) {
+            complete(finished, success);
+        }
+        writeNext();
+    }
+
+    // Fail every queued and in flight send, e.g. after a disconnect.
+    public void clear() {
+        List<PendingSend> dropped = new ArrayList<PendingSend>();
+        synchronized (this) {
+            cancelTimeout();
+            writing = false;
+            // Nothing is acknowledged after a disconnect.
+            unackedCount = 0;
+            if (current != null) {
+                dropped.add(current);
+                current = null;
+            }
+            dropped.addAll(queue);
+            queue.clear();
+        }
+        for (PendingSend send : dropped) {
+            complete(send, false);
+        }
+    }
+
+    public synchronized boolean isIdle() {
+        return current == null && queue.isEmpty();
+    }
+
+    // Fail every queued and in flight send and stop the timeout thread.  The queue can still be
+    // used afterwards, the next write starts a new thread.
+    public void shutdown() {
+        clear();
+        ScheduledExecutorService stopped;
+        synchronized (this) {
+            stopped = timer;
+            timer = null;
+        }
+        if (stopped != null) {
+            stopped.shutdownNow();
+        }
+    }
+
+    // Write the next chunk of the current send, or start the next queued send, failing any that
+    // can't be started.  The writer is called without holding the lock, since it goes into the GATT
+    // and the acknowledgement may already be on its way on another thread when it returns.
+    private void writeNext() {
+        while (true) {
+            byte[] chunk;
+            final int generation;
+            synchronized (this) {
+                if (writing) {
+                    return;
+                }
+                if (current == null) {
+                    current = queue.poll();
+                    if (current == null) {
+                        return;
+                    }
+                }
+                int end = Math.min(current.offset + chunkSize, current.data.length);
+                chunk = (current.offset == 0 && end == current.data.length)
+                        ? current.data
+                        : Arrays.copyOfRange(current.data, current.offset, end);
+                writing = true;
+                writeGeneration = (writeGeneration + 1) & Integer.MAX_VALUE;
+                generation = writeGeneration;
+                // Recorded up front, the acknowledgement can arrive before write returns.
+                addUnacked(generation);
+            }
+            boolean started = writer.write(chunk);
+            PendingSend failed;
+            synchronized (this) {
+                if (generation != writeGeneration) {
+                    // Already acknowledged, or the queue was cleared meanwhile.
+                    return;
+                }
+                if (started) {
+                    timeout = startTimer().schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            onTimeout(generation);
+                        }
+                    }, timeoutMs, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                // No acknowledgement will come for a write that wasn't started.
+                if (unackedCount > 0) {
+                    unackedCount--;
+                }
+                writing = false;
+                writeGeneration = (writeGeneration + 1) & Integer.MAX_VALUE;
+                failed = current;
+                current = null;
+            }
+            complete(failed, false);
+        }
+    }
+
+    // Remember a started write until it is acknowledged.  If acknowledgements stopped coming
+    // altogether the oldest are forgotten.  Caller holds the lock.
+    private void addUnacked(int generation) {
+        if (unackedCount == MAX_UNACKED) {
+            unackedHead = (unackedHead + 1) % MAX_UNACKED;
+            unackedCount--;
+        }
+        unacked[(unackedHead + unackedCount) % MAX_UNACKED] = generation;
+        unackedCount++;
+    }
+
+    // Caller holds the lock.
+    private ScheduledExecutorService startTimer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "UartWriteTimeout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return timer;
+    }
+
+    private void onTimeout(int generation) {
+        // Treat a write that was never acknowledged as failed and move on to the next one.
+        finishWrite(false, generation);
+    }
+
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+        writeGeneration = (writeGeneration + 1) & Integer.MAX_VALUE;
+    }
+
+    private static void complete(PendingSend send, boolean success) {
+        if (send.callback != null) {
+            send.callback.onSendComplete(success);
+        }
+    }
+}
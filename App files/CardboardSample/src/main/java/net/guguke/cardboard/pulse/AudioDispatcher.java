@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs all calls into the {@link AudioEngine} on one worker thread, so the render loop never
+ * waits on the audio engine.
+ *
+ * <p>One-off commands such as preloading or playing a sound go through a bounded lock-free
+ * queue. Head rotation and sound positions are only ever needed at their latest value, so each is
+ * kept in a single slot that is overwritten by newer updates; the worker applies whatever is in
+ * the slot, and updates it never got to are dropped.
+ *
+ * <p>Position slots are preallocated and picked by the sound object id modulo
+ * {@link #POSITION_SLOTS}. The engine numbers its objects in order, and only a few exist at a
+ * time, so live objects don't share a slot; should one take over the slot of an older object,
+ * only the older object's pending position is lost.
+ */
+public class AudioDispatcher {
+  public static final int DEFAULT_CAPACITY = 32;
+  /** How many sound objects can have a position pending at once. A power of two. */
+  public static final int POSITION_SLOTS = 16;
+
+  /** Receives the id of a sound object created on the worker thread. */
+  public interface SoundObjectListener {
+    /**
+     * Called on the worker thread, which makes it safe to call the engine directly.
+     *
+     * @param soundId The new sound object, or {@link AudioEngine#INVALID_ID}.
+     */
+    void onSoundObjectCreated(AudioEngine engine, int soundId);
+  }
+
+  private abstract static class Command {
+    abstract void run(AudioEngine engine);
+  }
+
+  private final AudioEngine engine;
+  private final int capacity;
+  private final Thread worker;
+  private volatile boolean running = true;
+
+  private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<Command>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final CoalescedVector headRotation = new CoalescedVector();
+  private final CoalescedVector[] positions = new CoalescedVector[POSITION_SLOTS];
+  private final float[] scratch = new float[4];
+
+  private final AtomicInteger rejectedCommands = new AtomicInteger();
+  private final AtomicInteger coalescedUpdates = new AtomicInteger();
+
+  public AudioDispatcher(AudioEngine engine) {
+    this(engine, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param engine The engine, only ever called from the worker thread.
+   * @param capacity How many one-off commands may wait at once.
+   */
+  public AudioDispatcher(AudioEngine engine, int capacity) {
+    this.engine = engine;
+    this.capacity = capacity;
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = new CoalescedVector();
+    }
+    worker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        work();
+      }
+    }, "AudioDispatcher");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /** Decodes a sound file ahead of its first use. */
+  public boolean preload(final String file) {
+    return enqueue(new Command() {
+      @Override
+      void run(AudioEngine engine) {
+        engine.preloadSoundFile(file);
+      }
+    });
+  }
+
+  /** Creates a sound object and hands its id to the listener. */
+  public boolean createSoundObject(final String file, final SoundObjectListener listener) {
+    return enqueue(new Command() {
+      @Override
+      void run(AudioEngine engine) {
+        listener.onSoundObjectCreated(engine, engine.createSoundObject(file));
+      }
+    });
+  }
+
+  public boolean play(final int soundId, final boolean looped) {
+    return enqueue(new Command() {
+      @Override
+      void run(AudioEngine engine) {
+        engine.playSound(soundId, looped);
+      }
+    });
+  }
+
+  public boolean stop(final int soundId) {
+    return enqueue(new Command() {
+      @Override
+      void run(AudioEngine engine) {
+        engine.stopSound(soundId);
+      }
+    });
+  }
+
+  /** Pauses the engine, after the commands queued before. */
+  public boolean pause() {
+    return enqueue(new Command() {
+      @Override
+      void run(AudioEngine engine) {
+        engine.pause();
+      }
+    });
+  }
+
+  /** Resumes the engine, after the commands queued before. */
+  public boolean resume() {
+    return enqueue(new Command() {
+      @Override
+      void run(AudioEngine engine) {
+        engine.resume();
+      }
+    });
+  }
+
+  /** Forgets the pending position of a sound object that is gone. */
+  public void forget(int soundId) {
+    positions[soundId & (POSITION_SLOTS - 1)].forget(soundId);
+  }
+
+  /** Moves a sound object. Only the latest position not yet applied is kept. */
+  public void setSoundObjectPosition(int soundId, float x, float y, float z) {
+    update(positions[soundId & (POSITION_SLOTS - 1)], soundId, x, y, z, 0);
+  }
+
+  /** Sets the listener's head rotation. Only the latest rotation not yet applied is kept. */
+  public void setHeadRotation(float x, float y, float z, float w) {
+    update(headRotation, 0, x, y, z, w);
+  }
+
+  /** Stops the worker. Commands still queued are dropped. */
+  public void shutdown() {
+    running = false;
+    LockSupport.unpark(worker);
+  }
+
+  /** How many one-off commands were turned away because the queue was full. */
+  public int getRejectedCommands() {
+    return rejectedCommands.get();
+  }
+
+  /** How many head rotation and position updates were replaced before the worker applied them. */
+  public int getCoalescedUpdates() {
+    return coalescedUpdates.get();
+  }
+
+  private boolean enqueue(Command command) {
+    if (queued.incrementAndGet() > capacity) {
+      queued.decrementAndGet();
+      rejectedCommands.incrementAndGet();
+      return false;
+    }
+    commands.offer(command);
+    LockSupport.unpark(worker);
+    return true;
+  }
+
+  private void update(CoalescedVector vector, int id, float x, float y, float z, float w) {
+    if (vector.set(id, x, y, z, w)) {
+      coalescedUpdates.incrementAndGet();
+    } else {
+      LockSupport.unpark(worker);
+    }
+  }
+
+  private void work() {
+    while (running) {
+      boolean worked = false;
+      Command command;
+      while ((command = commands.poll()) != null) {
+        queued.decrementAndGet();
+        command.run(engine);
+        worked = true;
+      }
+      if (headRotation.take(scratch)) {
+        engine.setHeadRotation(scratch[0], scratch[1], scratch[2], scratch[3]);
+        worked = true;
+      }
+      for (CoalescedVector position : positions) {
+        if (position.take(scratch)) {
+          engine.setSoundObjectPosition(position.takenId, scratch[0], scratch[1], scratch[2]);
+          worked = true;
+        }
+      }
+      if (!worked) {
+        // Every producer unparks after publishing, so nothing is missed while parked.
+        LockSupport.park(this);
+      }
+    }
+  }
+
+  /**
+   * A four float value of one id with a pending flag. Writers are serialized; the worker reads
+   * without a lock using a sequence number that is odd while a write is in progress.
+   */
+  private static final class CoalescedVector {
+    private volatile int sequence;
+    private volatile int id;
+    private volatile float x;
+    private volatile float y;
+    private volatile float z;
+    private volatile float w;
+    private volatile boolean pending;
+    // The id of the value last taken. Only used by the worker.
+    int takenId;
+
+    // Returns true if an earlier value was still pending, i.e. got replaced.
+    synchronized boolean set(int id, float x, float y, float z, float w) {
+      sequence++;
+      this.id = id;
+      this.x = x;
+      this.y = y;
+      this.z = z;
+      this.w = w;
+      sequence++;
+      boolean replaced = pending;
+      pending = true;
+      return replaced;
+    }
+
+    // Drops the pending value if it belongs to the id.
+    synchronized void forget(int id) {
+      if (this.id == id) {
+        pending = false;
+      }
+    }
+
+    // Copies the pending value, if any, and marks it applied.
+    boolean take(float[] out) {
+      if (!pending) {
+        return false;
+      }
+      pending = false;
+      int before;
+      do {
+        before = sequence;
+        takenId = id;
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
+        out[3] = w;
+      } while ((before & 1) != 0 || before != sequence);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+/**
+ * The calls the app makes on the spatial audio engine, so {@link AudioDispatcher} can run against
+ * a stand-in off the device. See {@link CardboardAudio} for the real one.
+ */
+public interface AudioEngine {
+  /** Returned by {@link #createSoundObject} when the sound can't be created. */
+  int INVALID_ID = -1;
+
+  boolean preloadSoundFile(String file);
+
+  int createSoundObject(String file);
+
+  void playSound(int soundId, boolean looped);
+
+  void stopSound(int soundId);
+
+  void setSoundObjectPosition(int soundId, float x, float y, float z);
+
+  void setHeadRotation(float x, float y, float z, float w);
+
+  /** Pauses all audio, e.g. while the activity is paused. */
+  void pause();
+
+  void resume();
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+/**
+ * Keeps the timing of the most recent heart beat reported by the pulse sensor.
+ *
+ * <p>Values are written from one thread, either the Bluetooth callback thread or the GL thread
+ * draining a {@link PulseEventRing}, and read from others. All shared state is held in volatile
+ * fields, so neither side ever blocks the other.
+ *
+ * <p>Values arrive as {@link PulseEvent}s decoded by {@link PulseLineFramer}. Each {@code Q}
+ * inter-beat interval marks a beat, while a {@code B} rate on its own keeps the clock free running
+ * at that tempo.
+ */
+public class BeatClock implements PulseLineFramer.Listener {
+  // The Arduino sketch seeds its IBI with 600ms until it has seen real beats.
+  private static final int DEFAULT_IBI_MS = 600;
+  // Same plausibility window the Arduino interrupt uses to reject noise.
+  private static final int MIN_IBI_MS = 250;
+  private static final int MAX_IBI_MS = 2500;
+
+  private static final long NANOS_PER_MS = 1000000L;
+
+  private volatile long lastBeatNanos;
+  private volatile int ibiMs = DEFAULT_IBI_MS;
+  private volatile int bpm;
+  private volatile int signal;
+
+  public BeatClock(long startNanos) {
+    lastBeatNanos = startNanos;
+  }
+
+  @Override
+  public void onPulseEvent(PulseEvent event) {
+    switch (event.type) {
+      case PulseEvent.TYPE_SIGNAL:
+        onSignal(event.value);
+        break;
+      case PulseEvent.TYPE_IBI:
+        onBeat(event.value, event.timeNanos);
+        break;
+      case PulseEvent.TYPE_BPM:
+        onBpm(event.value);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Records a beat that happened at {@code nowNanos}.
+   *
+   * @param ibi The interval to the previous beat, in milliseconds.
+   * @param nowNanos The time of the beat.
+   */
+  public void onBeat(int ibi, long nowNanos) {
+    if (ibi >= MIN_IBI_MS && ibi <= MAX_IBI_MS) {
+      ibiMs = ibi;
+    }
+    lastBeatNanos = nowNanos;
+  }
+
+  /**
+   * Records the current beats per minute. Beat timing keeps free running at this rate until the
+   * next beat arrives.
+   */
+  public void onBpm(int beatsPerMinute) {
+    if (beatsPerMinute <= 0) {
+      return;
+    }
+    bpm = beatsPerMinute;
+    int ibi = 60000 / beatsPerMinute;
+    if (ibi >= MIN_IBI_MS && ibi <= MAX_IBI_MS) {
+      ibiMs = ibi;
+    }
+  }
+
+  public void onSignal(int value) {
+    signal = value;
+  }
+
+  public int getBpm() {
+    return bpm;
+  }
+
+  public int getIbi() {
+    return ibiMs;
+  }
+
+  public int getSignal() {
+    return signal;
+  }
+
+  /**
+   * Returns how far we are into the current beat, from 0 right at the beat up to 1 when the next
+   * one is due. Keeps cycling at the last known interval if beats stop arriving.
+   */
+  public float getPhase(long nowNanos) {
+    long ibiNanos = ibiMs * NANOS_PER_MS;
+    long sinceBeat = nowNanos - lastBeatNanos;
+    if (sinceBeat < 0) {
+      return 0.0f;
+    }
+    return (float) (sinceBeat % ibiNanos) / ibiNanos;
+  }
+
+  public long getLastBeatNanos() {
+    return lastBeatNanos;
+  }
+
+  /**
+   * Returns when the pulse next peaks at or after {@code nowNanos}: the last beat plus a whole
+   * number of intervals, the same extrapolation {@link #getPhase} cycles through.
+   */
+  public long getNextBeatNanos(long nowNanos) {
+    long ibiNanos = ibiMs * NANOS_PER_MS;
+    long lastBeat = lastBeatNanos;
+    long sinceBeat = nowNanos - lastBeat;
+    if (sinceBeat <= 0) {
+      return lastBeat;
+    }
+    return lastBeat + (sinceBeat + ibiNanos - 1) / ibiNanos * ibiNanos;
+  }
+
+  /**
+   * Returns the strength of the pulse, 1 right at a beat easing down to 0 half way between beats.
+   */
+  public float getPulse(long nowNanos) {
+    return (float) (Math.cos(2.0 * Math.PI * getPhase(nowNanos)) + 1.0) / 2;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+/**
+ * Finds heart beats in the raw pulse sensor waveform, on the phone.
+ *
+ * <p>This is the beat detector of the Arduino sketch's Timer 2 interrupt ({@code Interrupt.ino}),
+ * ported to give exactly the same results: the same peak {@code P}, trough {@code T} and adaptive
+ * {@code thresh} tracking, the same 10 beat IBI average, and the same 16 bit integer arithmetic as
+ * the AVR, down to the truncation of every {@code int} and the unsigned {@code word} running
+ * total.
+ *
+ * <p>Feed it the {@code S} samples of the sensor stream, one per 2 ms tick. Beats come out as
+ * {@code B} and {@code Q} events, in the order the sketch sends them, to the downstream
+ * listener. {@code B} and {@code Q} events coming in from the sensor are dropped, so it can sit
+ * between a {@link PulseLineFramer} and a {@link BeatClock} in place of the MCU's own detector.
+ * Nothing is allocated per sample.
+ */
+public class BeatDetector implements PulseLineFramer.Listener {
+  /** Milliseconds between samples at the ISR's 500 Hz. */
+  public static final int SAMPLE_INTERVAL_MS = 2;
+
+  private static final int SEED_IBI = 600;
+  private static final int SEED_LEVEL = 512;
+  private static final int SEED_THRESH = 525;
+  private static final int SEED_AMP = 100;
+  private static final int RATE_SIZE = 10;
+
+  private final PulseLineFramer.Listener listener;
+  private final PulseEvent event = new PulseEvent();
+
+  // The ISR's state, named as in the sketch.
+  private final int[] rate = new int[RATE_SIZE];
+  private long sampleCounter;
+  private long lastBeatTime;
+  private int p;
+  private int t;
+  private int thresh;
+  private int amp;
+  private boolean firstBeat;
+  private boolean secondBeat;
+  private boolean pulse;
+  private int ibi;
+  private int bpm;
+
+  /**
+   * @param listener Receives the raw samples as they come in and the detected beats.
+   */
+  public BeatDetector(PulseLineFramer.Listener listener) {
+    this.listener = listener;
+    reset();
+  }
+
+  /**
+   * Goes back to the state the sketch starts in.
+   */
+  public void reset() {
+    for (int i = 0; i < RATE_SIZE; i++) {
+      rate[i] = 0;
+    }
+    sampleCounter = 0;
+    lastBeatTime = 0;
+    p = SEED_LEVEL;
+    t = SEED_LEVEL;
+    thresh = SEED_THRESH;
+    amp = SEED_AMP;
+    firstBeat = true;
+    secondBeat = false;
+    pulse = false;
+    ibi = SEED_IBI;
+    bpm = 0;
+  }
+
+  @Override
+  public void onPulseEvent(PulseEvent in) {
+    if (in.type == PulseEvent.TYPE_SIGNAL) {
+      listener.onPulseEvent(in);
+      if (onSample(in.value)) {
+        long timeNanos = in.timeNanos;
+        event.set(PulseEvent.TYPE_BPM, bpm, timeNanos);
+        listener.onPulseEvent(event);
+        event.set(PulseEvent.TYPE_IBI, ibi, timeNanos);
+        listener.onPulseEvent(event);
+      }
+    }
+  }
+
+  /**
+   * Runs one tick of the ISR.
+   *
+   * @param signal The raw reading, {@code analogRead}'s 0 to 1023.
+   * @return true if a beat was detected and {@link #getBpm} and {@link #getIbi} were updated,
+   *     i.e. the sketch would set {@code QS}.
+   */
+  public boolean onSample(int signal) {
+    boolean qs = false;
+    sampleCounter = (sampleCounter + SAMPLE_INTERVAL_MS) & 0xFFFFFFFFL;
+    int n = (short) (sampleCounter - lastBeatTime);
+
+    // find the peak and trough of the pulse wave, waiting 3/5 of the last IBI for the dicrotic
+    // notch to pass
+    if (signal < thresh && n > (short) ((short) (ibi / 5) * 3)) {
+      if (signal < t) {
+        t = signal;
+      }
+    }
+
+    if (signal > thresh && signal > p) {
+      p = signal;
+    }
+
+    // look for the heart beat, the signal surges up every time there is a pulse
+    if (n > 250) {
+      if (signal > thresh && !pulse && n > (short) ((short) (ibi / 5) * 3)) {
+        pulse = true;
+        ibi = (short) (sampleCounter - lastBeatTime);
+        lastBeatTime = sampleCounter;
+
+        if (secondBeat) {
+          // seed the running total to get a realistic BPM at startup
+          secondBeat = false;
+          for (int i = 0; i < RATE_SIZE; i++) {
+            rate[i] = ibi;
+          }
+        }
+
+        if (firstBeat) {
+          // the first IBI is unreliable, discard it and skip the rest of the tick
+          firstBeat = false;
+          secondBeat = true;
+          return false;
+        }
+
+        // keep a running total of the last 10 IBI values in an unsigned 16 bit word
+        int runningTotal = 0;
+        for (int i = 0; i < RATE_SIZE - 1; i++) {
+          rate[i] = rate[i + 1];
+          runningTotal = (runningTotal + rate[i]) & 0xFFFF;
+        }
+        rate[RATE_SIZE - 1] = ibi;
+        runningTotal = (runningTotal + rate[RATE_SIZE - 1]) & 0xFFFF;
+        runningTotal /= 10;
+        // 60000 is a long on the AVR; the AVR's division by zero gives -1
+        bpm = runningTotal != 0 ? (short) (60000L / runningTotal) : -1;
+        qs = true;
+      }
+    }
+
+    if (signal < thresh && pulse) {
+      // the beat is over, set thresh at 50% of the amplitude
+      pulse = false;
+      amp = (short) (p - t);
+      thresh = (short) (amp / 2 + t);
+      p = thresh;
+      t = thresh;
+    }
+
+    if (n > 2500) {
+      // 2.5 seconds without a beat, start over when the heartbeat is back
+      thresh = SEED_LEVEL;
+      p = SEED_LEVEL;
+      t = SEED_LEVEL;
+      lastBeatTime = sampleCounter;
+      firstBeat = true;
+      secondBeat = false;
+    }
+    return qs;
+  }
+
+  public int getBpm() {
+    return bpm;
+  }
+
+  public int getIbi() {
+    return ibi;
+  }
+
+  /** Whether the waveform is above the threshold, the sketch's {@code Pulse}. */
+  public boolean isPulse() {
+    return pulse;
+  }
+
+  public int getThresh() {
+    return thresh;
+  }
+
+  public int getAmplitude() {
+    return amp;
+  }
+}
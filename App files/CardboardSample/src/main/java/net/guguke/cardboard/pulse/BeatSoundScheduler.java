@@ -0,0 +1,192 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a heartbeat sound on every beat of the {@link BeatClock}, timed to land on the visual
+ * pulse.
+ *
+ * <p>Sound takes a while from {@code playSound} to the speaker, so each beat is triggered that
+ * much ahead of the peak the clock predicts from the last beat and interval. Two things are
+ * measured: how far off the trigger fired from its intended time (scheduling jitter), and how far
+ * the sounded beats were from the beats the sensor then reported (prediction error). The clock
+ * jumps the visual pulse to each reported beat, so the latter is also how far sound and picture
+ * disagree on that beat.
+ */
+public class BeatSoundScheduler {
+  // Upper bound on a wait, so beats moved by newly reported ones are picked up soon enough.
+  private static final long MAX_WAIT_NANOS = 50000000L;
+  private static final long NANOS_PER_MS = 1000000L;
+
+  /** Makes the sound. Called on the scheduler's thread. */
+  public interface BeatSound {
+    /**
+     * Plays the sound for the beat peaking at {@code beatNanos}.
+     *
+     * @return false if the sound wasn't ready in time.
+     */
+    boolean play(long beatNanos);
+  }
+
+  private final BeatClock clock;
+  private final BeatSound sound;
+  private final long leadNanos;
+
+  private final LatencyHistogram scheduleJitter = new LatencyHistogram();
+  private final LatencyHistogram predictionError = new LatencyHistogram();
+  private volatile int beats;
+  private volatile int missedBeats;
+  private volatile int lateBeats;
+
+  // Only touched by the thread calling poll.
+  private long lastSoundedBeat = Long.MIN_VALUE;
+  private long lastReportedBeat;
+
+  private volatile Thread thread;
+
+  /**
+   * @param clock The beat timing, shared with the visual pulse.
+   * @param sound Plays one beat.
+   * @param leadNanos How long before the peak to trigger, i.e. the audio output latency.
+   */
+  public BeatSoundScheduler(BeatClock clock, BeatSound sound, long leadNanos) {
+    this.clock = clock;
+    this.sound = sound;
+    this.leadNanos = leadNanos;
+    this.lastReportedBeat = clock.getLastBeatNanos();
+  }
+
+  /**
+   * Triggers the sound if a beat is due and works out how long until the next one is.
+   *
+   * @param nowNanos The current time.
+   * @return How long to wait before polling again.
+   */
+  public long poll(long nowNanos) {
+    long ibiNanos = clock.getIbi() * NANOS_PER_MS;
+    checkPrediction(ibiNanos);
+
+    // The next peak whose trigger time hasn't passed by more than the lead.
+    long beat = clock.getNextBeatNanos(nowNanos);
+    if (beat - leadNanos <= nowNanos) {
+      if (!isSounded(beat, ibiNanos)) {
+        long lateness = nowNanos - (beat - leadNanos);
+        scheduleJitter.record(lateness);
+        beats++;
+        if (lateness > leadNanos / 2) {
+          lateBeats++;
+        }
+        if (!sound.play(beat)) {
+          missedBeats++;
+        }
+        lastSoundedBeat = beat;
+      }
+      beat = clock.getNextBeatNanos(beat + 1);
+    }
+    return Math.max(0, Math.min(beat - leadNanos - nowNanos, MAX_WAIT_NANOS));
+  }
+
+  // A newly reported beat shows how well the last sounded one was predicted.
+  private void checkPrediction(long ibiNanos) {
+    long reported = clock.getLastBeatNanos();
+    if (reported == lastReportedBeat) {
+      return;
+    }
+    lastReportedBeat = reported;
+    if (isSounded(reported, ibiNanos)) {
+      predictionError.record(Math.abs(reported - lastSoundedBeat));
+    }
+  }
+
+  private boolean isSounded(long beat, long ibiNanos) {
+    return lastSoundedBeat != Long.MIN_VALUE && Math.abs(beat - lastSoundedBeat) < ibiNanos / 2;
+  }
+
+  /**
+   * Starts polling on a thread of its own.
+   */
+  public synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        Thread self = Thread.currentThread();
+        while (thread == self) {
+          LockSupport.parkNanos(poll(System.nanoTime()));
+        }
+      }
+    }, "BeatSoundScheduler");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stops the thread started by {@link #start}.
+   */
+  public synchronized void stop() {
+    Thread running = thread;
+    thread = null;
+    if (running != null) {
+      LockSupport.unpark(running);
+    }
+  }
+
+  /** How late triggers fired after their intended time. */
+  public LatencyHistogram getScheduleJitter() {
+    return scheduleJitter;
+  }
+
+  /** How far sounded beats were from the beats reported afterwards. */
+  public LatencyHistogram getPredictionError() {
+    return predictionError;
+  }
+
+  public int getBeats() {
+    return beats;
+  }
+
+  /** Beats the sound wasn't ready for. */
+  public int getMissedBeats() {
+    return missedBeats;
+  }
+
+  /** Beats triggered more than half the lead late. */
+  public int getLateBeats() {
+    return lateBeats;
+  }
+
+  /**
+   * Describes the jitter and prediction error in milliseconds.
+   */
+  public String summary() {
+    return String.format("beats %d, missed %d, late %d%n"
+        + "schedule jitter ms: p50 %.2f p95 %.2f max %.2f%n"
+        + "prediction error ms: p50 %.2f p95 %.2f max %.2f%n",
+        beats, missedBeats, lateBeats,
+        millis(scheduleJitter.getPercentileNanos(0.50)),
+        millis(scheduleJitter.getPercentileNanos(0.95)), millis(scheduleJitter.getMaxNanos()),
+        millis(predictionError.getPercentileNanos(0.50)),
+        millis(predictionError.getPercentileNanos(0.95)), millis(predictionError.getMaxNanos()));
+  }
+
+  private static double millis(long nanos) {
+    return nanos / (double) NANOS_PER_MS;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import com.adafruit.bleuart.BluetoothLeUart;
+import com.adafruit.bleuart.UartReconnector;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.util.Log;
+
+/**
+ * Reads the pulse sensor through the first Bluetooth LE UART device found.
+ *
+ * <p>If the connection drops, the same device is reconnected automatically, see
+ * {@link UartReconnector}.
+ */
+public class BlePulseSource implements PulseSource, BluetoothLeUart.Callback {
+  private static final String TAG = "BT";
+
+  private final BluetoothLeUart uart;
+  private volatile Listener listener;
+
+  public BlePulseSource(BluetoothLeUart uart) {
+    this.uart = uart;
+  }
+
+  @Override
+  public void start(Listener listener) {
+    this.listener = listener;
+    uart.registerCallback(this);
+    uart.setAutoReconnect(true);
+    uart.connectFirstAvailable();
+  }
+
+  @Override
+  public void stop() {
+    uart.unregisterCallback(this);
+    // Shuts the reconnector's timer thread down; start makes a new one.
+    uart.setAutoReconnect(false);
+    uart.disconnect();
+  }
+
+  @Override
+  public String getDescription() {
+    return uart.getDeviceInfo();
+  }
+
+  @Override
+  public void onConnected(BluetoothLeUart uart) {
+    Log.v(TAG, "Connected to: " + uart.getDeviceInfo());
+    UartReconnector reconnector = uart.getReconnector();
+    if (reconnector != null && reconnector.getRecoveries() > 0) {
+      Log.i(TAG, reconnector.summary());
+    }
+    listener.onSourceConnected(this);
+  }
+
+  @Override
+  public void onConnectFailed(BluetoothLeUart uart) {
+    Log.v(TAG, "Error connecting to device! " + uart.getDeviceInfo());
+  }
+
+  @Override
+  public void onDisconnected(BluetoothLeUart uart) {
+    Log.v(TAG, "Disconnected: " + uart.getDeviceInfo());
+    listener.onSourceDisconnected(this);
+  }
+
+  @Override
+  public void onReceive(BluetoothLeUart uart, BluetoothGattCharacteristic rx) {
+    // Decode straight from the notification bytes; this runs for every 20 byte packet.
+    byte[] value = rx.getValue();
+    if (value != null) {
+      listener.onSourceData(this, value, 0, value.length, System.nanoTime());
+    }
+  }
+
+  @Override
+  public void onDeviceFound(BluetoothDevice device) {
+    Log.v(TAG, "Device Found: " + uart.getDeviceInfo());
+  }
+
+  @Override
+  public void onDeviceInfoAvailable() {
+    Log.v(TAG, uart.getDeviceInfo());
+  }
+}
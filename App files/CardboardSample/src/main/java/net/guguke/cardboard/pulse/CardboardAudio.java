@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import com.google.vrtoolkit.cardboard.audio.CardboardAudioEngine;
+
+/**
+ * {@link AudioEngine} backed by the Cardboard SDK's {@link CardboardAudioEngine}.
+ */
+public class CardboardAudio implements AudioEngine {
+  private final CardboardAudioEngine engine;
+
+  public CardboardAudio(CardboardAudioEngine engine) {
+    this.engine = engine;
+  }
+
+  @Override
+  public boolean preloadSoundFile(String file) {
+    return engine.preloadSoundFile(file);
+  }
+
+  @Override
+  public int createSoundObject(String file) {
+    int soundId = engine.createSoundObject(file);
+    return soundId == CardboardAudioEngine.INVALID_ID ? INVALID_ID : soundId;
+  }
+
+  @Override
+  public void playSound(int soundId, boolean looped) {
+    engine.playSound(soundId, looped);
+  }
+
+  @Override
+  public void stopSound(int soundId) {
+    engine.stopSound(soundId);
+  }
+
+  @Override
+  public void setSoundObjectPosition(int soundId, float x, float y, float z) {
+    engine.setSoundObjectPosition(soundId, x, y, z);
+  }
+
+  @Override
+  public void setHeadRotation(float x, float y, float z, float w) {
+    engine.setHeadRotation(x, y, z, w);
+  }
+
+  @Override
+  public void pause() {
+    engine.pause();
+  }
+
+  @Override
+  public void resume() {
+    engine.resume();
+  }
+}
@@ -80,6 +80,14 @@ public class CardboardOverlayView extends LinearLayout {
     @Override public void onAnimationStart(Animation animation) {}
   }
 
+  /**
+   * Shows a line of text below the toasts that stays until replaced, e.g. live measurements.
+   */
+  public void setStatusText(String text) {
+    leftView.setStatusText(text);
+    rightView.setStatusText(text);
+  }
+
   private void setDepthOffset(float offset) {
     leftView.setOffset(offset);
     rightView.setOffset(-offset);
@@ -102,13 +110,14 @@ public class CardboardOverlayView extends LinearLayout {
 
   /**
    * A simple view group containing some horizontally centered text underneath a horizontally
-   * centered image.
+   * centered image, and a status line further down.
    *
    * <p>This is a helper class for CardboardOverlayView.
    */
   private class CardboardOverlayEyeView extends ViewGroup {
     private final ImageView imageView;
     private final TextView textView;
+    private final TextView statusView;
     private float offset;
 
     public CardboardOverlayEyeView(Context context, AttributeSet attrs) {
@@ -124,17 +133,28 @@ public class CardboardOverlayView extends LinearLayout {
       textView.setGravity(Gravity.CENTER);
       textView.setShadowLayer(3.0f, 0.0f, 0.0f, Color.DKGRAY);
       addView(textView);
+
+      statusView = new TextView(context, attrs);
+      statusView.setTextSize(TypedValue.COMPLEX_UNIT_DIP, 10.0f);
+      statusView.setGravity(Gravity.CENTER);
+      statusView.setShadowLayer(3.0f, 0.0f, 0.0f, Color.DKGRAY);
+      addView(statusView);
     }
 
     public void setColor(int color) {
       imageView.setColorFilter(color);
       textView.setTextColor(color);
+      statusView.setTextColor(color);
     }
 
     public void setText(String text) {
       textView.setText(text);
     }
 
+    public void setStatusText(String text) {
+      statusView.setText(text);
+    }
+
     public void setTextViewAlpha(float alpha) {
       textView.setAlpha(alpha);
     }
@@ -161,6 +181,9 @@ public class CardboardOverlayView extends LinearLayout {
       // Vertical position of the text, specified in fractions of this ViewGroup's height.
       final float verticalTextPos = 0.52f;
 
+      // Vertical position of the status line, in fractions of this ViewGroup's height.
+      final float verticalStatusPos = 0.7f;
+
       // Layout ImageView
       float adjustedOffset = offset;
       // If the half screen width is bigger than 1000 pixels, that means it's a big screen
@@ -181,6 +204,12 @@ public class CardboardOverlayView extends LinearLayout {
       textView.layout(
         (int) leftMargin, (int) topMargin,
         (int) (leftMargin + width), (int) (topMargin + height * (1.0f - verticalTextPos)));
+
+      // Layout status TextView
+      topMargin = height * verticalStatusPos;
+      statusView.layout(
+        (int) leftMargin, (int) topMargin,
+        (int) (leftMargin + width), (int) (topMargin + height * (1.0f - verticalStatusPos)));
     }
   }
 }
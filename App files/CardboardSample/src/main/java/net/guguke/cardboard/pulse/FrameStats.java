@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-phase frame timings for the renderer.
+ *
+ * <p>Each phase of a frame is timed with {@link System#nanoTime()} and recorded into its own
+ * preallocated {@link LatencyHistogram}. Frames whose interval exceeds 1.5 times the target frame
+ * time are counted as dropped.
+ */
+public class FrameStats {
+  public static final int PHASE_NEW_FRAME = 0;
+  public static final int PHASE_DRAW_EYE = 1;
+  public static final int PHASE_GL_CHECK = 2;
+  public static final int PHASE_AUDIO = 3;
+  public static final int PHASE_FRAME_INTERVAL = 4;
+  private static final int PHASE_COUNT = 5;
+
+  private static final String[] PHASE_NAMES = new String[] {
+      "new frame", "draw eye", "gl check", "audio", "frame interval"};
+
+  private static final long DEFAULT_TARGET_FRAME_NANOS = 1000000000L / 60;
+
+  private final LatencyHistogram[] phases = new LatencyHistogram[PHASE_COUNT];
+  private final AtomicLong droppedFrames = new AtomicLong();
+  private final long droppedFrameNanos;
+  private long lastFrameStartNanos;
+
+  public FrameStats() {
+    this(DEFAULT_TARGET_FRAME_NANOS);
+  }
+
+  public FrameStats(long targetFrameNanos) {
+    droppedFrameNanos = targetFrameNanos + targetFrameNanos / 2;
+    for (int i = 0; i < PHASE_COUNT; i++) {
+      phases[i] = new LatencyHistogram();
+    }
+  }
+
+  /**
+   * Marks the start of a frame, recording the interval since the previous one. Called from the
+   * GL thread only.
+   */
+  public void onFrameStart(long nowNanos) {
+    if (lastFrameStartNanos != 0) {
+      long interval = nowNanos - lastFrameStartNanos;
+      phases[PHASE_FRAME_INTERVAL].record(interval);
+      if (interval > droppedFrameNanos) {
+        droppedFrames.incrementAndGet();
+      }
+    }
+    lastFrameStartNanos = nowNanos;
+  }
+
+  /**
+   * Records the time from {@code startNanos} until now against a phase.
+   *
+   * @return The current time, so consecutive phases can be chained.
+   */
+  public long record(int phase, long startNanos) {
+    long now = System.nanoTime();
+    phases[phase].record(now - startNanos);
+    return now;
+  }
+
+  public LatencyHistogram getPhase(int phase) {
+    return phases[phase];
+  }
+
+  public long getDroppedFrames() {
+    return droppedFrames.get();
+  }
+
+  public void reset() {
+    for (LatencyHistogram phase : phases) {
+      phase.reset();
+    }
+    droppedFrames.set(0);
+    lastFrameStartNanos = 0;
+  }
+
+  /**
+   * Returns a human readable table with count, mean, p50/p95/p99 and max for each phase, in
+   * microseconds.
+   */
+  public String summary() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%-15s %8s %8s %8s %8s %8s %8s%n",
+        "phase (us)", "count", "mean", "p50", "p95", "p99", "max"));
+    for (int i = 0; i < PHASE_COUNT; i++) {
+      LatencyHistogram h = phases[i];
+      sb.append(String.format("%-15s %8d %8d %8d %8d %8d %8d%n", PHASE_NAMES[i], h.getCount(),
+          h.getMeanNanos() / 1000, h.getPercentileNanos(0.50) / 1000,
+          h.getPercentileNanos(0.95) / 1000, h.getPercentileNanos(0.99) / 1000,
+          h.getMaxNanos() / 1000));
+    }
+    sb.append("dropped frames: ").append(droppedFrames.get()).append('\n');
+    return sb.toString();
+  }
+
+  /**
+   * Writes {@link #summary()} to a file, replacing it.
+   */
+  public void dump(File file) throws IOException {
+    Writer out = new FileWriter(file);
+    try {
+      out.write(summary());
+    } finally {
+      out.close();
+    }
+  }
+}
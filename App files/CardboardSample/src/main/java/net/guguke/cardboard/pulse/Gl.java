@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import java.nio.Buffer;
+
+/**
+ * The OpenGL ES calls made by the renderer, so they can be recorded and checked in a JVM test.
+ *
+ * <p>The methods mirror the {@link android.opengl.GLES20} and {@link android.opengl.GLES30}
+ * functions of the same name and take the same arguments. {@link AndroidGl} passes them on to
+ * the real thing.
+ */
+public interface Gl {
+  int glGetError();
+
+  void glEnable(int cap);
+
+  void glDisable(int cap);
+
+  void glViewport(int x, int y, int width, int height);
+
+  void glClear(int mask);
+
+  void glClearDepthf(float depth);
+
+  void glUseProgram(int program);
+
+  int glGetAttribLocation(int program, String name);
+
+  int glGetUniformLocation(int program, String name);
+
+  void glUniform1i(int location, int x);
+
+  void glUniform3fv(int location, int count, float[] v, int offset);
+
+  void glUniform4fv(int location, int count, float[] v, int offset);
+
+  void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+  void glEnableVertexAttribArray(int index);
+
+  void glDisableVertexAttribArray(int index);
+
+  void glVertexAttrib4fv(int index, float[] values, int offset);
+
+  void glGenBuffers(int n, int[] buffers, int offset);
+
+  void glBindBuffer(int target, int buffer);
+
+  void glBufferData(int target, int size, Buffer data, int usage);
+
+  void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride,
+      int offset);
+
+  void glDrawArrays(int mode, int first, int count);
+
+  void glDrawElements(int mode, int count, int type, int offset);
+
+  /** Requires OpenGL ES 3.0. */
+  void glDrawArraysInstanced(int mode, int first, int count, int instanceCount);
+
+  /** Requires OpenGL ES 3.0. */
+  void glDrawElementsInstanced(int mode, int count, int type, int offset, int instanceCount);
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+/**
+ * Decides when to ask OpenGL ES for errors.
+ *
+ * <p>Every {@code glGetError} is a round trip that stalls the GPU command stream, so the render
+ * loop only checks as often as the chosen mode asks for: never, on every Nth frame, or after
+ * every call. Release builds never check at all; all checks sit behind the compile-time
+ * {@code BuildConfig.DEBUG} constant, so the compiler drops them.
+ */
+public class GlErrorChecker {
+  private static final String TAG = "GlErrorChecker";
+
+  /** Never call glGetError. */
+  public static final int MODE_OFF = 0;
+  /** Check every call on one frame out of every {@code sampleInterval}. */
+  public static final int MODE_SAMPLED = 1;
+  /** Check after every call. */
+  public static final int MODE_ALWAYS = 2;
+
+  private static final boolean ENABLED = BuildConfig.DEBUG;
+
+  private final Gl gl;
+  // Whether this build checks at all. Only tests set it apart from ENABLED, to see what a release
+  // build does.
+  private final boolean enabled;
+  private final int mode;
+  private final int sampleInterval;
+  private final FrameStats frameStats;
+  private int frame;
+  private boolean checkThisFrame;
+
+  /**
+   * @param gl Where errors are asked for.
+   * @param mode One of the {@code MODE_*} constants. Ignored in release builds.
+   * @param sampleInterval How many frames apart sampled checks are.
+   * @param frameStats Where the time spent checking is recorded, or null.
+   */
+  public GlErrorChecker(Gl gl, int mode, int sampleInterval, FrameStats frameStats) {
+    this(gl, mode, sampleInterval, frameStats, ENABLED);
+  }
+
+  GlErrorChecker(Gl gl, int mode, int sampleInterval, FrameStats frameStats, boolean enabled) {
+    this.gl = gl;
+    this.enabled = enabled;
+    this.mode = mode;
+    this.sampleInterval = Math.max(1, sampleInterval);
+    this.frameStats = frameStats;
+    this.checkThisFrame = mode == MODE_ALWAYS;
+  }
+
+  /**
+   * Parses a mode name ("off", "sampled" or "always"), falling back to {@code defaultMode}.
+   */
+  public static int parseMode(String name, int defaultMode) {
+    if ("off".equals(name)) {
+      return MODE_OFF;
+    } else if ("sampled".equals(name)) {
+      return MODE_SAMPLED;
+    } else if ("always".equals(name)) {
+      return MODE_ALWAYS;
+    }
+    return defaultMode;
+  }
+
+  /** Called once at the start of every frame. */
+  public void onNewFrame() {
+    if (ENABLED && enabled && mode == MODE_SAMPLED) {
+      frame = (frame + 1) % sampleInterval;
+      checkThisFrame = frame == 0;
+    }
+  }
+
+  /**
+   * Checks for errors if the mode calls for it on this frame.
+   *
+   * @param label Label to report in case of error.
+   */
+  public void check(String label) {
+    if (ENABLED && enabled && checkThisFrame) {
+      checkNow(label);
+    }
+  }
+
+  /**
+   * Checks for errors after one-off setup work, whenever checking is not switched off.
+   *
+   * @param label Label to report in case of error.
+   */
+  public void checkSetup(String label) {
+    if (ENABLED && enabled && mode != MODE_OFF) {
+      checkNow(label);
+    }
+  }
+
+  /**
+   * Drops errors that are expected rather than bugs, e.g. from a program binary the driver no
+   * longer accepts, so that the next check doesn't report them.
+   */
+  public void discardErrors() {
+    if (ENABLED && enabled && mode != MODE_OFF) {
+      while (gl.glGetError() != GLES20.GL_NO_ERROR) {
+        // Each call clears one error flag.
+      }
+    }
+  }
+
+  private void checkNow(String label) {
+    long start = System.nanoTime();
+    int error;
+    while ((error = gl.glGetError()) != GLES20.GL_NO_ERROR) {
+      Log.e(TAG, label + ": glError " + error);
+      throw new RuntimeException(label + ": glError " + error);
+    }
+    if (frameStats != null) {
+      frameStats.record(FrameStats.PHASE_GL_CHECK, start);
+    }
+  }
+}
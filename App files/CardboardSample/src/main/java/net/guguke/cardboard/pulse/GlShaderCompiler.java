@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Builds programs with the current OpenGL ES context. Has to be used on the GL thread.
+ *
+ * <p>Program binaries are only available in OpenGL ES 3.0 contexts; in OpenGL ES 2.0 ones
+ * {@link #getProgramBinary} returns null and every program is compiled from source.
+ */
+public class GlShaderCompiler implements ShaderCompiler {
+  private static final String TAG = "GlShaderCompiler";
+
+  private final GlErrorChecker errorChecker;
+  private final boolean binariesSupported;
+
+  /**
+   * Checks the current context for program binary support.
+   *
+   * @param errorChecker Checks the program binary calls.
+   */
+  public GlShaderCompiler(GlErrorChecker errorChecker) {
+    this.errorChecker = errorChecker;
+    String version = GLES20.glGetString(GLES20.GL_VERSION);
+    binariesSupported = version != null && version.startsWith("OpenGL ES 3");
+  }
+
+  @Override
+  public int compileShader(int type, String source) {
+    int shader = GLES20.glCreateShader(type);
+    GLES20.glShaderSource(shader, source);
+    GLES20.glCompileShader(shader);
+
+    // Get the compilation status.
+    final int[] compileStatus = new int[1];
+    GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+
+    // If the compilation failed, delete the shader.
+    if (compileStatus[0] == 0) {
+      Log.e(TAG, "Error compiling shader: " + GLES20.glGetShaderInfoLog(shader));
+      GLES20.glDeleteShader(shader);
+      throw new RuntimeException("Error creating shader.");
+    }
+    return shader;
+  }
+
+  @Override
+  public int linkProgram(int vertexShader, int fragmentShader) {
+    int program = GLES20.glCreateProgram();
+    GLES20.glAttachShader(program, vertexShader);
+    GLES20.glAttachShader(program, fragmentShader);
+    if (binariesSupported) {
+      GLES30.glProgramParameteri(program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT,
+          GLES20.GL_TRUE);
+    }
+    GLES20.glLinkProgram(program);
+    if (!isLinked(program)) {
+      Log.e(TAG, "Error linking program: " + GLES20.glGetProgramInfoLog(program));
+      GLES20.glDeleteProgram(program);
+      throw new RuntimeException("Error linking program.");
+    }
+    // Detached, the shaders are freed as soon as they are deleted instead of living on with
+    // the program.
+    GLES20.glDetachShader(program, vertexShader);
+    GLES20.glDetachShader(program, fragmentShader);
+    return program;
+  }
+
+  @Override
+  public void deleteShader(int shader) {
+    GLES20.glDeleteShader(shader);
+  }
+
+  @Override
+  public byte[] getProgramBinary(int program, int[] formatOut) {
+    if (!binariesSupported) {
+      return null;
+    }
+    int[] length = new int[1];
+    GLES20.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+    if (length[0] <= 0) {
+      return null;
+    }
+    ByteBuffer binary = ByteBuffer.allocateDirect(length[0]).order(ByteOrder.nativeOrder());
+    int[] writtenLength = new int[1];
+    // Errors left by earlier calls are reported as theirs, not blamed on this one.
+    errorChecker.checkSetup("before glGetProgramBinary");
+    GLES30.glGetProgramBinary(program, length[0], writtenLength, 0, formatOut, 0, binary);
+    errorChecker.checkSetup("glGetProgramBinary");
+    // A failed call writes nothing, which is all a build that doesn't check errors goes by.
+    if (writtenLength[0] <= 0) {
+      return null;
+    }
+    byte[] bytes = new byte[writtenLength[0]];
+    binary.get(bytes);
+    return bytes;
+  }
+
+  @Override
+  public int loadProgramBinary(int format, byte[] binary) {
+    if (!binariesSupported) {
+      return 0;
+    }
+    errorChecker.checkSetup("before glProgramBinary");
+    int program = GLES20.glCreateProgram();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(binary.length).order(ByteOrder.nativeOrder());
+    buffer.put(binary).position(0);
+    GLES30.glProgramBinary(program, format, buffer, binary.length);
+    // A driver that changed since the binary was saved fails the link, and may raise an error
+    // for a format it no longer knows. Neither is a bug; the program is compiled from source.
+    if (!isLinked(program)) {
+      errorChecker.discardErrors();
+      GLES20.glDeleteProgram(program);
+      return 0;
+    }
+    return program;
+  }
+
+  private static boolean isLinked(int program) {
+    final int[] linkStatus = new int[1];
+    GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+    return linkStatus[0] != 0;
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+/**
+ * The heart's color, blended between cardinal and dark red with the strength of the pulse.
+ */
+public final class HeartColor {
+
+  private HeartColor() {}
+
+  /**
+   * Blends the cardinal and dark red heart colors for the current pulse strength.
+   *
+   * <p>The result is written into a preallocated array, so animating the color costs no
+   * allocations per frame.
+   *
+   * @param proportion How much cardinal red to mix in, from 0 to 1.
+   * @param color Receives the color.
+   * @param offset Where the color starts in {@code color}.
+   */
+  public static void blend(float proportion, float[] color, int offset) {
+    for (int i = 0; i < 4; i++) {
+      color[offset + i] = WorldLayoutData.CARDINAL_RED_COLOR[i] * proportion
+          + WorldLayoutData.DARK_RED_COLOR[i] * (1.0f - proportion);
+    }
+  }
+}
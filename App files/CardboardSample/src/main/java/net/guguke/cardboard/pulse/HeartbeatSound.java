@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+/**
+ * A one-shot spatial sound played for each beat through the {@link AudioDispatcher}.
+ *
+ * <p>The audio engine disposes of a sound object once it has played, so each beat needs a new
+ * one. To keep object creation out of the beat's timing, the object for the next beat is always
+ * created right after the current one starts playing. A beat still playing when the next one
+ * starts is stopped.
+ */
+public class HeartbeatSound implements BeatSoundScheduler.BeatSound {
+  private final AudioDispatcher dispatcher;
+  private final String file;
+
+  private volatile float x;
+  private volatile float y;
+  private volatile float z;
+  // Created ahead for the next beat, set on the dispatcher's thread.
+  private volatile int primedId = AudioEngine.INVALID_ID;
+  private volatile boolean priming;
+  private volatile int playingId = AudioEngine.INVALID_ID;
+
+  private final AudioDispatcher.SoundObjectListener onCreated =
+      new AudioDispatcher.SoundObjectListener() {
+        @Override
+        public void onSoundObjectCreated(AudioEngine engine, int soundId) {
+          if (soundId != AudioEngine.INVALID_ID) {
+            engine.setSoundObjectPosition(soundId, x, y, z);
+          }
+          primedId = soundId;
+          priming = false;
+        }
+      };
+
+  public HeartbeatSound(AudioDispatcher dispatcher, String file) {
+    this.dispatcher = dispatcher;
+    this.file = file;
+  }
+
+  /**
+   * Decodes the sound and creates the object for the first beat.
+   */
+  public void prepare() {
+    dispatcher.preload(file);
+    prime();
+  }
+
+  /**
+   * Moves the sound, including a beat that is still playing.
+   */
+  public void setPosition(float x, float y, float z) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    int primed = primedId;
+    if (primed != AudioEngine.INVALID_ID) {
+      dispatcher.setSoundObjectPosition(primed, x, y, z);
+    }
+    int playing = playingId;
+    if (playing != AudioEngine.INVALID_ID) {
+      dispatcher.setSoundObjectPosition(playing, x, y, z);
+    }
+  }
+
+  @Override
+  public boolean play(long beatNanos) {
+    int soundId = primedId;
+    if (soundId == AudioEngine.INVALID_ID) {
+      // Creation failed or hasn't finished; try again for the next beat.
+      prime();
+      return false;
+    }
+    primedId = AudioEngine.INVALID_ID;
+    int previous = playingId;
+    if (previous != AudioEngine.INVALID_ID) {
+      dispatcher.stop(previous);
+      dispatcher.forget(previous);
+    }
+    playingId = soundId;
+    dispatcher.play(soundId, false);
+    prime();
+    return true;
+  }
+
+  private void prime() {
+    if (!priming) {
+      priming = true;
+      if (!dispatcher.createSoundObject(file, onCreated)) {
+        priming = false;
+      }
+    }
+  }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import java.util.Arrays;
+
+/**
+ * Heart rate variability over the last five minutes of beats.
+ *
+ * <p>The sketch only reports a 10 beat average rate. This keeps the standard short-term HRV
+ * measures of the inter-beat intervals in a sliding window instead:
+ *
+ * <ul>
+ * <li>SDNN, the standard deviation of the intervals,
+ * <li>RMSSD, the root mean square of successive differences,
+ * <li>pNN50, the share of successive differences over 50ms,
+ * <li>LF/HF, the ratio of the intervals' spectral power at 0.04-0.15Hz to that at 0.15-0.4Hz.
+ * </ul>
+ *
+ * <p>The time domain measures are kept as exact integer running sums, updated in O(1) as beats
+ * enter and leave the window. The spectrum comes from a Lomb-Scargle periodogram, which handles
+ * the uneven spacing of beats without resampling. Every sum the periodogram needs is additive over
+ * the beats when taken against a fixed time origin and the raw intervals, the mean being taken out
+ * afterwards, so each frequency keeps running sums too. A beat entering or leaving the window
+ * updates them in O(F) for the F frequencies, and the ratio is evaluated from them in O(F) after
+ * every beat. To keep rounding errors from piling up, the sums are recomputed against a new
+ * origin whenever every beat they were last recomputed from has left the window.
+ *
+ * <p>Beats are added on the thread delivering {@link PulseEvent}s. Results are kept in volatile
+ * fields for other threads to read; a reader may see measures from consecutive beats mixed.
+ */
+public class HrvAnalyzer implements PulseLineFramer.Listener {
+  /** How far back the window reaches, the usual length for short-term HRV. */
+  public static final long WINDOW_NANOS = 5 * 60 * 1000000000L;
+  // Enough beats for a full window at the 240 BPM the shortest interval allows.
+  private static final int CAPACITY = 1 << 11;
+
+  private static final int MIN_IBI_MS = 250;
+  private static final int MAX_IBI_MS = 2500;
+  private static final int NN50_MS = 50;
+  private static final long NANOS_PER_MS = 1000000L;
+
+  private static final double LF_LOW_HZ = 0.04;
+  private static final double LF_HIGH_HZ = 0.15;
+  private static final double HF_HIGH_HZ = 0.4;
+  private static final double FREQUENCY_STEP_HZ = 0.005;
+  private static final int FREQUENCY_COUNT =
+      (int) Math.round((HF_HIGH_HZ - LF_LOW_HZ) / FREQUENCY_STEP_HZ) + 1;
+  // The slowest LF component needs a couple of periods in the window to show up.
+  private static final long MIN_SPECTRUM_SPAN_NANOS = 2 * 60 * 1000000000L;
+
+  private final PulseLineFramer.Listener listener;
+
+  // The window: interval, time and difference to the previous interval of each beat.
+  private final int[] ibis = new int[CAPACITY];
+  private final long[] times = new long[CAPACITY];
+  private final int[] diffs = new int[CAPACITY];
+  private final boolean[] hasDiff = new boolean[CAPACITY];
+  private long first;
+  private long end;
+
+  private long ibiSum;
+  private long ibiSquaredSum;
+  private long squaredDiffSum;
+  private int diffCount;
+  private int nn50Count;
+
+  // Per frequency, sums over the window of the cosine and sine of each beat's phase, of those
+  // times the interval, and of their squares and product. Phases are taken against origin.
+  private final double[] cosSum = new double[FREQUENCY_COUNT];
+  private final double[] sinSum = new double[FREQUENCY_COUNT];
+  private final double[] ibiCosSum = new double[FREQUENCY_COUNT];
+  private final double[] ibiSinSum = new double[FREQUENCY_COUNT];
+  private final double[] cosSquaredSum = new double[FREQUENCY_COUNT];
+  private final double[] sinSquaredSum = new double[FREQUENCY_COUNT];
+  private final double[] cosSinSum = new double[FREQUENCY_COUNT];
+  private long origin;
+  // The sums are recomputed once first reaches this, when all beats they were built from are gone.
+  private long rebuildAt;
+
+  private volatile int beatCount;
+  private volatile float meanIbi;
+  private volatile float sdnn;
+  private volatile float rmssd;
+  private volatile float pnn50;
+  private volatile float lfHfRatio = Float.NaN;
+
+  /**
+   * @param listener Receives every event after beats have been analyzed.
+   */
+  public HrvAnalyzer(PulseLineFramer.Listener listener) {
+    this.listener = listener;
+  }
+
+  @Override
+  public void onPulseEvent(PulseEvent event) {
+    if (event.type == PulseEvent.TYPE_IBI) {
+      onBeat(event.value, event.timeNanos);
+    }
+    listener.onPulseEvent(event);
+  }
+
+  /**
+   * Adds a beat to the window and updates the measures. Intervals the sensor can't have measured
+   * are ignored.
+   *
+   * @param ibiMs The interval to the previous beat, in milliseconds.
+   * @param timeNanos The time of the beat.
+   */
+  public void onBeat(int ibiMs, long timeNanos) {
+    if (ibiMs < MIN_IBI_MS || ibiMs > MAX_IBI_MS) {
+      return;
+    }
+    while (end > first
+        && (end - first == CAPACITY || times[slot(first)] < timeNanos - WINDOW_NANOS)) {
+      remove(slot(first));
+      accumulate(slot(first), -1);
+      first++;
+    }
+    add(slot(end), ibiMs, timeNanos);
+    end++;
+    if (first >= rebuildAt) {
+      rebuildSpectrum();
+    } else {
+      accumulate(slot(end - 1), 1);
+    }
+    publish();
+    publishSpectrum();
+  }
+
+  /** Forgets all beats, e.g. when the sensor has been reconnected. */
+  public void reset() {
+    first = end;
+    ibiSum = 0;
+    ibiSquaredSum = 0;
+    squaredDiffSum = 0;
+    diffCount = 0;
+    nn50Count = 0;
+    rebuildSpectrum();
+    publish();
+    publishSpectrum();
+  }
+
+  private void add(int slot, int ibi, long time) {
+    ibis[slot] = ibi;
+    times[slot] = time;
+    hasDiff[slot] = false;
+    if (end > first) {
+      int previous = slot(end - 1);
+      // Beats only count as successive if none was lost in between.
+      if (time - times[previous] <= MAX_IBI_MS * NANOS_PER_MS) {
+        int diff = ibi - ibis[previous];
+        diffs[slot] = diff;
+        hasDiff[slot] = true;
+        countDiff(diff, 1);
+      }
+    }
+    ibiSum += ibi;
+    ibiSquaredSum += (long) ibi * ibi;
+  }
+
+  private void remove(int slot) {
+    int ibi = ibis[slot];
+    ibiSum -= ibi;
+    ibiSquaredSum -= (long) ibi * ibi;
+    // The next beat becomes the oldest, its difference to this one leaves the window too.
+    int next = slot(first + 1);
+    if (end > first + 1 && hasDiff[next]) {
+      countDiff(diffs[next], -1);
+      hasDiff[next] = false;
+    }
+  }
+
+  private void countDiff(int diff, int sign) {
+    squaredDiffSum += sign * (long) diff * diff;
+    diffCount += sign;
+    if (Math.abs(diff) > NN50_MS) {
+      nn50Count += sign;
+    }
+  }
+
+  private void publish() {
+    int n = (int) (end - first);
+    beatCount = n;
+    if (n == 0) {
+      meanIbi = 0;
+      sdnn = 0;
+    } else {
+      double mean = (double) ibiSum / n;
+      meanIbi = (float) mean;
+      // Sample standard deviation; the sums are exact, so this doesn't drift.
+      sdnn = n > 1
+          ? (float) Math.sqrt(Math.max(0, (ibiSquaredSum - ibiSum * mean) / (n - 1)))
+          : 0;
+    }
+    rmssd = diffCount > 0 ? (float) Math.sqrt((double) squaredDiffSum / diffCount) : 0;
+    pnn50 = diffCount > 0 ? (float) nn50Count / diffCount : 0;
+  }
+
+  /**
+   * Adds a beat's terms to the sums of every frequency, or takes them out again with a sign of
+   * -1. The phases of consecutive frequencies are stepped by rotation, so this takes four calls to
+   * the trigonometric functions whatever the number of frequencies.
+   */
+  private void accumulate(int slot, double sign) {
+    double time = (times[slot] - origin) / 1e9;
+    double ibi = ibis[slot];
+    double angle = 2 * Math.PI * LF_LOW_HZ * time;
+    double step = 2 * Math.PI * FREQUENCY_STEP_HZ * time;
+    double c = Math.cos(angle);
+    double s = Math.sin(angle);
+    double cosStep = Math.cos(step);
+    double sinStep = Math.sin(step);
+    for (int f = 0; f < FREQUENCY_COUNT; f++) {
+      cosSum[f] += sign * c;
+      sinSum[f] += sign * s;
+      ibiCosSum[f] += sign * ibi * c;
+      ibiSinSum[f] += sign * ibi * s;
+      cosSquaredSum[f] += sign * c * c;
+      sinSquaredSum[f] += sign * s * s;
+      cosSinSum[f] += sign * c * s;
+      double next = c * cosStep - s * sinStep;
+      s = s * cosStep + c * sinStep;
+      c = next;
+    }
+  }
+
+  /** Recomputes the sums of the whole window against its oldest beat. */
+  private void rebuildSpectrum() {
+    Arrays.fill(cosSum, 0);
+    Arrays.fill(sinSum, 0);
+    Arrays.fill(ibiCosSum, 0);
+    Arrays.fill(ibiSinSum, 0);
+    Arrays.fill(cosSquaredSum, 0);
+    Arrays.fill(sinSquaredSum, 0);
+    Arrays.fill(cosSinSum, 0);
+    origin = end > first ? times[slot(first)] : 0;
+    for (long i = first; i < end; i++) {
+      accumulate(slot(i), 1);
+    }
+    rebuildAt = end;
+  }
+
+  /**
+   * Integrates the periodogram over the LF and HF bands, once the window is long enough.
+   */
+  private void publishSpectrum() {
+    int n = (int) (end - first);
+    if (n < 2 || times[slot(end - 1)] - times[slot(first)] < MIN_SPECTRUM_SPAN_NANOS) {
+      lfHfRatio = Float.NaN;
+      return;
+    }
+    double mean = (double) ibiSum / n;
+    double lfPower = 0;
+    double hfPower = 0;
+    for (int f = 0; f < FREQUENCY_COUNT; f++) {
+      double frequency = LF_LOW_HZ + f * FREQUENCY_STEP_HZ;
+      // Trapezoid rule: the band edges count half, and the edge shared by LF and HF goes half
+      // to each band.
+      double weight = f == 0 || f == FREQUENCY_COUNT - 1 ? 0.5 : 1;
+      double power = weight * FREQUENCY_STEP_HZ * lombScargle(f, mean) / n;
+      if (frequency < LF_HIGH_HZ - FREQUENCY_STEP_HZ / 2) {
+        lfPower += power;
+      } else if (frequency < LF_HIGH_HZ + FREQUENCY_STEP_HZ / 2) {
+        lfPower += power / 2;
+        hfPower += power / 2;
+      } else {
+        hfPower += power;
+      }
+    }
+    if (hfPower > 0) {
+      lfHfRatio = (float) (lfPower / hfPower);
+    }
+  }
+
+  /**
+   * Returns the Lomb-Scargle power of the window at one frequency, for the intervals less their
+   * mean.
+   */
+  private double lombScargle(int f, double mean) {
+    double yc = ibiCosSum[f] - mean * cosSum[f];
+    double ys = ibiSinSum[f] - mean * sinSum[f];
+    double cc = cosSquaredSum[f];
+    double ss = sinSquaredSum[f];
+    double cs = cosSinSum[f];
+    // The offset tau makes the sine and cosine terms orthogonal, tan(2 omega tau) being
+    // 2 cs / (cc - ss). Everything below only needs the cosine and sine of twice the angle.
+    double diff = cc - ss;
+    double norm = Math.sqrt(diff * diff + 4 * cs * cs);
+    double cos2 = norm > 0 ? diff / norm : 1;
+    double sin2 = norm > 0 ? 2 * cs / norm : 0;
+    // cos^2, sin^2 and cos * sin of omega tau.
+    double cosTauSquared = (1 + cos2) / 2;
+    double sinTauSquared = (1 - cos2) / 2;
+    double cosSinTau = sin2 / 2;
+    double yCosSquared =
+        cosTauSquared * yc * yc + 2 * cosSinTau * yc * ys + sinTauSquared * ys * ys;
+    double ySinSquared =
+        cosTauSquared * ys * ys - 2 * cosSinTau * yc * ys + sinTauSquared * yc * yc;
+    double cosSquared = (cc + ss) / 2 + cos2 * diff / 2 + sin2 * cs;
+    double sinSquared = (cc + ss) / 2 - cos2 * diff / 2 - sin2 * cs;
+    double power = 0;
+    if (cosSquared > 0) {
+      power += yCosSquared / cosSquared;
+    }
+    if (sinSquared > 0) {
+      power += ySinSquared / sinSquared;
+    }
+    return power;
+  }
+
+  private static int slot(long index) {
+    return (int) index & (CAPACITY - 1);
+  }
+
+  /** Number of beats in the window. */
+  public int getBeatCount() {
+    return beatCount;
+  }
+
+  /** Mean interval in milliseconds. */
+  public float getMeanIbi() {
+    return meanIbi;
+  }
+
+  /** Standard deviation of the intervals in milliseconds. */
+  public float getSdnn() {
+    return sdnn;
+  }
+
+  /** Root mean square of successive interval differences in milliseconds. */
+  public float getRmssd() {
+    return rmssd;
+  }
+
+  /** Fraction of successive interval differences over 50ms, 0 to 1. */
+  public float getPnn50() {
+    return pnn50;
+  }
+
+  /** Ratio of low to high frequency power, NaN until the window spans two minutes. */
+  public float getLfHfRatio() {
+    return lfHfRatio;
+  }
+}
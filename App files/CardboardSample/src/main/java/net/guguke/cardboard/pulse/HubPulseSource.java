@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import com.adafruit.bleuart.BluetoothLeUartHub;
+
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * Reads the pulse sensors of several participants at once through a {@link BluetoothLeUartHub}.
+ *
+ * <p>The first participant to be found is the wearer: their sensor's bytes go to the listener,
+ * through the same path as a single sensor, and drive the main heart, the sound and the
+ * analytics. Every other participant gets a framer and a {@link BeatClock} of their own, enough
+ * to draw a heart beating with their pulse.
+ *
+ * <p>The hub delivers every device's events on its one dispatch thread, so the framers are only
+ * ever fed from that thread. Each participant's framer publishes into a {@link PulseEventRing} of
+ * its own, and {@link #drainParticipants} moves the events on to the beat clocks on the GL thread,
+ * once per frame like the wearer's ring.
+ */
+public class HubPulseSource implements PulseSource, BluetoothLeUartHub.Listener {
+  private static final String TAG = "HubPulseSource";
+  /** The participant whose data goes to the listener. */
+  public static final int WEARER = 0;
+  // A participant's pulse only drives their heart, so signal readings can be dropped freely.
+  private static final int PARTICIPANT_EVENT_CAPACITY = 64;
+
+  private final BluetoothLeUartHub hub;
+  private final int participantCount;
+  private final PulseLineFramer[] framers;
+  private final PulseEventRing[] rings;
+  private final BeatClock[] beatClocks;
+  private volatile Listener listener;
+  // Bit i is set while participant i is connected. Only written on the dispatch thread.
+  private volatile int connected;
+
+  /**
+   * @param participants How many sensors to connect to, at most 32.
+   * @param startNanos Where the participants' beat clocks start.
+   */
+  public HubPulseSource(Context context, int participants, long startNanos) {
+    if (participants < 1 || participants > Integer.SIZE) {
+      throw new IllegalArgumentException("Unsupported participant count " + participants);
+    }
+    participantCount = participants;
+    framers = new PulseLineFramer[participants];
+    rings = new PulseEventRing[participants];
+    beatClocks = new BeatClock[participants];
+    for (int i = WEARER + 1; i < participants; i++) {
+      beatClocks[i] = new BeatClock(startNanos);
+      rings[i] = new PulseEventRing(PARTICIPANT_EVENT_CAPACITY);
+      framers[i] = new PulseLineFramer(rings[i]);
+    }
+    hub = new BluetoothLeUartHub(context, participants, this);
+  }
+
+  @Override
+  public void start(Listener listener) {
+    this.listener = listener;
+    hub.start();
+  }
+
+  @Override
+  public void stop() {
+    hub.stop();
+  }
+
+  @Override
+  public String getDescription() {
+    return Integer.bitCount(connected) + " of " + participantCount + " sensors";
+  }
+
+  public int getParticipantCount() {
+    return participantCount;
+  }
+
+  public boolean isConnected(int participant) {
+    return (connected & (1 << participant)) != 0;
+  }
+
+  /**
+   * Returns the beat clock of a participant other than the {@link #WEARER}, whose beats go to
+   * the listener instead.
+   */
+  public BeatClock getBeatClock(int participant) {
+    return beatClocks[participant];
+  }
+
+  /**
+   * Passes the events every participant other than the {@link #WEARER} sent since the last call
+   * to their beat clock. Called from the GL thread only.
+   */
+  public void drainParticipants() {
+    for (int i = WEARER + 1; i < participantCount; i++) {
+      rings[i].drain(beatClocks[i]);
+    }
+  }
+
+  /** How many chunks of sensor data were dropped because they arrived faster than handled. */
+  public int getDroppedEvents() {
+    return hub.getDroppedEvents();
+  }
+
+  /** How many beat and rate events of the participants were dropped before the GL thread. */
+  public long getDroppedParticipantEvents() {
+    long dropped = 0;
+    for (int i = WEARER + 1; i < participantCount; i++) {
+      dropped += rings[i].getDroppedEvents();
+    }
+    return dropped;
+  }
+
+  @Override
+  public void onDeviceConnected(int device, String address) {
+    Log.i(TAG, "Participant " + device + " connected: " + address);
+    connected |= 1 << device;
+    if (device == WEARER) {
+      listener.onSourceConnected(this);
+    } else {
+      framers[device].reset();
+    }
+  }
+
+  @Override
+  public void onDeviceDisconnected(int device, String address) {
+    Log.i(TAG, "Participant " + device + " disconnected: " + address);
+    connected &= ~(1 << device);
+    if (device == WEARER) {
+      listener.onSourceDisconnected(this);
+    }
+  }
+
+  @Override
+  public void onDeviceDataLost(int device, int chunks) {
+    if (device == WEARER) {
+      listener.onSourceDataLost(this);
+    } else {
+      framers[device].resync();
+    }
+  }
+
+  @Override
+  public void onDeviceReceive(int device, byte[] data, int offset, int length, long timeNanos) {
+    if (device == WEARER) {
+      listener.onSourceData(this, data, offset, length, timeNanos);
+    } else {
+      framers[device].feed(data, offset, length, timeNanos);
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Static geometry kept in a GPU-resident vertex buffer object.
+ *
+ * <p>The attributes of each vertex are interleaved ({@code position, normal, ...}), uploaded once
+ * and then drawn from buffer offsets, so the driver doesn't have to copy the geometry out of Java
+ * memory for every eye.
+ *
+ * <p>A mesh can optionally be indexed, in which case its triangles are drawn with
+ * {@code glDrawElements} from a second buffer object holding short indices.
+ */
+public class InterleavedMesh {
+  private static final int BYTES_PER_FLOAT = 4;
+  private static final int BYTES_PER_SHORT = 2;
+
+  private final int vertexCount;
+  private final int[] attributeSizes;
+  private final int[] attributeOffsets;
+  private final int stride;
+
+  // Kept so the mesh can be uploaded again when the GL context is recreated.
+  private final Buffer vertexData;
+  private final Buffer indexData;
+  private final int indexCount;
+  // The context the mesh was last uploaded to.
+  private Gl gl;
+  private int bufferId;
+  private int indexBufferId;
+
+  /**
+   * Interleaves the given attribute arrays.
+   *
+   * @param attributes One array per attribute, e.g. {@code {coords, normals}}.
+   * @param sizes The number of floats per vertex in each attribute array.
+   */
+  public InterleavedMesh(float[][] attributes, int[] sizes) {
+    this(attributes, sizes, null);
+  }
+
+  /**
+   * Interleaves the given attribute arrays of an indexed mesh.
+   *
+   * @param attributes One array per attribute, e.g. {@code {coords, normals}}.
+   * @param sizes The number of floats per vertex in each attribute array.
+   * @param indices Three vertex indices per triangle, or null to draw the vertices in order.
+   */
+  public InterleavedMesh(float[][] attributes, int[] sizes, short[] indices) {
+    this(interleave(attributes, sizes), sizes, toBuffer(indices),
+        indices != null ? indices.length : 0);
+  }
+
+  /**
+   * Wraps vertex data that is already interleaved, e.g. straight from a mesh asset.
+   *
+   * @param vertexData The interleaved vertices, in native byte order.
+   * @param sizes The number of floats per vertex of each attribute.
+   * @param indexData Short indices in native byte order, or null to draw the vertices in order.
+   * @param indexCount The number of indices in {@code indexData}.
+   */
+  public InterleavedMesh(ByteBuffer vertexData, int[] sizes, ByteBuffer indexData,
+      int indexCount) {
+    this((Buffer) vertexData, sizes, indexData, indexCount);
+  }
+
+  private InterleavedMesh(Buffer vertexData, int[] sizes, Buffer indexData, int indexCount) {
+    attributeSizes = sizes.clone();
+    attributeOffsets = new int[sizes.length];
+    int floatsPerVertex = 0;
+    for (int i = 0; i < sizes.length; i++) {
+      attributeOffsets[i] = floatsPerVertex * BYTES_PER_FLOAT;
+      floatsPerVertex += sizes[i];
+    }
+    stride = floatsPerVertex * BYTES_PER_FLOAT;
+
+    int vertexBytes = vertexData instanceof FloatBuffer
+        ? vertexData.remaining() * BYTES_PER_FLOAT
+        : vertexData.remaining();
+    this.vertexCount = vertexBytes / stride;
+    this.vertexData = vertexData;
+    this.indexData = indexData;
+    this.indexCount = indexData != null ? indexCount : 0;
+  }
+
+  private static FloatBuffer interleave(float[][] attributes, int[] sizes) {
+    int vertexCount = attributes[0].length / sizes[0];
+    int floatsPerVertex = 0;
+    for (int size : sizes) {
+      floatsPerVertex += size;
+    }
+    ByteBuffer bb = ByteBuffer.allocateDirect(vertexCount * floatsPerVertex * BYTES_PER_FLOAT);
+    bb.order(ByteOrder.nativeOrder());
+    FloatBuffer vertices = bb.asFloatBuffer();
+    for (int v = 0; v < vertexCount; v++) {
+      for (int a = 0; a < attributes.length; a++) {
+        vertices.put(attributes[a], v * sizes[a], sizes[a]);
+      }
+    }
+    vertices.position(0);
+    return vertices;
+  }
+
+  private static ShortBuffer toBuffer(short[] indices) {
+    if (indices == null) {
+      return null;
+    }
+    ByteBuffer bb = ByteBuffer.allocateDirect(indices.length * BYTES_PER_SHORT);
+    bb.order(ByteOrder.nativeOrder());
+    ShortBuffer buffer = bb.asShortBuffer();
+    buffer.put(indices);
+    buffer.position(0);
+    return buffer;
+  }
+
+  /**
+   * Copies the vertex data into a new buffer object. Has to be called on the GL thread, again
+   * whenever the GL context has been recreated. The mesh is drawn through the same {@link Gl}.
+   */
+  public void upload(Gl gl) {
+    this.gl = gl;
+    int[] buffers = new int[2];
+    gl.glGenBuffers(indexData != null ? 2 : 1, buffers, 0);
+    bufferId = buffers[0];
+    gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferId);
+    gl.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexCount * stride, vertexData,
+        GLES20.GL_STATIC_DRAW);
+    gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+    if (indexData != null) {
+      indexBufferId = buffers[1];
+      gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
+      gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexCount * BYTES_PER_SHORT,
+          indexData, GLES20.GL_STATIC_DRAW);
+      gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+  }
+
+  /**
+   * Binds the buffer objects so attributes can be pointed into them.
+   */
+  public void bind() {
+    gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferId);
+    if (indexData != null) {
+      gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
+    }
+  }
+
+  /**
+   * Points a shader attribute at one of the interleaved attributes. The mesh must be bound.
+   *
+   * @param location The shader attribute location.
+   * @param attribute The index of the attribute, in the order passed to the constructor.
+   */
+  public void setAttribute(int location, int attribute) {
+    gl.glVertexAttribPointer(location, attributeSizes[attribute], GLES20.GL_FLOAT, false,
+        stride, attributeOffsets[attribute]);
+  }
+
+  /**
+   * Draws the triangles of the mesh. The mesh must be bound.
+   */
+  public void draw() {
+    if (indexData != null) {
+      gl.glDrawElements(GLES20.GL_TRIANGLES, indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
+    } else {
+      gl.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertexCount);
+    }
+  }
+
+  /**
+   * Draws several instances of the mesh in one call, which requires OpenGL ES 3.0. A single
+   * instance is drawn with the plain OpenGL ES 2.0 calls. The mesh must be bound.
+   *
+   * @param instances The number of instances, available to the shader as {@code gl_InstanceID}.
+   */
+  public void draw(int instances) {
+    if (instances == 1) {
+      draw();
+    } else if (indexData != null) {
+      gl.glDrawElementsInstanced(GLES20.GL_TRIANGLES, indexCount, GLES20.GL_UNSIGNED_SHORT, 0,
+          instances);
+    } else {
+      gl.glDrawArraysInstanced(GLES20.GL_TRIANGLES, 0, vertexCount, instances);
+    }
+  }
+
+  public int getVertexCount() {
+    return vertexCount;
+  }
+}
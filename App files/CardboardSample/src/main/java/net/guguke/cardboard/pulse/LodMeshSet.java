@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import android.content.res.AssetManager;
+
+import java.io.IOException;
+
+/**
+ * The levels of detail of one object, as written by {@code ObjMeshConverter --lods}, and the
+ * {@link LodSelector} choosing between them.
+ */
+public class LodMeshSet {
+  private final InterleavedMesh[] levels;
+  private final float boundingRadius;
+  private final LodSelector selector;
+
+  private LodMeshSet(InterleavedMesh[] levels, float[] errors, float boundingRadius,
+      float maxErrorPixels, float hysteresis) {
+    this.levels = levels;
+    this.boundingRadius = boundingRadius;
+    this.selector = new LodSelector(errors, boundingRadius, maxErrorPixels, hysteresis);
+  }
+
+  /**
+   * Loads the levels of detail from the app's assets.
+   *
+   * @param assets The app's assets.
+   * @param names The asset file names, finest level first.
+   * @param maxErrorPixels How many pixels of error are acceptable on screen.
+   * @param hysteresis The margin past a switching size before switching, as a fraction of it.
+   */
+  public static LodMeshSet load(AssetManager assets, String[] names, float maxErrorPixels,
+      float hysteresis) throws IOException {
+    InterleavedMesh[] levels = new InterleavedMesh[names.length];
+    float[] errors = new float[names.length];
+    float boundingRadius = 0;
+    for (int i = 0; i < names.length; i++) {
+      MeshFormat.Sections sections = MeshAsset.read(assets, names[i]);
+      levels[i] = MeshAsset.toMesh(sections);
+      errors[i] = sections.error;
+      boundingRadius = Math.max(boundingRadius, sections.getBoundingRadius());
+    }
+    return new LodMeshSet(levels, errors, boundingRadius, maxErrorPixels, hysteresis);
+  }
+
+  /**
+   * Uploads every level. Has to be called on the GL thread, again whenever the GL context has
+   * been recreated.
+   */
+  public void upload(Gl gl) {
+    for (InterleavedMesh level : levels) {
+      level.upload(gl);
+    }
+  }
+
+  /**
+   * Chooses the level to draw this frame from the object's size on screen at rest.
+   *
+   * @param modelView The ModelView matrix of the object.
+   * @param offset Where the matrix starts in {@code modelView}.
+   * @param transientScale A scale in {@code modelView} that shouldn't change the level, e.g. the
+   *     heart's beat; 1 if there is none.
+   * @param perspective The eye's projection matrix.
+   * @param viewportHeight The eye's viewport height in pixels.
+   */
+  public InterleavedMesh select(float[] modelView, int offset, float transientScale,
+      float[] perspective, int viewportHeight) {
+    float radiusPixels = LodSelector.projectedRestRadius(modelView, offset, transientScale,
+        perspective, boundingRadius, viewportHeight);
+    return levels[selector.select(radiusPixels)];
+  }
+
+  /** The mesh of the level selected last. */
+  public InterleavedMesh getMesh() {
+    return levels[selector.getLevel()];
+  }
+
+  public LodSelector getSelector() {
+    return selector;
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+/**
+ * Picks a level of detail from the size of an object on screen.
+ *
+ * <p>Levels are numbered from 0, the finest. Level {@code i} is good enough while its error,
+ * projected to the screen, stays under a pixel budget. Since the error scales with the object's
+ * projected size, this gives one size threshold per level.
+ *
+ * <p>To keep an object near a threshold from popping back and forth, the selector only switches
+ * once the size has moved a margin past the threshold, in either direction.
+ */
+public class LodSelector {
+  private final float[] maxRadii;
+  private final float hysteresis;
+  private int level;
+  private int switchCount;
+
+  /**
+   * @param levelErrors The error of each level in model units, finest first, not decreasing.
+   * @param boundingRadius The radius of the object in model units.
+   * @param maxErrorPixels How many pixels of error are acceptable on screen.
+   * @param hysteresis The margin past a threshold before switching, as a fraction of it.
+   */
+  public LodSelector(float[] levelErrors, float boundingRadius, float maxErrorPixels,
+      float hysteresis) {
+    if (levelErrors.length == 0) {
+      throw new IllegalArgumentException("No levels");
+    }
+    this.hysteresis = hysteresis;
+    maxRadii = new float[levelErrors.length];
+    for (int i = 0; i < levelErrors.length; i++) {
+      // Good enough while error * radiusPixels / boundingRadius <= maxErrorPixels.
+      maxRadii[i] = levelErrors[i] > 0
+          ? maxErrorPixels * boundingRadius / levelErrors[i]
+          : Float.MAX_VALUE;
+      if (i > 0 && maxRadii[i] > maxRadii[i - 1]) {
+        throw new IllegalArgumentException("Level " + i + " is finer than level " + (i - 1));
+      }
+    }
+    // The finest level has to do at any size.
+    maxRadii[0] = Float.MAX_VALUE;
+    level = maxRadii.length - 1;
+  }
+
+  /**
+   * Chooses the level for this frame.
+   *
+   * @param radiusPixels The object's projected radius, see {@link #projectedRadius}.
+   * @return The level to draw.
+   */
+  public int select(float radiusPixels) {
+    int previous = level;
+    // Refine while the object is well past the size the current level is good for.
+    while (level > 0 && radiusPixels > maxRadii[level] * (1 + hysteresis)) {
+      level--;
+    }
+    // Coarsen while the object is well within the size the next level is good for.
+    if (level == previous) {
+      while (level + 1 < maxRadii.length
+          && radiusPixels < maxRadii[level + 1] * (1 - hysteresis)) {
+        level++;
+      }
+    }
+    if (level != previous) {
+      switchCount++;
+    }
+    return level;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  public int getLevelCount() {
+    return maxRadii.length;
+  }
+
+  /** How often the selected level changed. */
+  public int getSwitchCount() {
+    return switchCount;
+  }
+
+  /** Returns the projected radius in pixels up to which level {@code i} is good enough. */
+  public float getMaxRadius(int i) {
+    return maxRadii[i];
+  }
+
+  /**
+   * Estimates the radius, in pixels, of a bounding sphere around the model origin.
+   *
+   * @param modelView The ModelView matrix of the object.
+   * @param offset Where the matrix starts in {@code modelView}.
+   * @param perspective The eye's projection matrix.
+   * @param boundingRadius The radius in model units.
+   * @param viewportHeight The eye's viewport height in pixels.
+   * @return The radius in pixels, or {@link Float#MAX_VALUE} if the center is behind the eye.
+   */
+  public static float projectedRadius(float[] modelView, int offset, float[] perspective,
+      float boundingRadius, int viewportHeight) {
+    float depth = -modelView[offset + 14];
+    if (depth <= 0) {
+      return Float.MAX_VALUE;
+    }
+    // The largest scale along any model axis.
+    float maxScaleSquared = 0;
+    for (int column = 0; column < 3; column++) {
+      int c = offset + column * 4;
+      maxScaleSquared = Math.max(maxScaleSquared, modelView[c] * modelView[c]
+          + modelView[c + 1] * modelView[c + 1] + modelView[c + 2] * modelView[c + 2]);
+    }
+    float radius = boundingRadius * (float) Math.sqrt(maxScaleSquared);
+    // perspective[5] is 2n / (top - bottom), mapping eye space heights to clip space at depth 1.
+    return radius * perspective[5] / depth * viewportHeight / 2;
+  }
+
+  /**
+   * Estimates the radius, in pixels, the object would have without a transient scale baked into
+   * its ModelView matrix, such as the heart's beat. Such a scale can swing by more than the
+   * hysteresis margin and would otherwise switch levels back and forth on every beat.
+   *
+   * @param transientScale The scale to leave out, applied on top of the object's own.
+   * @see #projectedRadius
+   */
+  public static float projectedRestRadius(float[] modelView, int offset, float transientScale,
+      float[] perspective, float boundingRadius, int viewportHeight) {
+    float radius =
+        projectedRadius(modelView, offset, perspective, boundingRadius, viewportHeight);
+    return radius == Float.MAX_VALUE ? radius : radius / transientScale;
+  }
+}
@@ -24,8 +24,7 @@ import com.google.vrtoolkit.cardboard.Viewport;
 import com.google.vrtoolkit.cardboard.audio.CardboardAudioEngine;
 import com.adafruit.bleuart.BluetoothLeUart;
 
-import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothGattCharacteristic;
+import android.app.ActivityManager;
 import android.content.Context;
 import android.opengl.GLES10;
 import android.opengl.GLES20;
@@ -34,13 +33,11 @@ import android.os.Bundle;
 import android.os.Vibrator;
 import android.util.Log;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -49,10 +46,11 @@ import javax.microedition.khronos.opengles.GL10;
  * A Cardboard sample application.
  */
 public class MainActivity extends CardboardActivity implements CardboardView.StereoRenderer,
-        BluetoothLeUart.Callback {
+        CardboardView.Renderer, PulseSource.Listener {
   private static final String TAG = "MainActivity";
 
-  private BluetoothLeUart uart;
+  private PulseSource pulseSource;
+  private HubPulseSource hubPulseSource;
 
   private static final float Z_NEAR = 0.1f;
   private static final float Z_FAR = 100.0f;
@@ -71,50 +69,101 @@ public class MainActivity extends CardboardActivity implements CardboardView.Ste
   private static final float MODEL_DISTANCE = 2.0f;
 
   private static final String SOUND_FILE = "cube_sound.wav";
-
-  private final float[] lightPosInEyeSpace = new float[4];
-
-  private FloatBuffer floorVertices;
-  private FloatBuffer floorColors;
-  private FloatBuffer floorNormals;
-
-  private FloatBuffer heartVertices;
-  private FloatBuffer heartNormals;
-  /*private FloatBuffer darkRedColors;
-  private FloatBuffer cardinalRedColors;*/
-
-  private int heartProgram;
-  private int floorProgram;
-
-  private int heartPositionParam;
-  private int heartNormalParam;
-  private int heartColorParam;
-  private int heartModelParam;
-  private int heartModelViewParam;
-  private int heartModelViewProjectionParam;
-  private int heartLightPosParam;
-
-  private int floorPositionParam;
-  private int floorNormalParam;
-  private int floorColorParam;
-  private int floorModelParam;
-  private int floorModelViewParam;
-  private int floorModelViewProjectionParam;
-  private int floorLightPosParam;
+  // Time from playSound to the speaker, so heartbeats are triggered this far ahead of the pulse.
+  private static final long AUDIO_LATENCY_NANOS = 50000000L;
+  // Levels of detail of the heart, finest first, made by ObjMeshConverter --lods.
+  private static final String[] HEART_LOD_FILES = new String[] {
+      "heart_lod0.mesh", "heart_lod1.mesh", "heart_lod2.mesh", "heart_lod3.mesh"};
+  // A level is used while its error stays under this many pixels on screen.
+  private static final float HEART_LOD_MAX_ERROR_PIXELS = 1.0f;
+  // How far, as a fraction, the heart's size has to pass a switching size to switch levels.
+  private static final float HEART_LOD_HYSTERESIS = 0.1f;
+  private static final String FRAME_STATS_FILE = "frame_stats.txt";
+  // Cache subdirectory holding linked program binaries between launches.
+  private static final String SHADER_CACHE_DIR = "shaders";
+
+  // Intent extra selecting how often debug builds call glGetError: "off", "sampled" or "always".
+  private static final String EXTRA_GL_CHECK = "gl_check";
+  private static final int GL_CHECK_SAMPLE_INTERVAL = 60;
+
+  // Intent extra asking to draw both eyes in one instanced pass on OpenGL ES 3.0 devices.
+  private static final String EXTRA_SINGLE_PASS = "single_pass";
+  private static final int GLES_VERSION_3 = 0x30000;
+
+  // Intent extra asking to find beats on the phone from the raw samples, instead of trusting the
+  // sensor's B and Q lines.
+  private static final String EXTRA_PHONE_BEATS = "phone_beats";
+
+  // Intent extra asking to record the sensor stream and head rotation to a session file.
+  private static final String EXTRA_RECORD_SESSION = "record_session";
+  private static final String SESSION_DIR = "sessions";
+
+  // Intent extras asking to play a recorded session back instead of connecting to the sensor:
+  // the session file, how many times faster than real time (0 for as fast as possible), and
+  // whether to loop it.
+  private static final String EXTRA_REPLAY_SESSION = "replay_session";
+  private static final String EXTRA_REPLAY_SPEED = "replay_speed";
+  private static final String EXTRA_REPLAY_LOOP = "replay_loop";
+
+  // Intent extra asking to connect to several participants' sensors and draw a heart for each.
+  private static final String EXTRA_PARTICIPANTS = "participants";
+  private static final int MAX_PARTICIPANTS = 5;
+  // How far apart, seen from the camera, the participants' hearts stand.
+  private static final float PARTICIPANT_SPACING_DEGREES = 35.0f;
+
+  // How often the heart rate variability shown on the overlay is refreshed.
+  private static final long HRV_STATUS_INTERVAL_MS = 1000;
+  // The window of the heart rate range shown with the HRV status.
+  private static final long RATE_WINDOW_NANOS = 60 * 1000000000L;
+  // Pulse events waiting for the next frame. At 500 signal readings a second this covers a stall
+  // of over a third of a second before readings are dropped.
+  private static final int PULSE_EVENT_CAPACITY = 256;
+
+  // Threads preparing meshes and shader sources while the activity and surface start up.
+  private static final int STARTUP_THREADS = 2;
+
+  // The GL calls that go through the Gl interface, made on the GL thread.
+  private final Gl gl = new AndroidGl();
+
+  // Vertex buffer objects holding interleaved position/normal(/color) data.
+  private InterleavedMesh floorMesh;
+  private LodMeshSet heartLods;
+  // The heart's level of detail for the current frame.
+  private InterleavedMesh heartMesh;
+
+  // Draws the heart and floor with either the per-eye programs or the single-pass ones.
+  private SceneRenderer sceneRenderer;
+
+  // Set in onCreate when the device claims OpenGL ES 3.0 and single-pass was asked for.
+  private boolean singlePassRequested;
+  // Whether the GL context turned out to support it; otherwise each eye is drawn separately.
+  private boolean singlePass;
 
   private float[] modelHeart;
   private float[] camera;
-  private float[] view;
   private float[] headView;
-  private float[] modelViewProjection;
   private float[] modelView;
   private float[] modelFloor;
 
+  // Per frame and per eye transformations, sharing everything that doesn't depend on the eye.
+  private SceneMatrices sceneMatrices;
+  // Set when the heart's model matrix changed since the heart's level of detail was picked.
+  private boolean heartModelDirty;
+
   private float[] modelPosition;
   private float[] headRotation;
 
-  private int signalFrame = 0;
-  private FloatBuffer heartColors;
+  private BeatClock beatClock;
+  // Carries decoded events from the Bluetooth thread to the GL thread, which feeds the beat clock.
+  private PulseEventRing pulseEvents;
+  private PulseLineFramer pulseFramer;
+  private BeatDetector beatDetector;
+  // The last minutes of the sensor stream, read for the heart rate range in the status.
+  private PulseHistory pulseHistory;
+  private final PulseHistory.BeatStats rateStats = new PulseHistory.BeatStats();
+  private HrvAnalyzer hrvAnalyzer;
+  private SessionRecorder sessionRecorder;
+  private final float[] participantRotation = new float[16];
   private float mHeartPrevScale = 1.0f;
 
   private int score = 0;
@@ -124,50 +173,36 @@ public class MainActivity extends CardboardActivity implements CardboardView.Ste
   private Vibrator vibrator;
   private CardboardOverlayView overlayView;
 
-  private CardboardAudioEngine cardboardAudioEngine;
-  private volatile int soundId = CardboardAudioEngine.INVALID_ID;
-
-  /**
-   * Converts a raw text file, saved as a resource, into an OpenGL ES shader.
-   *
-   * @param type The type of shader we will be creating.
-   * @param resId The resource ID of the raw text file about to be turned into a shader.
-   * @return The shader object handler.
-   */
-  private int loadGLShader(int type, int resId) {
-    String code = readRawTextFile(resId);
-    int shader = GLES20.glCreateShader(type);
-    GLES20.glShaderSource(shader, code);
-    GLES20.glCompileShader(shader);
-
-    // Get the compilation status.
-    final int[] compileStatus = new int[1];
-    GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-
-    // If the compilation failed, delete the shader.
-    if (compileStatus[0] == 0) {
-      Log.e(TAG, "Error compiling shader: " + GLES20.glGetShaderInfoLog(shader));
-      GLES20.glDeleteShader(shader);
-      shader = 0;
-    }
-
-    if (shader == 0) {
-      throw new RuntimeException("Error creating shader.");
-    }
-
-    return shader;
-  }
-
-  /**
-   * Checks if we've had an error inside of OpenGL ES, and if so what that error is.
-   *
-   * @param label Label to report in case of error.
-   */
-  private static void checkGLError(String label) {
-    int error;
-    while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
-      Log.e(TAG, label + ": glError " + error);
-      throw new RuntimeException(label + ": glError " + error);
+  // Makes every call into the audio engine, off the GL thread.
+  private AudioDispatcher audioDispatcher;
+
+  private final FrameStats frameStats = new FrameStats();
+  private GlErrorChecker glErrorChecker;
+  // Outlives the GL surface, so a recreated surface loads its programs from saved binaries.
+  private ShaderCache shaderCache;
+  // Plays SOUND_FILE on every beat, in time with the visual pulse.
+  private HeartbeatSound heartbeatSound;
+  private BeatSoundScheduler beatSoundScheduler;
+
+  // CPU-side scene data, prepared in the background from onCreate and uploaded on the GL thread.
+  private StartupPipeline startup;
+  private Future<LodMeshSet> preparedHeart;
+  private Future<InterleavedMesh> preparedFloor;
+  private Future<ShaderSources> preparedShaders;
+  private Future<ShaderSources> preparedSinglePassShaders;
+  private long createNanos;
+  private boolean firstFrameDrawn;
+
+  /** The sources of the lit vertex shader and the two fragment shaders drawn with it. */
+  private static final class ShaderSources {
+    final String vertex;
+    final String grid;
+    final String passthrough;
+
+    ShaderSources(String vertex, String grid, String passthrough) {
+      this.vertex = vertex;
+      this.grid = grid;
+      this.passthrough = passthrough;
     }
   }
 
@@ -178,21 +213,58 @@ public class MainActivity extends CardboardActivity implements CardboardView.Ste
   @Override
   public void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
-
-    uart = new BluetoothLeUart(getApplicationContext());
+    createNanos = System.nanoTime();
+
+    // Get the scene's assets going first, they are needed as soon as the surface exists.
+    singlePassRequested = getIntent().getBooleanExtra(EXTRA_SINGLE_PASS, false)
+        && supportsGles3();
+    prepareScene();
+
+    pulseSource = createPulseSource();
+    beatClock = new BeatClock(System.nanoTime());
+    glErrorChecker = new GlErrorChecker(gl,
+        GlErrorChecker.parseMode(getIntent().getStringExtra(EXTRA_GL_CHECK),
+            GlErrorChecker.MODE_SAMPLED),
+        GL_CHECK_SAMPLE_INTERVAL, frameStats);
+    pulseEvents = new PulseEventRing(PULSE_EVENT_CAPACITY);
+    hrvAnalyzer = new HrvAnalyzer(pulseEvents);
+    pulseHistory = new PulseHistory(hrvAnalyzer, createNanos);
+    PulseLineFramer.Listener pulseListener = pulseHistory;
+    if (getIntent().getBooleanExtra(EXTRA_PHONE_BEATS, false)) {
+      beatDetector = new BeatDetector(pulseListener);
+      pulseListener = beatDetector;
+    }
+    if (getIntent().getBooleanExtra(EXTRA_RECORD_SESSION, false)) {
+      sessionRecorder = startRecording(pulseListener);
+      if (sessionRecorder != null) {
+        pulseListener = sessionRecorder;
+      }
+    }
+    pulseFramer = new PulseLineFramer(pulseListener);
+    shaderCache = new ShaderCache(new File(getCacheDir(), SHADER_CACHE_DIR));
 
     setContentView(R.layout.common_ui);
     CardboardView cardboardView = (CardboardView) findViewById(R.id.cardboard_view);
     cardboardView.setRestoreGLStateEnabled(false);
-    cardboardView.setRenderer(this);
+    if (singlePassRequested) {
+      // Draw the eyes ourselves so both can go out in the same draw calls.
+      cardboardView.setEGLContextClientVersion(3);
+      cardboardView.setRenderer((CardboardView.Renderer) this);
+    } else {
+      cardboardView.setRenderer((CardboardView.StereoRenderer) this);
+    }
     setCardboardView(cardboardView);
 
     modelHeart = new float[16];
     camera = new float[16];
-    view = new float[16];
-    modelViewProjection = new float[16];
     modelView = new float[16];
     modelFloor = new float[16];
+
+    // The camera never moves, so build it once.
+    Matrix.setLookAtM(camera, 0, 0.0f, 0.0f, CAMERA_Z, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
+    sceneMatrices = new SceneMatrices();
+    sceneMatrices.setCamera(camera, LIGHT_POS_IN_WORLD_SPACE);
+    sceneRenderer = new SceneRenderer(gl, sceneMatrices, glErrorChecker, MAX_PARTICIPANTS - 1);
     // Model first appears directly in front of user.
     modelPosition = new float[] {0.0f, 0.0f, -MODEL_DISTANCE};
     headRotation = new float[4];
@@ -203,27 +275,185 @@ public class MainActivity extends CardboardActivity implements CardboardView.Ste
     overlayView.show3DToast("Pull the magnet when you find an object.");
 
     // Initialize 3D audio engine.
-    cardboardAudioEngine =
+    CardboardAudioEngine cardboardAudioEngine =
         new CardboardAudioEngine(getAssets(), CardboardAudioEngine.RenderingQuality.HIGH);
+    audioDispatcher = new AudioDispatcher(new CardboardAudio(cardboardAudioEngine));
+
+    // Play SOUND_FILE at the model postion on every beat. Decoding happens on the dispatcher's
+    // thread, avoiding any delays during start-up.
+    heartbeatSound = new HeartbeatSound(audioDispatcher, SOUND_FILE);
+    heartbeatSound.setPosition(modelPosition[0], modelPosition[1], modelPosition[2]);
+    heartbeatSound.prepare();
+    beatSoundScheduler = new BeatSoundScheduler(beatClock, heartbeatSound, AUDIO_LATENCY_NANOS);
+  }
+
+  @Override
+  protected void onDestroy() {
+    audioDispatcher.shutdown();
+    if (sessionRecorder != null) {
+      try {
+        sessionRecorder.close();
+        Log.i(TAG, "Session recorded, " + sessionRecorder.getBytesWritten() + " bytes, "
+            + sessionRecorder.getDroppedRecords() + " records dropped");
+      } catch (IOException e) {
+        Log.w(TAG, "Could not write the session", e);
+      }
+    }
+    super.onDestroy();
+  }
+
+  /**
+   * Starts preparing everything the GL thread needs that doesn't need a GL context: mapping the
+   * mesh assets, interleaving the floor into a direct buffer and reading the shader sources.
+   */
+  private void prepareScene() {
+    startup = new StartupPipeline(STARTUP_THREADS, createNanos);
+    preparedHeart = startup.prepare("heart meshes", new Callable<LodMeshSet>() {
+      @Override
+      public LodMeshSet call() throws IOException {
+        // The heart's levels of detail are flat shaded mesh assets, drawn in vertex order and
+        // mapped straight from the APK into the GL upload.
+        return LodMeshSet.load(getAssets(), HEART_LOD_FILES, HEART_LOD_MAX_ERROR_PIXELS,
+            HEART_LOD_HYSTERESIS);
+      }
+    });
+    preparedFloor = startup.prepare("floor mesh", new Callable<InterleavedMesh>() {
+      @Override
+      public InterleavedMesh call() {
+        // make a floor
+        return new InterleavedMesh(
+            new float[][] {
+                WorldLayoutData.FLOOR_COORDS, WorldLayoutData.FLOOR_NORMALS,
+                WorldLayoutData.FLOOR_COLORS},
+            new int[] {COORDS_PER_VERTEX, 3, 4});
+      }
+    });
+    // The two-pass sources are always needed, as the fallback if the GL context isn't ES 3.
+    preparedShaders = startup.prepare("shader sources", new Callable<ShaderSources>() {
+      @Override
+      public ShaderSources call() {
+        return new ShaderSources(readRawTextFile(R.raw.light_vertex),
+            readRawTextFile(R.raw.grid_fragment), readRawTextFile(R.raw.passthrough_fragment));
+      }
+    });
+    if (singlePassRequested) {
+      preparedSinglePassShaders = startup.prepare("single-pass shader sources",
+          new Callable<ShaderSources>() {
+            @Override
+            public ShaderSources call() {
+              return new ShaderSources(readRawTextFile(R.raw.light_vertex_multiview),
+                  readRawTextFile(R.raw.grid_fragment_multiview),
+                  readRawTextFile(R.raw.passthrough_fragment_multiview));
+            }
+          });
+    }
+  }
+
+  /**
+   * Picks the replay of a recorded session if one was asked for, otherwise the sensor, or the
+   * sensors of several participants.
+   */
+  private PulseSource createPulseSource() {
+    String replay = getIntent().getStringExtra(EXTRA_REPLAY_SESSION);
+    if (replay != null) {
+      float speed = getIntent().getFloatExtra(EXTRA_REPLAY_SPEED, 1.0f);
+      return new ReplayPulseSource(new File(replay),
+          speed > 0 ? speed : ReplayPulseSource.MAX_SPEED,
+          getIntent().getBooleanExtra(EXTRA_REPLAY_LOOP, false));
+    }
+    int participants = Math.min(getIntent().getIntExtra(EXTRA_PARTICIPANTS, 1), MAX_PARTICIPANTS);
+    if (participants > 1) {
+      hubPulseSource = new HubPulseSource(getApplicationContext(), participants, createNanos);
+      return hubPulseSource;
+    }
+    return new BlePulseSource(new BluetoothLeUart(getApplicationContext()));
+  }
+
+  /**
+   * Starts recording a session into a new file, named after the time it started.
+   *
+   * @return The recorder, or null if the file couldn't be created.
+   */
+  private SessionRecorder startRecording(PulseLineFramer.Listener listener) {
+    File dir = new File(getFilesDir(), SESSION_DIR);
+    File file = new File(dir, "session_" + System.currentTimeMillis() + ".bin");
+    try {
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Could not create " + dir);
+      }
+      return new SessionRecorder(listener, file, createNanos);
+    } catch (IOException e) {
+      Log.w(TAG, "Could not record the session", e);
+      return null;
+    }
+  }
+
+  /**
+   * Shows the latest heart rate variability on the overlay, once a second while resumed.
+   */
+  private final Runnable hrvStatusUpdater = new Runnable() {
+    @Override
+    public void run() {
+      if (hrvAnalyzer.getBeatCount() > 1) {
+        float lfHf = hrvAnalyzer.getLfHfRatio();
+        String rate = "";
+        // The history is read here while the Bluetooth thread appends to it.
+        if (pulseHistory.getBeatStats(RATE_WINDOW_NANOS, System.nanoTime(), rateStats)
+            && rateStats.count > 0) {
+          rate = String.format("BPM %d-%d (%.0f)  ",
+              rateStats.minBpm, rateStats.maxBpm, rateStats.meanBpm);
+        }
+        overlayView.setStatusText(String.format(
+            "%sSDNN %.0fms  RMSSD %.0fms  pNN50 %.0f%%  LF/HF %s", rate,
+            hrvAnalyzer.getSdnn(), hrvAnalyzer.getRmssd(), hrvAnalyzer.getPnn50() * 100,
+            Float.isNaN(lfHf) ? "-" : String.format("%.2f", lfHf)));
+      }
+      overlayView.postDelayed(this, HRV_STATUS_INTERVAL_MS);
+    }
+  };
+
+  /**
+   * Checks whether the device supports OpenGL ES 3.0, needed for instanced drawing.
+   */
+  private boolean supportsGles3() {
+    ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+    return activityManager.getDeviceConfigurationInfo().reqGlEsVersion >= GLES_VERSION_3;
   }
 
   @Override
   public void onPause() {
-    cardboardAudioEngine.pause();
+    beatSoundScheduler.stop();
+    overlayView.removeCallbacks(hrvStatusUpdater);
+    Log.i(TAG, "Heartbeat sound timing:\n" + beatSoundScheduler.summary());
+    Log.i(TAG, "Pulse events dropped before reaching the renderer: "
+        + pulseEvents.getDroppedEvents() + " beat and rate events, "
+        + pulseEvents.getDroppedSignals() + " signal readings");
+    if (hubPulseSource != null) {
+      Log.i(TAG, "Participant beat and rate events dropped before reaching the renderer: "
+          + hubPulseSource.getDroppedParticipantEvents());
+    }
+    audioDispatcher.pause();
     super.onPause();
   }
 
   @Override
   public void onResume() {
     super.onResume();
-    cardboardAudioEngine.resume();
-    uart.registerCallback(this);
-    uart.connectFirstAvailable();
+    audioDispatcher.resume();
+    beatSoundScheduler.start();
+    overlayView.post(hrvStatusUpdater);
+    pulseSource.start(this);
   }
 
   @Override
   public void onRendererShutdown() {
     Log.i(TAG, "onRendererShutdown");
+    Log.i(TAG, "Frame timings:\n" + frameStats.summary());
+    try {
+      frameStats.dump(new File(getFilesDir(), FRAME_STATS_FILE));
+    } catch (IOException e) {
+      Log.w(TAG, "Could not write " + FRAME_STATS_FILE, e);
+    }
   }
 
   @Override
@@ -235,7 +465,7 @@ public class MainActivity extends CardboardActivity implements CardboardView.Ste
    * Creates the buffers we use to store information about the 3D world.
    *
    * <p>OpenGL doesn't use Java arrays, but rather needs data in a format it can understand.
-   * Hence we use ByteBuffers.
+   * The static geometry is uploaded once into vertex buffer objects.
    *
    * @param config The EGL configuration used when creating the surface.
    */
@@ -244,121 +474,61 @@ public class MainActivity extends CardboardActivity implements CardboardView.Ste
     Log.i(TAG, "onSurfaceCreated");
     GLES20.glClearColor(0.1f, 0.1f, 0.1f, 0.5f); // Dark background so text shows up well.
 
-    ByteBuffer bbVertices = ByteBuffer.allocateDirect(WorldLayoutData.HEART_COORDS.length * 4);
-    bbVertices.order(ByteOrder.nativeOrder());
-    heartVertices = bbVertices.asFloatBuffer();
-    heartVertices.put(WorldLayoutData.HEART_COORDS);
-    heartVertices.position(0);
-
-    /*ByteBuffer bbcColor = ByteBuffer.allocateDirect(240 * WorldLayoutData.CARDINAL_RED_COLOR.length * 4);
-    bbcColor.order(ByteOrder.nativeOrder());
-    cardinalRedColors = bbcColor.asFloatBuffer();
-    for (int i = 0; i < 240; i++) cardinalRedColors.put(WorldLayoutData.CARDINAL_RED_COLOR);
-    cardinalRedColors.position(0);
-
-    ByteBuffer bbdColor = ByteBuffer.allocateDirect(240 * WorldLayoutData.DARK_RED_COLOR.length * 4);
-    bbdColor.order(ByteOrder.nativeOrder());
-    darkRedColors = bbdColor.asFloatBuffer();
-    for (int i = 0; i < 240; i++) darkRedColors.put(WorldLayoutData.DARK_RED_COLOR);
-    darkRedColors.position(0);*/
-
-    ByteBuffer bbNormals = ByteBuffer.allocateDirect(WorldLayoutData.HEART_NORMALS.length * 4);
-    bbNormals.order(ByteOrder.nativeOrder());
-    heartNormals = bbNormals.asFloatBuffer();
-    heartNormals.put(WorldLayoutData.HEART_NORMALS);
-    heartNormals.position(0);
-
-    // make a floor
-    ByteBuffer bbFloorVertices = ByteBuffer.allocateDirect(WorldLayoutData.FLOOR_COORDS.length * 4);
-    bbFloorVertices.order(ByteOrder.nativeOrder());
-    floorVertices = bbFloorVertices.asFloatBuffer();
-    floorVertices.put(WorldLayoutData.FLOOR_COORDS);
-    floorVertices.position(0);
-
-    ByteBuffer bbFloorNormals = ByteBuffer.allocateDirect(WorldLayoutData.FLOOR_NORMALS.length * 4);
-    bbFloorNormals.order(ByteOrder.nativeOrder());
-    floorNormals = bbFloorNormals.asFloatBuffer();
-    floorNormals.put(WorldLayoutData.FLOOR_NORMALS);
-    floorNormals.position(0);
-
-    ByteBuffer bbFloorColors = ByteBuffer.allocateDirect(WorldLayoutData.FLOOR_COLORS.length * 4);
-    bbFloorColors.order(ByteOrder.nativeOrder());
-    floorColors = bbFloorColors.asFloatBuffer();
-    floorColors.put(WorldLayoutData.FLOOR_COLORS);
-    floorColors.position(0);
-
-    int vertexShader = loadGLShader(GLES20.GL_VERTEX_SHADER, R.raw.light_vertex);
-    int gridShader = loadGLShader(GLES20.GL_FRAGMENT_SHADER, R.raw.grid_fragment);
-    int passthroughShader = loadGLShader(GLES20.GL_FRAGMENT_SHADER, R.raw.passthrough_fragment);
-
-    heartProgram = GLES20.glCreateProgram();
-    GLES20.glAttachShader(heartProgram, vertexShader);
-    GLES20.glAttachShader(heartProgram, passthroughShader);
-    GLES20.glLinkProgram(heartProgram);
-    GLES20.glUseProgram(heartProgram);
-
-    checkGLError("Heart program");
-
-    heartPositionParam = GLES20.glGetAttribLocation(heartProgram, "a_Position");
-    heartNormalParam = GLES20.glGetAttribLocation(heartProgram, "a_Normal");
-    heartColorParam = GLES20.glGetAttribLocation(heartProgram, "a_Color");
-
-    heartModelParam = GLES20.glGetUniformLocation(heartProgram, "u_Model");
-    heartModelViewParam = GLES20.glGetUniformLocation(heartProgram, "u_MVMatrix");
-    heartModelViewProjectionParam = GLES20.glGetUniformLocation(heartProgram, "u_MVP");
-    heartLightPosParam = GLES20.glGetUniformLocation(heartProgram, "u_LightPos");
-
-    GLES20.glEnableVertexAttribArray(heartPositionParam);
-    GLES20.glEnableVertexAttribArray(heartNormalParam);
-    GLES20.glEnableVertexAttribArray(heartColorParam);
-
-    checkGLError("Heart program params");
-
-    floorProgram = GLES20.glCreateProgram();
-    GLES20.glAttachShader(floorProgram, vertexShader);
-    GLES20.glAttachShader(floorProgram, gridShader);
-    GLES20.glLinkProgram(floorProgram);
-    GLES20.glUseProgram(floorProgram);
-
-    checkGLError("Floor program");
-
-    floorModelParam = GLES20.glGetUniformLocation(floorProgram, "u_Model");
-    floorModelViewParam = GLES20.glGetUniformLocation(floorProgram, "u_MVMatrix");
-    floorModelViewProjectionParam = GLES20.glGetUniformLocation(floorProgram, "u_MVP");
-    floorLightPosParam = GLES20.glGetUniformLocation(floorProgram, "u_LightPos");
-
-    floorPositionParam = GLES20.glGetAttribLocation(floorProgram, "a_Position");
-    floorNormalParam = GLES20.glGetAttribLocation(floorProgram, "a_Normal");
-    floorColorParam = GLES20.glGetAttribLocation(floorProgram, "a_Color");
-
-    GLES20.glEnableVertexAttribArray(floorPositionParam);
-    GLES20.glEnableVertexAttribArray(floorNormalParam);
-    GLES20.glEnableVertexAttribArray(floorColorParam);
-
-    checkGLError("Floor program params");
+    // Only the uploads happen here; the data was prepared in the background since onCreate. On a
+    // recreated surface it is simply uploaded again.
+    heartLods = startup.await(preparedHeart);
+    heartLods.upload(gl);
+    heartMesh = heartLods.getMesh();
+    sceneRenderer.setHeartMesh(heartMesh);
+
+    floorMesh = startup.await(preparedFloor);
+    floorMesh.upload(gl);
+    sceneRenderer.setFloorMesh(floorMesh);
+
+    // The context may still be OpenGL ES 2.0 if the driver didn't honor the requested version.
+    String glVersion = GLES20.glGetString(GLES20.GL_VERSION);
+    singlePass = singlePassRequested && glVersion != null && glVersion.startsWith("OpenGL ES 3");
+    // Instancing both eyes into one viewport needs clip distances to keep them apart; without
+    // them each eye gets its own viewport, still sharing the program binds and uploads.
+    String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+    int stereoMode = !singlePass ? SceneRenderer.STEREO_TWO_PASS
+        : extensions != null && extensions.contains(SceneRenderer.CLIP_DISTANCE_EXTENSION)
+            ? SceneRenderer.STEREO_INSTANCED : SceneRenderer.STEREO_VIEWPORTS;
+    Log.i(TAG, "Drawing " + (stereoMode == SceneRenderer.STEREO_INSTANCED
+        ? "both eyes in one pass" : stereoMode == SceneRenderer.STEREO_VIEWPORTS
+            ? "both eyes in one pass, one viewport at a time" : "one eye at a time")
+        + " on " + glVersion);
+
+    ShaderSources sources =
+        startup.await(singlePass ? preparedSinglePassShaders : preparedShaders);
+    String vertexSource = sources.vertex;
+    String gridSource = sources.grid;
+    String passthroughSource = sources.passthrough;
+    // Everything is prepared now; results stay available for later surfaces.
+    startup.shutdown();
+
+    // Programs come from a binary saved by an earlier context or launch, and only then from
+    // source. onSurfaceCreated means a new context, in which the old ids mean nothing.
+    shaderCache.clear();
+    ShaderCompiler compiler = new GlShaderCompiler(glErrorChecker);
+    SceneProgram heartProgram = new SceneProgram(gl,
+        shaderCache.getProgram(compiler, vertexSource, passthroughSource));
+    SceneProgram floorProgram = new SceneProgram(gl,
+        shaderCache.getProgram(compiler, vertexSource, gridSource));
+    shaderCache.releaseShaders(compiler);
+    Log.i(TAG, "Shader programs: " + shaderCache.getCacheHits() + " cached, "
+        + shaderCache.getBinaryLoads() + " loaded from binaries, "
+        + shaderCache.getCompiles() + " compiled");
 
     Matrix.setIdentityM(modelFloor, 0);
     Matrix.translateM(modelFloor, 0, 0, -floorDepth, 0); // Floor appears below user.
+    sceneMatrices.setFloorModel(modelFloor);
 
-    // Avoid any delays during start-up due to decoding of sound files.
-    new Thread(
-            new Runnable() {
-              public void run() {
-                // Start spatial audio playback of SOUND_FILE at the model postion. The returned
-                //soundId handle is stored and allows for repositioning the sound object whenever
-                // the cube position changes.
-                cardboardAudioEngine.preloadSoundFile(SOUND_FILE);
-                soundId = cardboardAudioEngine.createSoundObject(SOUND_FILE);
-                cardboardAudioEngine.setSoundObjectPosition(
-                    soundId, modelPosition[0], modelPosition[1], modelPosition[2]);
-                cardboardAudioEngine.playSound(soundId, true /* looped playback */);
-              }
-            })
-        .start();
+    sceneRenderer.setUp(heartProgram, floorProgram, stereoMode);
 
     updateModelPosition();
 
-    checkGLError("onSurfaceCreated");
+    glErrorChecker.checkSetup("onSurfaceCreated");
   }
 
   /**
@@ -369,34 +539,27 @@ public class MainActivity extends CardboardActivity implements CardboardView.Ste
     Matrix.translateM(modelHeart, 0, modelPosition[0], modelPosition[1], modelPosition[2]);
 
     // Update the sound location to match it with the new cube position.
-    if (soundId != CardboardAudioEngine.INVALID_ID) {
-      cardboardAudioEngine.setSoundObjectPosition(
-          soundId, modelPosition[0], modelPosition[1], modelPosition[2]);
-    }
-    checkGLError("updateCubePosition");
+    heartbeatSound.setPosition(modelPosition[0], modelPosition[1], modelPosition[2]);
+    glErrorChecker.check("updateCubePosition");
   }
 
   /**
    * Converts a raw text file into a string.
    *
    * @param resId The resource ID of the raw text file about to be turned into a shader.
-   * @return The context of the text file, or null in case of error.
+   * @return The context of the text file.
    */
   private String readRawTextFile(int resId) {
     InputStream inputStream = getResources().openRawResource(resId);
     try {
-      BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-      StringBuilder sb = new StringBuilder();
-      String line;
-      while ((line = reader.readLine()) != null) {
-        sb.append(line).append("\n");
+      try {
+        return ShaderCache.readSource(inputStream);
+      } finally {
+        inputStream.close();
       }
-      reader.close();
-      return sb.toString();
     } catch (IOException e) {
-      e.printStackTrace();
+      throw new RuntimeException("Error reading shader source", e);
     }
-    return null;
   }
 
   /**
@@ -406,22 +569,52 @@ public class MainActivity extends CardboardActivity implements CardboardView.Ste
    */
   @Override
   public void onNewFrame(HeadTransform headTransform) {
+    long start = System.nanoTime();
+    frameStats.onFrameStart(start);
+    if (!firstFrameDrawn) {
+      firstFrameDrawn = true;
+      Log.i(TAG, "First frame " + (start - createNanos) / 1000000 + " ms after onCreate. "
+          + "Startup tasks:\n" + startup.summary());
+    }
+    glErrorChecker.onNewFrame();
+
+    // Catch the beat clock up on everything the sensor sent since the last frame, so the whole
+    // frame sees one consistent beat.
+    pulseEvents.drain(beatClock);
+    if (hubPulseSource != null) {
+      hubPulseSource.drainParticipants();
+    }
+    // Pulse timing follows the sensor's beats rather than the frame rate.
+    float pulse = beatClock.getPulse(start);
+    HeartColor.blend(pulse, sceneRenderer.getHeartColor(), 0);
+
     // Build the Model part of the ModelView matrix.
     Matrix.rotateM(modelHeart, 0, TIME_DELTA, 0.0f, 0.5f, 0.0f);
-    float mHeartNewScale = 1.0f + (float) (Math.cos(Math.PI + signalFrame / 30.0 * Math.PI) + 1.0f) / 6;
+    float mHeartNewScale = 1.0f + pulse / 3;
     Matrix.scaleM(modelHeart, 0, mHeartNewScale / mHeartPrevScale, mHeartNewScale / mHeartPrevScale, 1f);
     mHeartPrevScale = mHeartNewScale;
-    // Build the camera matrix and apply it to the ModelView.
-    Matrix.setLookAtM(camera, 0, 0.0f, 0.0f, CAMERA_Z, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
+    // Apply the camera to the model once for both eyes.
+    sceneMatrices.setHeartModel(modelHeart);
+    sceneRenderer.onHeartModelChanged();
+    heartModelDirty = true;
+    if (hubPulseSource != null) {
+      updateParticipantHearts(start);
+    }
 
     headTransform.getHeadView(headView, 0);
 
     // Update the 3d audio engine with the most recent head rotation.
+    long audioStart = System.nanoTime();
     headTransform.getQuaternion(headRotation, 0);
-    cardboardAudioEngine.setHeadRotation(
+    if (sessionRecorder != null) {
+      sessionRecorder.recordHeadRotation(headRotation, start);
+    }
+    audioDispatcher.setHeadRotation(
             headRotation[0], headRotation[1], headRotation[2], headRotation[3]);
+    frameStats.record(FrameStats.PHASE_AUDIO, audioStart);
 
-    checkGLError("onReadyToDraw");
+    glErrorChecker.check("onReadyToDraw");
+    frameStats.record(FrameStats.PHASE_NEW_FRAME, start);
   }
 
   /**
@@ -431,107 +624,101 @@ public class MainActivity extends CardboardActivity implements CardboardView.Ste
    */
   @Override
   public void onDrawEye(Eye eye) {
-    GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-    GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
-
-    checkGLError("colorParam");
-
-    // Apply the eye transformation to the camera.
-    Matrix.multiplyMM(view, 0, eye.getEyeView(), 0, camera, 0);
-
-    // Set the position of the light
-    Matrix.multiplyMV(lightPosInEyeSpace, 0, view, 0, LIGHT_POS_IN_WORLD_SPACE, 0);
-
-    // Build the ModelView and ModelViewProjection matrices
-    // for calculating cube position and light.
-    float[] perspective = eye.getPerspective(Z_NEAR, Z_FAR);
-    Matrix.multiplyMM(modelView, 0, view, 0, modelHeart, 0);
-    Matrix.multiplyMM(modelViewProjection, 0, perspective, 0, modelView, 0);
-    drawHeart();
-
-    // Set modelView for the floor, so we draw floor in the correct location
-    Matrix.multiplyMM(modelView, 0, view, 0, modelFloor, 0);
-    Matrix.multiplyMM(modelViewProjection, 0, perspective, 0, modelView, 0);
-    drawFloor();
+    long start = System.nanoTime();
+    // Apply the eye transformation to build the light position, ModelView and
+    // ModelViewProjection matrices for the heart and the floor. The perspective array is cached
+    // by the Eye until its projection changes.
+    sceneMatrices.setEye(SceneMatrices.LEFT_EYE, eye.getEyeView(),
+        eye.getPerspective(Z_NEAR, Z_FAR));
+    if (heartModelDirty) {
+      selectHeartLod(eye);
+      heartModelDirty = false;
+    }
+    sceneRenderer.drawEye();
+    frameStats.record(FrameStats.PHASE_DRAW_EYE, start);
   }
 
-  @Override
-  public void onFinishFrame(Viewport viewport) {}
-
-  private FloatBuffer getHeartColors() {
-    signalFrame = (++signalFrame) % 60;
-    float proportion = (float) (Math.cos(Math.PI + signalFrame / 30.0 * Math.PI) + 1.0f) / 2;
-    float[] mixedColor = new float[] {
-            WorldLayoutData.CARDINAL_RED_COLOR[0] * proportion + WorldLayoutData.DARK_RED_COLOR[0] * (1.0f - proportion),
-            WorldLayoutData.CARDINAL_RED_COLOR[1] * proportion + WorldLayoutData.DARK_RED_COLOR[1] * (1.0f - proportion),
-            WorldLayoutData.CARDINAL_RED_COLOR[2] * proportion + WorldLayoutData.DARK_RED_COLOR[2] * (1.0f - proportion),
-            WorldLayoutData.CARDINAL_RED_COLOR[3] * proportion + WorldLayoutData.DARK_RED_COLOR[3] * (1.0f - proportion)
-    };
-    ByteBuffer bbmColor = ByteBuffer.allocateDirect(240 * WorldLayoutData.CARDINAL_RED_COLOR.length * 4);
-    bbmColor.order(ByteOrder.nativeOrder());
-    heartColors = bbmColor.asFloatBuffer();
-    for (int i = 0; i < 240; i++) heartColors.put(mixedColor);
-    heartColors.position(0);
-    return heartColors;
-  }
   /**
-   * Draw the cube.
+   * Draws a whole frame, used instead of {@link #onNewFrame} and {@link #onDrawEye} when
+   * single-pass rendering was requested.
    *
-   * <p>We've set all of our transformation matrices. Now we simply pass them into the shadFler.
+   * <p>If the context supports it, both eyes are drawn with one instanced draw call per mesh
+   * into a viewport spanning both eyes, or at least with one program bind and upload per mesh for
+   * both. Otherwise each eye is drawn in turn, clipped to its own viewport.
+   *
+   * @param headTransform The head transformation in the new frame.
+   * @param leftEye The left eye.
+   * @param rightEye The right eye.
    */
-  public void drawHeart() {
-    GLES20.glUseProgram(heartProgram);
-
-    GLES20.glClearDepthf(1.0f);
-
-    GLES20.glUniform3fv(heartLightPosParam, 1, lightPosInEyeSpace, 0);
-
-    // Set the Model in the shader, used to calculate lighting
-    GLES20.glUniformMatrix4fv(heartModelParam, 1, false, modelHeart, 0);
-
-    // Set the ModelView in the shader, used to calculate lighting
-    GLES20.glUniformMatrix4fv(heartModelViewParam, 1, false, modelView, 0);
-
-    // Set the position of the cube
-    GLES20.glVertexAttribPointer(
-            heartPositionParam, COORDS_PER_VERTEX, GLES20.GL_FLOAT, true, 0, heartVertices);
+  @Override
+  public void onDrawFrame(HeadTransform headTransform, Eye leftEye, Eye rightEye) {
+    onNewFrame(headTransform);
+    if (!singlePass) {
+      GLES20.glEnable(GLES20.GL_SCISSOR_TEST);
+      drawEyeViewport(leftEye);
+      drawEyeViewport(rightEye);
+      GLES20.glDisable(GLES20.GL_SCISSOR_TEST);
+      return;
+    }
 
-    // Set the ModelViewProjection matrix in the shader.
-    GLES20.glUniformMatrix4fv(heartModelViewProjectionParam, 1, false, modelViewProjection, 0);
+    long start = System.nanoTime();
+    sceneMatrices.setEye(SceneMatrices.LEFT_EYE, leftEye.getEyeView(),
+        leftEye.getPerspective(Z_NEAR, Z_FAR));
+    sceneMatrices.setEye(SceneMatrices.RIGHT_EYE, rightEye.getEyeView(),
+        rightEye.getPerspective(Z_NEAR, Z_FAR));
+    selectHeartLod(leftEye);
+    heartModelDirty = false;
+    // The eyes sit side by side with the same size.
+    Viewport left = leftEye.getViewport();
+    Viewport right = rightEye.getViewport();
+    sceneRenderer.drawBothEyes(left.x, right.x, left.y, left.width, left.height);
+    frameStats.record(FrameStats.PHASE_DRAW_EYE, start);
+  }
 
-    // Set the normal positions of the cube, again for shading
-    GLES20.glVertexAttribPointer(heartNormalParam, 3, GLES20.GL_FLOAT, false, 0, heartNormals);
-    //GLES20.glVertexAttrib4fv(heartColorParam, darkRedColor);
-    GLES20.glVertexAttribPointer(heartColorParam, 4, GLES20.GL_FLOAT, false, 0,
-        getHeartColors());
+  /**
+   * Picks the heart's level of detail for the frame from its size in the given eye. Both eyes
+   * draw the same level so they don't disagree while switching. The size is taken at rest, so
+   * the beat doesn't switch levels.
+   */
+  private void selectHeartLod(Eye eye) {
+    heartMesh = heartLods.select(sceneMatrices.getArena(), SceneMatrices.HEART_MODEL_VIEW,
+        mHeartPrevScale, eye.getPerspective(Z_NEAR, Z_FAR), eye.getViewport().height);
+    sceneRenderer.setHeartMesh(heartMesh);
+  }
 
-    GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 240);
-    checkGLError("Drawing heart");
+  private void drawEyeViewport(Eye eye) {
+    eye.getViewport().setGLViewport();
+    eye.getViewport().setGLScissor();
+    onDrawEye(eye);
   }
 
+  @Override
+  public void onFinishFrame(Viewport viewport) {}
+
   /**
-   * Draw the floor.
-   *
-   * <p>This feeds in data for the floor into the shader. Note that this doesn't feed in data about
-   * position of the light, so if we rewrite our code to draw the floor first, the lighting might
-   * look strange.
+   * Places a heart for each other connected participant beside the wearer's, alternating sides
+   * and spinning along with it, but beating with the participant's own pulse.
    */
-  public void drawFloor() {
-    GLES20.glUseProgram(floorProgram);
-
-    // Set ModelView, MVP, position, normals, and color.
-    GLES20.glUniform3fv(floorLightPosParam, 1, lightPosInEyeSpace, 0);
-    GLES20.glUniformMatrix4fv(floorModelParam, 1, false, modelFloor, 0);
-    GLES20.glUniformMatrix4fv(floorModelViewParam, 1, false, modelView, 0);
-    GLES20.glUniformMatrix4fv(floorModelViewProjectionParam, 1, false, modelViewProjection, 0);
-    GLES20.glVertexAttribPointer(
-        floorPositionParam, COORDS_PER_VERTEX, GLES20.GL_FLOAT, false, 0, floorVertices);
-    GLES20.glVertexAttribPointer(floorNormalParam, 3, GLES20.GL_FLOAT, false, 0, floorNormals);
-    GLES20.glVertexAttribPointer(floorColorParam, 4, GLES20.GL_FLOAT, false, 0, floorColors);
-
-    GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 6);
-
-    checkGLError("drawing floor");
+  private void updateParticipantHearts(long nowNanos) {
+    float[] participantModels = sceneRenderer.getParticipantModels();
+    float[] participantColors = sceneRenderer.getParticipantColors();
+    int participantHeartCount = 0;
+    for (int i = HubPulseSource.WEARER + 1; i < hubPulseSource.getParticipantCount(); i++) {
+      if (!hubPulseSource.isConnected(i)) {
+        continue;
+      }
+      float pulse = hubPulseSource.getBeatClock(i).getPulse(nowNanos);
+      int offset = participantHeartCount * 16;
+      float angle = PARTICIPANT_SPACING_DEGREES * ((i + 1) / 2) * (i % 2 == 0 ? -1 : 1);
+      Matrix.setRotateM(participantRotation, 0, angle, 0.0f, 1.0f, 0.0f);
+      Matrix.multiplyMM(participantModels, offset, participantRotation, 0, modelHeart, 0);
+      // Swap the wearer's pulse scale for the participant's.
+      float scale = (1.0f + pulse / 3) / mHeartPrevScale;
+      Matrix.scaleM(participantModels, offset, scale, scale, 1f);
+      HeartColor.blend(pulse, participantColors, participantHeartCount * 4);
+      participantHeartCount++;
+    }
+    sceneRenderer.setParticipantCount(participantHeartCount);
   }
 
   /**
@@ -604,39 +791,35 @@ public class MainActivity extends CardboardActivity implements CardboardView.Ste
   }
 
   @Override
-  public void onConnected(BluetoothLeUart uart) {
-    Log.v("BT", "Connected to: " + uart.getDeviceInfo());
+  public void onSourceConnected(PulseSource source) {
+    pulseFramer.reset();
+    if (beatDetector != null) {
+      beatDetector.reset();
+    }
+    hrvAnalyzer.reset();
+    Log.i(TAG, "Pulse source connected: " + source.getDescription());
   }
 
   @Override
   protected void onStop() {
     super.onStop();
-    uart.unregisterCallback(this);
-    uart.disconnect();
-  }
-
-  @Override
-  public void onConnectFailed(BluetoothLeUart uart) {
-    Log.v("BT", "Error connecting to device! " + uart.getDeviceInfo());
-  }
-
-  @Override
-  public void onDisconnected(BluetoothLeUart uart) {
-    Log.v("BT", "Disconnected: " + uart.getDeviceInfo());
+    pulseSource.stop();
   }
 
   @Override
-  public void onReceive(BluetoothLeUart uart, BluetoothGattCharacteristic rx) {
-    Log.v("BT", "Received: " + rx.getStringValue(0));
+  public void onSourceDisconnected(PulseSource source) {
+    Log.i(TAG, "Pulse source disconnected: " + source.getDescription());
   }
 
   @Override
-  public void onDeviceFound(BluetoothDevice device) {
-    Log.v("BT", "Device Found: " + uart.getDeviceInfo());
+  public void onSourceDataLost(PulseSource source) {
+    // Don't splice the start of a line onto the end of another.
+    pulseFramer.resync();
   }
 
   @Override
-  public void onDeviceInfoAvailable() {
-    Log.v("BT", uart.getDeviceInfo());
+  public void onSourceData(PulseSource source, byte[] data, int offset, int length,
+      long timeNanos) {
+    pulseFramer.feed(data, offset, length, timeNanos);
   }
 }
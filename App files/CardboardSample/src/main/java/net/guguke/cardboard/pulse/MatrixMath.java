@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+/**
+ * The products of {@link android.opengl.Matrix}, in plain Java.
+ *
+ * <p>Matrices are 16 floats in column-major order and vectors 4 floats, exactly as
+ * {@code Matrix.multiplyMM} and {@code Matrix.multiplyMV} expect them. Unlike those, the products
+ * here also run in JVM tests, where the framework's native methods do nothing, and don't cross
+ * into native code for a handful of multiplications.
+ *
+ * <p>As with the framework methods, the result must not overlap either operand.
+ */
+public final class MatrixMath {
+  private MatrixMath() {}
+
+  /**
+   * Computes {@code result = lhs * rhs}.
+   */
+  public static void multiplyMM(float[] result, int resultOffset, float[] lhs, int lhsOffset,
+      float[] rhs, int rhsOffset) {
+    for (int column = 0; column < 4; column++) {
+      float x = rhs[rhsOffset + column * 4];
+      float y = rhs[rhsOffset + column * 4 + 1];
+      float z = rhs[rhsOffset + column * 4 + 2];
+      float w = rhs[rhsOffset + column * 4 + 3];
+      for (int row = 0; row < 4; row++) {
+        result[resultOffset + column * 4 + row] = lhs[lhsOffset + row] * x
+            + lhs[lhsOffset + 4 + row] * y
+            + lhs[lhsOffset + 8 + row] * z
+            + lhs[lhsOffset + 12 + row] * w;
+      }
+    }
+  }
+
+  /**
+   * Computes {@code result = lhs * rhs} for a 4 element column vector {@code rhs}.
+   */
+  public static void multiplyMV(float[] result, int resultOffset, float[] lhs, int lhsOffset,
+      float[] rhs, int rhsOffset) {
+    float x = rhs[rhsOffset];
+    float y = rhs[rhsOffset + 1];
+    float z = rhs[rhsOffset + 2];
+    float w = rhs[rhsOffset + 3];
+    for (int row = 0; row < 4; row++) {
+      result[resultOffset + row] = lhs[lhsOffset + row] * x
+          + lhs[lhsOffset + 4 + row] * y
+          + lhs[lhsOffset + 8 + row] * z
+          + lhs[lhsOffset + 12 + row] * w;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Loads {@link MeshFormat} files from the app's assets.
+ *
+ * <p>Mesh assets are stored uncompressed (see {@code aaptOptions} in build.gradle), so they are
+ * memory-mapped straight out of the APK and the only copy made is the GL upload itself.
+ */
+public final class MeshAsset {
+
+  private MeshAsset() {}
+
+  /**
+   * Loads a mesh asset into an {@link InterleavedMesh}, ready to be uploaded.
+   *
+   * @param assets The app's assets.
+   * @param name The asset file name, e.g. {@code "heart_lod0.mesh"}.
+   */
+  public static InterleavedMesh load(AssetManager assets, String name) throws IOException {
+    return toMesh(read(assets, name));
+  }
+
+  /**
+   * Maps a mesh asset and slices out its sections, e.g. to look at its header first.
+   */
+  public static MeshFormat.Sections read(AssetManager assets, String name) throws IOException {
+    return MeshFormat.read(map(assets, name));
+  }
+
+  /**
+   * Wraps the sections of a mesh file in an {@link InterleavedMesh}, ready to be uploaded. A mesh
+   * file without indices is drawn with {@code glDrawArrays}.
+   */
+  public static InterleavedMesh toMesh(MeshFormat.Sections sections) {
+    return new InterleavedMesh(sections.vertices, MeshFormat.ATTRIBUTE_SIZES,
+        sections.indexCount > 0 ? sections.indices : null, sections.indexCount);
+  }
+
+  private static ByteBuffer map(AssetManager assets, String name) throws IOException {
+    AssetFileDescriptor fd;
+    try {
+      fd = assets.openFd(name);
+    } catch (FileNotFoundException e) {
+      // The asset got compressed after all; fall back to reading it.
+      return readFully(assets, name);
+    }
+    try {
+      FileInputStream in = fd.createInputStream();
+      try {
+        return in.getChannel()
+            .map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+      } finally {
+        // The mapping stays valid after the channel is closed.
+        in.close();
+      }
+    } finally {
+      fd.close();
+    }
+  }
+
+  private static ByteBuffer readFully(AssetManager assets, String name) throws IOException {
+    InputStream in = assets.open(name);
+    try {
+      byte[] chunk = new byte[4096];
+      ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(in.available(), chunk.length));
+      int read;
+      while ((read = in.read(chunk)) > 0) {
+        if (buffer.remaining() < read) {
+          ByteBuffer grown = ByteBuffer.allocateDirect(buffer.capacity() * 2 + read);
+          buffer.flip();
+          grown.put(buffer);
+          buffer = grown;
+        }
+        buffer.put(chunk, 0, read);
+      }
+      buffer.flip();
+      return buffer;
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The binary mesh format used for the assets in {@code assets/*.mesh}.
+ *
+ * <p>Everything is little-endian, the byte order of every Android device, so the vertex and
+ * index sections can be handed to {@code glBufferData} as they are:
+ *
+ * <pre>
+ *   bytes  0..3   magic "HMSH"
+ *   bytes  4..7   format version
+ *   bytes  8..11  vertex count
+ *   bytes 12..15  index count
+ *   bytes 16..19  float error: how far this level of detail strays from the full mesh
+ *   vertex count * 6 floats  interleaved position (x, y, z) and normal (x, y, z)
+ *   index count shorts       three indices per triangle
+ * </pre>
+ *
+ * <p>A mesh without shared corners, such as the flat shaded heart, has no indices: its index
+ * count is zero and every three vertices in order make a triangle.
+ *
+ * <p>Version 1 files have no error field and are read as having no error. The files are written
+ * by {@code MeshWriter} in the desktop tools module.
+ */
+public final class MeshFormat {
+  public static final int MAGIC = 'H' | 'M' << 8 | 'S' << 16 | 'H' << 24;
+  public static final int VERSION = 2;
+  public static final int HEADER_BYTES = 20;
+  private static final int VERSION_1 = 1;
+  private static final int VERSION_1_HEADER_BYTES = 16;
+  public static final int FLOATS_PER_VERTEX = 6;
+  public static final int BYTES_PER_VERTEX = FLOATS_PER_VERTEX * 4;
+  public static final int BYTES_PER_INDEX = 2;
+
+  /** The sizes of the interleaved attributes, as expected by {@link InterleavedMesh}. */
+  public static final int[] ATTRIBUTE_SIZES = new int[] {3, 3};
+
+  private MeshFormat() {}
+
+  /** The vertex and index sections of a mesh file, sliced out of the file's buffer. */
+  public static final class Sections {
+    public final ByteBuffer vertices;
+    public final ByteBuffer indices;
+    public final int vertexCount;
+    public final int indexCount;
+    /** Largest distance to the full mesh, in model units. */
+    public final float error;
+
+    Sections(ByteBuffer vertices, ByteBuffer indices, int vertexCount, int indexCount,
+        float error) {
+      this.vertices = vertices;
+      this.indices = indices;
+      this.vertexCount = vertexCount;
+      this.indexCount = indexCount;
+      this.error = error;
+    }
+
+    /**
+     * Returns the radius of the smallest sphere around the model origin holding every vertex.
+     */
+    public float getBoundingRadius() {
+      ByteBuffer data = vertices.duplicate().order(vertices.order());
+      float maxSquared = 0;
+      for (int v = 0; v < vertexCount; v++) {
+        int offset = v * BYTES_PER_VERTEX;
+        float x = data.getFloat(offset);
+        float y = data.getFloat(offset + 4);
+        float z = data.getFloat(offset + 8);
+        maxSquared = Math.max(maxSquared, x * x + y * y + z * z);
+      }
+      return (float) Math.sqrt(maxSquared);
+    }
+  }
+
+  /**
+   * Validates the header and slices the sections out of a mesh file without copying them.
+   *
+   * @param file The whole mesh file, from its position to its limit.
+   * @throws IOException if the file isn't a mesh file this version understands.
+   */
+  public static Sections read(ByteBuffer file) throws IOException {
+    ByteBuffer header = file.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (header.remaining() < VERSION_1_HEADER_BYTES || header.getInt() != MAGIC) {
+      throw new IOException("Not a mesh file");
+    }
+    int version = header.getInt();
+    if (version != VERSION && version != VERSION_1) {
+      throw new IOException("Unsupported mesh version " + version);
+    }
+    int vertexCount = header.getInt();
+    int indexCount = header.getInt();
+    float error = 0;
+    if (version != VERSION_1) {
+      if (header.remaining() < HEADER_BYTES - VERSION_1_HEADER_BYTES) {
+        throw new IOException("Truncated mesh file");
+      }
+      error = header.getFloat();
+    }
+    // In longs, so that huge counts in a corrupt header can't wrap around to a small size.
+    long vertexBytes = (long) vertexCount * BYTES_PER_VERTEX;
+    long indexBytes = (long) indexCount * BYTES_PER_INDEX;
+    if (vertexCount < 0 || indexCount < 0
+        || header.remaining() < vertexBytes + indexBytes) {
+      throw new IOException("Truncated mesh file");
+    }
+
+    ByteBuffer vertices = header.slice();
+    vertices.limit((int) vertexBytes);
+    header.position(header.position() + (int) vertexBytes);
+    ByteBuffer indices = header.slice();
+    indices.limit((int) indexBytes);
+    return new Sections(vertices.order(ByteOrder.nativeOrder()),
+        indices.order(ByteOrder.nativeOrder()), vertexCount, indexCount, error);
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+/**
+ * A single value reported by the pulse sensor.
+ *
+ * <p>Instances are mutable and meant to be reused, so decoding the sensor stream does not
+ * allocate. Don't hold on to an event after the callback it was passed to returns.
+ */
+public final class PulseEvent {
+  /** Beats per minute, averaged over the last ten beats. */
+  public static final int TYPE_BPM = 'B';
+  /** Inter-beat interval in milliseconds. Sent once per detected beat. */
+  public static final int TYPE_IBI = 'Q';
+  /** Raw pulse sensor reading, sampled at 500Hz. */
+  public static final int TYPE_SIGNAL = 'S';
+
+  public int type;
+  public int value;
+  public long timeNanos;
+
+  public void set(int type, int value, long timeNanos) {
+    this.type = type;
+    this.value = value;
+    this.timeNanos = timeNanos;
+  }
+
+  public void copyFrom(PulseEvent other) {
+    set(other.type, other.value, other.timeNanos);
+  }
+}
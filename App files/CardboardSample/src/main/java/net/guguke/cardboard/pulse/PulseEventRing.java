@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands pulse events from the Bluetooth thread to the GL thread.
+ *
+ * <p>A single producer copies events into a fixed ring of preallocated {@link PulseEvent} slots,
+ * and a single consumer drains everything published so far in one batch, typically once per frame
+ * from {@code onNewFrame}. Neither side locks or allocates. Each side owns one counter, published
+ * with an ordered write, and only reads the other's when its cached copy says the ring looks full
+ * or empty.
+ *
+ * <p>The producer never waits for the consumer. When the ring is full, the new event is dropped
+ * and counted. Raw signal readings are the most plentiful and least important events, so they are
+ * already dropped once the ring is three quarters full, leaving the rest for beats.
+ */
+public class PulseEventRing implements PulseLineFramer.Listener {
+  private final PulseEvent[] slots;
+  private final int mask;
+  private final int signalLimit;
+
+  // Number of events published. Written by the producer only.
+  private final AtomicLong published = new AtomicLong();
+  // Number of events consumed. Written by the consumer only.
+  private final AtomicLong consumed = new AtomicLong();
+  // The producer's last look at consumed, so it doesn't read it for every event.
+  private long cachedConsumed;
+
+  // Written by the producer only.
+  private volatile long droppedSignals;
+  private volatile long droppedEvents;
+
+  /**
+   * @param capacity How many events the ring holds, a power of two.
+   */
+  public PulseEventRing(int capacity) {
+    if (capacity < 4 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity);
+    }
+    slots = new PulseEvent[capacity];
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new PulseEvent();
+    }
+    mask = capacity - 1;
+    signalLimit = capacity - capacity / 4;
+  }
+
+  /**
+   * Publishes a copy of {@code event}. Called from the producer thread only.
+   */
+  @Override
+  public void onPulseEvent(PulseEvent event) {
+    long next = published.get();
+    int limit = event.type == PulseEvent.TYPE_SIGNAL ? signalLimit : slots.length;
+    if (next - cachedConsumed >= limit) {
+      cachedConsumed = consumed.get();
+      if (next - cachedConsumed >= limit) {
+        if (event.type == PulseEvent.TYPE_SIGNAL) {
+          droppedSignals++;
+        } else {
+          droppedEvents++;
+        }
+        return;
+      }
+    }
+    slots[(int) next & mask].copyFrom(event);
+    published.lazySet(next + 1);
+  }
+
+  /**
+   * Passes every event published so far to {@code listener}, oldest first, then frees their slots
+   * in one go. Called from the consumer thread only.
+   *
+   * @return The number of events drained.
+   */
+  public int drain(PulseLineFramer.Listener listener) {
+    long first = consumed.get();
+    long end = published.get();
+    for (long i = first; i < end; i++) {
+      listener.onPulseEvent(slots[(int) i & mask]);
+    }
+    consumed.lazySet(end);
+    return (int) (end - first);
+  }
+
+  public int getCapacity() {
+    return slots.length;
+  }
+
+  /** How many signal readings were dropped because the ring was too full. */
+  public long getDroppedSignals() {
+    return droppedSignals;
+  }
+
+  /** How many beat and rate events were dropped because the ring was full. */
+  public long getDroppedEvents() {
+    return droppedEvents;
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the last minutes of the pulse sensor stream: the raw signal and every beat.
+ *
+ * <p>Both are kept in fixed-size rings of primitive arrays, so recording never allocates or
+ * boxes, and appending is O(1). The newest values overwrite the oldest.
+ *
+ * <p>There is one writer, the thread delivering {@link PulseEvent}s, and any number of readers.
+ * The writer fills a slot and then publishes it by bumping a volatile count. Readers never block
+ * it: they read the count, copy out what they need and read the count again. If the writer has
+ * meanwhile lapped the oldest slot they read, they try again. To make that rare, readers only see
+ * the newest {@code capacity - capacity / 8} entries, so the writer has to append another eighth
+ * of the ring, minutes of data, during a single read.
+ *
+ * <p>That check only works if the reads of the slots can't be moved past the second read of the
+ * count, which plain array reads can. So the slots are atomic arrays: the writer stores with
+ * {@code lazySet}, ordered after its earlier count update, and readers load with {@code get}, which
+ * can't be reordered with the count read that follows. A reader that sees a value from the lap
+ * overwriting its slot therefore also sees the count that gives the overwrite away.
+ *
+ * <p>Window statistics over beats are O(1) for the mean rate and RMSSD, from running sums kept
+ * per beat, plus a binary search for the start of the window. Minimum and maximum rate are a scan
+ * of the beats in the window, a few hundred at most.
+ */
+public class PulseHistory implements PulseLineFramer.Listener {
+  /** About 17 minutes of 500Hz samples. */
+  public static final int SAMPLE_CAPACITY = 1 << 19;
+  /** Over 20 minutes of beats at 200 BPM. */
+  public static final int BEAT_CAPACITY = 1 << 12;
+
+  // Same plausibility window as BeatClock; other intervals aren't recorded as beats.
+  private static final int MIN_IBI_MS = 250;
+  private static final int MAX_IBI_MS = 2500;
+  private static final long NANOS_PER_MS = 1000000L;
+  private static final int MAX_READ_ATTEMPTS = 4;
+
+  /** Statistics over the beats in a window, filled in by {@link #getBeatStats}. */
+  public static final class BeatStats {
+    /** Number of beats in the window. */
+    public int count;
+    public int minBpm;
+    public int maxBpm;
+    public float meanBpm;
+    /** Root mean square of successive IBI differences in milliseconds, 0 with under 2 beats. */
+    public float rmssd;
+  }
+
+  private final PulseLineFramer.Listener listener;
+  private final long startNanos;
+
+  // Samples: the reading and its arrival time in milliseconds since startNanos.
+  private final AtomicIntegerArray sampleValues = new AtomicIntegerArray(SAMPLE_CAPACITY);
+  private final AtomicIntegerArray sampleTimesMs = new AtomicIntegerArray(SAMPLE_CAPACITY);
+  private volatile long sampleCount;
+
+  // Beats: the interval, the instantaneous rate and running sums through each beat.
+  private final AtomicIntegerArray beatIbis = new AtomicIntegerArray(BEAT_CAPACITY);
+  private final AtomicIntegerArray beatBpms = new AtomicIntegerArray(BEAT_CAPACITY);
+  private final AtomicLongArray beatTimesNanos = new AtomicLongArray(BEAT_CAPACITY);
+  private final AtomicLongArray beatBpmSums = new AtomicLongArray(BEAT_CAPACITY);
+  private final AtomicLongArray beatSquaredDiffSums = new AtomicLongArray(BEAT_CAPACITY);
+  private final AtomicIntegerArray beatDiffCounts = new AtomicIntegerArray(BEAT_CAPACITY);
+  private volatile long beatCount;
+
+  /**
+   * @param listener Receives every event after it has been recorded.
+   * @param startNanos The time sample times are kept relative to.
+   */
+  public PulseHistory(PulseLineFramer.Listener listener, long startNanos) {
+    this.listener = listener;
+    this.startNanos = startNanos;
+  }
+
+  @Override
+  public void onPulseEvent(PulseEvent event) {
+    switch (event.type) {
+      case PulseEvent.TYPE_SIGNAL:
+        appendSample(event.value, event.timeNanos);
+        break;
+      case PulseEvent.TYPE_IBI:
+        appendBeat(event.value, event.timeNanos);
+        break;
+      default:
+        break;
+    }
+    listener.onPulseEvent(event);
+  }
+
+  /**
+   * Records a raw reading. Only called from the writer thread.
+   */
+  public void appendSample(int value, long timeNanos) {
+    long count = sampleCount;
+    int slot = (int) count & (SAMPLE_CAPACITY - 1);
+    sampleValues.lazySet(slot, value);
+    sampleTimesMs.lazySet(slot, (int) ((timeNanos - startNanos) / NANOS_PER_MS));
+    sampleCount = count + 1;
+  }
+
+  /**
+   * Records a beat. Intervals the sensor can't have measured are ignored. Only called from the
+   * writer thread.
+   *
+   * @param ibiMs The interval to the previous beat, in milliseconds.
+   * @param timeNanos The time of the beat.
+   */
+  public void appendBeat(int ibiMs, long timeNanos) {
+    if (ibiMs < MIN_IBI_MS || ibiMs > MAX_IBI_MS) {
+      return;
+    }
+    long count = beatCount;
+    int slot = (int) count & (BEAT_CAPACITY - 1);
+    int bpm = 60000 / ibiMs;
+    long bpmSum = bpm;
+    long squaredDiffSum = 0;
+    int diffCount = 0;
+    if (count > 0) {
+      int previous = (int) (count - 1) & (BEAT_CAPACITY - 1);
+      bpmSum += beatBpmSums.get(previous);
+      squaredDiffSum = beatSquaredDiffSums.get(previous);
+      diffCount = beatDiffCounts.get(previous);
+      // Beats only count as successive if none was lost in between.
+      if (timeNanos - beatTimesNanos.get(previous) <= MAX_IBI_MS * NANOS_PER_MS) {
+        long diff = ibiMs - beatIbis.get(previous);
+        squaredDiffSum += diff * diff;
+        diffCount++;
+      }
+    }
+    beatIbis.lazySet(slot, ibiMs);
+    beatBpms.lazySet(slot, bpm);
+    beatTimesNanos.lazySet(slot, timeNanos);
+    beatBpmSums.lazySet(slot, bpmSum);
+    beatSquaredDiffSums.lazySet(slot, squaredDiffSum);
+    beatDiffCounts.lazySet(slot, diffCount);
+    beatCount = count + 1;
+  }
+
+  /** Total number of samples recorded, including those already overwritten. */
+  public long getSampleCount() {
+    return sampleCount;
+  }
+
+  /** Total number of beats recorded, including those already overwritten. */
+  public long getBeatCount() {
+    return beatCount;
+  }
+
+  /**
+   * Copies the most recent samples, oldest first.
+   *
+   * @param values Receives the readings; its length is how many samples are wanted.
+   * @param timesNanos Receives the arrival time of each reading, or null.
+   * @return How many samples were copied, less than wanted if fewer have been recorded.
+   */
+  public int copySamples(int[] values, long[] timesNanos) {
+    for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+      long end = sampleCount;
+      int n = (int) Math.min(Math.min(values.length, end), readable(SAMPLE_CAPACITY));
+      long first = end - n;
+      for (int i = 0; i < n; i++) {
+        int slot = (int) (first + i) & (SAMPLE_CAPACITY - 1);
+        values[i] = sampleValues.get(slot);
+        if (timesNanos != null) {
+          timesNanos[i] = startNanos + sampleTimesMs.get(slot) * NANOS_PER_MS;
+        }
+      }
+      if (!overwritten(first, sampleCount, SAMPLE_CAPACITY)) {
+        return n;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Computes statistics over the beats in the last {@code windowNanos} up to {@code nowNanos}.
+   *
+   * @return false if the writer kept overwriting the window while reading, which only happens if
+   *     the window is nearly as long as the whole history.
+   */
+  public boolean getBeatStats(long windowNanos, long nowNanos, BeatStats out) {
+    for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+      long end = beatCount;
+      long oldest = end - Math.min(end, readable(BEAT_CAPACITY));
+      long first = firstBeatAtOrAfter(oldest, end, nowNanos - windowNanos);
+      computeBeatStats(first, end, out);
+      if (!overwritten(first, beatCount, BEAT_CAPACITY)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void computeBeatStats(long first, long end, BeatStats out) {
+    int count = (int) (end - first);
+    out.count = count;
+    if (count == 0) {
+      out.minBpm = 0;
+      out.maxBpm = 0;
+      out.meanBpm = 0;
+      out.rmssd = 0;
+      return;
+    }
+    int firstSlot = (int) first & (BEAT_CAPACITY - 1);
+    int lastSlot = (int) (end - 1) & (BEAT_CAPACITY - 1);
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    for (long i = first; i < end; i++) {
+      int bpm = beatBpms.get((int) i & (BEAT_CAPACITY - 1));
+      min = Math.min(min, bpm);
+      max = Math.max(max, bpm);
+    }
+    out.minBpm = min;
+    out.maxBpm = max;
+    // The running sums through the first beat include it, its difference to the beat before
+    // doesn't belong to the window.
+    long bpmSum = beatBpmSums.get(lastSlot) - beatBpmSums.get(firstSlot) + beatBpms.get(firstSlot);
+    out.meanBpm = (float) bpmSum / count;
+    int diffCount = beatDiffCounts.get(lastSlot) - beatDiffCounts.get(firstSlot);
+    long squaredDiffSum =
+        beatSquaredDiffSums.get(lastSlot) - beatSquaredDiffSums.get(firstSlot);
+    out.rmssd = diffCount > 0 ? (float) Math.sqrt((double) squaredDiffSum / diffCount) : 0;
+  }
+
+  /** Binary searches the beats in {@code [from, to)} for the first at or after a time. */
+  private long firstBeatAtOrAfter(long from, long to, long timeNanos) {
+    long low = from;
+    long high = to;
+    while (low < high) {
+      long mid = (low + high) >>> 1;
+      if (beatTimesNanos.get((int) mid & (BEAT_CAPACITY - 1)) < timeNanos) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static long readable(int capacity) {
+    return capacity - capacity / 8;
+  }
+
+  /**
+   * Whether entry {@code first} may have been overwritten, given the count read after reading
+   * it. The writer starts overwriting entry {@code i} once the count reaches {@code i + capacity}.
+   */
+  private static boolean overwritten(long first, long countAfter, int capacity) {
+    return countAfter - first >= capacity;
+  }
+}
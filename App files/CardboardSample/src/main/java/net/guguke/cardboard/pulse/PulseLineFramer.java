@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+/**
+ * Splits the raw bytes of BLE UART notifications into lines and decodes the pulse values in them.
+ *
+ * <p>Notifications carry at most 20 bytes, so a line can be split across several packets and one
+ * packet can hold several lines. Bytes are collected in a fixed line buffer until a line ends and
+ * the number is decoded straight from the bytes, so no Strings are created.
+ *
+ * <p>Lines look like the Arduino's {@code sendDataToSerial} output ({@code B72}, {@code Q833},
+ * {@code S512}). A bare number, optionally still carrying an {@code AT+BLEUARTTX=} prefix, is read
+ * as beats per minute. {@code #} keep-alives and malformed lines are dropped.
+ *
+ * <p>Not thread safe. Feed it from the single thread that receives the notifications.
+ */
+public class PulseLineFramer {
+  private static final int MAX_LINE_LENGTH = 32;
+  private static final byte[] AT_TX_PREFIX = {
+      'A', 'T', '+', 'B', 'L', 'E', 'U', 'A', 'R', 'T', 'T', 'X', '='};
+
+  /** Receives the values decoded by the framer. */
+  public interface Listener {
+    /**
+     * Called for each decoded value. The event is reused once this returns.
+     */
+    void onPulseEvent(PulseEvent event);
+  }
+
+  private final Listener listener;
+  private final byte[] line = new byte[MAX_LINE_LENGTH];
+  private final PulseEvent event = new PulseEvent();
+  private int lineLength;
+  // Set when a line outgrew the buffer. The rest of it is skipped up to the next line break.
+  private boolean overflow;
+
+  public PulseLineFramer(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Consumes the payload of one notification.
+   *
+   * @param data The notification payload.
+   * @param offset Where the payload starts in {@code data}.
+   * @param length The payload length.
+   * @param nowNanos The time the payload was received, stamped on every decoded value.
+   */
+  public void feed(byte[] data, int offset, int length, long nowNanos) {
+    int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      byte b = data[i];
+      if (b == '\n' || b == '\r') {
+        if (!overflow) {
+          decodeLine(nowNanos);
+        }
+        lineLength = 0;
+        overflow = false;
+      } else if (lineLength < MAX_LINE_LENGTH) {
+        line[lineLength++] = b;
+      } else {
+        overflow = true;
+      }
+    }
+  }
+
+  /** Drops any partially received line, e.g. after a reconnect. */
+  public void reset() {
+    lineLength = 0;
+    overflow = false;
+  }
+
+  /**
+   * Drops any partially received line and skips ahead to the next line break, for when bytes
+   * were lost and the next ones may start in the middle of a line.
+   */
+  public void resync() {
+    lineLength = 0;
+    overflow = true;
+  }
+
+  private void decodeLine(long nowNanos) {
+    int pos = 0;
+    if (startsWith(AT_TX_PREFIX)) {
+      pos = AT_TX_PREFIX.length;
+    }
+    if (pos >= lineLength) {
+      return;
+    }
+    int type;
+    byte prefix = line[pos];
+    if (prefix == PulseEvent.TYPE_BPM || prefix == PulseEvent.TYPE_IBI
+        || prefix == PulseEvent.TYPE_SIGNAL) {
+      type = prefix;
+      pos++;
+    } else if (prefix == '-' || (prefix >= '0' && prefix <= '9')) {
+      type = PulseEvent.TYPE_BPM;
+    } else {
+      // Keep-alive or something we don't understand.
+      return;
+    }
+
+    boolean negative = false;
+    if (pos < lineLength && line[pos] == '-') {
+      negative = true;
+      pos++;
+    }
+    if (pos == lineLength) {
+      return;
+    }
+    int value = 0;
+    for (; pos < lineLength; pos++) {
+      int digit = line[pos] - '0';
+      if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+        return;
+      }
+      value = value * 10 + digit;
+    }
+
+    event.set(type, negative ? -value : value, nowNanos);
+    listener.onPulseEvent(event);
+  }
+
+  private boolean startsWith(byte[] prefix) {
+    if (lineLength < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (line[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
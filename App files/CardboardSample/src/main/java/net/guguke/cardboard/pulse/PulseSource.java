@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+/**
+ * Where the pulse sensor's bytes come from: the sensor itself over Bluetooth, or a recorded
+ * session played back.
+ *
+ * <p>Sources deliver the sensor's UART output as raw bytes, exactly as the Bluetooth
+ * notifications carry it, so everything downstream of {@link PulseLineFramer} runs the same
+ * whichever source is in use.
+ */
+public interface PulseSource {
+  /** Receives the bytes and connection changes of a source, on a thread of the source's. */
+  interface Listener {
+    /** The source started delivering data, e.g. a sensor connected. */
+    void onSourceConnected(PulseSource source);
+
+    /** The source stopped delivering data, e.g. the sensor went out of range. */
+    void onSourceDisconnected(PulseSource source);
+
+    /**
+     * Called with each chunk of the sensor's output.
+     *
+     * @param data The bytes, only valid until this returns.
+     * @param offset Where the chunk starts in {@code data}.
+     * @param length The length of the chunk.
+     * @param timeNanos When the chunk was received, on the {@link System#nanoTime} clock.
+     */
+    void onSourceData(PulseSource source, byte[] data, int offset, int length, long timeNanos);
+
+    /**
+     * Some of the data was lost on the way, e.g. because it arrived faster than it was handled,
+     * so the next chunk may not continue the line the previous one left off.
+     */
+    void onSourceDataLost(PulseSource source);
+  }
+
+  /** Starts delivering data to the listener. */
+  void start(Listener listener);
+
+  /** Stops delivering data. The source can be started again. */
+  void stop();
+
+  /** Describes the source for the log, e.g. the connected device. */
+  String getDescription();
+}
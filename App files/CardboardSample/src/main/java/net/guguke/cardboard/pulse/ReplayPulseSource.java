@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a session recorded by {@link SessionRecorder} back as if the sensor were sending it.
+ *
+ * <p>Each recorded value is turned back into the line the sketch would have sent
+ * ({@code S512\n}) and delivered on a playback thread, one line per chunk. Playback can run in
+ * real time, sped up, or as fast as the listener keeps up, which makes it handy for soak tests
+ * without a sensor. Head rotations in the session are skipped; they don't come from the sensor.
+ *
+ * <p>When paced, each line is stamped with the time it is actually delivered, so the beat stays
+ * in sync with what is drawn. When unpaced, lines are stamped with their recorded times, shifted
+ * to the start of playback, so the analytics see the session's own timeline.
+ */
+public class ReplayPulseSource implements PulseSource {
+  private static final String TAG = "ReplayPulseSource";
+  /** Pass as the speed to replay as fast as possible. */
+  public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+  // "S" or "B" or "Q", an int and a line break.
+  private static final int MAX_LINE_BYTES = 1 + 11 + 1;
+  // Don't sleep for less, it costs more than it helps.
+  private static final long MIN_PARK_NANOS = 100000L;
+
+  private final File file;
+  private final double speed;
+  private final boolean loop;
+  private final byte[] line = new byte[MAX_LINE_BYTES];
+  private final SessionReader.Record record = new SessionReader.Record();
+
+  private Thread player;
+  private volatile boolean running;
+  private volatile long linesDelivered;
+
+  /**
+   * @param file The session to play.
+   * @param speed How many times faster than real time to play, or {@link #MAX_SPEED}.
+   * @param loop Whether to start over at the end of the session rather than disconnect.
+   */
+  public ReplayPulseSource(File file, double speed, boolean loop) {
+    if (!(speed > 0)) {
+      throw new IllegalArgumentException("Speed must be positive: " + speed);
+    }
+    this.file = file;
+    this.speed = speed;
+    this.loop = loop;
+  }
+
+  @Override
+  public synchronized void start(final Listener listener) {
+    stop();
+    running = true;
+    player = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        play(listener);
+      }
+    }, "ReplayPulseSource");
+    player.setDaemon(true);
+    player.start();
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (player == null) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(player);
+    boolean interrupted = false;
+    while (player.isAlive()) {
+      try {
+        player.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    player = null;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Replay of " + file.getName() + " at " + (speed == MAX_SPEED ? "max" : speed + "x");
+  }
+
+  /** How many lines have been delivered since the source was created. */
+  public long getLinesDelivered() {
+    return linesDelivered;
+  }
+
+  private void play(Listener listener) {
+    boolean connected = false;
+    try {
+      // Times are kept relative to where playback started, across loops.
+      long playStart = System.nanoTime();
+      long sessionOffset = 0;
+      do {
+        SessionReader reader = new SessionReader(file);
+        if (!connected) {
+          listener.onSourceConnected(this);
+          connected = true;
+        }
+        long first = Long.MIN_VALUE;
+        long last = 0;
+        while (running && reader.next(record)) {
+          if (record.type == SessionFormat.TYPE_HEAD_ROTATION) {
+            continue;
+          }
+          if (first == Long.MIN_VALUE) {
+            first = record.timeNanos;
+          }
+          last = record.timeNanos - first;
+          long sessionNanos = sessionOffset + last;
+          long timeNanos;
+          if (speed == MAX_SPEED) {
+            timeNanos = playStart + sessionNanos;
+          } else {
+            timeNanos = playStart + (long) (sessionNanos / speed);
+            waitUntil(timeNanos);
+            if (!running) {
+              break;
+            }
+          }
+          int length = encodeLine(record.type, record.value);
+          listener.onSourceData(this, line, 0, length, timeNanos);
+          linesDelivered++;
+        }
+        // Leave a sample's gap between the end of the session and its next loop.
+        sessionOffset += last + BeatDetector.SAMPLE_INTERVAL_MS * 1000000L;
+      } while (running && loop);
+    } catch (IOException e) {
+      Log.w(TAG, "Could not replay " + file, e);
+    } finally {
+      if (connected) {
+        listener.onSourceDisconnected(this);
+      }
+    }
+  }
+
+  private void waitUntil(long timeNanos) {
+    long wait;
+    while (running && (wait = timeNanos - System.nanoTime()) > MIN_PARK_NANOS) {
+      LockSupport.parkNanos(this, wait);
+    }
+  }
+
+  // Writes the value as the sketch prints it, without going through a String.
+  private int encodeLine(int type, int value) {
+    int pos = 0;
+    line[pos++] = (byte) type;
+    long magnitude = value;
+    if (magnitude < 0) {
+      line[pos++] = '-';
+      magnitude = -magnitude;
+    }
+    int digitsStart = pos;
+    do {
+      line[pos++] = (byte) ('0' + magnitude % 10);
+      magnitude /= 10;
+    } while (magnitude != 0);
+    for (int i = digitsStart, j = pos - 1; i < j; i++, j--) {
+      byte b = line[i];
+      line[i] = line[j];
+      line[j] = b;
+    }
+    line[pos++] = '\n';
+    return pos;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+/**
+ * The transformation matrices of the scene, split into what changes per frame and per eye.
+ *
+ * <p>Since {@code view = eyeView * camera}, the products {@code camera * model} and
+ * {@code camera * light} don't depend on the eye. They are computed once per frame (or once at
+ * all, for the static floor), leaving only the eye transform and projection to apply per eye.
+ *
+ * <p>All matrices live in one preallocated arena. Pass {@link #getArena()} together with one of
+ * the offsets below to {@code glUniformMatrix4fv} or {@code glUniform3fv}. The per-eye entries
+ * hold the left eye at the offset and the right eye right after it, so both eyes can be uploaded
+ * to a uniform array in one call when drawing in a single pass.
+ *
+ * <p>The products are computed by {@link MatrixMath}, so the class also works in JVM tests.
+ */
+public class SceneMatrices {
+  /** Model matrix of the heart. */
+  public static final int HEART_MODEL = 0;
+  /** Model matrix of the floor. */
+  public static final int FLOOR_MODEL = 16;
+  /** ModelView matrices of the heart, one per eye. */
+  public static final int HEART_MODEL_VIEW = 32;
+  /** ModelViewProjection matrices of the heart, one per eye. */
+  public static final int HEART_MVP = 64;
+  /** ModelView matrices of the floor, one per eye. */
+  public static final int FLOOR_MODEL_VIEW = 96;
+  /** ModelViewProjection matrices of the floor, one per eye. */
+  public static final int FLOOR_MVP = 128;
+  /** Light positions in eye space, one vec4 per eye. */
+  public static final int LIGHT_POS_IN_EYE_SPACE = 160;
+  /** Model matrix of the other heart last set by {@link #setParticipantHeart}. */
+  public static final int PARTICIPANT_MODEL = 168;
+  /** ModelView matrices of that heart, one per eye. */
+  public static final int PARTICIPANT_MODEL_VIEW = 184;
+  /** ModelViewProjection matrices of that heart, one per eye. */
+  public static final int PARTICIPANT_MVP = 216;
+
+  /** The eye drawn first, and the only one used when drawing one eye at a time. */
+  public static final int LEFT_EYE = 0;
+  public static final int RIGHT_EYE = 1;
+
+  private static final int MATRIX_SIZE = 16;
+  private static final int VECTOR_SIZE = 4;
+
+  // Eye independent products, private to the cache.
+  private static final int CAMERA = 248;
+  private static final int CAMERA_HEART = 264;
+  private static final int CAMERA_FLOOR = 280;
+  private static final int CAMERA_LIGHT = 296;
+  private static final int CAMERA_PARTICIPANT = 300;
+  // The latest eye transforms and projections, one per eye, for hearts set after the eyes.
+  private static final int EYE_VIEW = 316;
+  private static final int PERSPECTIVE = 348;
+  private static final int ARENA_SIZE = 380;
+
+  private final float[] arena = new float[ARENA_SIZE];
+
+  public float[] getArena() {
+    return arena;
+  }
+
+  /**
+   * Sets the camera and the world space light position. Both stay fixed for the scene.
+   */
+  public void setCamera(float[] camera, float[] lightPosInWorldSpace) {
+    System.arraycopy(camera, 0, arena, CAMERA, 16);
+    MatrixMath.multiplyMV(arena, CAMERA_LIGHT, arena, CAMERA, lightPosInWorldSpace, 0);
+    updateFloor();
+  }
+
+  /**
+   * Sets the floor's model matrix. Only needed when the floor moves.
+   */
+  public void setFloorModel(float[] model) {
+    System.arraycopy(model, 0, arena, FLOOR_MODEL, 16);
+    updateFloor();
+  }
+
+  /**
+   * Sets the heart's model matrix for this frame.
+   */
+  public void setHeartModel(float[] model) {
+    System.arraycopy(model, 0, arena, HEART_MODEL, 16);
+    MatrixMath.multiplyMM(arena, CAMERA_HEART, arena, CAMERA, arena, HEART_MODEL);
+  }
+
+  /**
+   * Computes the eye dependent matrices and light position.
+   *
+   * @param eye {@link #LEFT_EYE} or {@link #RIGHT_EYE}.
+   * @param eyeView The eye's view transformation, applied on top of the camera.
+   * @param perspective The eye's projection.
+   */
+  public void setEye(int eye, float[] eyeView, float[] perspective) {
+    int matrix = eye * MATRIX_SIZE;
+    System.arraycopy(eyeView, 0, arena, EYE_VIEW + matrix, MATRIX_SIZE);
+    System.arraycopy(perspective, 0, arena, PERSPECTIVE + matrix, MATRIX_SIZE);
+    MatrixMath.multiplyMV(arena, LIGHT_POS_IN_EYE_SPACE + eye * VECTOR_SIZE, eyeView, 0,
+        arena, CAMERA_LIGHT);
+    MatrixMath.multiplyMM(arena, HEART_MODEL_VIEW + matrix, eyeView, 0, arena, CAMERA_HEART);
+    MatrixMath.multiplyMM(arena, HEART_MVP + matrix, perspective, 0,
+        arena, HEART_MODEL_VIEW + matrix);
+    MatrixMath.multiplyMM(arena, FLOOR_MODEL_VIEW + matrix, eyeView, 0, arena, CAMERA_FLOOR);
+    MatrixMath.multiplyMM(arena, FLOOR_MVP + matrix, perspective, 0,
+        arena, FLOOR_MODEL_VIEW + matrix);
+  }
+
+  /**
+   * Computes the matrices of another participant's heart for the eyes last set, overwriting
+   * those of the previous participant.
+   *
+   * @param model Holds the heart's model matrix.
+   * @param offset Where the model matrix starts in {@code model}.
+   * @param eyeCount 1 for the left eye only, 2 for both.
+   */
+  public void setParticipantHeart(float[] model, int offset, int eyeCount) {
+    System.arraycopy(model, offset, arena, PARTICIPANT_MODEL, MATRIX_SIZE);
+    MatrixMath.multiplyMM(arena, CAMERA_PARTICIPANT, arena, CAMERA, arena, PARTICIPANT_MODEL);
+    for (int eye = 0; eye < eyeCount; eye++) {
+      int matrix = eye * MATRIX_SIZE;
+      MatrixMath.multiplyMM(arena, PARTICIPANT_MODEL_VIEW + matrix, arena, EYE_VIEW + matrix,
+          arena, CAMERA_PARTICIPANT);
+      MatrixMath.multiplyMM(arena, PARTICIPANT_MVP + matrix, arena, PERSPECTIVE + matrix,
+          arena, PARTICIPANT_MODEL_VIEW + matrix);
+    }
+  }
+
+  private void updateFloor() {
+    MatrixMath.multiplyMM(arena, CAMERA_FLOOR, arena, CAMERA, arena, FLOOR_MODEL);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+/**
+ * A linked program built from the lit scene shaders, along with the locations of its attributes
+ * and uniforms.
+ */
+public class SceneProgram {
+  public final int program;
+
+  public final int positionParam;
+  public final int normalParam;
+  public final int colorParam;
+
+  public final int modelParam;
+  public final int modelViewParam;
+  public final int modelViewProjectionParam;
+  public final int lightPosParam;
+  /**
+   * The eye to draw, or -1 to draw both as instances. Only in the single-pass shaders, else -1.
+   */
+  public final int eyeParam;
+
+  /**
+   * Looks up the parameters of a linked program.
+   *
+   * @param gl The GL the program was linked in.
+   * @param program The program, e.g. from {@link ShaderCache#getProgram}.
+   */
+  public SceneProgram(Gl gl, int program) {
+    this.program = program;
+
+    positionParam = gl.glGetAttribLocation(program, "a_Position");
+    normalParam = gl.glGetAttribLocation(program, "a_Normal");
+    colorParam = gl.glGetAttribLocation(program, "a_Color");
+
+    modelParam = gl.glGetUniformLocation(program, "u_Model");
+    modelViewParam = gl.glGetUniformLocation(program, "u_MVMatrix");
+    modelViewProjectionParam = gl.glGetUniformLocation(program, "u_MVP");
+    lightPosParam = gl.glGetUniformLocation(program, "u_LightPos");
+    eyeParam = gl.glGetUniformLocation(program, "u_Eye");
+  }
+
+  /** Whether this program takes the matrices of both eyes, to draw them in a single pass. */
+  public boolean isSinglePass() {
+    return eyeParam >= 0;
+  }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import android.opengl.GLES20;
+
+/**
+ * Draws the scene, the heart, the other participants' hearts and the floor, with matrices from
+ * {@link SceneMatrices}. Makes its GL calls through a {@link Gl}, so the commands issued for a
+ * frame can be checked without a GPU.
+ *
+ * <p>The eyes are drawn in one of three ways:
+ * <ul>
+ *   <li>{@link #STEREO_TWO_PASS}: the whole scene once per eye, with the per-eye shaders and the
+ *   caller setting each eye's viewport. See {@link #drawEye}.
+ *   <li>{@link #STEREO_INSTANCED}: each mesh drawn once with two instances into a viewport
+ *   spanning both eyes. A clip plane down the middle keeps each instance in its own half, so
+ *   the fragment shaders don't have to discard, which would disable early depth testing. Needs
+ *   {@code GL_EXT_clip_cull_distance}.
+ *   <li>{@link #STEREO_VIEWPORTS}: the fallback without clip distances. Each mesh is drawn once
+ *   per eye into the eye's own viewport, but the programs are bound and the matrices of both eyes
+ *   uploaded only once per frame.
+ * </ul>
+ * The last two use the single-pass shaders and {@link #drawBothEyes}.
+ */
+public class SceneRenderer {
+  public static final int STEREO_TWO_PASS = 0;
+  public static final int STEREO_INSTANCED = 1;
+  public static final int STEREO_VIEWPORTS = 2;
+
+  /** {@code GL_CLIP_DISTANCE0_EXT} from {@code GL_EXT_clip_cull_distance}. */
+  public static final int GL_CLIP_DISTANCE0_EXT = 0x3000;
+  /** Name of the extension {@link #STEREO_INSTANCED} needs. */
+  public static final String CLIP_DISTANCE_EXTENSION = "GL_EXT_clip_cull_distance";
+
+  private static final int EYE_COUNT = 2;
+
+  private final Gl gl;
+  private final SceneMatrices sceneMatrices;
+  private final GlErrorChecker glErrorChecker;
+
+  private SceneProgram heartProgram;
+  private SceneProgram floorProgram;
+  private int stereoMode;
+
+  private InterleavedMesh heartMesh;
+  private InterleavedMesh floorMesh;
+
+  // Set when the heart's model matrix changed since it was last uploaded to the heart program.
+  private boolean heartModelDirty;
+
+  // Blended cardinal/dark red for the current frame. Fed to the shader as a constant vertex
+  // attribute so the per-vertex color array never has to be rebuilt.
+  private final float[] heartColor = new float[4];
+  // Model matrices and colors of the other participants' hearts drawn this frame.
+  private final float[] participantModels;
+  private final float[] participantColors;
+  private int participantCount;
+
+  // The eye viewports of the current frame, for STEREO_VIEWPORTS.
+  private final int[] eyeX = new int[EYE_COUNT];
+  private int eyeY;
+  private int eyeWidth;
+  private int eyeHeight;
+
+  /**
+   * @param gl The GL to draw with.
+   * @param sceneMatrices The matrices to draw with, set up for the frame and eyes before drawing.
+   * @param glErrorChecker Checks for errors after each mesh.
+   * @param maxParticipants Most other hearts that are drawn besides the wearer's.
+   */
+  public SceneRenderer(Gl gl, SceneMatrices sceneMatrices, GlErrorChecker glErrorChecker,
+      int maxParticipants) {
+    this.gl = gl;
+    this.sceneMatrices = sceneMatrices;
+    this.glErrorChecker = glErrorChecker;
+    participantModels = new float[16 * maxParticipants];
+    participantColors = new float[4 * maxParticipants];
+  }
+
+  /**
+   * Takes the programs of a newly created surface and sets up their state that never changes.
+   * The floor's model matrix must already be set in the scene matrices.
+   *
+   * @param stereoMode One of the {@code STEREO_*} constants. The programs must be built from the
+   *     single-pass shaders unless it is {@link #STEREO_TWO_PASS}.
+   */
+  public void setUp(SceneProgram heartProgram, SceneProgram floorProgram, int stereoMode) {
+    this.heartProgram = heartProgram;
+    this.floorProgram = floorProgram;
+    this.stereoMode = stereoMode;
+
+    gl.glUseProgram(heartProgram.program);
+    glErrorChecker.checkSetup("Heart program");
+    gl.glEnableVertexAttribArray(heartProgram.positionParam);
+    gl.glEnableVertexAttribArray(heartProgram.normalParam);
+    if (stereoMode == STEREO_INSTANCED) {
+      gl.glUniform1i(heartProgram.eyeParam, -1);
+    }
+    glErrorChecker.checkSetup("Heart program params");
+
+    gl.glUseProgram(floorProgram.program);
+    glErrorChecker.checkSetup("Floor program");
+    gl.glEnableVertexAttribArray(floorProgram.positionParam);
+    gl.glEnableVertexAttribArray(floorProgram.normalParam);
+    gl.glEnableVertexAttribArray(floorProgram.colorParam);
+    if (stereoMode == STEREO_INSTANCED) {
+      gl.glUniform1i(floorProgram.eyeParam, -1);
+    }
+    // The floor doesn't move, so its model matrix only has to be set once per program.
+    gl.glUniformMatrix4fv(floorProgram.modelParam, 1, false,
+        sceneMatrices.getArena(), SceneMatrices.FLOOR_MODEL);
+    glErrorChecker.checkSetup("Floor program params");
+
+    if (stereoMode == STEREO_INSTANCED) {
+      gl.glEnable(GL_CLIP_DISTANCE0_EXT);
+    }
+    // The programs are new, so nothing uploaded to the old ones counts.
+    heartModelDirty = true;
+  }
+
+  public int getStereoMode() {
+    return stereoMode;
+  }
+
+  /** Sets the heart's level of detail to draw. */
+  public void setHeartMesh(InterleavedMesh heartMesh) {
+    this.heartMesh = heartMesh;
+  }
+
+  public void setFloorMesh(InterleavedMesh floorMesh) {
+    this.floorMesh = floorMesh;
+  }
+
+  /** Must be called when the heart's model matrix in the scene matrices changed. */
+  public void onHeartModelChanged() {
+    heartModelDirty = true;
+  }
+
+  /** The wearer's heart color, RGBA, to be filled in for each frame. */
+  public float[] getHeartColor() {
+    return heartColor;
+  }
+
+  /** Model matrices of the other hearts, 16 floats each, to be filled in for each frame. */
+  public float[] getParticipantModels() {
+    return participantModels;
+  }
+
+  /** Colors of the other hearts, RGBA, to be filled in for each frame. */
+  public float[] getParticipantColors() {
+    return participantColors;
+  }
+
+  /** Sets how many of the other hearts to draw this frame. */
+  public void setParticipantCount(int participantCount) {
+    this.participantCount = participantCount;
+  }
+
+  /**
+   * Draws the scene for the left eye's matrices into the current viewport, one eye at a time.
+   */
+  public void drawEye() {
+    gl.glEnable(GLES20.GL_DEPTH_TEST);
+    gl.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+    glErrorChecker.check("colorParam");
+
+    drawHeart(1);
+    drawFloor(1);
+  }
+
+  /**
+   * Draws the scene for both eyes, which sit side by side with the same size, with the
+   * single-pass programs.
+   *
+   * @param leftX Window x coordinate of the left eye's viewport.
+   * @param rightX Window x coordinate of the right eye's viewport.
+   * @param y Window y coordinate of both viewports.
+   * @param width Width of each eye's viewport.
+   * @param height Height of each eye's viewport.
+   */
+  public void drawBothEyes(int leftX, int rightX, int y, int width, int height) {
+    if (stereoMode == STEREO_INSTANCED) {
+      // Together the eyes make one viewport, and the vertex shader moves each instance into its
+      // half.
+      gl.glViewport(leftX, y, rightX + width - leftX, height);
+    }
+    gl.glEnable(GLES20.GL_DEPTH_TEST);
+    gl.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+    glErrorChecker.check("colorParam");
+
+    eyeX[SceneMatrices.LEFT_EYE] = leftX;
+    eyeX[SceneMatrices.RIGHT_EYE] = rightX;
+    eyeY = y;
+    eyeWidth = width;
+    eyeHeight = height;
+    drawHeart(EYE_COUNT);
+    drawFloor(EYE_COUNT);
+  }
+
+  /**
+   * Draws the wearer's heart, followed by the other participants' hearts.
+   *
+   * @param eyeCount 1 to draw the left eye's matrices, 2 to draw both eyes in one pass.
+   */
+  private void drawHeart(int eyeCount) {
+    gl.glUseProgram(heartProgram.program);
+
+    gl.glClearDepthf(1.0f);
+
+    float[] matrices = sceneMatrices.getArena();
+    setLightPos(heartProgram, eyeCount);
+
+    // Set the Model in the shader, used to calculate lighting. Uniforms keep their value in the
+    // program, so this only has to happen for the first eye of a frame, unless other hearts
+    // were drawn with it since.
+    if (heartModelDirty || participantCount > 0) {
+      gl.glUniformMatrix4fv(heartProgram.modelParam, 1, false,
+          matrices, SceneMatrices.HEART_MODEL);
+      heartModelDirty = false;
+    }
+
+    // Set the ModelView in the shader, used to calculate lighting
+    gl.glUniformMatrix4fv(heartProgram.modelViewParam, eyeCount, false,
+        matrices, SceneMatrices.HEART_MODEL_VIEW);
+
+    // Set the ModelViewProjection matrix in the shader.
+    gl.glUniformMatrix4fv(heartProgram.modelViewProjectionParam, eyeCount, false,
+        matrices, SceneMatrices.HEART_MVP);
+
+    // Set the position of the cube and its normals, again for shading
+    heartMesh.bind();
+    heartMesh.setAttribute(heartProgram.positionParam, 0);
+    heartMesh.setAttribute(heartProgram.normalParam, 1);
+
+    // Every heart vertex shares the same color, so feed it as a constant attribute instead of
+    // a per-vertex array. The floor shares attribute locations and re-enables its array.
+    gl.glDisableVertexAttribArray(heartProgram.colorParam);
+    gl.glVertexAttrib4fv(heartProgram.colorParam, heartColor, 0);
+
+    drawMesh(heartProgram, heartMesh, eyeCount);
+
+    // The other participants' hearts share the mesh, attributes and lighting.
+    for (int i = 0; i < participantCount; i++) {
+      sceneMatrices.setParticipantHeart(participantModels, i * 16, eyeCount);
+      gl.glUniformMatrix4fv(heartProgram.modelParam, 1, false,
+          matrices, SceneMatrices.PARTICIPANT_MODEL);
+      gl.glUniformMatrix4fv(heartProgram.modelViewParam, eyeCount, false,
+          matrices, SceneMatrices.PARTICIPANT_MODEL_VIEW);
+      gl.glUniformMatrix4fv(heartProgram.modelViewProjectionParam, eyeCount, false,
+          matrices, SceneMatrices.PARTICIPANT_MVP);
+      gl.glVertexAttrib4fv(heartProgram.colorParam, participantColors, i * 4);
+      drawMesh(heartProgram, heartMesh, eyeCount);
+    }
+    glErrorChecker.check("Drawing heart");
+  }
+
+  /**
+   * Draw the floor.
+   *
+   * <p>This feeds in data for the floor into the shader. Note that this doesn't feed in data about
+   * position of the light, so if we rewrite our code to draw the floor first, the lighting might
+   * look strange.
+   *
+   * @param eyeCount 1 to draw the left eye's matrices, 2 to draw both eyes in one pass.
+   */
+  private void drawFloor(int eyeCount) {
+    gl.glUseProgram(floorProgram.program);
+
+    // Set ModelView, MVP, position, normals, and color. The floor's Model matrix never changes
+    // and was set in setUp.
+    float[] matrices = sceneMatrices.getArena();
+    gl.glEnableVertexAttribArray(floorProgram.colorParam);
+    setLightPos(floorProgram, eyeCount);
+    gl.glUniformMatrix4fv(floorProgram.modelViewParam, eyeCount, false,
+        matrices, SceneMatrices.FLOOR_MODEL_VIEW);
+    gl.glUniformMatrix4fv(floorProgram.modelViewProjectionParam, eyeCount, false,
+        matrices, SceneMatrices.FLOOR_MVP);
+    floorMesh.bind();
+    floorMesh.setAttribute(floorProgram.positionParam, 0);
+    floorMesh.setAttribute(floorProgram.normalParam, 1);
+    floorMesh.setAttribute(floorProgram.colorParam, 2);
+
+    drawMesh(floorProgram, floorMesh, eyeCount);
+
+    glErrorChecker.check("drawing floor");
+  }
+
+  /**
+   * Draws a bound mesh for the left eye, or for both eyes as the stereo mode says. The program
+   * must be in use with the matrices uploaded.
+   */
+  private void drawMesh(SceneProgram program, InterleavedMesh mesh, int eyeCount) {
+    if (eyeCount == 1 || stereoMode == STEREO_INSTANCED) {
+      mesh.draw(eyeCount);
+      return;
+    }
+    for (int eye = 0; eye < eyeCount; eye++) {
+      gl.glViewport(eyeX[eye], eyeY, eyeWidth, eyeHeight);
+      gl.glUniform1i(program.eyeParam, eye);
+      mesh.draw();
+    }
+  }
+
+  /**
+   * Sets the eye space light position, one per eye for single-pass programs. The program must
+   * be in use.
+   */
+  private void setLightPos(SceneProgram program, int eyeCount) {
+    float[] matrices = sceneMatrices.getArena();
+    if (program.isSinglePass()) {
+      // The single-pass shaders take one vec4 per eye, laid out just like the arena.
+      gl.glUniform4fv(program.lightPosParam, eyeCount,
+          matrices, SceneMatrices.LIGHT_POS_IN_EYE_SPACE);
+    } else {
+      gl.glUniform3fv(program.lightPosParam, 1, matrices, SceneMatrices.LIGHT_POS_IN_EYE_SPACE);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary format of recorded sessions, written by {@link SessionRecorder} and read by
+ * {@link SessionReader}.
+ *
+ * <p>A session is a header followed by records, with no index or footer, so a file cut short by
+ * a crash is still readable up to its last whole record. The header is little-endian:
+ *
+ * <pre>
+ *   bytes  0..3   magic "HSES"
+ *   bytes  4..7   format version
+ *   bytes  8..15  wall clock time of the start, milliseconds since the epoch
+ *   bytes 16..23  System.nanoTime() of the start, which record times count from
+ * </pre>
+ *
+ * <p>Each record is a type byte, the time since the previous record and a payload, with every
+ * number a zigzag varint: small magnitudes, positive or negative, take a byte or two. Times are
+ * whole microseconds since the start, stored as the difference to the previous record's. The
+ * payload is:
+ *
+ * <pre>
+ *   'S'  the raw reading, as the difference to the previous reading
+ *   'B'  beats per minute
+ *   'Q'  inter-beat interval in milliseconds
+ *   'H'  head rotation quaternion x, y, z, w, each scaled by 32767 to a short, as the difference
+ *        to the previous rotation's
+ * </pre>
+ *
+ * <p>At 500Hz a sample takes about 4 bytes, some 120 kilobytes a minute.
+ */
+public final class SessionFormat {
+  public static final int MAGIC = 'H' | 'S' << 8 | 'E' << 16 | 'S' << 24;
+  public static final int VERSION = 1;
+  public static final int HEADER_BYTES = 24;
+
+  public static final int TYPE_SIGNAL = PulseEvent.TYPE_SIGNAL;
+  public static final int TYPE_BPM = PulseEvent.TYPE_BPM;
+  public static final int TYPE_IBI = PulseEvent.TYPE_IBI;
+  public static final int TYPE_HEAD_ROTATION = 'H';
+
+  /** The most bytes a record can take: a type byte and up to five varints of a long each. */
+  public static final int MAX_RECORD_BYTES = 1 + 5 * 10;
+
+  static final float QUATERNION_SCALE = 32767f;
+  static final long NANOS_PER_MICRO = 1000L;
+
+  private SessionFormat() {}
+
+  static void putVarint(ByteBuffer out, long value) {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      out.put((byte) ((zigzag & 0x7F) | 0x80));
+      zigzag >>>= 7;
+    }
+    out.put((byte) zigzag);
+  }
+
+  /**
+   * @throws java.nio.BufferUnderflowException if the varint runs past the end of the buffer.
+   */
+  static long getVarint(ByteBuffer in) {
+    long zigzag = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.get();
+      zigzag |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0 && shift < 64);
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  static int quantize(float component) {
+    return Math.round(Math.max(-1f, Math.min(1f, component)) * QUATERNION_SCALE);
+  }
+}
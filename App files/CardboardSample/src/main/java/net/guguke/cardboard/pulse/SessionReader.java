@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads back a session written by {@link SessionRecorder}, one record at a time.
+ *
+ * <p>The file is memory-mapped rather than read through a stream, and records are decoded into
+ * a reused {@link Record}, so reading doesn't allocate per record.
+ */
+public class SessionReader {
+  /** One decoded record. Reused by {@link #next}. */
+  public static final class Record {
+    /** One of the {@code TYPE_} constants of {@link SessionFormat}. */
+    public int type;
+    /** The time of the record, on the recording's {@link System#nanoTime} clock. */
+    public long timeNanos;
+    /** The reading, beats per minute or interval; unused for head rotations. */
+    public int value;
+    /** The head rotation as x, y, z, w; only set for head rotations. */
+    public final float[] quaternion = new float[4];
+  }
+
+  private final MappedByteBuffer data;
+  private final long startWallMillis;
+  private final long startNanos;
+
+  private long lastMicros;
+  private int lastSignal;
+  private final int[] lastRotation = new int[4];
+
+  /**
+   * @throws IOException if the file can't be read or isn't a session this version understands.
+   */
+  public SessionReader(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      // The mapping stays valid after the file is closed.
+      data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+    } finally {
+      raf.close();
+    }
+    data.order(ByteOrder.LITTLE_ENDIAN);
+    if (data.remaining() < SessionFormat.HEADER_BYTES || data.getInt() != SessionFormat.MAGIC) {
+      throw new IOException("Not a session file");
+    }
+    int version = data.getInt();
+    if (version != SessionFormat.VERSION) {
+      throw new IOException("Unsupported session version " + version);
+    }
+    startWallMillis = data.getLong();
+    startNanos = data.getLong();
+  }
+
+  /** Wall clock time of the start of the session, milliseconds since the epoch. */
+  public long getStartWallMillis() {
+    return startWallMillis;
+  }
+
+  /** The recording's {@link System#nanoTime} at the start of the session. */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  /**
+   * Decodes the next record.
+   *
+   * @return false at the end of the session. A record cut short at the end of the file, as left
+   *     by a crash, ends the session too.
+   * @throws IOException if the file holds a record type this version doesn't know.
+   */
+  public boolean next(Record out) throws IOException {
+    if (!data.hasRemaining()) {
+      return false;
+    }
+    int start = data.position();
+    try {
+      int type = data.get();
+      long micros = lastMicros + SessionFormat.getVarint(data);
+      switch (type) {
+        case SessionFormat.TYPE_SIGNAL:
+          out.value = lastSignal + (int) SessionFormat.getVarint(data);
+          lastSignal = out.value;
+          break;
+        case SessionFormat.TYPE_BPM:
+        case SessionFormat.TYPE_IBI:
+          out.value = (int) SessionFormat.getVarint(data);
+          break;
+        case SessionFormat.TYPE_HEAD_ROTATION:
+          for (int i = 0; i < 4; i++) {
+            lastRotation[i] += (int) SessionFormat.getVarint(data);
+            out.quaternion[i] = lastRotation[i] / SessionFormat.QUATERNION_SCALE;
+          }
+          break;
+        default:
+          throw new IOException("Unknown record type " + type + " at offset " + start);
+      }
+      out.type = type;
+      out.timeNanos = startNanos + micros * SessionFormat.NANOS_PER_MICRO;
+      lastMicros = micros;
+      return true;
+    } catch (BufferUnderflowException e) {
+      data.position(data.limit());
+      return false;
+    }
+  }
+}
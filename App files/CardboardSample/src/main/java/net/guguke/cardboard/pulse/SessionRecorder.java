@@ -0,0 +1,265 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the pulse sensor stream and the head rotation to a session file, see
+ * {@link SessionFormat}.
+ *
+ * <p>Recording only encodes into a buffer in memory, under a lock held for the few bytes of one
+ * record. A writer thread swaps the buffer for a spare one whenever it fills up, or every half
+ * second, and appends the full one to the file through a {@link FileChannel}. Neither the
+ * Bluetooth thread nor the GL thread ever waits on the disk. If the disk falls so far behind that
+ * both buffers are full, records are dropped and counted rather than blocking.
+ */
+public class SessionRecorder implements PulseLineFramer.Listener {
+  public static final int BUFFER_BYTES = 64 * 1024;
+  private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+  private final PulseLineFramer.Listener listener;
+  private final FileOutputStream out;
+  private final FileChannel channel;
+  private final long startNanos;
+  private final Thread writer;
+  private volatile boolean running = true;
+
+  // Guarded by this: the buffer being filled, the one being written and the encoder's state.
+  private ByteBuffer active = ByteBuffer.allocate(BUFFER_BYTES);
+  private ByteBuffer spare = ByteBuffer.allocate(BUFFER_BYTES);
+  private boolean spareFull;
+  private long lastMicros;
+  private int lastSignal;
+  private final int[] lastRotation = new int[4];
+  private long droppedRecords;
+
+  private volatile long bytesWritten;
+  private volatile IOException failure;
+
+  /**
+   * Creates the session file, overwriting any file of the same name, and starts the writer.
+   *
+   * @param listener Receives every event after it has been recorded.
+   * @param file The session file.
+   * @param startNanos The {@link System#nanoTime} record times count from.
+   */
+  public SessionRecorder(PulseLineFramer.Listener listener, File file, long startNanos)
+      throws IOException {
+    this.listener = listener;
+    this.startNanos = startNanos;
+    out = new FileOutputStream(file);
+    channel = out.getChannel();
+    ByteBuffer header = ByteBuffer.allocate(SessionFormat.HEADER_BYTES);
+    header.order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(SessionFormat.MAGIC);
+    header.putInt(SessionFormat.VERSION);
+    header.putLong(System.currentTimeMillis());
+    header.putLong(startNanos);
+    header.flip();
+    try {
+      writeFully(header);
+    } catch (IOException e) {
+      out.close();
+      throw e;
+    }
+
+    writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        write();
+      }
+    }, "SessionRecorder");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void onPulseEvent(PulseEvent event) {
+    switch (event.type) {
+      case PulseEvent.TYPE_SIGNAL:
+        recordSignal(event.value, event.timeNanos);
+        break;
+      case PulseEvent.TYPE_BPM:
+      case PulseEvent.TYPE_IBI:
+        recordValue(event.type, event.value, event.timeNanos);
+        break;
+      default:
+        break;
+    }
+    listener.onPulseEvent(event);
+  }
+
+  /** Records a raw sensor reading. */
+  public synchronized void recordSignal(int value, long timeNanos) {
+    if (startRecord(SessionFormat.TYPE_SIGNAL, timeNanos)) {
+      SessionFormat.putVarint(active, value - lastSignal);
+      lastSignal = value;
+      endRecord();
+    }
+  }
+
+  /** Records a beats per minute or inter-beat interval value. */
+  public synchronized void recordValue(int type, int value, long timeNanos) {
+    if (startRecord(type, timeNanos)) {
+      SessionFormat.putVarint(active, value);
+      endRecord();
+    }
+  }
+
+  /**
+   * Records the head rotation.
+   *
+   * @param quaternion The rotation as x, y, z, w, as returned by
+   *     {@code HeadTransform.getQuaternion}.
+   */
+  public synchronized void recordHeadRotation(float[] quaternion, long timeNanos) {
+    if (startRecord(SessionFormat.TYPE_HEAD_ROTATION, timeNanos)) {
+      for (int i = 0; i < 4; i++) {
+        int component = SessionFormat.quantize(quaternion[i]);
+        SessionFormat.putVarint(active, component - lastRotation[i]);
+        lastRotation[i] = component;
+      }
+      endRecord();
+    }
+  }
+
+  /**
+   * Writes what is left and closes the file. Nothing can be recorded afterwards.
+   *
+   * @throws IOException if writing failed at any point of the session.
+   */
+  public void close() throws IOException {
+    running = false;
+    LockSupport.unpark(writer);
+    boolean interrupted = false;
+    while (writer.isAlive()) {
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** How many records were dropped because the disk fell behind. */
+  public synchronized long getDroppedRecords() {
+    return droppedRecords;
+  }
+
+  /** How many bytes have reached the file, including the header. */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  // Makes room for a record and writes its type and time. Returns false if it had to be dropped.
+  private boolean startRecord(int type, long timeNanos) {
+    if (!running || active.remaining() < SessionFormat.MAX_RECORD_BYTES) {
+      if (!running || !swap()) {
+        droppedRecords++;
+        return false;
+      }
+    }
+    long micros = (timeNanos - startNanos) / SessionFormat.NANOS_PER_MICRO;
+    active.put((byte) type);
+    SessionFormat.putVarint(active, micros - lastMicros);
+    lastMicros = micros;
+    return true;
+  }
+
+  private void endRecord() {
+    if (active.position() >= BUFFER_BYTES / 2 && !spareFull) {
+      swap();
+    }
+  }
+
+  // Hands the active buffer to the writer, unless it is still busy with the spare one.
+  private boolean swap() {
+    if (spareFull) {
+      return false;
+    }
+    ByteBuffer full = active;
+    active = spare;
+    spare = full;
+    spareFull = true;
+    LockSupport.unpark(writer);
+    return true;
+  }
+
+  private void write() {
+    try {
+      long nextFlushNanos = System.nanoTime() + FLUSH_INTERVAL_NANOS;
+      while (true) {
+        boolean stopping = !running;
+        long now = System.nanoTime();
+        ByteBuffer full = null;
+        synchronized (this) {
+          // Partly filled buffers are only written once the flush interval is up.
+          if (!spareFull && active.position() > 0 && (stopping || now >= nextFlushNanos)) {
+            swap();
+          }
+          if (spareFull) {
+            full = spare;
+          }
+        }
+        if (now >= nextFlushNanos) {
+          nextFlushNanos = now + FLUSH_INTERVAL_NANOS;
+        }
+        if (full != null) {
+          full.flip();
+          writeFully(full);
+          full.clear();
+          synchronized (this) {
+            spareFull = false;
+          }
+        } else if (stopping) {
+          break;
+        } else {
+          LockSupport.parkNanos(this, nextFlushNanos - now);
+        }
+      }
+    } catch (IOException e) {
+      failure = e;
+    } finally {
+      try {
+        out.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      bytesWritten += channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds shader programs once and hands out the same program for the same sources.
+ *
+ * <p>Programs and shaders are keyed by a hash of their sources. Within one GL context a cached
+ * program is returned as it is. The ids are only good for the context they were made in, so
+ * {@link #clear} has to be called whenever a new context is created, e.g. in
+ * {@code onSurfaceCreated}. When a program is linked from source, its binary is also saved under
+ * the key, if the driver provides one, so later contexts and launches can load it instead of
+ * compiling again.
+ *
+ * <p>Shaders are kept while programs are built, so programs sharing a source compile it once,
+ * and deleted by {@link #releaseShaders} when all programs are built.
+ */
+public class ShaderCache {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String BINARY_SUFFIX = ".bin";
+  private static final int BINARY_MAGIC = 0x50524F47; // "PROG"
+  private static final int MAX_BINARY_BYTES = 4 << 20;
+
+  private final File binaryDir;
+  private final Map<String, Integer> programs = new HashMap<String, Integer>();
+  private final Map<String, Integer> shaders = new HashMap<String, Integer>();
+
+  private int cacheHits;
+  private int binaryLoads;
+  private int compiles;
+
+  /**
+   * @param binaryDir Where program binaries are kept between launches, or null to not keep them.
+   */
+  public ShaderCache(File binaryDir) {
+    this.binaryDir = binaryDir;
+  }
+
+  /**
+   * Returns a linked program for the given sources, building it only if needed.
+   *
+   * @param compiler The compiler of the current GL context.
+   */
+  public int getProgram(ShaderCompiler compiler, String vertexSource, String fragmentSource) {
+    String key = hash("program", vertexSource, fragmentSource);
+    Integer program = programs.get(key);
+    if (program != null) {
+      cacheHits++;
+      return program;
+    }
+
+    int loaded = loadBinary(compiler, key);
+    if (loaded != 0) {
+      binaryLoads++;
+      programs.put(key, loaded);
+      return loaded;
+    }
+
+    int linked = compiler.linkProgram(
+        getShader(compiler, ShaderCompiler.VERTEX_SHADER, vertexSource),
+        getShader(compiler, ShaderCompiler.FRAGMENT_SHADER, fragmentSource));
+    compiles++;
+    programs.put(key, linked);
+    saveBinary(compiler, key, linked);
+    return linked;
+  }
+
+  private int getShader(ShaderCompiler compiler, int type, String source) {
+    String key = hash(Integer.toString(type), source, "");
+    Integer shader = shaders.get(key);
+    if (shader == null) {
+      shader = compiler.compileShader(type, source);
+      shaders.put(key, shader);
+    }
+    return shader;
+  }
+
+  /**
+   * Forgets all programs and shaders. Must be called when the GL context they were made in is
+   * gone, as the ids may name something else, or nothing, in the new context.
+   */
+  public void clear() {
+    programs.clear();
+    shaders.clear();
+  }
+
+  /**
+   * Deletes the shaders compiled so far. The programs linked from them keep working. Call it once
+   * all programs of a context are built.
+   */
+  public void releaseShaders(ShaderCompiler compiler) {
+    for (int shader : shaders.values()) {
+      compiler.deleteShader(shader);
+    }
+    shaders.clear();
+  }
+
+  /** How many programs were returned from memory. */
+  public int getCacheHits() {
+    return cacheHits;
+  }
+
+  /** How many programs were loaded from saved binaries. */
+  public int getBinaryLoads() {
+    return binaryLoads;
+  }
+
+  /** How many programs were compiled and linked from source. */
+  public int getCompiles() {
+    return compiles;
+  }
+
+  private int loadBinary(ShaderCompiler compiler, String key) {
+    if (binaryDir == null) {
+      return 0;
+    }
+    File file = new File(binaryDir, key + BINARY_SUFFIX);
+    if (!file.exists()) {
+      return 0;
+    }
+    int format;
+    byte[] binary;
+    try {
+      DataInputStream in = new DataInputStream(new FileInputStream(file));
+      try {
+        int length;
+        if (in.readInt() != BINARY_MAGIC
+            || (length = in.readInt()) < 0 || length > MAX_BINARY_BYTES) {
+          throw new IOException("Bad program binary " + file);
+        }
+        format = in.readInt();
+        binary = new byte[length];
+        in.readFully(binary);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      file.delete();
+      return 0;
+    }
+    int program = compiler.loadProgramBinary(format, binary);
+    if (program == 0) {
+      // Most likely saved by an older driver; it gets replaced once the program is linked.
+      file.delete();
+    }
+    return program;
+  }
+
+  private void saveBinary(ShaderCompiler compiler, String key, int program) {
+    if (binaryDir == null) {
+      return;
+    }
+    int[] format = new int[1];
+    byte[] binary = compiler.getProgramBinary(program, format);
+    if (binary == null) {
+      return;
+    }
+    // Write to the side first, so a crash can't leave half a binary behind.
+    File file = new File(binaryDir, key + BINARY_SUFFIX);
+    File temp = new File(binaryDir, key + BINARY_SUFFIX + ".tmp");
+    try {
+      binaryDir.mkdirs();
+      DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+      try {
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(binary.length);
+        out.writeInt(format[0]);
+        out.write(binary);
+      } finally {
+        out.close();
+      }
+      if (!temp.renameTo(file)) {
+        temp.delete();
+      }
+    } catch (IOException e) {
+      // The binary is only an optimization; compile again next time.
+      temp.delete();
+    }
+  }
+
+  /**
+   * Reads a whole shader source in one go.
+   */
+  public static String readSource(InputStream in) throws IOException {
+    ByteArrayOutputStream source = new ByteArrayOutputStream(Math.max(in.available(), 256));
+    byte[] chunk = new byte[4096];
+    int read;
+    while ((read = in.read(chunk)) > 0) {
+      source.write(chunk, 0, read);
+    }
+    return new String(source.toByteArray(), UTF_8);
+  }
+
+  // Hashes the parts with their lengths, so moving text from one part to the next changes it.
+  private static String hash(String kind, String first, String second) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    String[] parts = {kind, first, second};
+    for (String part : parts) {
+      byte[] bytes = part.getBytes(UTF_8);
+      digest.update((byte) (bytes.length >>> 24));
+      digest.update((byte) (bytes.length >>> 16));
+      digest.update((byte) (bytes.length >>> 8));
+      digest.update((byte) bytes.length);
+      digest.update(bytes);
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+}
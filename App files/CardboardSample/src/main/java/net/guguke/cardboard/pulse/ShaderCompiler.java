@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+/**
+ * The OpenGL ES calls {@link ShaderCache} needs to build programs, so the cache can run against a
+ * fake compiler off the device.
+ */
+public interface ShaderCompiler {
+  /** The GL_VERTEX_SHADER shader type. */
+  int VERTEX_SHADER = 0x8B31;
+  /** The GL_FRAGMENT_SHADER shader type. */
+  int FRAGMENT_SHADER = 0x8B30;
+
+  /**
+   * Compiles a shader.
+   *
+   * @param type {@link #VERTEX_SHADER} or {@link #FRAGMENT_SHADER}.
+   * @return The shader object.
+   * @throws RuntimeException if the source doesn't compile.
+   */
+  int compileShader(int type, String source);
+
+  /**
+   * Links a program from two compiled shaders, detaching them again once it is linked.
+   *
+   * @return The program object.
+   * @throws RuntimeException if the program doesn't link.
+   */
+  int linkProgram(int vertexShader, int fragmentShader);
+
+  /** Deletes a shader. Linked programs keep working, as they don't need it anymore. */
+  void deleteShader(int shader);
+
+  /**
+   * Returns the linked binary of a program, or null if the driver can't provide one.
+   *
+   * @param formatOut Receives the driver specific binary format at index 0.
+   */
+  byte[] getProgramBinary(int program, int[] formatOut);
+
+  /**
+   * Creates a program from a binary returned by {@link #getProgramBinary}.
+   *
+   * @return The program object, or 0 if the driver rejected the binary, e.g. after an update.
+   */
+  int loadProgramBinary(int format, byte[] binary);
+}
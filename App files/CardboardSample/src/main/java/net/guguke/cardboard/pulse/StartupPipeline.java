@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.guguke.cardboard.pulse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares the CPU side of the scene on a few background threads while the activity and the GL
+ * surface are still being set up.
+ *
+ * <p>Work is started with {@link #prepare} as early as possible, and the GL thread picks up the
+ * results with {@link #await} right before uploading them. A result can be awaited any number of
+ * times, so a recreated surface uploads the same data again without preparing it again.
+ */
+public class StartupPipeline {
+  private final long startNanos;
+  private final ExecutorService executor;
+  // Guarded by this.
+  private final List<String> timings = new ArrayList<String>();
+  private long waitNanos;
+
+  /**
+   * @param threads How many tasks may run at once.
+   * @param startNanos When startup began, the reference for the timings.
+   */
+  public StartupPipeline(int threads, long startNanos) {
+    this.startNanos = startNanos;
+    final AtomicInteger count = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "StartupPipeline-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Starts a task in the background.
+   *
+   * @param name Names the task in {@link #summary}.
+   */
+  public <T> Future<T> prepare(final String name, final Callable<T> task) {
+    return executor.submit(new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        long start = System.nanoTime();
+        try {
+          return task.call();
+        } finally {
+          long end = System.nanoTime();
+          synchronized (StartupPipeline.this) {
+            timings.add(name + " " + millis(end - start) + " ms (done at "
+                + millis(end - startNanos) + " ms)");
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits for a task to finish and returns its result.
+   *
+   * @throws RuntimeException if the task failed.
+   */
+  public <T> T await(Future<T> result) {
+    long start = System.nanoTime();
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return result.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          throw new RuntimeException("Startup task failed", e.getCause());
+        }
+      }
+    } finally {
+      synchronized (this) {
+        waitNanos += System.nanoTime() - start;
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Stops the threads once nothing more needs preparing. Results already prepared stay available.
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /** How long {@link #await} blocked in total. */
+  public synchronized long getWaitNanos() {
+    return waitNanos;
+  }
+
+  /**
+   * Describes how long each finished task took and how long awaiting them blocked.
+   */
+  public synchronized String summary() {
+    StringBuilder sb = new StringBuilder();
+    for (String timing : timings) {
+      sb.append(timing).append('\n');
+    }
+    sb.append("waited ").append(millis(waitNanos)).append(" ms");
+    return sb.toString();
+  }
+
+  private static long millis(long nanos) {
+    return nanos / 1000000;
+  }
+}
@@ -21,89 +21,6 @@ package net.guguke.cardboard.pulse;
  */
 public final class WorldLayoutData {
 
-  public static final float[] HEART_COORDS = new float[] {
-          // f 1//1 14//1 13//1
-          0.0063035498709306f, -0.618736851138639f, -0.0073688440693161f,   0.205605808870683f, -0.371408456870813f, 0.134701484770033f,   0.0048720445475667f, -0.45419858727425f, 0.231102079998382f,   // f 2//2 14//2 16//2
-          0.30644481488499f, -0.161604853446911f, 0.205572162529502f,   0.205605808870683f, -0.371408456870813f, 0.134701484770033f,   0.359951357881505f, -0.121425947533776f, 0.00788450260157811f,   // f 1//3 13//3 18//3
-          0.0063035498709306f, -0.618736851138639f, -0.0073688440693161f,   0.0048720445475667f, -0.45419858727425f, 0.231102079998382f,   -0.154800589784446f, -0.42358074759193f, -0.00321723053705066f,   // f 1//4 18//4 20//4
-          0.0063035498709306f, -0.618736851138639f, -0.0073688440693161f,   -0.154800589784446f, -0.42358074759193f, -0.00321723053705066f,   -0.0418034642074405f, -0.416084323874293f, -0.238340367285256f,   // f 1//5 20//5 17//5
-          0.0063035498709306f, -0.618736851138639f, -0.0073688440693161f,   -0.0418034642074405f, -0.416084323874293f, -0.238340367285256f,   0.181865645197773f, -0.301661647242166f, -0.164619083604566f,   // f 2//6 16//6 23//6
-          0.30644481488499f, -0.161604853446911f, 0.205572162529502f,   0.359951357881505f, -0.121425947533776f, 0.00788450260157811f,   0.358665235941069f, 0.0373614855861461f, 0.215217084704735f,   // f 3//7 15//7 25//7
-          -0.118870054262522f, -0.154779277284625f, 0.418263586051144f,   0.0757069966975785f, -0.162838379351203f, 0.397603267626802f,   -0.0330730183964915f, 0.0513748558954852f, 0.499590951222942f,   // f 4//8 19//8 27//8
-          -0.330532381756207f, -0.130933425350406f, -0.0192763881767986f,   -0.253987782550407f, -0.195320401182527f, 0.241063074579502f,   -0.341948202544642f, 0.0437186593133344f, 0.153076852756215f,   // f 5//9 21//9 29//9
-          -0.118870054262522f, -0.154779277284625f, -0.425902297877344f,   -0.266207429551615f, -0.185974680986493f, -0.23640721486244f,   -0.209383366765841f, 0.047516986263196f, -0.405244460398103f,   // f 6//10 22//10 31//10
-          0.25497661638358f, -0.12712616699818f, -0.264678576668091f,   0.0757069966975785f, -0.162838379351203f, -0.405241979453002f,   0.194536824207389f, 0.047516986263196f, -0.39475949021162f,   // f 2//11 23//11 26//11
-          0.30644481488499f, -0.161604853446911f, 0.205572162529502f,   0.358665235941069f, 0.0373614855861461f, 0.215217084704735f,   0.194536824207389f, 0.047516986263196f, 0.38712077838542f,   // f 3//12 25//12 28//12
-          -0.118870054262522f, -0.154779277284625f, 0.418263586051144f,   -0.0330730183964915f, 0.0513748558954852f, 0.499590951222942f,   -0.209383366765841f, 0.0360748674566894f, 0.4127782164325f,   // f 4//13 27//13 30//13
-          -0.330532381756207f, -0.130933425350406f, -0.0192763881767986f,   -0.341948202544642f, 0.0437186593133344f, 0.153076852756215f,   -0.365287445489206f, 0.0317198164261296f, -0.127623726445228f,   // f 5//14 29//14 32//14
-          -0.118870054262522f, -0.154779277284625f, -0.425902297877344f,   -0.209383366765841f, 0.047516986263196f, -0.405244460398103f,   -0.0221628142196715f, 0.047516986263196f, -0.500008624237733f,   // f 6//15 31//15 24//15
-          0.25497661638358f, -0.12712616699818f, -0.264678576668091f,   0.194536824207389f, 0.047516986263196f, -0.39475949021162f,   0.366509488161887f, 0.0359448659333891f, -0.123958874341808f,   // f 7//16 33//16 38//16
-          0.129321212711484f, 0.247485627117117f, 0.418263586051144f,   0.290015996425171f, 0.270115815951773f, 0.244273417540391f,   0.0564017704874852f, 0.381263148861361f, 0.221413989378389f,   // f 8//17 34//17 40//17
-          -0.285806399661684f, 0.14888741071817f, 0.250930289435798f,   -0.145609680562724f, 0.255036631626979f, 0.379031408788609f,   -0.218356945196702f, 0.226720116620487f, 0.115210187677354f,   // f 9//18 35//18 41//18
-          -0.300074314938401f, 0.170994616325502f, -0.238873770482003f,   -0.361764999634592f, 0.0938327579785363f, 0.00178534716490946f,   -0.214616672362208f, 0.227778983989658f, -0.101531626816427f,   // f 10//19 36//19 42//19
-          0.129321212711484f, 0.247485627117117f, -0.425902297877344f,   -0.164973953266224f, 0.261019678832914f, -0.426223332173432f,   0.0563913505180603f, 0.375619494945263f, -0.233887070828691f,   // f 11//20 37//20 39//20
-          0.372987732010011f, 0.118559345423664f, 0.0428554085583769f,   0.282070025455206f, 0.24257583676194f, -0.217297983315337f,   0.252557198720938f, 0.251403039431834f, -0.00381960400760999f,   // f 39//21 42//21 12//21
-          0.252557198720938f, 0.251403039431834f, -0.00381960400760999f,   0.0563913505180603f, 0.375619494945263f, -0.233887070828691f,   0.00276423358962914f, 0.198250775395763f, -0.013554832584525f,   // f 39//22 37//22 42//22
-          0.252557198720938f, 0.251403039431834f, -0.00381960400760999f,   0.282070025455206f, 0.24257583676194f, -0.217297983315337f,   0.0563913505180603f, 0.375619494945263f, -0.233887070828691f,   // f 37//23 10//23 42//23
-          0.282070025455206f, 0.24257583676194f, -0.217297983315337f,   0.129321212711484f, 0.247485627117117f, -0.425902297877344f,   0.0563913505180603f, 0.375619494945263f, -0.233887070828691f,   // f 42//24 41//24 12//24
-          0.0563913505180603f, 0.375619494945263f, -0.233887070828691f,   -0.214616672362208f, 0.227778983989658f, -0.101531626816427f,   0.00276423358962914f, 0.198250775395763f, -0.013554832584525f,   // f 42//25 36//25 41//25
-          0.0563913505180603f, 0.375619494945263f, -0.233887070828691f,   -0.164973953266224f, 0.261019678832914f, -0.426223332173432f,   -0.214616672362208f, 0.227778983989658f, -0.101531626816427f,   // f 36//26 9//26 41//26
-          -0.164973953266224f, 0.261019678832914f, -0.426223332173432f,   -0.300074314938401f, 0.170994616325502f, -0.238873770482003f,   -0.214616672362208f, 0.227778983989658f, -0.101531626816427f,   // f 41//27 40//27 12//27
-          -0.214616672362208f, 0.227778983989658f, -0.101531626816427f,   -0.218356945196702f, 0.226720116620487f, 0.115210187677354f,   0.00276423358962914f, 0.198250775395763f, -0.013554832584525f,   // f 41//28 35//28 40//28
-          -0.214616672362208f, 0.227778983989658f, -0.101531626816427f,   -0.361764999634592f, 0.0938327579785363f, 0.00178534716490946f,   -0.218356945196702f, 0.226720116620487f, 0.115210187677354f,   // f 35//29 8//29 40//29
-          -0.361764999634592f, 0.0938327579785363f, 0.00178534716490946f,   -0.285806399661684f, 0.14888741071817f, 0.250930289435798f,   -0.218356945196702f, 0.226720116620487f, 0.115210187677354f,   // f 40//30 38//30 12//30
-          -0.218356945196702f, 0.226720116620487f, 0.115210187677354f,   0.0564017704874852f, 0.381263148861361f, 0.221413989378389f,   0.00276423358962914f, 0.198250775395763f, -0.013554832584525f,   // f 40//31 34//31 38//31
-          -0.218356945196702f, 0.226720116620487f, 0.115210187677354f,   -0.145609680562724f, 0.255036631626979f, 0.379031408788609f,   0.0564017704874852f, 0.381263148861361f, 0.221413989378389f,   // f 34//32 7//32 38//32
-          -0.145609680562724f, 0.255036631626979f, 0.379031408788609f,   0.129321212711484f, 0.247485627117117f, 0.418263586051144f,   0.0564017704874852f, 0.381263148861361f, 0.221413989378389f,   // f 38//33 39//33 12//33
-          0.0564017704874852f, 0.381263148861361f, 0.221413989378389f,   0.252557198720938f, 0.251403039431834f, -0.00381960400760999f,   0.00276423358962914f, 0.198250775395763f, -0.013554832584525f,   // f 38//34 33//34 39//34
-          0.0564017704874852f, 0.381263148861361f, 0.221413989378389f,   0.290015996425171f, 0.270115815951773f, 0.244273417540391f,   0.252557198720938f, 0.251403039431834f, -0.00381960400760999f,   // f 33//35 11//35 39//35
-          0.290015996425171f, 0.270115815951773f, 0.244273417540391f,   0.372987732010011f, 0.118559345423664f, 0.0428554085583769f,   0.252557198720938f, 0.251403039431834f, -0.00381960400760999f,   // f 24//36 37//36 11//36
-          0.366509488161887f, 0.0359448659333891f, -0.123958874341808f,   0.282070025455206f, 0.24257583676194f, -0.217297983315337f,   0.372987732010011f, 0.118559345423664f, 0.0428554085583769f,   // f 24//37 31//37 37//37
-          0.366509488161887f, 0.0359448659333891f, -0.123958874341808f,   0.194536824207389f, 0.047516986263196f, -0.39475949021162f,   0.282070025455206f, 0.24257583676194f, -0.217297983315337f,   // f 31//38 10//38 37//38
-          0.194536824207389f, 0.047516986263196f, -0.39475949021162f,   0.129321212711484f, 0.247485627117117f, -0.425902297877344f,   0.282070025455206f, 0.24257583676194f, -0.217297983315337f,   // f 32//39 36//39 10//39
-          -0.0221628142196715f, 0.047516986263196f, -0.500008624237733f,   -0.164973953266224f, 0.261019678832914f, -0.426223332173432f,   0.129321212711484f, 0.247485627117117f, -0.425902297877344f,   // f 32//40 29//40 36//40
-          -0.0221628142196715f, 0.047516986263196f, -0.500008624237733f,   -0.209383366765841f, 0.047516986263196f, -0.405244460398103f,   -0.164973953266224f, 0.261019678832914f, -0.426223332173432f,   // f 29//41 9//41 36//41
-          -0.209383366765841f, 0.047516986263196f, -0.405244460398103f,   -0.300074314938401f, 0.170994616325502f, -0.238873770482003f,   -0.164973953266224f, 0.261019678832914f, -0.426223332173432f,   // f 30//42 35//42 9//42
-          -0.365287445489206f, 0.0317198164261296f, -0.127623726445228f,   -0.361764999634592f, 0.0938327579785363f, 0.00178534716490946f,   -0.300074314938401f, 0.170994616325502f, -0.238873770482003f,   // f 30//43 27//43 35//43
-          -0.365287445489206f, 0.0317198164261296f, -0.127623726445228f,   -0.341948202544642f, 0.0437186593133344f, 0.153076852756215f,   -0.361764999634592f, 0.0938327579785363f, 0.00178534716490946f,   // f 27//44 8//44 35//44
-          -0.341948202544642f, 0.0437186593133344f, 0.153076852756215f,   -0.285806399661684f, 0.14888741071817f, 0.250930289435798f,   -0.361764999634592f, 0.0938327579785363f, 0.00178534716490946f,   // f 28//45 34//45 8//45
-          -0.209383366765841f, 0.0360748674566894f, 0.4127782164325f,   -0.145609680562724f, 0.255036631626979f, 0.379031408788609f,   -0.285806399661684f, 0.14888741071817f, 0.250930289435798f,   // f 28//46 25//46 34//46
-          -0.209383366765841f, 0.0360748674566894f, 0.4127782164325f,   -0.0330730183964915f, 0.0513748558954852f, 0.499590951222942f,   -0.145609680562724f, 0.255036631626979f, 0.379031408788609f,   // f 25//47 7//47 34//47
-          -0.0330730183964915f, 0.0513748558954852f, 0.499590951222942f,   0.129321212711484f, 0.247485627117117f, 0.418263586051144f,   -0.145609680562724f, 0.255036631626979f, 0.379031408788609f,   // f 26//48 33//48 7//48
-          0.194536824207389f, 0.047516986263196f, 0.38712077838542f,   0.290015996425171f, 0.270115815951773f, 0.244273417540391f,   0.129321212711484f, 0.247485627117117f, 0.418263586051144f,   // f 26//49 23//49 33//49
-          0.194536824207389f, 0.047516986263196f, 0.38712077838542f,   0.358665235941069f, 0.0373614855861461f, 0.215217084704735f,   0.290015996425171f, 0.270115815951773f, 0.244273417540391f,   // f 23//50 11//50 33//50
-          0.358665235941069f, 0.0373614855861461f, 0.215217084704735f,   0.372987732010011f, 0.118559345423664f, 0.0428554085583769f,   0.290015996425171f, 0.270115815951773f, 0.244273417540391f,   // f 31//51 32//51 10//51
-          0.194536824207389f, 0.047516986263196f, -0.39475949021162f,   -0.0221628142196715f, 0.047516986263196f, -0.500008624237733f,   0.129321212711484f, 0.247485627117117f, -0.425902297877344f,   // f 31//52 22//52 32//52
-          0.194536824207389f, 0.047516986263196f, -0.39475949021162f,   0.0757069966975785f, -0.162838379351203f, -0.405241979453002f,   -0.0221628142196715f, 0.047516986263196f, -0.500008624237733f,   // f 22//53 5//53 32//53
-          0.0757069966975785f, -0.162838379351203f, -0.405241979453002f,   -0.118870054262522f, -0.154779277284625f, -0.425902297877344f,   -0.0221628142196715f, 0.047516986263196f, -0.500008624237733f,   // f 29//54 30//54 9//54
-          -0.209383366765841f, 0.047516986263196f, -0.405244460398103f,   -0.365287445489206f, 0.0317198164261296f, -0.127623726445228f,   -0.300074314938401f, 0.170994616325502f, -0.238873770482003f,   // f 29//55 21//55 30//55
-          -0.209383366765841f, 0.047516986263196f, -0.405244460398103f,   -0.266207429551615f, -0.185974680986493f, -0.23640721486244f,   -0.365287445489206f, 0.0317198164261296f, -0.127623726445228f,   // f 21//56 4//56 30//56
-          -0.266207429551615f, -0.185974680986493f, -0.23640721486244f,   -0.330532381756207f, -0.130933425350406f, -0.0192763881767986f,   -0.365287445489206f, 0.0317198164261296f, -0.127623726445228f,   // f 27//57 28//57 8//57
-          -0.341948202544642f, 0.0437186593133344f, 0.153076852756215f,   -0.209383366765841f, 0.0360748674566894f, 0.4127782164325f,   -0.285806399661684f, 0.14888741071817f, 0.250930289435798f,   // f 27//58 19//58 28//58
-          -0.341948202544642f, 0.0437186593133344f, 0.153076852756215f,   -0.253987782550407f, -0.195320401182527f, 0.241063074579502f,   -0.209383366765841f, 0.0360748674566894f, 0.4127782164325f,   // f 19//59 3//59 28//59
-          -0.253987782550407f, -0.195320401182527f, 0.241063074579502f,   -0.118870054262522f, -0.154779277284625f, 0.418263586051144f,   -0.209383366765841f, 0.0360748674566894f, 0.4127782164325f,   // f 25//60 26//60 7//60
-          -0.0330730183964915f, 0.0513748558954852f, 0.499590951222942f,   0.194536824207389f, 0.047516986263196f, 0.38712077838542f,   0.129321212711484f, 0.247485627117117f, 0.418263586051144f,   // f 25//61 15//61 26//61
-          -0.0330730183964915f, 0.0513748558954852f, 0.499590951222942f,   0.0757069966975785f, -0.162838379351203f, 0.397603267626802f,   0.194536824207389f, 0.047516986263196f, 0.38712077838542f,   // f 15//62 2//62 26//62
-          0.0757069966975785f, -0.162838379351203f, 0.397603267626802f,   0.30644481488499f, -0.161604853446911f, 0.205572162529502f,   0.194536824207389f, 0.047516986263196f, 0.38712077838542f,   // f 23//63 24//63 11//63
-          0.358665235941069f, 0.0373614855861461f, 0.215217084704735f,   0.366509488161887f, 0.0359448659333891f, -0.123958874341808f,   0.372987732010011f, 0.118559345423664f, 0.0428554085583769f,   // f 23//64 16//64 24//64
-          0.358665235941069f, 0.0373614855861461f, 0.215217084704735f,   0.359951357881505f, -0.121425947533776f, 0.00788450260157811f,   0.366509488161887f, 0.0359448659333891f, -0.123958874341808f,   // f 16//65 6//65 24//65
-          0.359951357881505f, -0.121425947533776f, 0.00788450260157811f,   0.25497661638358f, -0.12712616699818f, -0.264678576668091f,   0.366509488161887f, 0.0359448659333891f, -0.123958874341808f,   // f 17//66 22//66 6//66
-          0.181865645197773f, -0.301661647242166f, -0.164619083604566f,   0.0757069966975785f, -0.162838379351203f, -0.405241979453002f,   0.25497661638358f, -0.12712616699818f, -0.264678576668091f,   // f 17//67 20//67 22//67
-          0.181865645197773f, -0.301661647242166f, -0.164619083604566f,   -0.0418034642074405f, -0.416084323874293f, -0.238340367285256f,   0.0757069966975785f, -0.162838379351203f, -0.405241979453002f,   // f 20//68 5//68 22//68
-          -0.0418034642074405f, -0.416084323874293f, -0.238340367285256f,   -0.118870054262522f, -0.154779277284625f, -0.425902297877344f,   0.0757069966975785f, -0.162838379351203f, -0.405241979453002f,   // f 20//69 21//69 5//69
-          -0.0418034642074405f, -0.416084323874293f, -0.238340367285256f,   -0.266207429551615f, -0.185974680986493f, -0.23640721486244f,   -0.118870054262522f, -0.154779277284625f, -0.425902297877344f,   // f 20//70 18//70 21//70
-          -0.0418034642074405f, -0.416084323874293f, -0.238340367285256f,   -0.154800589784446f, -0.42358074759193f, -0.00321723053705066f,   -0.266207429551615f, -0.185974680986493f, -0.23640721486244f,   // f 18//71 4//71 21//71
-          -0.154800589784446f, -0.42358074759193f, -0.00321723053705066f,   -0.330532381756207f, -0.130933425350406f, -0.0192763881767986f,   -0.266207429551615f, -0.185974680986493f, -0.23640721486244f,   // f 18//72 19//72 4//72
-          -0.154800589784446f, -0.42358074759193f, -0.00321723053705066f,   -0.253987782550407f, -0.195320401182527f, 0.241063074579502f,   -0.330532381756207f, -0.130933425350406f, -0.0192763881767986f,   // f 18//73 13//73 19//73
-          -0.154800589784446f, -0.42358074759193f, -0.00321723053705066f,   0.0048720445475667f, -0.45419858727425f, 0.231102079998382f,   -0.253987782550407f, -0.195320401182527f, 0.241063074579502f,   // f 13//74 3//74 19//74
-          0.0048720445475667f, -0.45419858727425f, 0.231102079998382f,   -0.118870054262522f, -0.154779277284625f, 0.418263586051144f,   -0.253987782550407f, -0.195320401182527f, 0.241063074579502f,   // f 16//75 17//75 6//75
-          0.359951357881505f, -0.121425947533776f, 0.00788450260157811f,   0.181865645197773f, -0.301661647242166f, -0.164619083604566f,   0.25497661638358f, -0.12712616699818f, -0.264678576668091f,   // f 16//76 14//76 17//76
-          0.359951357881505f, -0.121425947533776f, 0.00788450260157811f,   0.205605808870683f, -0.371408456870813f, 0.134701484770033f,   0.181865645197773f, -0.301661647242166f, -0.164619083604566f,   // f 14//77 1//77 17//77
-          0.205605808870683f, -0.371408456870813f, 0.134701484770033f,   0.0063035498709306f, -0.618736851138639f, -0.0073688440693161f,   0.181865645197773f, -0.301661647242166f, -0.164619083604566f,   // f 13//78 15//78 3//78
-          0.0048720445475667f, -0.45419858727425f, 0.231102079998382f,   0.0757069966975785f, -0.162838379351203f, 0.397603267626802f,   -0.118870054262522f, -0.154779277284625f, 0.418263586051144f,   // f 13//79 14//79 15//79
-          0.0048720445475667f, -0.45419858727425f, 0.231102079998382f,   0.205605808870683f, -0.371408456870813f, 0.134701484770033f,   0.0757069966975785f, -0.162838379351203f, 0.397603267626802f,   // f 14//80 2//80 15//80
-          0.205605808870683f, -0.371408456870813f, 0.134701484770033f,   0.30644481488499f, -0.161604853446911f, 0.205572162529502f,   0.0757069966975785f, -0.162838379351203f, 0.397603267626802f};
-
   public static final float[] DARK_RED_COLOR = new float[] {
           0.7f, 0.1f, 0.1f, 1.0f
   };
@@ -162,89 +79,6 @@ public final class WorldLayoutData {
       1.0f,  0.6523f, 0.0f, 1.0f,
   };
 
-  public static final float[] HEART_NORMALS = new float[] {
-          // f 1//1 14//1 13//1
-          0.522387755374519f, -0.700383583201212f, 0.486388599184851f,   0.522387755374519f, -0.700383583201212f, 0.486388599184851f,   0.522387755374519f, -0.700383583201212f, 0.486388599184851f,   // f 2//2 14//2 16//2
-          0.872790674281468f, -0.467195008048008f, 0.141298490233698f,   0.872790674281468f, -0.467195008048008f, 0.141298490233698f,   0.872790674281468f, -0.467195008048008f, 0.141298490233698f,   // f 1//3 13//3 18//3
-          -0.702068906056711f, -0.588073954781301f, 0.401582214317583f,   -0.702068906056711f, -0.588073954781301f, 0.401582214317583f,   -0.702068906056711f, -0.588073954781301f, 0.401582214317583f,   // f 1//4 18//4 20//4
-          -0.721627703819335f, -0.587922570780747f, -0.365514032353058f,   -0.721627703819335f, -0.587922570780747f, -0.365514032353058f,   -0.721627703819335f, -0.587922570780747f, -0.365514032353058f,   // f 1//5 20//5 17//5
-          0.508805159310473f, -0.591806000943275f, -0.625206339624426f,   0.508805159310473f, -0.591806000943275f, -0.625206339624426f,   0.508805159310473f, -0.591806000943275f, -0.625206339624426f,   // f 2//6 16//6 23//6
-          0.944571242966255f, -0.257792151637413f, 0.203293810814143f,   0.944571242966255f, -0.257792151637413f, 0.203293810814143f,   0.944571242966255f, -0.257792151637413f, 0.203293810814143f,   // f 3//7 15//7 25//7
-          0.0808037263497629f, -0.394718202849646f, 0.915242207367612f,   0.0808037263497629f, -0.394718202849646f, 0.915242207367612f,   0.0808037263497629f, -0.394718202849646f, 0.915242207367612f,   // f 4//8 19//8 27//8
-          -0.940084032808303f, -0.268595437945229f, 0.209996433240872f,   -0.940084032808303f, -0.268595437945229f, 0.209996433240872f,   -0.940084032808303f, -0.268595437945229f, 0.209996433240872f,   // f 5//9 21//9 29//9
-          -0.738893268712983f, -0.267397564019288f, -0.618494365541995f,   -0.738893268712983f, -0.267397564019288f, -0.618494365541995f,   -0.738893268712983f, -0.267397564019288f, -0.618494365541995f,   // f 6//10 22//10 31//10
-          0.623522805763689f, -0.316611580280327f, -0.714826145244402f,   0.623522805763689f, -0.316611580280327f, -0.714826145244402f,   0.623522805763689f, -0.316611580280327f, -0.714826145244402f,   // f 2//11 23//11 26//11
-          0.699705496208259f, -0.216601701413047f, 0.68080534774701f,   0.699705496208259f, -0.216601701413047f, 0.68080534774701f,   0.699705496208259f, -0.216601701413047f, 0.68080534774701f,   // f 3//12 25//12 28//12
-          -0.422712271515366f, -0.174905077568104f, 0.889225814600102f,   -0.422712271515366f, -0.174905077568104f, 0.889225814600102f,   -0.422712271515366f, -0.174905077568104f, 0.889225814600102f,   // f 4//13 27//13 30//13
-          -0.984505222814061f, -0.151500803713896f, 0.0883004684352276f,   -0.984505222814061f, -0.151500803713896f, 0.0883004684352276f,   -0.984505222814061f, -0.151500803713896f, 0.0883004684352276f,   // f 5//14 29//14 32//14
-          -0.448879455257489f, -0.110294951915574f, -0.886759413950414f,   -0.448879455257489f, -0.110294951915574f, -0.886759413950414f,   -0.448879455257489f, -0.110294951915574f, -0.886759413950414f,   // f 6//15 31//15 24//15
-          0.836922538627452f, -0.109702954340341f, -0.536214440449325f,   0.836922538627452f, -0.109702954340341f, -0.536214440449325f,   0.836922538627452f, -0.109702954340341f, -0.536214440449325f,   // f 7//16 33//16 38//16
-          0.352282326439013f, 0.829558382099929f, 0.433278262974806f,   0.352282326439013f, 0.829558382099929f, 0.433278262974806f,   0.352282326439013f, 0.829558382099929f, 0.433278262974806f,   // f 8//17 34//17 40//17
-          -0.657676001840531f, 0.746472761705879f, 0.101196307414112f,   -0.657676001840531f, 0.746472761705879f, 0.101196307414112f,   -0.657676001840531f, 0.746472761705879f, 0.101196307414112f,   // f 9//18 35//18 41//18
-          -0.639101978023683f, 0.764802367066989f, 0.0814002519341696f,   -0.639101978023683f, 0.764802367066989f, 0.0814002519341696f,   -0.639101978023683f, 0.764802367066989f, 0.0814002519341696f,   // f 10//19 36//19 42//19
-          0.0390993099032703f, 0.837985209691572f, -0.544290393359335f,   0.0390993099032703f, 0.837985209691572f, -0.544290393359335f,   0.0390993099032703f, 0.837985209691572f, -0.544290393359335f,   // f 11//20 37//20 39//20
-          0.726196172956253f, 0.683696396929482f, 0.0720996200360036f,   0.726196172956253f, 0.683696396929482f, 0.0720996200360036f,   0.726196172956253f, 0.683696396929482f, 0.0720996200360036f,   // f 39//21 42//21 12//21
-          -0.190304306635189f, 0.786817805888423f, 0.587113286524013f,   -0.190304306635189f, 0.786817805888423f, 0.587113286524013f,   -0.190304306635189f, 0.786817805888423f, 0.587113286524013f,   // f 39//22 37//22 42//22
-          0.505711889426282f, 0.862020266334695f, 0.0343008064214386f,   0.505711889426282f, 0.862020266334695f, 0.0343008064214386f,   0.505711889426282f, 0.862020266334695f, 0.0343008064214386f,   // f 37//23 10//23 42//23
-          0.495494547112513f, 0.797591222556894f, -0.343996214342492f,   0.495494547112513f, 0.797591222556894f, -0.343996214342492f,   0.495494547112513f, 0.797591222556894f, -0.343996214342492f,   // f 42//24 41//24 12//24
-          -0.136203744973453f, 0.78762165595515f, 0.600916522426929f,   -0.136203744973453f, 0.78762165595515f, 0.600916522426929f,   -0.136203744973453f, 0.78762165595515f, 0.600916522426929f,   // f 42//25 36//25 41//25
-          -0.472005293569051f, 0.881409885067292f, 0.0181002029949149f,   -0.472005293569051f, 0.881409885067292f, 0.0181002029949149f,   -0.472005293569051f, 0.881409885067292f, 0.0181002029949149f,   // f 36//26 9//26 41//26
-          -0.554007617657115f, 0.832511447111097f, 0.0005000068751418f,   -0.554007617657115f, 0.832511447111097f, 0.0005000068751418f,   -0.554007617657115f, 0.832511447111097f, 0.0005000068751418f,   // f 41//27 40//27 12//27
-          0.131793585762268f, 0.991251756950955f, 0.00709965446822534f,   0.131793585762268f, 0.991251756950955f, 0.00709965446822534f,   0.131793585762268f, 0.991251756950955f, 0.00709965446822534f,   // f 41//28 35//28 40//28
-          -0.676186834770489f, 0.73668565686989f, -0.00809984229760568f,   -0.676186834770489f, 0.73668565686989f, -0.00809984229760568f,   -0.676186834770489f, 0.73668565686989f, -0.00809984229760568f,   // f 35//29 8//29 40//29
-          -0.702679559348923f, 0.709179370272174f, 0.0574983273979836f,   -0.702679559348923f, 0.709179370272174f, 0.0574983273979836f,   -0.702679559348923f, 0.709179370272174f, 0.0574983273979836f,   // f 40//30 38//30 12//30
-          -0.227288580172177f, 0.792760168765955f, -0.565571583569657f,   -0.227288580172177f, 0.792760168765955f, -0.565571583569657f,   -0.227288580172177f, 0.792760168765955f, -0.565571583569657f,   // f 40//31 34//31 38//31
-          -0.503217144900195f, 0.862929400505521f, 0.0461015707072715f,   -0.503217144900195f, 0.862929400505521f, 0.0461015707072715f,   -0.503217144900195f, 0.862929400505521f, 0.0461015707072715f,   // f 34//32 7//32 38//32
-          -0.0597994531365016f, 0.815192545098262f, 0.576094731637769f,   -0.0597994531365016f, 0.815192545098262f, 0.576094731637769f,   -0.0597994531365016f, 0.815192545098262f, 0.576094731637769f,   // f 38//33 39//33 12//33
-          -0.146594227232995f, 0.796368639620446f, -0.586776893180911f,   -0.146594227232995f, 0.796368639620446f, -0.586776893180911f,   -0.146594227232995f, 0.796368639620446f, -0.586776893180911f,   // f 38//34 33//34 39//34
-          0.436387787858633f, 0.889875097193853f, -0.132996278151233f,   0.436387787858633f, 0.889875097193853f, -0.132996278151233f,   0.436387787858633f, 0.889875097193853f, -0.132996278151233f,   // f 33//35 11//35 39//35
-          0.758723934324018f, 0.63091990268225f, -0.162105113686468f,   0.758723934324018f, 0.63091990268225f, -0.162105113686468f,   0.758723934324018f, 0.63091990268225f, -0.162105113686468f,   // f 24//36 37//36 11//36
-          0.936185334771595f, 0.299195313142129f, -0.184497109875411f,   0.936185334771595f, 0.299195313142129f, -0.184497109875411f,   0.936185334771595f, 0.299195313142129f, -0.184497109875411f,   // f 24//37 31//37 37//37
-          0.841553375026849f, 0.104494210658633f, -0.529970637790197f,   0.841553375026849f, 0.104494210658633f, -0.529970637790197f,   0.841553375026849f, 0.104494210658633f, -0.529970637790197f,   // f 31//38 10//38 37//38
-          0.797022615837591f, 0.169704815442458f, -0.579616446850022f,   0.797022615837591f, 0.169704815442458f, -0.579616446850022f,   0.797022615837591f, 0.169704815442458f, -0.579616446850022f,   // f 32//39 36//39 10//39
-          0.0164996059116191f, 0.336391965373859f, -0.941577510689732f,   0.0164996059116191f, 0.336391965373859f, -0.941577510689732f,   0.0164996059116191f, 0.336391965373859f, -0.941577510689732f,   // f 32//40 29//40 36//40
-          -0.451599302279617f, 0.00629999026652256f, -0.892198621554195f,   -0.451599302279617f, 0.00629999026652256f, -0.892198621554195f,   -0.451599302279617f, 0.00629999026652256f, -0.892198621554195f,   // f 29//41 9//41 36//41
-          -0.831685936309724f, 0.119697975924341f, -0.542190831630555f,   -0.831685936309724f, 0.119697975924341f, -0.542190831630555f,   -0.831685936309724f, 0.119697975924341f, -0.542190831630555f,   // f 30//42 35//42 9//42
-          -0.934190653469268f, 0.330896689395184f, -0.13339866535303f,   -0.934190653469268f, 0.330896689395184f, -0.13339866535303f,   -0.934190653469268f, 0.330896689395184f, -0.13339866535303f,   // f 30//43 27//43 35//43
-          -0.988103789385299f, -0.126400484746789f, 0.0876003359479325f,   -0.988103789385299f, -0.126400484746789f, 0.0876003359479325f,   -0.988103789385299f, -0.126400484746789f, 0.0876003359479325f,   // f 27//44 8//44 35//44
-          -0.930666915379227f, 0.293089580850598f, 0.218992214965135f,   -0.930666915379227f, 0.293089580850598f, 0.218992214965135f,   -0.930666915379227f, 0.293089580850598f, 0.218992214965135f,   // f 28//45 34//45 8//45
-          -0.758411854069919f, 0.309304834472345f, 0.573708967141235f,   -0.758411854069919f, 0.309304834472345f, 0.573708967141235f,   -0.758411854069919f, 0.309304834472345f, 0.573708967141235f,   // f 28//46 25//46 34//46
-          -0.444522806827671f, 0.26151341729007f, 0.856743956376302f,   -0.444522806827671f, 0.26151341729007f, 0.856743956376302f,   -0.444522806827671f, 0.26151341729007f, 0.856743956376302f,   // f 25//47 7//47 34//47
-          -0.113095597274096f, 0.459082128280612f, 0.881165696887117f,   -0.113095597274096f, 0.459082128280612f, 0.881165696887117f,   -0.113095597274096f, 0.459082128280612f, 0.881165696887117f,   // f 26//48 33//48 7//48
-          0.720114784108278f, 0.12870264229237f, 0.681813997785063f,   0.720114784108278f, 0.12870264229237f, 0.681813997785063f,   0.720114784108278f, 0.12870264229237f, 0.681813997785063f,   // f 26//49 23//49 33//49
-          0.721080711348954f, 0.12769658416206f, 0.680981783980914f,   0.721080711348954f, 0.12769658416206f, 0.680981783980914f,   0.721080711348954f, 0.12769658416206f, 0.680981783980914f,   // f 23//50 11//50 33//50
-          0.946507638347462f, 0.254402053032852f, 0.198501601914391f,   0.946507638347462f, 0.254402053032852f, 0.198501601914391f,   0.946507638347462f, 0.254402053032852f, 0.198501601914391f,   // f 31//51 32//51 10//51
-          0.436902704436111f, 0.00240001485613794f, -0.899505567956698f,   0.436902704436111f, 0.00240001485613794f, -0.899505567956698f,   0.436902704436111f, 0.00240001485613794f, -0.899505567956698f,   // f 31//52 22//52 32//52
-          0.428209821104872f, -0.198004541286232f, -0.881720222485207f,   0.428209821104872f, -0.198004541286232f, -0.881720222485207f,   0.428209821104872f, -0.198004541286232f, -0.881720222485207f,   // f 22//53 5//53 32//53
-          0.0823020435851136f, -0.377309368707939f, -0.922422904045065f,   0.0823020435851136f, -0.377309368707939f, -0.922422904045065f,   0.0823020435851136f, -0.377309368707939f, -0.922422904045065f,   // f 29//54 30//54 9//54
-          -0.872207727794703f, 0.0180001594821195f, -0.488804330825557f,   -0.872207727794703f, 0.0180001594821195f, -0.488804330825557f,   -0.872207727794703f, 0.0180001594821195f, -0.488804330825557f,   // f 29//55 21//55 30//55
-          -0.85903215847079f, -0.145805458329501f, -0.49071837038605f,   -0.85903215847079f, -0.145805458329501f, -0.49071837038605f,   -0.85903215847079f, -0.145805458329501f, -0.49071837038605f,   // f 21//56 4//56 30//56
-          -0.925856758869842f, -0.325584793917292f, -0.191791042608528f,   -0.925856758869842f, -0.325584793917292f, -0.191791042608528f,   -0.925856758869842f, -0.325584793917292f, -0.191791042608528f,   // f 27//57 28//57 8//57
-          -0.888926197041046f, 0.0509015000893118f, 0.455213415337028f,   -0.888926197041046f, 0.0509015000893118f, 0.455213415337028f,   -0.888926197041046f, 0.0509015000893118f, 0.455213415337028f,   // f 27//58 19//58 28//58
-          -0.881037814954544f, -0.160406884811247f, 0.445019100629707f,   -0.881037814954544f, -0.160406884811247f, 0.445019100629707f,   -0.881037814954544f, -0.160406884811247f, 0.445019100629707f,   // f 19//59 3//59 28//59
-          -0.715958690375314f, -0.321781433746894f, 0.619564252173945f,   -0.715958690375314f, -0.321781433746894f, 0.619564252173945f,   -0.715958690375314f, -0.321781433746894f, 0.619564252173945f,   // f 25//60 26//60 7//60
-          0.443083635008156f, 0.00489981902852621f, 0.896466889606887f,   0.443083635008156f, 0.00489981902852621f, 0.896466889606887f,   0.443083635008156f, 0.00489981902852621f, 0.896466889606887f,   // f 25//61 15//61 26//61
-          0.431302637423692f, -0.199801221788207f, 0.879805380026348f,   0.431302637423692f, -0.199801221788207f, 0.879805380026348f,   0.431302637423692f, -0.199801221788207f, 0.879805380026348f,   // f 15//62 2//62 26//62
-          0.609586339323202f, -0.307893100192936f, 0.730483630045274f,   0.609586339323202f, -0.307893100192936f, 0.730483630045274f,   0.609586339323202f, -0.307893100192936f, 0.730483630045274f,   // f 23//63 24//63 11//63
-          0.991866341586788f, -0.125095754947583f, 0.023499202568091f,   0.991866341586788f, -0.125095754947583f, 0.023499202568091f,   0.991866341586788f, -0.125095754947583f, 0.023499202568091f,   // f 23//64 16//64 24//64
-          0.999484343200395f, -0.0221996522451713f, 0.0231996365805394f,   0.999484343200395f, -0.0221996522451713f, 0.0231996365805394f,   0.999484343200395f, -0.0221996522451713f, 0.0231996365805394f,   // f 16//65 6//65 24//65
-          0.887081739610333f, -0.317593462405864f, -0.334993104237923f,   0.887081739610333f, -0.317593462405864f, -0.334993104237923f,   0.887081739610333f, -0.317593462405864f, -0.334993104237923f,   // f 17//66 22//66 6//66
-          0.572694656783778f, -0.574894636258065f, -0.584394547624306f,   0.572694656783778f, -0.574894636258065f, -0.584394547624306f,   0.572694656783778f, -0.574894636258065f, -0.584394547624306f,   // f 17//67 20//67 22//67
-          0.513613128119334f, -0.6254159858369f, -0.587415014519659f,   0.513613128119334f, -0.6254159858369f, -0.587415014519659f,   0.513613128119334f, -0.6254159858369f, -0.587415014519659f,   // f 20//68 5//68 22//68
-          0.0634022172143047f, -0.569519916459724f, -0.819528659418339f,   0.0634022172143047f, -0.569519916459724f, -0.819528659418339f,   0.0634022172143047f, -0.569519916459724f, -0.819528659418339f,   // f 20//69 21//69 5//69
-          -0.596212049567284f, -0.576711655460337f, -0.558511287627186f,   -0.596212049567284f, -0.576711655460337f, -0.558511287627186f,   -0.596212049567284f, -0.576711655460337f, -0.558511287627186f,   // f 20//70 18//70 21//70
-          -0.673544553077994f, -0.65394325650735f, -0.344522789213614f,   -0.673544553077994f, -0.65394325650735f, -0.344522789213614f,   -0.673544553077994f, -0.65394325650735f, -0.344522789213614f,   // f 18//71 4//71 21//71
-          -0.848122615491067f, -0.515913757023749f, -0.120503213261023f,   -0.848122615491067f, -0.515913757023749f, -0.120503213261023f,   -0.848122615491067f, -0.515913757023749f, -0.120503213261023f,   // f 18//72 19//72 4//72
-          -0.853523719753763f, -0.505614051209727f, 0.125903498906853f,   -0.853523719753763f, -0.505614051209727f, 0.125903498906853f,   -0.853523719753763f, -0.505614051209727f, 0.125903498906853f,   // f 18//73 13//73 19//73
-          -0.653304148494514f, -0.667104236125349f, 0.358002273321653f,   -0.653304148494514f, -0.667104236125349f, 0.358002273321653f,   -0.653304148494514f, -0.667104236125349f, 0.358002273321653f,   // f 13//74 3//74 19//74
-          -0.569924721020923f, -0.591825670995231f, 0.570024725358705f,   -0.569924721020923f, -0.591825670995231f, 0.570024725358705f,   -0.569924721020923f, -0.591825670995231f, 0.570024725358705f,   // f 16//75 17//75 6//75
-          0.806393927876585f, -0.50969616200235f, -0.299897741778507f,   0.806393927876585f, -0.50969616200235f, -0.299897741778507f,   0.806393927876585f, -0.50969616200235f, -0.299897741778507f,   // f 16//76 14//76 17//76
-          0.785612723101077f, -0.585909488881009f, -0.198803219644213f,   0.785612723101077f, -0.585909488881009f, -0.198803219644213f,   0.785612723101077f, -0.585909488881009f, -0.198803219644213f,   // f 14//77 1//77 17//77
-          0.815134945584192f, -0.546523429961674f, -0.192008231569335f,   0.815134945584192f, -0.546523429961674f, -0.192008231569335f,   0.815134945584192f, -0.546523429961674f, -0.192008231569335f,   // f 13//78 15//78 3//78
-          0.0700986334404615f, -0.507690102677921f, 0.858683260133014f,   0.0700986334404615f, -0.507690102677921f, 0.858683260133014f,   0.0700986334404615f, -0.507690102677921f, 0.858683260133014f,   // f 13//79 14//79 15//79
-          0.534289471929682f, -0.513589879811126f, 0.671386770454031f,   0.534289471929682f, -0.513589879811126f, 0.671386770454031f,   0.534289471929682f, -0.513589879811126f, 0.671386770454031f,   // f 14//80 2//80 15//80
-          0.557913808537644f, -0.493512214578468f, 0.667216513813078f,   0.557913808537644f, -0.493512214578468f, 0.667216513813078f,   0.557913808537644f, -0.493512214578468f, 0.667216513813078f};
-
   public static final float[] FLOOR_COORDS = new float[] {
       200f, 0, -200f,
       -200f, 0, -200f,
@@ -0,0 +1,51 @@
+#version 300 es
+#ifdef GL_EXT_clip_cull_distance
+#extension GL_EXT_clip_cull_distance : enable
+#endif
+
+// Single-pass stereo version of light_vertex. With u_Eye < 0 it is drawn with two instances, one
+// per eye, into a viewport spanning both eyes; gl_InstanceID picks the eye's matrices and half of
+// the viewport, and a clip plane down the middle keeps each eye out of the other's half. Without
+// clip distances the eyes are drawn one after the other instead, each into its own viewport with
+// u_Eye set, so the viewport does the clipping. Either way no fragment is discarded, which would
+// cost the early depth test.
+
+uniform int u_Eye;
+uniform mat4 u_Model;
+uniform mat4 u_MVP[2];
+uniform mat4 u_MVMatrix[2];
+uniform vec4 u_LightPos[2];
+
+in vec4 a_Position;
+in vec4 a_Color;
+in vec3 a_Normal;
+
+out vec4 v_Color;
+out vec3 v_Grid;
+
+void main() {
+   int eye = u_Eye < 0 ? gl_InstanceID : u_Eye;
+   v_Grid = vec3(u_Model * a_Position);
+
+   vec3 lightPos = u_LightPos[eye].xyz;
+   vec3 modelViewVertex = vec3(u_MVMatrix[eye] * a_Position);
+   vec3 modelViewNormal = vec3(u_MVMatrix[eye] * vec4(a_Normal, 0.0));
+
+   float distance = length(lightPos - modelViewVertex);
+   vec3 lightVector = normalize(lightPos - modelViewVertex);
+   float diffuse = max(dot(modelViewNormal, lightVector), 0.5);
+
+   diffuse = diffuse * (1.0 / (1.0 + (0.00001 * distance * distance)));
+   v_Color = a_Color * diffuse;
+
+   vec4 position = u_MVP[eye] * a_Position;
+   if (u_Eye < 0) {
+       // Squeeze the eye's clip space into its half of the double-width viewport.
+       position.x = position.x * 0.5 + (float(eye) - 0.5) * position.w;
+   }
+#ifdef GL_EXT_clip_cull_distance
+   // Clip at the middle of the double-width viewport, x = 0, on the side of the other eye.
+   gl_ClipDistance[0] = u_Eye >= 0 ? 1.0 : (eye == 0 ? -position.x : position.x);
+#endif
+   gl_Position = position;
+}
@@ -0,0 +1,63 @@
+// Replays a pulse sensor trace through the sketch's own beat detector, the Timer 2 interrupt
+// in Interrupt.ino, compiled for the host. Writes the golden output BeatDetectorTest compares
+// the Java port against.
+//
+// Reads one analogRead value per line from stdin and runs the interrupt once per value. Every
+// time the interrupt sets QS, prints the sample's index (from 0) with BPM and IBI, the way the
+// sketch then sends B and Q:
+//
+//   <index> B<BPM> Q<IBI>
+//
+// Build and run from this directory:
+//
+//   g++ -o /tmp/interrupt_replay interrupt_replay.cpp
+//   cd ../resources/net/guguke/cardboard/pulse
+//   /tmp/interrupt_replay < pulse_trace.txt > pulse_trace_golden.txt
+
+#include <stdint.h>
+#include <stdio.h>
+
+// What the sketch gets from the Arduino core.
+typedef bool boolean;
+typedef uint16_t word;
+static uint8_t TCCR2A, TCCR2B, OCR2A, TIMSK2;
+static const int HIGH = 1;
+static const int LOW = 0;
+static int16_t nextSample;
+static int16_t analogRead(int16_t) { return nextSample; }
+static void digitalWrite(int16_t, int16_t) {}
+static void cli() {}
+static void sei() {}
+#define ISR(vector) static void isr()
+
+// The AVR's int is 16 bits. unsigned long stays wider than its 32 bits here, which only matters
+// once sampleCounter wraps after 49 days.
+#define int int16_t
+
+// Globals of PulseSensorAmped_Arduino_1dot4.ino used by the interrupt.
+int pulsePin = 0;
+int blinkPin = 13;
+volatile int BPM;
+volatile int Signal;
+volatile int IBI = 600;
+volatile boolean Pulse = false;
+volatile boolean QS = false;
+
+#include "../../../../../Arduino files/Interrupt.ino"
+
+#undef int
+
+int main() {
+  long index = 0;
+  int value;
+  while (scanf("%d", &value) == 1) {
+    nextSample = (int16_t) value;
+    isr();
+    if (QS) {
+      printf("%ld B%d Q%d\n", index, BPM, IBI);
+      QS = false;
+    }
+    index++;
+  }
+  return 0;
+}
@@ -0,0 +1,98 @@
+#!/usr/bin/env python3
+# Writes an RR interval series and the HRV measures HrvAnalyzerTest expects after each beat.
+#
+# The series is seven minutes of beats around 70 BPM, modulated at 0.1 Hz (the baroreflex, LF)
+# and 0.25 Hz (breathing, HF) with some noise.  It also has artifacts the analyzer must ignore,
+# intervals too short or too long for the sensor to have measured, and a few lost beats after
+# which successive differences don't count.
+#
+# The reference measures are computed here from scratch over each beat's five minute window,
+# with the textbook Lomb-Scargle periodogram and trapezoid integration of each band, sharing
+# nothing with the analyzer's running sums.
+#
+#   python3 make_hrv_reference.py \
+#       ../resources/net/guguke/cardboard/pulse/hrv_rr.txt \
+#       ../resources/net/guguke/cardboard/pulse/hrv_reference.txt
+
+import math
+import random
+import sys
+
+WINDOW_MS = 5 * 60 * 1000
+MIN_IBI_MS = 250
+MAX_IBI_MS = 2500
+MIN_SPECTRUM_SPAN_MS = 2 * 60 * 1000
+STEP_HZ = 0.005
+random.seed(19)
+
+
+def series():
+    # (time of the beat in ms, reported interval in ms)
+    beats = []
+    t = 0
+    while t < 7 * 60 * 1000:
+        s = t / 1000.0
+        ibi = int(round(860 + 40 * math.sin(2 * math.pi * 0.1 * s)
+                        + 25 * math.sin(2 * math.pi * 0.25 * s) + random.gauss(0, 12)))
+        t += ibi
+        beats.append((t, ibi))
+        if random.random() < 0.01:
+            # A motion artifact right after the beat.
+            beats.append((t + 180, 180))
+        if random.random() < 0.005:
+            # Lost beats: the next one reports only its own interval.
+            t += 2 * ibi
+    # A long pause, e.g. the finger off the sensor, reported as an impossible interval.
+    beats.append((t + 3000, 3000))
+    return beats
+
+
+def lomb_scargle(times, values, frequency):
+    omega = 2 * math.pi * frequency
+    tau = math.atan2(sum(math.sin(2 * omega * t) for t in times),
+                     sum(math.cos(2 * omega * t) for t in times)) / (2 * omega)
+    c = [math.cos(omega * (t - tau)) for t in times]
+    s = [math.sin(omega * (t - tau)) for t in times]
+    yc = sum(y * x for y, x in zip(values, c))
+    ys = sum(y * x for y, x in zip(values, s))
+    return yc * yc / sum(x * x for x in c) + ys * ys / sum(x * x for x in s)
+
+
+def band_power(times, values, low, high):
+    n = int(round((high - low) / STEP_HZ))
+    power = [lomb_scargle(times, values, low + i * STEP_HZ) for i in range(n + 1)]
+    return STEP_HZ * (sum(power) - (power[0] + power[-1]) / 2)
+
+
+def measures(window):
+    ibis = [ibi for _, ibi in window]
+    n = len(ibis)
+    mean = sum(ibis) / n
+    sdnn = math.sqrt(sum((x - mean) ** 2 for x in ibis) / (n - 1)) if n > 1 else 0
+    diffs = [window[i][1] - window[i - 1][1] for i in range(1, n)
+             if window[i][0] - window[i - 1][0] <= MAX_IBI_MS]
+    rmssd = math.sqrt(sum(d * d for d in diffs) / len(diffs)) if diffs else 0
+    pnn50 = sum(1 for d in diffs if abs(d) > 50) / len(diffs) if diffs else 0
+    ratio = float('nan')
+    if n > 1 and window[-1][0] - window[0][0] >= MIN_SPECTRUM_SPAN_MS:
+        times = [(t - window[0][0]) / 1000.0 for t, _ in window]
+        values = [x - mean for x in ibis]
+        ratio = (band_power(times, values, 0.04, 0.15)
+                 / band_power(times, values, 0.15, 0.4))
+    return n, mean, sdnn, rmssd, pnn50, ratio
+
+
+def main(rr_path, reference_path):
+    beats = series()
+    accepted = []
+    with open(rr_path, 'w') as rr, open(reference_path, 'w') as reference:
+        for t, ibi in beats:
+            rr.write('%d %d\n' % (t, ibi))
+            if ibi < MIN_IBI_MS or ibi > MAX_IBI_MS:
+                continue
+            accepted.append((t, ibi))
+            window = [b for b in accepted if b[0] >= t - WINDOW_MS]
+            reference.write('%d %.6f %.6f %.6f %.6f %.6g\n' % measures(window))
+
+
+main(sys.argv[1], sys.argv[2])
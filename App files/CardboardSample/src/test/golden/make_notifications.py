@@ -0,0 +1,75 @@
+#!/usr/bin/env python3
+# Writes the BLE UART notifications PulseLineFramerBenchmark decodes: the pulse trace replayed
+# through what the sketches send, cut into packets the way the Bluefruit module sends them.
+#
+# Interrupt.ino prints an S line for every sample and a B and a Q line for every beat found by
+# the interrupt (pulse_trace_golden.txt), each ended with Serial.println's CRLF. Serialcomm.ino
+# adds an AT+BLEUARTTX=<BPM> line and two # keep-alives every pass of its loop. The module
+# buffers what it gets and sends it at each connection event, in notifications of up to 20
+# bytes, so packets are mostly full but lines still end anywhere in them.
+#
+# The output is every notification's length as one byte followed by its payload.
+#
+#   cd ../resources/net/guguke/cardboard/pulse
+#   python3 ../../../../../golden/make_notifications.py pulse_trace.txt pulse_trace_golden.txt \
+#       ../../../../../../../../benchmarks/src/main/resources/net/guguke/cardboard/pulse/benchmarks/pulse_notifications.bin
+
+import sys
+
+SAMPLE_INTERVAL_MS = 2
+# Serialcomm.ino's loop: the BPM line, 20 ms later a keep-alive, and another after 2000 / 6 ms.
+LOOP_MS = 20 + 2 * 2000 // 6
+CONNECTION_INTERVAL_MS = 15
+PACKET_SIZE = 20
+PACKETS_PER_EVENT = 4
+
+
+def main(trace_path, golden_path, out_path):
+    with open(trace_path) as f:
+        samples = [int(line) for line in f if line.strip()]
+    beats = {}
+    with open(golden_path) as f:
+        for line in f:
+            index, bpm, ibi = line.split()
+            beats[int(index)] = (int(bpm[1:]), int(ibi[1:]))
+
+    # (time in ms, line) in the order the module receives them.
+    lines = []
+    bpm = 0
+    for i, signal in enumerate(samples):
+        t = i * SAMPLE_INTERVAL_MS
+        lines.append((t, 'S%d' % signal))
+        if i in beats:
+            bpm, ibi = beats[i]
+            lines.append((t, 'B%d' % bpm))
+            lines.append((t, 'Q%d' % ibi))
+        if t % LOOP_MS == 0:
+            lines.append((t, 'AT+BLEUARTTX=%d' % bpm))
+        if t % LOOP_MS in (20, 20 + 2000 // 6 + 1):
+            lines.append((t, '#'))
+
+    packets = []
+    pending = bytearray()
+    next_line = 0
+    end = len(samples) * SAMPLE_INTERVAL_MS
+    for event in range(0, end + CONNECTION_INTERVAL_MS, CONNECTION_INTERVAL_MS):
+        while next_line < len(lines) and lines[next_line][0] <= event:
+            pending += (lines[next_line][1] + '\r\n').encode('ascii')
+            next_line += 1
+        for _ in range(PACKETS_PER_EVENT):
+            if not pending:
+                break
+            packets.append(bytes(pending[:PACKET_SIZE]))
+            del pending[:PACKET_SIZE]
+    while pending:
+        packets.append(bytes(pending[:PACKET_SIZE]))
+        del pending[:PACKET_SIZE]
+
+    with open(out_path, 'wb') as f:
+        for packet in packets:
+            f.write(bytes([len(packet)]))
+            f.write(packet)
+
+
+if __name__ == '__main__':
+    main(sys.argv[1], sys.argv[2], sys.argv[3])
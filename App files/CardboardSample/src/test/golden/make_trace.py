@@ -0,0 +1,43 @@
+#!/usr/bin/env python3
+# Writes a synthetic pulse sensor trace for BeatDetectorTest: one analogRead value (0 to 1023)
+# per line, sampled at the sketch's 500 Hz.
+#
+# The trace covers the cases the detector has to handle: a resting pulse with sinus arrhythmia
+# and baseline wander, the finger coming off the sensor for over 2.5 s (which makes the sketch
+# start over), and a faster, weaker pulse that also clips at the top of the ADC range.
+#
+#   python3 make_trace.py > ../resources/net/guguke/cardboard/pulse/pulse_trace.txt
+
+import math
+import random
+
+RATE = 500
+random.seed(17)
+
+
+def wave(phase):
+    # Systolic peak followed by the smaller dicrotic wave.
+    return (math.exp(-((phase - 0.2) / 0.1) ** 2)
+            + 0.35 * math.exp(-((phase - 0.5) / 0.12) ** 2))
+
+
+def pulse(seconds, bpm, amplitude, base, t0):
+    samples = []
+    phase = 0.0
+    for i in range(int(seconds * RATE)):
+        t = t0 + i / RATE
+        # Breathing speeds the heart up and down a little and moves the baseline.
+        rate = bpm * (1 + 0.06 * math.sin(2 * math.pi * 0.25 * t)) / 60.0
+        phase = (phase + rate / RATE) % 1.0
+        value = (base + 25 * math.sin(2 * math.pi * 0.2 * t)
+                 + amplitude * wave(phase) + random.gauss(0, 3))
+        samples.append(min(1023, max(0, int(round(value)))))
+    return samples
+
+
+trace = pulse(20, 72, 230, 470, 0.0)
+# Finger off: ambient light only.
+trace += [min(1023, max(0, int(round(300 + random.gauss(0, 2))))) for _ in range(RATE * 7 // 2)]
+trace += pulse(16.5, 110, 600, 520, 23.5)
+for value in trace:
+    print(value)
@@ -0,0 +1,188 @@
+package com.adafruit.bleuart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Registration and dispatch of BluetoothLeUart callbacks, with notifications delivered straight
+// through the GATT callback as the Binder thread would.
+public class BluetoothLeUartCallbacksTest {
+
+    private static final int NOTIFICATIONS = 200000;
+    private static final int CHURN_NOTIFICATIONS = 50000;
+
+    private final BluetoothLeUart uart = new BluetoothLeUart(null);
+    private final BluetoothGattCharacteristic rx =
+            new BluetoothGattCharacteristic(BluetoothLeUart.RX_UUID, 0, 0);
+
+    @Test
+    public void callbacksAreCalledOnceEachUntilUnregistered() {
+        CountingCallback first = new CountingCallback();
+        CountingCallback second = new CountingCallback();
+        uart.registerCallback(first);
+        uart.registerCallback(second);
+        uart.registerCallback(first);
+        uart.onCharacteristicChanged(null, rx);
+        assertEquals(1, first.received);
+        assertEquals(1, second.received);
+
+        uart.unregisterCallback(first);
+        uart.onCharacteristicChanged(null, rx);
+        assertEquals(1, first.received);
+        assertEquals(2, second.received);
+
+        // Unregistering twice, or something never registered, changes nothing.
+        uart.unregisterCallback(first);
+        uart.unregisterCallback(new CountingCallback());
+        uart.onCharacteristicChanged(null, rx);
+        assertEquals(3, second.received);
+    }
+
+    @Test
+    public void deliveryDuringRegistrationChurnMissesNothing() throws InterruptedException {
+        final CountingCallback steady = new CountingCallback();
+        uart.registerCallback(steady);
+        final AtomicBoolean delivering = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread.UncaughtExceptionHandler handler = new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        };
+
+        // The Binder thread delivering notifications as fast as it can.
+        Thread binder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < CHURN_NOTIFICATIONS; i++) {
+                    uart.onCharacteristicChanged(null, rx);
+                }
+                delivering.set(false);
+            }
+        });
+        // UI threads registering and unregistering their own callbacks meanwhile, like activities
+        // going through onResume and onStop.
+        Thread[] churners = new Thread[3];
+        final CountingCallback[] churned = new CountingCallback[churners.length];
+        final CountDownLatch registered = new CountDownLatch(churners.length);
+        for (int t = 0; t < churners.length; t++) {
+            final CountingCallback callback = new CountingCallback();
+            churned[t] = callback;
+            churners[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // Stay registered until the first notification arrives, so every churned
+                    // callback is called however the threads get scheduled.
+                    uart.registerCallback(callback);
+                    registered.countDown();
+                    while (callback.received == 0 && delivering.get()) {
+                        Thread.yield();
+                    }
+                    while (delivering.get()) {
+                        uart.registerCallback(callback);
+                        uart.registerCallback(new CountingCallback());
+                        uart.unregisterCallback(callback);
+                    }
+                }
+            });
+        }
+        for (Thread churner : churners) {
+            churner.setUncaughtExceptionHandler(handler);
+            churner.start();
+        }
+        registered.await();
+        binder.setUncaughtExceptionHandler(handler);
+        binder.start();
+        binder.join();
+        for (Thread churner : churners) {
+            churner.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(CHURN_NOTIFICATIONS, steady.received);
+        int churnedTotal = 0;
+        for (CountingCallback callback : churned) {
+            churnedTotal += callback.received;
+        }
+        // The churned callbacks were registered some of the time, never twice at once.
+        assertTrue(churnedTotal > 0);
+        assertTrue(churnedTotal <= churned.length * CHURN_NOTIFICATIONS);
+        // Every one of them is unregistered now.
+        uart.onCharacteristicChanged(null, rx);
+        int after = 0;
+        for (CountingCallback callback : churned) {
+            after += callback.received;
+        }
+        assertEquals(churnedTotal, after);
+        assertEquals(CHURN_NOTIFICATIONS + 1, steady.received);
+    }
+
+    @Test
+    public void dispatchAllocatesNothing() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        CountingCallback[] callbacks = new CountingCallback[3];
+        for (int i = 0; i < callbacks.length; i++) {
+            callbacks[i] = new CountingCallback();
+            uart.registerCallback(callbacks[i]);
+        }
+        // Warm up, so class loading and compilation don't count.
+        for (int i = 0; i < NOTIFICATIONS; i++) {
+            uart.onCharacteristicChanged(null, rx);
+        }
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < NOTIFICATIONS; i++) {
+            uart.onCharacteristicChanged(null, rx);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        // An iterator per notification would be tens of bytes each; the JVM itself now and then
+        // charges a few bytes to the thread.
+        assertTrue("Bytes allocated over " + NOTIFICATIONS + " notifications: " + allocated,
+                allocated < NOTIFICATIONS);
+        assertEquals(2 * NOTIFICATIONS, callbacks[2].received);
+    }
+
+    private static class CountingCallback implements BluetoothLeUart.Callback {
+        // Only ever incremented from the one delivering thread.
+        volatile int received;
+
+        @Override
+        public void onConnected(BluetoothLeUart uart) {}
+
+        @Override
+        public void onConnectFailed(BluetoothLeUart uart) {}
+
+        @Override
+        public void onDisconnected(BluetoothLeUart uart) {}
+
+        @Override
+        public void onReceive(BluetoothLeUart uart, BluetoothGattCharacteristic rx) {
+            received++;
+        }
+
+        @Override
+        public void onDeviceFound(BluetoothDevice device) {}
+
+        @Override
+        public void onDeviceInfoAvailable() {}
+    }
+}
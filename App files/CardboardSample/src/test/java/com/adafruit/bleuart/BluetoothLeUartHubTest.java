@@ -0,0 +1,353 @@
+package com.adafruit.bleuart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Runs the hub against simulated devices: each one is a BluetoothLeUart whose GATT callbacks are
+// driven by the test instead of the Bluetooth stack, from a thread of its own like a Binder thread.
+public class BluetoothLeUartHubTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final long TIMEOUT_MS = 5000;
+
+    private final RecordingListener listener = new RecordingListener();
+    private final List<SimulatedUart> uarts = new ArrayList<SimulatedUart>();
+    private BluetoothLeUartHub hub;
+
+    @After
+    public void tearDown() {
+        listener.release();
+    }
+
+    @Test
+    public void devicesAreNumberedInTheOrderTheyWereFound() throws InterruptedException {
+        hub = newHub(2, BluetoothLeUartHub.DEFAULT_QUEUE_CAPACITY);
+        hub.onUartFound("A", null);
+        hub.onUartFound("B", null);
+        hub.onUartFound("A", null);
+        // Over the limit.
+        hub.onUartFound("C", null);
+
+        assertEquals(2, uarts.size());
+        assertEquals(2, hub.getDeviceCount());
+        assertEquals("A", hub.getAddress(0));
+        assertEquals("B", hub.getAddress(1));
+        assertSame(uarts.get(1), hub.getUart(1));
+        assertEquals(1, uarts.get(0).connects);
+
+        uarts.get(1).connected();
+        uarts.get(0).connected();
+        uarts.get(0).receive("B72\n");
+        uarts.get(1).receive("Q812\n");
+        uarts.get(0).dropped();
+        listener.await(5);
+        assertEquals("connected 1 B, connected 0 A, receive 0 B72\n, receive 1 Q812\n, "
+                + "disconnected 0 A", listener.joined());
+    }
+
+    @Test
+    public void failedConnectionIsReleasedAndTheDeviceReused() throws InterruptedException {
+        hub = newHub(2, BluetoothLeUartHub.DEFAULT_QUEUE_CAPACITY);
+        hub.onUartFound("A", null);
+        SimulatedUart uart = uarts.get(0);
+        uart.connectFailed();
+        listener.await(1);
+        assertEquals(1, uart.closes);
+        assertEquals(0, hub.getDeviceCount());
+        assertNull(hub.getUart(0));
+
+        hub.onUartFound("A", null);
+        assertEquals(1, uarts.size());
+        assertEquals(2, uart.connects);
+        uart.connected();
+        uart.receive("S512\n");
+        listener.await(3);
+        assertEquals("disconnected 0 A, connected 0 A, receive 0 S512\n", listener.joined());
+    }
+
+    @Test
+    public void stopClosesEveryDeviceAndStartReusesThem() throws InterruptedException {
+        hub = newHub(2, BluetoothLeUartHub.DEFAULT_QUEUE_CAPACITY);
+        hub.onUartFound("A", null);
+        hub.onUartFound("B", null);
+        hub.stop();
+        listener.await(2);
+        assertEquals(0, hub.getDeviceCount());
+        assertEquals(1, uarts.get(0).closes);
+        assertEquals(1, uarts.get(1).closes);
+
+        // Unregistered while stopped.
+        uarts.get(1).receive("lost");
+        hub.onUartFound("B", null);
+        assertEquals(2, uarts.size());
+        assertEquals(2, uarts.get(1).connects);
+        uarts.get(1).receive("S1\n");
+        listener.await(3);
+        assertEquals("receive 1 S1\n", listener.events.get(2));
+    }
+
+    @Test
+    public void slowListenerLosesDataButNotConnectionEvents() throws InterruptedException {
+        hub = newHub(1, 8);
+        hub.onUartFound("A", null);
+        SimulatedUart uart = uarts.get(0);
+        listener.block();
+        for (int i = 0; i < 50; i++) {
+            uart.receive(Integer.toString(i));
+        }
+        uart.dropped();
+        listener.release();
+        listener.await(9);
+        uart.receive("50");
+        listener.await(11);
+
+        // The chunk being delivered and the seven behind it made it, then the disconnect, which
+        // is never dropped.
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 8; i++) {
+            expected.add("receive 0 " + i);
+        }
+        expected.add("disconnected 0 A");
+        expected.add("lost 0 42");
+        expected.add("receive 0 50");
+        assertEquals(expected, listener.events);
+        assertEquals(42, hub.getDroppedEvents());
+    }
+
+    @Test
+    public void everyDevicesDataArrivesInOrderFromConcurrentThreads() throws InterruptedException {
+        final int devices = 4;
+        final int chunks = 20000;
+        hub = newHub(devices, 64);
+        for (int i = 0; i < devices; i++) {
+            hub.onUartFound("D" + i, null);
+        }
+        SequenceChecker checker = new SequenceChecker(devices);
+        listener.forward(checker);
+        Thread[] threads = new Thread[devices];
+        for (int i = 0; i < devices; i++) {
+            final SimulatedUart uart = uarts.get(i);
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < chunks; n++) {
+                        uart.receive(Integer.toString(n));
+                    }
+                    uart.dropped();
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(checker.done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        int received = 0;
+        for (int i = 0; i < devices; i++) {
+            assertNull(checker.errors[i], checker.errors[i]);
+            // Every loss before the last chunk that made it was reported.
+            assertEquals(checker.next[i], checker.received[i] + checker.lost[i]);
+            received += checker.received[i];
+        }
+        assertEquals(devices * chunks, received + hub.getDroppedEvents());
+    }
+
+    private BluetoothLeUartHub newHub(int maxDevices, int queueCapacity) {
+        return new BluetoothLeUartHub(null, null, maxDevices, queueCapacity, listener) {
+            @Override
+            BluetoothLeUart createUart() {
+                SimulatedUart uart = new SimulatedUart();
+                uarts.add(uart);
+                return uart;
+            }
+        };
+    }
+
+    // A UART device as seen through its GATT callbacks.
+    private static class SimulatedUart extends BluetoothLeUart {
+        final BluetoothGattCharacteristic rx = new BluetoothGattCharacteristic(RX_UUID, 0, 0) {
+            @Override
+            public byte[] getValue() {
+                return value;
+            }
+        };
+        byte[] value;
+        int connects;
+        int closes;
+
+        SimulatedUart() {
+            super(null);
+        }
+
+        @Override
+        public void connect(android.bluetooth.BluetoothDevice device) {
+            connects++;
+        }
+
+        @Override
+        public void close() {
+            closes++;
+            super.close();
+        }
+
+        void connected() {
+            notifyOnConnected(this);
+        }
+
+        void connectFailed() {
+            onConnectionStateChange(null, BluetoothGatt.GATT_FAILURE,
+                    BluetoothGatt.STATE_CONNECTED);
+        }
+
+        void dropped() {
+            onConnectionStateChange(null, BluetoothGatt.GATT_SUCCESS,
+                    BluetoothGatt.STATE_DISCONNECTED);
+        }
+
+        void receive(String data) {
+            value = data.getBytes(ASCII);
+            onCharacteristicChanged(null, rx);
+        }
+    }
+
+    // Records every event as text, and can hold up the dispatch thread.
+    private static class RecordingListener implements BluetoothLeUartHub.Listener {
+        final List<String> events = new ArrayList<String>();
+        private CountDownLatch gate = new CountDownLatch(0);
+        private BluetoothLeUartHub.Listener forward;
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        void forward(BluetoothLeUartHub.Listener forward) {
+            this.forward = forward;
+        }
+
+        synchronized void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                wait(10);
+            }
+            assertEquals(joined(), count, events.size());
+        }
+
+        synchronized String joined() {
+            StringBuilder sb = new StringBuilder();
+            for (String event : events) {
+                sb.append(sb.length() > 0 ? ", " : "").append(event);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void onDeviceConnected(int device, String address) {
+            add("connected " + device + " " + address);
+        }
+
+        @Override
+        public void onDeviceDisconnected(int device, String address) {
+            if (forward != null) {
+                forward.onDeviceDisconnected(device, address);
+            } else {
+                add("disconnected " + device + " " + address);
+            }
+        }
+
+        @Override
+        public void onDeviceReceive(int device, byte[] data, int offset, int length,
+                long timeNanos) {
+            if (forward != null) {
+                forward.onDeviceReceive(device, data, offset, length, timeNanos);
+                return;
+            }
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            add("receive " + device + " " + new String(data, offset, length, ASCII));
+        }
+
+        @Override
+        public void onDeviceDataLost(int device, int chunks) {
+            if (forward != null) {
+                forward.onDeviceDataLost(device, chunks);
+            } else {
+                add("lost " + device + " " + chunks);
+            }
+        }
+
+        private synchronized void add(String event) {
+            events.add(event);
+            notifyAll();
+        }
+    }
+
+    // Checks each device's numbered chunks arrive in order, with any gap reported right before.
+    private static class SequenceChecker implements BluetoothLeUartHub.Listener {
+        final int[] next;
+        final int[] lost;
+        final int[] received;
+        final String[] errors;
+        private final int[] pendingLoss;
+        final CountDownLatch done;
+
+        SequenceChecker(int devices) {
+            next = new int[devices];
+            lost = new int[devices];
+            received = new int[devices];
+            errors = new String[devices];
+            pendingLoss = new int[devices];
+            done = new CountDownLatch(devices);
+        }
+
+        @Override
+        public void onDeviceConnected(int device, String address) {}
+
+        @Override
+        public void onDeviceDisconnected(int device, String address) {
+            done.countDown();
+        }
+
+        @Override
+        public void onDeviceReceive(int device, byte[] data, int offset, int length,
+                long timeNanos) {
+            int n = Integer.parseInt(new String(data, offset, length, ASCII));
+            if (n != next[device] + pendingLoss[device] && errors[device] == null) {
+                errors[device] = "Chunk " + n + " after " + (next[device] - 1) + " with "
+                        + pendingLoss[device] + " lost";
+            }
+            lost[device] += pendingLoss[device];
+            pendingLoss[device] = 0;
+            next[device] = n + 1;
+            received[device]++;
+        }
+
+        @Override
+        public void onDeviceDataLost(int device, int chunks) {
+            pendingLoss[device] = chunks;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.adafruit.bleuart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Runs the reconnector against a simulated flaky link, with all timings scaled down to a few
+// milliseconds.  The link answers on a thread of its own, like the GATT callbacks do.
+public class UartReconnectorTest {
+
+    private static final String ADDRESS = "00:11:22:33:44:55";
+    private static final int DIRECT_ATTEMPTS = 3;
+    private static final long INITIAL_BACKOFF_MS = 10;
+    private static final long MAX_BACKOFF_MS = 40;
+    private static final long ATTEMPT_TIMEOUT_MS = 50;
+    private static final long SCAN_TIMEOUT_MS = 80;
+    private static final long WAIT_MS = 5000;
+
+    private final FlakyLink link = new FlakyLink();
+    private final UartReconnector reconnector = new UartReconnector(link, DIRECT_ATTEMPTS,
+            INITIAL_BACKOFF_MS, MAX_BACKOFF_MS, ATTEMPT_TIMEOUT_MS, SCAN_TIMEOUT_MS);
+
+    @After
+    public void tearDown() {
+        reconnector.shutdown();
+        link.shutdown();
+    }
+
+    @Test
+    public void dropIsRecoveredByConnectingStraightBack() throws InterruptedException {
+        reconnector.onConnected(ADDRESS);
+        link.script(FlakyLink.CONNECT);
+        reconnector.onDisconnected();
+        assertTrue(reconnector.isRecovering());
+
+        waitForRecoveries(1);
+        assertEquals(1, link.connects.size());
+        assertEquals(0, link.scans);
+        assertTrue(reconnector.summary(), reconnector.summary().startsWith(
+                "Recovered 1 times (1 direct, 0 after scanning) with 1 connection attempts"));
+    }
+
+    @Test
+    public void failedAttemptsBackOffExponentially() throws InterruptedException {
+        reconnector.onConnected(ADDRESS);
+        link.script(FlakyLink.FAIL, FlakyLink.FAIL, FlakyLink.CONNECT);
+        reconnector.onDisconnected();
+
+        waitForRecoveries(1);
+        List<Long> connects = link.connectTimes();
+        assertEquals(3, connects.size());
+        long firstWait = connects.get(1) - connects.get(0);
+        long secondWait = connects.get(2) - connects.get(1);
+        assertTrue("Waited " + firstWait + " ms", firstWait >= INITIAL_BACKOFF_MS);
+        assertTrue("Waited " + secondWait + " ms", secondWait >= 2 * INITIAL_BACKOFF_MS);
+        assertTrue(reconnector.getLastRecoveryMs() >= 3 * INITIAL_BACKOFF_MS);
+    }
+
+    @Test
+    public void deviceOutOfRangeIsScannedForAfterTheDirectAttempts() throws InterruptedException {
+        reconnector.onConnected(ADDRESS);
+        // The first attempt is refused, the others hang until they time out.
+        link.script(FlakyLink.FAIL, FlakyLink.HANG, FlakyLink.HANG, FlakyLink.CONNECT);
+        // The first scan only finds another device, the second one finds ours.
+        link.scanResults("AA:BB:CC:DD:EE:FF");
+        link.scanResults("AA:BB:CC:DD:EE:FF", ADDRESS);
+        reconnector.onDisconnected();
+
+        waitForRecoveries(1);
+        assertEquals(4, link.connects.size());
+        assertEquals(2, link.scans);
+        assertEquals(2, link.scanStops);
+        assertTrue(reconnector.summary(), reconnector.summary().startsWith(
+                "Recovered 1 times (0 direct, 1 after scanning) with 4 connection attempts and "
+                + "2 scans"));
+        // Two timed out attempts, a timed out scan and three back offs at least.
+        assertTrue(reconnector.getLastRecoveryMs()
+                >= 2 * ATTEMPT_TIMEOUT_MS + SCAN_TIMEOUT_MS + 3 * INITIAL_BACKOFF_MS);
+    }
+
+    @Test
+    public void backOffIsCappedAndAttemptsThatCantStartCountAsFailures()
+            throws InterruptedException {
+        reconnector.onConnected(ADDRESS);
+        link.script(FlakyLink.REJECT, FlakyLink.REJECT, FlakyLink.REJECT, FlakyLink.CONNECT);
+        link.refuseScans = 3;
+        link.scanResults(ADDRESS);
+        reconnector.onDisconnected();
+
+        waitForRecoveries(1);
+        // Three scans couldn't start, the fourth found the device.
+        assertEquals(4, link.scans);
+        List<Long> connects = link.connectTimes();
+        long lastConnect = connects.get(connects.size() - 1);
+        // Six back offs: 10, 20, 40, 40, 40, 40 ms.
+        assertTrue(lastConnect - connects.get(0) >= 180);
+    }
+
+    @Test
+    public void cancelStopsRecovering() throws InterruptedException {
+        reconnector.onConnected(ADDRESS);
+        link.script(FlakyLink.FAIL);
+        reconnector.onDisconnected();
+        link.awaitConnects(1);
+        reconnector.cancel();
+        assertFalse(reconnector.isRecovering());
+
+        Thread.sleep(4 * MAX_BACKOFF_MS);
+        assertEquals(1, link.connects.size());
+        assertEquals(0, reconnector.getRecoveries());
+    }
+
+    @Test
+    public void nothingIsRecoveredAfterShutdown() throws InterruptedException {
+        reconnector.onConnected(ADDRESS);
+        reconnector.shutdown();
+        // A drop reported by a callback that was already on its way.
+        reconnector.onDisconnected();
+        assertFalse(reconnector.isRecovering());
+        assertEquals(0, link.connects.size());
+    }
+
+    @Test
+    public void everyDropOfAFlakyLinkIsRecovered() throws InterruptedException {
+        Random random = new Random(25);
+        reconnector.onConnected(ADDRESS);
+        int drops = 20;
+        for (int drop = 1; drop <= drops; drop++) {
+            // Each attempt fails, hangs or connects at random, and the device is sometimes out of
+            // range for a while.
+            for (int i = 0; i < 4; i++) {
+                int r = random.nextInt(10);
+                link.script(r < 5 ? FlakyLink.CONNECT : r < 8 ? FlakyLink.FAIL : FlakyLink.HANG);
+            }
+            link.script(FlakyLink.CONNECT);
+            // Enough scans finding the device for the attempts left after the direct ones.
+            link.scanResults(random.nextBoolean() ? ADDRESS : "AA:BB:CC:DD:EE:FF");
+            link.scanResults(ADDRESS);
+            link.scanResults(ADDRESS);
+            reconnector.onDisconnected();
+            waitForRecoveries(drop);
+            link.reset();
+        }
+        assertEquals(drops, reconnector.getRecoveries());
+        assertTrue(reconnector.getMaxRecoveryMs() >= reconnector.getMeanRecoveryMs());
+        assertTrue(reconnector.getMeanRecoveryMs() >= 0);
+    }
+
+    private void waitForRecoveries(int recoveries) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while ((reconnector.getRecoveries() < recoveries || reconnector.isRecovering())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(reconnector.summary(), recoveries, reconnector.getRecoveries());
+        assertFalse(reconnector.isRecovering());
+    }
+
+    // Answers connection attempts and scans as scripted, from its own thread after a short delay.
+    private class FlakyLink implements UartReconnector.Link {
+        static final int CONNECT = 0;
+        static final int FAIL = 1;
+        // Never answers, the attempt has to time out.
+        static final int HANG = 2;
+        // The attempt can't even be started.
+        static final int REJECT = 3;
+
+        private final ScheduledExecutorService gatt = Executors.newSingleThreadScheduledExecutor();
+        private final LinkedList<Integer> outcomes = new LinkedList<Integer>();
+        private final LinkedList<String[]> scanResults = new LinkedList<String[]>();
+        final List<Long> connects = new ArrayList<Long>();
+        int scans;
+        int scanStops;
+        int refuseScans;
+
+        synchronized void script(int... outcomes) {
+            for (int outcome : outcomes) {
+                this.outcomes.add(outcome);
+            }
+        }
+
+        synchronized void scanResults(String... addresses) {
+            scanResults.add(addresses);
+        }
+
+        synchronized void reset() {
+            outcomes.clear();
+            scanResults.clear();
+        }
+
+        synchronized List<Long> connectTimes() {
+            return new ArrayList<Long>(connects);
+        }
+
+        synchronized void awaitConnects(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + WAIT_MS;
+            while (connects.size() < count && System.currentTimeMillis() < deadline) {
+                wait(10);
+            }
+        }
+
+        void shutdown() {
+            gatt.shutdownNow();
+        }
+
+        @Override
+        public synchronized boolean connect(String address) {
+            assertEquals(ADDRESS, address);
+            connects.add(System.nanoTime() / 1000000);
+            notifyAll();
+            int outcome = outcomes.isEmpty() ? HANG : outcomes.removeFirst();
+            switch (outcome) {
+                case CONNECT:
+                    later(new Runnable() {
+                        @Override
+                        public void run() {
+                            reconnector.onConnected(ADDRESS);
+                        }
+                    });
+                    return true;
+                case FAIL:
+                    later(new Runnable() {
+                        @Override
+                        public void run() {
+                            reconnector.onConnectFailed();
+                        }
+                    });
+                    return true;
+                case HANG:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public synchronized boolean startScan() {
+            scans++;
+            if (refuseScans > 0) {
+                refuseScans--;
+                return false;
+            }
+            final String[] found =
+                    scanResults.isEmpty() ? new String[0] : scanResults.removeFirst();
+            later(new Runnable() {
+                @Override
+                public void run() {
+                    for (String address : found) {
+                        reconnector.onDeviceFound(address);
+                    }
+                }
+            });
+            return true;
+        }
+
+        @Override
+        public synchronized void stopScan() {
+            scanStops++;
+        }
+
+        private void later(Runnable callback) {
+            gatt.schedule(callback, 2, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.adafruit.bleuart;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Drives UartWriteQueue with a fake GATT that acknowledges writes only when the test says so.
+public class UartWriteQueueTest {
+
+    private static final long TIMEOUT_MS = 50;
+
+    private final FakeGatt gatt = new FakeGatt();
+    private UartWriteQueue queue;
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void payloadIsWrittenOneChunkPerAcknowledgement() {
+        queue = new UartWriteQueue(gatt, 4, 4, 10000);
+        Result result = new Result();
+        assertTrue(queue.send(bytes("B72\nQ833\n"), result));
+
+        assertEquals(1, gatt.writes());
+        gatt.ack(true);
+        assertEquals(2, gatt.writes());
+        gatt.ack(true);
+        assertEquals(3, gatt.writes());
+        assertEquals(Result.PENDING, result.outcome);
+        gatt.ack(true);
+
+        assertEquals(Result.SUCCEEDED, result.outcome);
+        assertArrayEquals(bytes("B72\n"), gatt.chunk(0));
+        assertArrayEquals(bytes("Q833"), gatt.chunk(1));
+        assertArrayEquals(bytes("\n"), gatt.chunk(2));
+        assertTrue(queue.isIdle());
+    }
+
+    @Test
+    public void lateAcknowledgementIsNotCreditedToTheNextWrite() throws InterruptedException {
+        queue = new UartWriteQueue(gatt, 20, 4, TIMEOUT_MS);
+        Result first = new Result();
+        Result second = new Result();
+        queue.send(bytes("first"), first);
+        queue.send(bytes("second"), second);
+
+        // The first write times out and the second one goes out.
+        assertTrue(first.await());
+        assertEquals(Result.FAILED, first.outcome);
+        assertTrue(gatt.awaitWrites(2));
+
+        // Now the first write's acknowledgement turns up.  The second write must keep waiting.
+        gatt.ack(true);
+        assertEquals(Result.PENDING, second.outcome);
+        assertFalse(queue.isIdle());
+
+        gatt.ack(true);
+        assertEquals(Result.SUCCEEDED, second.outcome);
+        assertTrue(queue.isIdle());
+    }
+
+    @Test
+    public void acknowledgementBeforeWriteReturnsIsHandled() {
+        gatt.ackInsideWrite = true;
+        queue = new UartWriteQueue(gatt, 2, 4, 10000);
+        Result result = new Result();
+        queue.send(bytes("S512\n"), result);
+
+        assertEquals(Result.SUCCEEDED, result.outcome);
+        assertEquals(3, gatt.writes());
+        assertTrue(queue.isIdle());
+    }
+
+    @Test
+    public void writerIsCalledWithoutTheLock() {
+        queue = new UartWriteQueue(gatt, 20, 4, 10000);
+        queue.send(bytes("B60\n"), null);
+        gatt.ack(true);
+        queue.send(bytes("B61\n"), null);
+
+        assertEquals(2, gatt.writes());
+        assertEquals(0, gatt.writesUnderLock);
+    }
+
+    @Test
+    public void writeThatCannotStartFailsOnlyItsSend() {
+        queue = new UartWriteQueue(gatt, 20, 4, 10000);
+        gatt.refuse = true;
+        Result refused = new Result();
+        queue.send(bytes("B60\n"), refused);
+        assertEquals(Result.FAILED, refused.outcome);
+
+        gatt.refuse = false;
+        Result accepted = new Result();
+        queue.send(bytes("B61\n"), accepted);
+        gatt.ack(true);
+        assertEquals(Result.SUCCEEDED, accepted.outcome);
+    }
+
+    @Test
+    public void failedAcknowledgementFailsTheWholePayload() {
+        queue = new UartWriteQueue(gatt, 2, 4, 10000);
+        Result failed = new Result();
+        Result next = new Result();
+        queue.send(bytes("Q833"), failed);
+        queue.send(bytes("B72"), next);
+
+        gatt.ack(false);
+        assertEquals(Result.FAILED, failed.outcome);
+        // The rest of the failed payload is skipped.
+        assertArrayEquals(bytes("B7"), gatt.chunk(1));
+    }
+
+    @Test
+    public void clearFailsEverythingAndForgetsOutstandingWrites() {
+        queue = new UartWriteQueue(gatt, 20, 4, 10000);
+        Result inFlight = new Result();
+        Result queued = new Result();
+        queue.send(bytes("B60\n"), inFlight);
+        queue.send(bytes("B61\n"), queued);
+
+        queue.clear();
+        assertEquals(Result.FAILED, inFlight.outcome);
+        assertEquals(Result.FAILED, queued.outcome);
+
+        Result afterReconnect = new Result();
+        queue.send(bytes("B62\n"), afterReconnect);
+        gatt.ack(true);
+        assertEquals(Result.SUCCEEDED, afterReconnect.outcome);
+    }
+
+    @Test
+    public void fullQueueRefusesMore() {
+        queue = new UartWriteQueue(gatt, 20, 2, 10000);
+        assertTrue(queue.send(bytes("a"), null));
+        assertTrue(queue.send(bytes("b"), null));
+        assertTrue(queue.send(bytes("c"), null));
+        assertFalse(queue.send(bytes("d"), null));
+    }
+
+    private static byte[] bytes(String s) {
+        byte[] b = new byte[s.length()];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (byte) s.charAt(i);
+        }
+        return b;
+    }
+
+    // Remembers what was written and acknowledges on request, like onCharacteristicWrite would.
+    @Test
+    public void shutdownStopsTheTimeoutThread() throws InterruptedException {
+        queue = new UartWriteQueue(gatt, 20, 4, TIMEOUT_MS);
+        // A timed out write fails on the timeout thread.
+        Result first = new Result();
+        queue.send(bytes("first"), first);
+        assertTrue(first.await());
+        Thread timer = first.thread;
+        assertEquals("UartWriteTimeout", timer.getName());
+
+        queue.shutdown();
+        timer.join(10 * TIMEOUT_MS);
+        assertFalse(timer.isAlive());
+
+        // The queue still works, with a new thread.
+        Result second = new Result();
+        queue.send(bytes("second"), second);
+        assertTrue(second.await());
+        assertEquals(Result.FAILED, second.outcome);
+        assertNotSame(timer, second.thread);
+    }
+
+    private class FakeGatt implements UartWriteQueue.Writer {
+        boolean refuse;
+        boolean ackInsideWrite;
+        int writesUnderLock;
+        private final List<byte[]> chunks = new ArrayList<byte[]>();
+
+        @Override
+        public boolean write(byte[] chunk) {
+            if (queue != null && Thread.holdsLock(queue)) {
+                writesUnderLock++;
+            }
+            if (refuse) {
+                return false;
+            }
+            synchronized (chunks) {
+                chunks.add(chunk.clone());
+            }
+            if (ackInsideWrite) {
+                queue.onWriteComplete(true);
+            }
+            return true;
+        }
+
+        void ack(boolean success) {
+            queue.onWriteComplete(success);
+        }
+
+        int writes() {
+            synchronized (chunks) {
+                return chunks.size();
+            }
+        }
+
+        boolean awaitWrites(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10 * TIMEOUT_MS);
+            while (writes() < count) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            return true;
+        }
+
+        byte[] chunk(int i) {
+            synchronized (chunks) {
+                return chunks.get(i);
+            }
+        }
+    }
+
+    private static class Result implements UartWriteQueue.SendCallback {
+        static final int PENDING = 0;
+        static final int SUCCEEDED = 1;
+        static final int FAILED = 2;
+
+        volatile int outcome = PENDING;
+        volatile Thread thread;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onSendComplete(boolean success) {
+            outcome = success ? SUCCEEDED : FAILED;
+            thread = Thread.currentThread();
+            done.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return done.await(10 * TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AudioDispatcherTest {
+  private static final long TIMEOUT_MS = 5000;
+
+  private final FakeEngine engine = new FakeEngine();
+  private AudioDispatcher dispatcher = new AudioDispatcher(engine);
+
+  @After
+  public void tearDown() {
+    dispatcher.shutdown();
+  }
+
+  @Test
+  public void commandsRunInOrderOffTheCallingThread() throws Exception {
+    dispatcher.preload("beat.wav");
+    dispatcher.play(3, false);
+    dispatcher.pause();
+    dispatcher.resume();
+    dispatcher.stop(3);
+
+    engine.await(5);
+    assertEquals(Arrays.asList("preloadSoundFile(beat.wav)", "playSound(3, false)", "pause()",
+        "resume()", "stopSound(3)"), engine.getCalls());
+    assertFalse(engine.calledOn(Thread.currentThread()));
+  }
+
+  @Test
+  public void onlyTheLatestPositionAndRotationAreApplied() throws Exception {
+    CountDownLatch release = blockWorker();
+    for (int i = 1; i <= 100; i++) {
+      dispatcher.setSoundObjectPosition(7, i, 0, 0);
+      dispatcher.setHeadRotation(0, 0, 0, i);
+    }
+    release.countDown();
+
+    engine.await(2);
+    Thread.sleep(50);
+    assertEquals(Arrays.asList("setHeadRotation(0.0, 0.0, 0.0, 100.0)",
+        "setSoundObjectPosition(7, 100.0, 0.0, 0.0)"), engine.getCalls());
+    assertEquals(2 * 99, dispatcher.getCoalescedUpdates());
+  }
+
+  @Test
+  public void positionsOfSeveralObjectsAreKeptApart() throws Exception {
+    CountDownLatch release = blockWorker();
+    for (int id = 0; id < AudioDispatcher.POSITION_SLOTS; id++) {
+      dispatcher.setSoundObjectPosition(100 + id, id, id, id);
+    }
+    release.countDown();
+
+    engine.await(AudioDispatcher.POSITION_SLOTS);
+    for (int id = 0; id < AudioDispatcher.POSITION_SLOTS; id++) {
+      assertTrue(engine.getCalls().contains(
+          "setSoundObjectPosition(" + (100 + id) + ", " + (float) id + ", " + (float) id + ", "
+              + (float) id + ")"));
+    }
+    assertEquals(0, dispatcher.getCoalescedUpdates());
+  }
+
+  @Test
+  public void newerObjectTakesOverTheSlotOfAnOlderOne() throws Exception {
+    CountDownLatch release = blockWorker();
+    dispatcher.setSoundObjectPosition(1, 1, 0, 0);
+    dispatcher.setSoundObjectPosition(1 + AudioDispatcher.POSITION_SLOTS, 2, 0, 0);
+    release.countDown();
+
+    engine.await(1);
+    Thread.sleep(50);
+    assertEquals(Arrays.asList("setSoundObjectPosition(" + (1 + AudioDispatcher.POSITION_SLOTS)
+        + ", 2.0, 0.0, 0.0)"), engine.getCalls());
+  }
+
+  @Test
+  public void forgottenObjectsLoseTheirPendingPosition() throws Exception {
+    CountDownLatch release = blockWorker();
+    dispatcher.setSoundObjectPosition(4, 1, 2, 3);
+    dispatcher.setSoundObjectPosition(5, 4, 5, 6);
+    dispatcher.forget(4);
+    // Forgetting an id that only shares the slot leaves the newer one alone.
+    dispatcher.forget(5 + AudioDispatcher.POSITION_SLOTS);
+    release.countDown();
+
+    engine.await(1);
+    Thread.sleep(50);
+    assertEquals(Arrays.asList("setSoundObjectPosition(5, 4.0, 5.0, 6.0)"), engine.getCalls());
+  }
+
+  @Test
+  public void fullQueueRejectsCommands() throws Exception {
+    dispatcher.shutdown();
+    dispatcher = new AudioDispatcher(engine, 3);
+    CountDownLatch release = blockWorker();
+    assertTrue(dispatcher.play(1, false));
+    assertTrue(dispatcher.play(2, false));
+    assertTrue(dispatcher.play(3, false));
+    assertFalse(dispatcher.play(4, false));
+    assertEquals(1, dispatcher.getRejectedCommands());
+    release.countDown();
+
+    engine.await(3);
+    assertEquals(Arrays.asList("playSound(1, false)", "playSound(2, false)",
+        "playSound(3, false)"), engine.getCalls());
+  }
+
+  @Test
+  public void createdObjectIdGoesToTheListenerOnTheWorker() throws Exception {
+    final CountDownLatch created = new CountDownLatch(1);
+    final int[] result = new int[1];
+    dispatcher.createSoundObject("beat.wav", new AudioDispatcher.SoundObjectListener() {
+      @Override
+      public void onSoundObjectCreated(AudioEngine engine, int soundId) {
+        result[0] = soundId;
+        engine.playSound(soundId, true);
+        created.countDown();
+      }
+    });
+    assertTrue(created.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    assertEquals(FakeEngine.FIRST_ID, result[0]);
+    assertEquals(Arrays.asList("createSoundObject(beat.wav)",
+        "playSound(" + FakeEngine.FIRST_ID + ", true)"), engine.getCalls());
+  }
+
+  /**
+   * Keeps the worker busy until the returned latch is released, then clears the calls made so
+   * far.
+   */
+  private CountDownLatch blockWorker() throws InterruptedException {
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    dispatcher.createSoundObject("block", new AudioDispatcher.SoundObjectListener() {
+      @Override
+      public void onSoundObjectCreated(AudioEngine engine, int soundId) {
+        running.countDown();
+        try {
+          release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    assertTrue(running.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    engine.clear();
+    return release;
+  }
+
+  /** Records every call, with the threads it was made on. */
+  static class FakeEngine implements AudioEngine {
+    static final int FIRST_ID = 10;
+
+    private final List<String> calls = new ArrayList<String>();
+    private final List<Thread> threads = new ArrayList<Thread>();
+    private int nextId = FIRST_ID;
+    private boolean failCreates;
+
+    synchronized List<String> getCalls() {
+      return new ArrayList<String>(calls);
+    }
+
+    synchronized boolean calledOn(Thread thread) {
+      return threads.contains(thread);
+    }
+
+    synchronized void clear() {
+      calls.clear();
+      nextId = FIRST_ID;
+    }
+
+    /** Makes {@link #createSoundObject} fail until called again with false. */
+    synchronized void setFailCreates(boolean fail) {
+      failCreates = fail;
+    }
+
+    /** Waits until at least this many calls were made. */
+    synchronized void await(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+      while (calls.size() < count) {
+        long remaining = deadline - System.currentTimeMillis();
+        assertTrue("Only " + calls, remaining > 0);
+        wait(remaining);
+      }
+    }
+
+    /** Waits until this call was made. */
+    synchronized void await(String call) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+      while (!calls.contains(call)) {
+        long remaining = deadline - System.currentTimeMillis();
+        assertTrue("No " + call + " in " + calls, remaining > 0);
+        wait(remaining);
+      }
+    }
+
+    private synchronized void record(String call) {
+      calls.add(call);
+      threads.add(Thread.currentThread());
+      notifyAll();
+    }
+
+    @Override
+    public boolean preloadSoundFile(String file) {
+      record("preloadSoundFile(" + file + ")");
+      return true;
+    }
+
+    @Override
+    public int createSoundObject(String file) {
+      record("createSoundObject(" + file + ")");
+      synchronized (this) {
+        return failCreates ? INVALID_ID : nextId++;
+      }
+    }
+
+    @Override
+    public void playSound(int soundId, boolean looped) {
+      record("playSound(" + soundId + ", " + looped + ")");
+    }
+
+    @Override
+    public void stopSound(int soundId) {
+      record("stopSound(" + soundId + ")");
+    }
+
+    @Override
+    public void setSoundObjectPosition(int soundId, float x, float y, float z) {
+      record("setSoundObjectPosition(" + soundId + ", " + x + ", " + y + ", " + z + ")");
+    }
+
+    @Override
+    public void setHeadRotation(float x, float y, float z, float w) {
+      record("setHeadRotation(" + x + ", " + y + ", " + z + ", " + w + ")");
+    }
+
+    @Override
+    public void pause() {
+      record("pause()");
+    }
+
+    @Override
+    public void resume() {
+      record("resume()");
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BeatClockTest {
+  private static final long MS = 1000000L;
+  private static final long SECOND = 1000 * MS;
+  private static final long START = 5 * SECOND;
+  private static final float EPSILON = 1e-4f;
+
+  private final BeatClock clock = new BeatClock(START);
+
+  @Test
+  public void phaseAndScaleDependOnlyOnTheTime() {
+    clock.onBeat(800, START);
+    // Every 30 Hz instant is a frame at both 60 and 90 Hz.
+    for (int k = 0; k < 3 * 30; k++) {
+      long at60 = START + 2 * k * SECOND / 60;
+      long at90 = START + 3 * k * SECOND / 90;
+      assertEquals(at60, at90);
+      float phase60 = clock.getPhase(at60);
+      float scale60 = scale(at60);
+      // The frames in between don't move anything.
+      clock.getPulse(at60 + SECOND / 90);
+      clock.getPulse(at60 + SECOND / 60);
+      assertEquals(phase60, clock.getPhase(at90), 0);
+      assertEquals(scale60, scale(at90), 0);
+    }
+  }
+
+  @Test
+  public void pulsePeaksOnTheBeatAndBottomsOutHalfWay() {
+    clock.onBeat(800, START);
+    for (int beat = 0; beat < 5; beat++) {
+      long at = START + beat * 800 * MS;
+      assertEquals(0, clock.getPhase(at), EPSILON);
+      assertEquals(4f / 3, scale(at), EPSILON);
+      assertEquals(0.5f, clock.getPhase(at + 400 * MS), EPSILON);
+      assertEquals(1, scale(at + 400 * MS), EPSILON);
+      assertEquals(0.25f, clock.getPhase(at + 200 * MS), EPSILON);
+      assertEquals(0.5f, clock.getPulse(at + 200 * MS), EPSILON);
+    }
+    // Before the last beat the phase holds at zero.
+    assertEquals(0, clock.getPhase(START - 100 * MS), 0);
+  }
+
+  @Test
+  public void implausibleIntervalsKeepThePreviousOne() {
+    clock.onBeat(700, START);
+    clock.onBeat(249, START + 249 * MS);
+    assertEquals(700, clock.getIbi());
+    clock.onBeat(2501, START + 3 * SECOND);
+    assertEquals(700, clock.getIbi());
+    // The beat itself still counts.
+    assertEquals(START + 3 * SECOND, clock.getLastBeatNanos());
+
+    clock.onBeat(250, START + 4 * SECOND);
+    assertEquals(250, clock.getIbi());
+    clock.onBeat(2500, START + 7 * SECOND);
+    assertEquals(2500, clock.getIbi());
+
+    // 20 BPM is a 3 s interval, 300 BPM a 200 ms one: both kept as the rate only.
+    clock.onBpm(20);
+    assertEquals(20, clock.getBpm());
+    assertEquals(2500, clock.getIbi());
+    clock.onBpm(300);
+    assertEquals(300, clock.getBpm());
+    assertEquals(2500, clock.getIbi());
+    clock.onBpm(0);
+    assertEquals(300, clock.getBpm());
+  }
+
+  @Test
+  public void bpmAloneKeepsTheClockRunning() {
+    clock.onBpm(75);
+    assertEquals(800, clock.getIbi());
+    assertEquals(0.5f, clock.getPhase(START + 400 * MS), EPSILON);
+    assertEquals(0, clock.getPhase(START + 3 * 800 * MS), EPSILON);
+    assertEquals(START + 1600 * MS, clock.getNextBeatNanos(START + SECOND));
+
+    // A new rate keeps the beat the clock started from.
+    clock.onBpm(100);
+    assertEquals(START + 1200 * MS, clock.getNextBeatNanos(START + SECOND));
+  }
+
+  @Test
+  public void nextBeatExtrapolatesAcrossMissedBeats() {
+    clock.onBeat(600, START);
+    assertEquals(START, clock.getNextBeatNanos(START - SECOND));
+    assertEquals(START, clock.getNextBeatNanos(START));
+    assertEquals(START + 600 * MS, clock.getNextBeatNanos(START + 1));
+    assertEquals(START + 600 * MS, clock.getNextBeatNanos(START + 600 * MS));
+    // Five beats went unreported.
+    assertEquals(START + 6 * 600 * MS, clock.getNextBeatNanos(START + 5 * 600 * MS + 1));
+    for (long now = START; now < START + 20 * SECOND; now += 7 * MS) {
+      long next = clock.getNextBeatNanos(now);
+      assertTrue(next >= now);
+      assertTrue(next - now < 600 * MS);
+      assertEquals(0, (next - START) % (600 * MS));
+      assertEquals(0, clock.getPhase(next), 0);
+    }
+
+    // A reported beat moves the extrapolation.
+    clock.onBeat(650, START + 3 * SECOND);
+    assertEquals(START + 3 * SECOND + 2 * 650 * MS, clock.getNextBeatNanos(START + 4 * SECOND));
+  }
+
+  @Test
+  public void eventsAreDispatchedByType() {
+    PulseEvent event = new PulseEvent();
+    event.set(PulseEvent.TYPE_IBI, 900, START + SECOND);
+    clock.onPulseEvent(event);
+    event.set(PulseEvent.TYPE_BPM, 66, START + SECOND);
+    clock.onPulseEvent(event);
+    event.set(PulseEvent.TYPE_SIGNAL, 512, START + SECOND);
+    clock.onPulseEvent(event);
+    // 66 BPM replaces the interval, but not the time of the beat.
+    assertEquals(909, clock.getIbi());
+    assertEquals(66, clock.getBpm());
+    assertEquals(512, clock.getSignal());
+    assertEquals(START + SECOND, clock.getLastBeatNanos());
+  }
+
+  // The heart's scale in MainActivity.onNewFrame.
+  private float scale(long nowNanos) {
+    return 1.0f + clock.getPulse(nowNanos) / 3;
+  }
+}
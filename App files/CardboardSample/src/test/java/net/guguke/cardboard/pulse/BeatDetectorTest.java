@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays a pulse sensor trace through the Java port and compares every beat with the output of
+ * the sketch's own interrupt, compiled for the host by {@code src/test/golden/interrupt_replay.cpp}.
+ * The trace comes from {@code src/test/golden/make_trace.py}.
+ */
+public class BeatDetectorTest {
+  private static final long NANOS_PER_SAMPLE = BeatDetector.SAMPLE_INTERVAL_MS * 1000000L;
+
+  @Test
+  public void matchesInterruptInoBeatForBeat() throws IOException {
+    int[] trace = readTrace();
+    List<String> golden = readLines("pulse_trace_golden.txt");
+
+    assertEquals(golden, replay(new BeatDetector(new RecordingListener()), trace));
+    // The trace is long enough to have the warm up, the restart and the running average in it.
+    assertTrue(golden.size() > 40);
+  }
+
+  @Test
+  public void resetStartsOverLikeAFreshSketch() throws IOException {
+    int[] trace = readTrace();
+    BeatDetector detector = new BeatDetector(new RecordingListener());
+    replay(detector, trace);
+
+    detector.reset();
+    assertEquals(readLines("pulse_trace_golden.txt"), replay(detector, trace));
+  }
+
+  @Test
+  public void streamGetsTheSamplesAndTheBeatsInTheSketchsOrder() throws IOException {
+    int[] trace = readTrace();
+    RecordingListener listener = new RecordingListener();
+    BeatDetector detector = new BeatDetector(listener);
+    PulseEvent in = new PulseEvent();
+    List<String> beats = new ArrayList<String>();
+    for (int i = 0; i < trace.length; i++) {
+      long timeNanos = i * NANOS_PER_SAMPLE;
+      in.set(PulseEvent.TYPE_SIGNAL, trace[i], timeNanos);
+      detector.onPulseEvent(in);
+      // The MCU's own beats are dropped in favor of the phone's.
+      in.set(PulseEvent.TYPE_BPM, 1, timeNanos);
+      detector.onPulseEvent(in);
+      in.set(PulseEvent.TYPE_IBI, 1, timeNanos);
+      detector.onPulseEvent(in);
+    }
+
+    int samples = 0;
+    List<String> events = listener.events;
+    for (int i = 0; i < events.size(); i++) {
+      String event = events.get(i);
+      if (event.startsWith("S")) {
+        samples++;
+      } else if (event.startsWith("B")) {
+        // B and Q follow the sample they were found in, with its time.
+        String q = events.get(i + 1);
+        assertTrue(q, q.startsWith("Q"));
+        String time = event.substring(event.indexOf('@'));
+        assertEquals(time, q.substring(q.indexOf('@')));
+        assertEquals(events.get(i - 1).substring(events.get(i - 1).indexOf('@')), time);
+        long index = Long.parseLong(time.substring(1)) / NANOS_PER_SAMPLE;
+        beats.add(index + " " + event.substring(0, event.indexOf('@')) + " "
+            + q.substring(0, q.indexOf('@')));
+        i++;
+      }
+    }
+    assertEquals(trace.length, samples);
+    assertEquals(readLines("pulse_trace_golden.txt"), beats);
+  }
+
+  @Test
+  public void flatSignalNeverBeats() {
+    BeatDetector detector = new BeatDetector(new RecordingListener());
+    for (int i = 0; i < 10000; i++) {
+      assertFalse(detector.onSample(300));
+    }
+    assertFalse(detector.isPulse());
+  }
+
+  /** Runs the trace through the detector and formats each beat as the golden file does. */
+  private static List<String> replay(BeatDetector detector, int[] trace) {
+    List<String> beats = new ArrayList<String>();
+    for (int i = 0; i < trace.length; i++) {
+      if (detector.onSample(trace[i])) {
+        beats.add(i + " B" + detector.getBpm() + " Q" + detector.getIbi());
+      }
+    }
+    return beats;
+  }
+
+  private int[] readTrace() throws IOException {
+    List<String> lines = readLines("pulse_trace.txt");
+    int[] trace = new int[lines.size()];
+    for (int i = 0; i < trace.length; i++) {
+      trace[i] = Integer.parseInt(lines.get(i));
+    }
+    return trace;
+  }
+
+  private List<String> readLines(String resource) throws IOException {
+    InputStream in = getClass().getResourceAsStream(resource);
+    if (in == null) {
+      throw new IOException("Missing test resource " + resource);
+    }
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "US-ASCII"));
+    try {
+      List<String> lines = new ArrayList<String>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+      return lines;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /** Formats every event as its type, value and time, e.g. {@code B72@1000}. */
+  private static class RecordingListener implements PulseLineFramer.Listener {
+    final List<String> events = new ArrayList<String>();
+
+    @Override
+    public void onPulseEvent(PulseEvent event) {
+      events.add((char) event.type + "" + event.value + "@" + event.timeNanos);
+    }
+  }
+}
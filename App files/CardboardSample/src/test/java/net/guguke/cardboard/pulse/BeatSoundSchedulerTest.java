@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BeatSoundSchedulerTest {
+  private static final long MS = 1000000L;
+  private static final long START = 1000 * MS;
+  private static final long LEAD = 20 * MS;
+
+  private final BeatClock clock = new BeatClock(START);
+  private final FakeSound sound = new FakeSound();
+  private final BeatSoundScheduler scheduler = new BeatSoundScheduler(clock, sound, LEAD);
+
+  @Test
+  public void steadyBeatsSoundOnTimeAndMatchTheSensor() {
+    // The sensor reports 600 ms beats, and the scheduler is polled every millisecond.
+    long beat = START;
+    for (long now = START + MS; now < START + 30 * 600 * MS; now += MS) {
+      if (now >= beat + 600 * MS) {
+        beat += 600 * MS;
+        clock.onBeat(600, beat);
+      }
+      scheduler.poll(now);
+    }
+    // The beat at 18 s triggers inside the loop too.
+    assertEquals(30, scheduler.getBeats());
+    assertEquals(30, sound.beats.size());
+    for (int i = 0; i < sound.beats.size(); i++) {
+      assertEquals(START + (i + 1) * 600 * MS, (long) sound.beats.get(i));
+    }
+    assertEquals(0, scheduler.getMissedBeats());
+    assertEquals(0, scheduler.getLateBeats());
+    assertEquals(0, scheduler.getScheduleJitter().getMaxNanos());
+    // The last beat sounded before the sensor got to report it.
+    assertEquals(29, scheduler.getPredictionError().getCount());
+    assertEquals(0, scheduler.getPredictionError().getMaxNanos());
+  }
+
+  @Test
+  public void slowerHeartIsMispredictedForOneBeat() {
+    long beat = START;
+    long ibi = 600;
+    for (long now = START + MS; now < START + 10000 * MS; now += MS) {
+      if (now >= beat + ibi * MS) {
+        beat += ibi * MS;
+        clock.onBeat((int) ibi, beat);
+        // From the fifth beat on the heart slows to 650 ms.
+        if (beat >= START + 4 * 600 * MS) {
+          ibi = 650;
+        }
+      }
+      scheduler.poll(now);
+    }
+    // Only the first 650 ms beat was sounded where 600 ms predicted it, and only once.
+    LatencyHistogram error = scheduler.getPredictionError();
+    assertEquals(50 * MS, error.getMaxNanos());
+    assertEquals(0, error.getPercentileNanos(0.9));
+    assertEquals(sound.beats.size(), scheduler.getBeats());
+    assertTrue(error.getCount() >= scheduler.getBeats() - 1);
+    for (int i = 1; i < sound.beats.size(); i++) {
+      assertTrue(sound.beats.get(i) - sound.beats.get(i - 1) >= 600 * MS);
+    }
+  }
+
+  @Test
+  public void latePollsAreMeasuredAsJitter() {
+    // Too far from the beat, so the wait is capped to pick up newly reported beats.
+    assertEquals(50 * MS, scheduler.poll(START + MS));
+
+    // 15 ms after the trigger time of the beat at 600 ms, more than half the lead.
+    long wait = scheduler.poll(START + 595 * MS);
+    assertEquals(1, scheduler.getBeats());
+    assertEquals(1, scheduler.getLateBeats());
+    assertEquals(50 * MS, wait);
+
+    // 5 ms late for the beat at 1200 ms.
+    scheduler.poll(START + 1185 * MS);
+    // Polling again for the same beat doesn't sound it twice.
+    scheduler.poll(START + 1186 * MS);
+    assertEquals(2, scheduler.getBeats());
+    assertEquals(1, scheduler.getLateBeats());
+
+    LatencyHistogram jitter = scheduler.getScheduleJitter();
+    assertEquals(2, jitter.getCount());
+    assertEquals(15 * MS, jitter.getMaxNanos());
+    assertEquals(upperBound(5 * MS), jitter.getPercentileNanos(0.5));
+    assertEquals(15 * MS, jitter.getPercentileNanos(0.95));
+  }
+
+  @Test
+  public void waitEndsAtTheNextTrigger() {
+    assertEquals(50 * MS, scheduler.poll(START + 580 * MS));
+    assertEquals(1, scheduler.getBeats());
+    // The beat at 1200 ms triggers at 1180 ms.
+    assertEquals(30 * MS, scheduler.poll(START + 1150 * MS));
+    assertEquals(1, scheduler.getBeats());
+    scheduler.poll(START + 1180 * MS);
+    assertEquals(2, scheduler.getBeats());
+    assertEquals(0, scheduler.getLateBeats());
+  }
+
+  @Test
+  public void unreadySoundCountsAsMissed() {
+    sound.ready = false;
+    scheduler.poll(START + 580 * MS);
+    sound.ready = true;
+    scheduler.poll(START + 1180 * MS);
+    assertEquals(2, scheduler.getBeats());
+    assertEquals(1, scheduler.getMissedBeats());
+    assertEquals(2, sound.beats.size());
+  }
+
+  @Test
+  public void beatsLongPastAreSkippedRatherThanPlayedLate() {
+    scheduler.poll(START + MS);
+    // The poll thread stalled through the beats at 600, 1200 and 1800 ms.
+    scheduler.poll(START + 2000 * MS);
+    assertEquals(0, scheduler.getBeats());
+    scheduler.poll(START + 2380 * MS);
+    assertEquals(1, scheduler.getBeats());
+    assertEquals(START + 2400 * MS, (long) sound.beats.get(0));
+  }
+
+  private static long upperBound(long nanos) {
+    return LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketOf(nanos));
+  }
+
+  private static class FakeSound implements BeatSoundScheduler.BeatSound {
+    final List<Long> beats = new ArrayList<Long>();
+    boolean ready = true;
+
+    @Override
+    public boolean play(long beatNanos) {
+      beats.add(beatNanos);
+      return ready;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FrameStatsTest {
+  private static final long FRAME_NANOS = 1000000000L / 60;
+
+  @Test
+  public void intervalsOverOneAndAHalfFramesCountAsDropped() {
+    FrameStats stats = new FrameStats(FRAME_NANOS);
+    long now = 1000;
+    // The first frame has no interval to record.
+    stats.onFrameStart(now);
+    assertEquals(0, stats.getPhase(FrameStats.PHASE_FRAME_INTERVAL).getCount());
+
+    now += FRAME_NANOS;
+    stats.onFrameStart(now);
+    // Exactly one and a half frames is late, but not dropped.
+    now += FRAME_NANOS + FRAME_NANOS / 2;
+    stats.onFrameStart(now);
+    assertEquals(0, stats.getDroppedFrames());
+    now += FRAME_NANOS + FRAME_NANOS / 2 + 1;
+    stats.onFrameStart(now);
+    assertEquals(1, stats.getDroppedFrames());
+    now += 3 * FRAME_NANOS;
+    stats.onFrameStart(now);
+    assertEquals(2, stats.getDroppedFrames());
+
+    LatencyHistogram intervals = stats.getPhase(FrameStats.PHASE_FRAME_INTERVAL);
+    assertEquals(4, intervals.getCount());
+    assertEquals(3 * FRAME_NANOS, intervals.getMaxNanos());
+  }
+
+  @Test
+  public void targetFrameTimeSetsTheThreshold() {
+    long target = 1000000000L / 90;
+    FrameStats stats = new FrameStats(target);
+    stats.onFrameStart(FRAME_NANOS);
+    stats.onFrameStart(2 * FRAME_NANOS);
+    // A 60 Hz interval is one and a half 90 Hz frames.
+    assertEquals(0, stats.getDroppedFrames());
+    stats.onFrameStart(2 * FRAME_NANOS + target * 3 / 2 + 1);
+    assertEquals(1, stats.getDroppedFrames());
+  }
+
+  @Test
+  public void phasesAreRecordedSeparatelyAndChained() throws InterruptedException {
+    FrameStats stats = new FrameStats();
+    long start = System.nanoTime();
+    Thread.sleep(2);
+    long afterNewFrame = stats.record(FrameStats.PHASE_NEW_FRAME, start);
+    long afterAudio = stats.record(FrameStats.PHASE_AUDIO, afterNewFrame);
+    assertTrue(afterNewFrame - start >= 2000000);
+    assertTrue(afterAudio >= afterNewFrame);
+
+    assertEquals(1, stats.getPhase(FrameStats.PHASE_NEW_FRAME).getCount());
+    assertTrue(stats.getPhase(FrameStats.PHASE_NEW_FRAME).getMaxNanos() >= 2000000);
+    assertEquals(1, stats.getPhase(FrameStats.PHASE_AUDIO).getCount());
+    assertEquals(0, stats.getPhase(FrameStats.PHASE_DRAW_EYE).getCount());
+  }
+
+  @Test
+  public void resetStartsOverWithoutAnIntervalFromTheOldFrame() {
+    FrameStats stats = new FrameStats(FRAME_NANOS);
+    stats.onFrameStart(FRAME_NANOS);
+    stats.onFrameStart(10 * FRAME_NANOS);
+    stats.record(FrameStats.PHASE_DRAW_EYE, System.nanoTime());
+    stats.reset();
+    assertEquals(0, stats.getDroppedFrames());
+    assertEquals(0, stats.getPhase(FrameStats.PHASE_DRAW_EYE).getCount());
+
+    stats.onFrameStart(100 * FRAME_NANOS);
+    assertEquals(0, stats.getPhase(FrameStats.PHASE_FRAME_INTERVAL).getCount());
+    assertEquals(0, stats.getDroppedFrames());
+  }
+
+  @Test
+  public void summaryHasARowPerPhaseInMicroseconds() {
+    FrameStats stats = new FrameStats(FRAME_NANOS);
+    stats.onFrameStart(FRAME_NANOS);
+    stats.onFrameStart(2 * FRAME_NANOS);
+    stats.onFrameStart(5 * FRAME_NANOS);
+    String summary = stats.summary();
+    String[] lines = summary.split("\n");
+    assertEquals(7, lines.length);
+    assertTrue(lines[0], lines[0].startsWith("phase (us)"));
+    assertTrue(lines[5], lines[5].startsWith("frame interval"));
+    // Two intervals, the longer one three frames or just under 50 ms.
+    assertTrue(lines[5], lines[5].matches("frame interval +2 .* 49999"));
+    assertEquals("dropped frames: 1", lines[6]);
+  }
+}
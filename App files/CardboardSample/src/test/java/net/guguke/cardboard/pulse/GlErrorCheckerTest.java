@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+public class GlErrorCheckerTest {
+  private static final int FRAMES = 120;
+  // check() calls per frame, like the render loop makes.
+  private static final int CHECKS_PER_FRAME = 5;
+
+  private final RecordingGl gl = new RecordingGl();
+
+  @Test
+  public void releaseBuildNeverCallsGlGetError() {
+    for (int mode : new int[] {
+        GlErrorChecker.MODE_OFF, GlErrorChecker.MODE_SAMPLED, GlErrorChecker.MODE_ALWAYS}) {
+      GlErrorChecker checker = new GlErrorChecker(gl, mode, 1, null, false);
+      checker.checkSetup("setup");
+      renderFrames(checker);
+    }
+    assertEquals(0, gl.count("glGetError"));
+  }
+
+  @Test
+  public void offNeverCallsGlGetError() {
+    GlErrorChecker checker = new GlErrorChecker(gl, GlErrorChecker.MODE_OFF, 1, null);
+    checker.checkSetup("setup");
+    renderFrames(checker);
+    assertEquals(0, gl.count("glGetError"));
+  }
+
+  @Test
+  public void sampledChecksEveryNthFrame() {
+    assumeTrue(BuildConfig.DEBUG);
+    GlErrorChecker checker = new GlErrorChecker(gl, GlErrorChecker.MODE_SAMPLED, 30, null);
+    renderFrames(checker);
+    assertEquals(FRAMES / 30 * CHECKS_PER_FRAME, gl.count("glGetError"));
+  }
+
+  @Test
+  public void alwaysChecksEveryCall() {
+    assumeTrue(BuildConfig.DEBUG);
+    GlErrorChecker checker = new GlErrorChecker(gl, GlErrorChecker.MODE_ALWAYS, 30, null);
+    renderFrames(checker);
+    assertEquals(FRAMES * CHECKS_PER_FRAME, gl.count("glGetError"));
+  }
+
+  @Test
+  public void setupIsCheckedUnlessOff() {
+    assumeTrue(BuildConfig.DEBUG);
+    new GlErrorChecker(gl, GlErrorChecker.MODE_SAMPLED, 30, null).checkSetup("setup");
+    new GlErrorChecker(gl, GlErrorChecker.MODE_ALWAYS, 30, null).checkSetup("setup");
+    assertEquals(2, gl.count("glGetError"));
+  }
+
+  @Test
+  public void errorIsReportedWithItsLabel() {
+    assumeTrue(BuildConfig.DEBUG);
+    GlErrorChecker checker = new GlErrorChecker(gl, GlErrorChecker.MODE_ALWAYS, 1, null);
+    gl.addError(0x0502);
+    try {
+      checker.check("drawHeart");
+      fail("Error not reported");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("drawHeart: glError 1282"));
+    }
+  }
+
+  @Test
+  public void discardedErrorsAreNotReported() {
+    assumeTrue(BuildConfig.DEBUG);
+    GlErrorChecker checker = new GlErrorChecker(gl, GlErrorChecker.MODE_SAMPLED, 30, null);
+    gl.addError(0x0500);
+    gl.addError(0x0502);
+    checker.discardErrors();
+    checker.checkSetup("setup");
+    // Two errors and the no error ending the discard, then the check.
+    assertEquals(4, gl.count("glGetError"));
+  }
+
+  @Test
+  public void discardingIsSwitchedOffWithTheChecks() {
+    new GlErrorChecker(gl, GlErrorChecker.MODE_OFF, 1, null).discardErrors();
+    new GlErrorChecker(gl, GlErrorChecker.MODE_ALWAYS, 1, null, false).discardErrors();
+    assertEquals(0, gl.count("glGetError"));
+  }
+
+  @Test
+  public void parsesModeNames() {
+    assertEquals(GlErrorChecker.MODE_OFF, GlErrorChecker.parseMode("off", -1));
+    assertEquals(GlErrorChecker.MODE_SAMPLED, GlErrorChecker.parseMode("sampled", -1));
+    assertEquals(GlErrorChecker.MODE_ALWAYS, GlErrorChecker.parseMode("always", -1));
+    assertEquals(-1, GlErrorChecker.parseMode(null, -1));
+  }
+
+  private static void renderFrames(GlErrorChecker checker) {
+    for (int frame = 0; frame < FRAMES; frame++) {
+      checker.onNewFrame();
+      for (int i = 0; i < CHECKS_PER_FRAME; i++) {
+        checker.check("draw");
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+public class HeartColorTest {
+  private static final long FRAME_NANOS = 1000000000L / 60;
+  private static final int FRAMES = 10000;
+  private static final int PARTICIPANTS = 4;
+
+  @Test
+  public void blendsBetweenDarkAndCardinalRed() {
+    float[] color = new float[8];
+    HeartColor.blend(0.0f, color, 0);
+    HeartColor.blend(1.0f, color, 4);
+    float[] expected = new float[8];
+    System.arraycopy(WorldLayoutData.DARK_RED_COLOR, 0, expected, 0, 4);
+    System.arraycopy(WorldLayoutData.CARDINAL_RED_COLOR, 0, expected, 4, 4);
+    assertArrayEquals(expected, color, 1e-6f);
+
+    HeartColor.blend(0.5f, color, 0);
+    for (int i = 0; i < 4; i++) {
+      assertEquals((WorldLayoutData.DARK_RED_COLOR[i] + WorldLayoutData.CARDINAL_RED_COLOR[i]) / 2,
+          color[i], 1e-6f);
+    }
+  }
+
+  @Test
+  public void animatingTheColorAllocatesNothing() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+    long thread = Thread.currentThread().getId();
+
+    BeatClock clock = new BeatClock(0);
+    float[] heartColor = new float[4];
+    float[] participantColors = new float[4 * PARTICIPANTS];
+    // Warm up, so class loading and compilation don't count.
+    simulateFrames(clock, heartColor, participantColors, 0);
+
+    long before = threads.getThreadAllocatedBytes(thread);
+    long checksum = simulateFrames(clock, heartColor, participantColors, FRAMES * FRAME_NANOS);
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+    // Anything allocated per frame would be at least an object header per frame; the JVM itself
+    // now and then charges a few bytes to the thread, e.g. when recompiling the loop.
+    assertTrue("Bytes allocated over " + FRAMES + " frames: " + allocated, allocated < FRAMES);
+    // Keep the work from being optimized away.
+    assertTrue(checksum != 0);
+  }
+
+  /** Runs the per-frame pulse and color updates of the wearer's and the participants' hearts. */
+  private static long simulateFrames(BeatClock clock, float[] heartColor,
+      float[] participantColors, long startNanos) {
+    long checksum = 0;
+    for (int frame = 0; frame < FRAMES; frame++) {
+      long now = startNanos + frame * FRAME_NANOS;
+      if (frame % 50 == 0) {
+        clock.onBeat(833, now);
+      }
+      HeartColor.blend(clock.getPulse(now), heartColor, 0);
+      for (int p = 0; p < PARTICIPANTS; p++) {
+        HeartColor.blend(clock.getPulse(now + p * FRAME_NANOS), participantColors, p * 4);
+      }
+      checksum += Float.floatToIntBits(heartColor[0]) + Float.floatToIntBits(participantColors[4]);
+    }
+    return checksum;
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class HeartbeatSoundTest {
+  private static final String FILE = "beat.wav";
+  // Preloaded after the calls under test; once it shows up the worker has finished them.
+  private static final String BARRIER = "barrier";
+  private static final int FIRST_ID = AudioDispatcherTest.FakeEngine.FIRST_ID;
+
+  private final AudioDispatcherTest.FakeEngine engine = new AudioDispatcherTest.FakeEngine();
+  private final AudioDispatcher dispatcher = new AudioDispatcher(engine);
+  private final HeartbeatSound sound = new HeartbeatSound(dispatcher, FILE);
+  // How many of the engine's calls settle has returned already.
+  private int seen;
+  private int barriers;
+
+  @After
+  public void tearDown() {
+    dispatcher.shutdown();
+  }
+
+  @Test
+  public void prepareLoadsTheFileAndPrimesTheFirstBeat() throws Exception {
+    sound.setPosition(1, 2, 3);
+    sound.prepare();
+    assertEquals(Arrays.asList("preloadSoundFile(" + FILE + ")",
+        "createSoundObject(" + FILE + ")",
+        "setSoundObjectPosition(" + FIRST_ID + ", 1.0, 2.0, 3.0)"), settle());
+  }
+
+  @Test
+  public void eachBeatPlaysThePrimedObjectAndPrimesTheNext() throws Exception {
+    sound.prepare();
+    settle();
+
+    assertTrue(sound.play(0));
+    assertEquals(Arrays.asList("playSound(" + FIRST_ID + ", false)",
+        "createSoundObject(" + FILE + ")",
+        "setSoundObjectPosition(" + (FIRST_ID + 1) + ", 0.0, 0.0, 0.0)"), settle());
+
+    // The first beat may still be playing; it is stopped before the second starts.
+    assertTrue(sound.play(1));
+    assertEquals(Arrays.asList("stopSound(" + FIRST_ID + ")",
+        "playSound(" + (FIRST_ID + 1) + ", false)",
+        "createSoundObject(" + FILE + ")",
+        "setSoundObjectPosition(" + (FIRST_ID + 2) + ", 0.0, 0.0, 0.0)"), settle());
+  }
+
+  @Test
+  public void positionFollowsThePlayingAndThePrimedBeat() throws Exception {
+    sound.prepare();
+    settle();
+    assertTrue(sound.play(0));
+    settle();
+
+    // Positions are coalesced outside the command queue, so they are awaited one by one.
+    sound.setPosition(4, 5, 6);
+    engine.await("setSoundObjectPosition(" + FIRST_ID + ", 4.0, 5.0, 6.0)");
+    engine.await("setSoundObjectPosition(" + (FIRST_ID + 1) + ", 4.0, 5.0, 6.0)");
+  }
+
+  @Test
+  public void failedCreateMissesOneBeatAndTriesAgain() throws Exception {
+    engine.setFailCreates(true);
+    sound.prepare();
+    settle();
+
+    engine.setFailCreates(false);
+    assertFalse(sound.play(0));
+    // Nothing is played, but the next beat gets a new object.
+    assertEquals(Arrays.asList("createSoundObject(" + FILE + ")",
+        "setSoundObjectPosition(" + FIRST_ID + ", 0.0, 0.0, 0.0)"), settle());
+
+    assertTrue(sound.play(1));
+    assertEquals("playSound(" + FIRST_ID + ", false)", settle().get(0));
+  }
+
+  @Test
+  public void beatBeforeTheObjectIsCreatedDoesNotCreateAnother() throws Exception {
+    sound.prepare();
+    settle();
+    // Holds the worker before it creates the object for the second beat.
+    BlockingListener block = new BlockingListener();
+    dispatcher.createSoundObject(BARRIER, block);
+    block.awaitRunning();
+
+    assertTrue(sound.play(0));
+    assertFalse(sound.play(1));
+    assertFalse(sound.play(2));
+    block.release();
+
+    List<String> calls = settle();
+    int creates = 0;
+    for (String call : calls) {
+      if (call.equals("createSoundObject(" + FILE + ")")) {
+        creates++;
+      }
+    }
+    assertEquals(calls.toString(), 1, creates);
+  }
+
+  /** Waits for the worker to run everything queued so far and returns the calls it made. */
+  private List<String> settle() throws InterruptedException {
+    String barrier = BARRIER + ++barriers;
+    dispatcher.preload(barrier);
+    engine.await("preloadSoundFile(" + barrier + ")");
+    List<String> all = engine.getCalls();
+    List<String> calls = new ArrayList<String>();
+    for (String call : all.subList(seen, all.size())) {
+      if (!call.contains(BARRIER)) {
+        calls.add(call);
+      }
+    }
+    seen = all.size();
+    return calls;
+  }
+
+  private static class BlockingListener implements AudioDispatcher.SoundObjectListener {
+    private final CountDownLatch running = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @Override
+    public void onSoundObjectCreated(AudioEngine engine, int soundId) {
+      running.countDown();
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    void awaitRunning() throws InterruptedException {
+      running.await();
+    }
+
+    void release() {
+      released.countDown();
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the analyzer against HRV measures computed from scratch over every window of a
+ * reference RR series, both written by {@code src/test/golden/make_hrv_reference.py}, and against
+ * series whose measures are known in closed form.
+ */
+public class HrvAnalyzerTest {
+  private static final long NANOS_PER_MS = 1000000L;
+
+  @Test
+  public void matchesTheReferenceAfterEveryBeat() throws IOException {
+    List<String> rr = readLines("hrv_rr.txt");
+    List<String> reference = readLines("hrv_reference.txt");
+    HrvAnalyzer analyzer = new HrvAnalyzer(new CountingListener());
+
+    int beat = 0;
+    int ratios = 0;
+    for (String line : rr) {
+      String[] fields = line.split(" ");
+      long timeNanos = Long.parseLong(fields[0]) * NANOS_PER_MS;
+      int ibi = Integer.parseInt(fields[1]);
+      int before = analyzer.getBeatCount();
+      analyzer.onBeat(ibi, timeNanos);
+      if (ibi < 250 || ibi > 2500) {
+        assertEquals(line, before, analyzer.getBeatCount());
+        continue;
+      }
+
+      String[] expected = reference.get(beat).split(" ");
+      String at = "beat " + beat;
+      assertEquals(at, Integer.parseInt(expected[0]), analyzer.getBeatCount());
+      assertEquals(at, Double.parseDouble(expected[1]), analyzer.getMeanIbi(), 1e-3);
+      assertEquals(at, Double.parseDouble(expected[2]), analyzer.getSdnn(), 1e-3);
+      assertEquals(at, Double.parseDouble(expected[3]), analyzer.getRmssd(), 1e-3);
+      assertEquals(at, Double.parseDouble(expected[4]), analyzer.getPnn50(), 1e-5);
+      // The reference has no ratio until the window spans two minutes.
+      if (expected[5].equals("nan")) {
+        assertTrue(at, Float.isNaN(analyzer.getLfHfRatio()));
+      } else {
+        double expectedRatio = Double.parseDouble(expected[5]);
+        assertEquals(at, expectedRatio, analyzer.getLfHfRatio(), expectedRatio * 1e-4);
+        ratios++;
+      }
+      beat++;
+    }
+    assertEquals(reference.size(), beat);
+    // Every beat from two minutes in, across the window filling up and sliding.
+    assertTrue(ratios > 200);
+  }
+
+  @Test
+  public void runningSumsDoNotDriftOverHours() {
+    HrvAnalyzer analyzer = new HrvAnalyzer(new CountingListener());
+    long time = modulate(analyzer, 0, 0.1, 3 * 3600);
+    // A fresh analyzer given only the last five minutes sums the same window from scratch.
+    HrvAnalyzer fresh = new HrvAnalyzer(new CountingListener());
+    modulate(fresh, time, 0.1, 300);
+    modulate(analyzer, time, 0.1, 300);
+    assertEquals(fresh.getBeatCount(), analyzer.getBeatCount());
+    assertEquals(fresh.getLfHfRatio(), analyzer.getLfHfRatio(), fresh.getLfHfRatio() * 1e-4);
+  }
+
+  @Test
+  public void windowHoldsFiveMinutesAtTheFastestRate() {
+    HrvAnalyzer analyzer = new HrvAnalyzer(new CountingListener());
+    feed(analyzer, new int[] {250}, 1500);
+    // 240 BPM, plus the beat exactly five minutes old.
+    assertEquals(1201, analyzer.getBeatCount());
+    assertEquals(250, analyzer.getMeanIbi(), 0);
+  }
+
+  @Test
+  public void steadyIntervalsHaveNoVariability() {
+    HrvAnalyzer analyzer = new HrvAnalyzer(new CountingListener());
+    feed(analyzer, new int[] {1000}, 200);
+    assertEquals(200, analyzer.getBeatCount());
+    assertEquals(1000, analyzer.getMeanIbi(), 0);
+    assertEquals(0, analyzer.getSdnn(), 0);
+    assertEquals(0, analyzer.getRmssd(), 0);
+    assertEquals(0, analyzer.getPnn50(), 0);
+  }
+
+  @Test
+  public void alternatingIntervalsGiveClosedFormMeasures() {
+    HrvAnalyzer analyzer = new HrvAnalyzer(new CountingListener());
+    feed(analyzer, new int[] {800, 900}, 100);
+    assertEquals(100, analyzer.getBeatCount());
+    assertEquals(850, analyzer.getMeanIbi(), 0);
+    assertEquals(50 * Math.sqrt(100 / 99.0), analyzer.getSdnn(), 1e-3);
+    assertEquals(100, analyzer.getRmssd(), 0);
+    assertEquals(1, analyzer.getPnn50(), 0);
+  }
+
+  @Test
+  public void windowKeepsOnlyTheLastFiveMinutes() {
+    HrvAnalyzer analyzer = new HrvAnalyzer(new CountingListener());
+    // Ten minutes of alternating beats, then five of steady ones push all of them out; the
+    // window's oldest beat is exactly five minutes old.
+    long end = feed(analyzer, new int[] {800, 900}, 706);
+    for (int i = 0; i < 301; i++) {
+      end += 1000 * NANOS_PER_MS;
+      analyzer.onBeat(1000, end);
+    }
+    assertEquals(301, analyzer.getBeatCount());
+    assertEquals(0, analyzer.getRmssd(), 0);
+    assertEquals(0, analyzer.getPnn50(), 0);
+  }
+
+  @Test
+  public void lfHfRatioFollowsTheModulationFrequency() {
+    assertTrue(modulatedRatio(0.1) > 10);
+    assertTrue(modulatedRatio(0.3) < 0.1);
+  }
+
+  @Test
+  public void resetForgetsEverything() {
+    CountingListener listener = new CountingListener();
+    HrvAnalyzer analyzer = new HrvAnalyzer(listener);
+    PulseEvent event = new PulseEvent();
+    for (int i = 1; i <= 300; i++) {
+      event.set(PulseEvent.TYPE_IBI, i % 2 == 0 ? 800 : 900, i * 850 * NANOS_PER_MS);
+      analyzer.onPulseEvent(event);
+      event.set(PulseEvent.TYPE_BPM, 70, i * 850 * NANOS_PER_MS);
+      analyzer.onPulseEvent(event);
+    }
+    assertEquals(600, listener.events);
+    assertEquals(300, analyzer.getBeatCount());
+    assertTrue(analyzer.getLfHfRatio() > 0);
+
+    analyzer.reset();
+    assertEquals(0, analyzer.getBeatCount());
+    assertEquals(0, analyzer.getSdnn(), 0);
+    assertEquals(0, analyzer.getRmssd(), 0);
+    assertTrue(Float.isNaN(analyzer.getLfHfRatio()));
+  }
+
+  /** Returns the ratio for four minutes of beats modulated by a sine at the given frequency. */
+  private static float modulatedRatio(double frequency) {
+    HrvAnalyzer analyzer = new HrvAnalyzer(new CountingListener());
+    modulate(analyzer, 0, frequency, 240);
+    return analyzer.getLfHfRatio();
+  }
+
+  /**
+   * Feeds beats around 800ms modulated by a sine at the given frequency from one time for some
+   * seconds, returning the time of the last beat.
+   */
+  private static long modulate(HrvAnalyzer analyzer, long time, double frequency, int seconds) {
+    long end = time + seconds * 1000 * NANOS_PER_MS;
+    while (time < end) {
+      int ibi = (int) Math.round(800 + 50 * Math.sin(2 * Math.PI * frequency * time / 1e9));
+      time += ibi * NANOS_PER_MS;
+      analyzer.onBeat(ibi, time);
+    }
+    return time;
+  }
+
+  /** Feeds the pattern of intervals repeatedly, returning the time of the last beat. */
+  private static long feed(HrvAnalyzer analyzer, int[] pattern, int beats) {
+    long time = 0;
+    for (int i = 0; i < beats; i++) {
+      int ibi = pattern[i % pattern.length];
+      time += ibi * NANOS_PER_MS;
+      analyzer.onBeat(ibi, time);
+    }
+    return time;
+  }
+
+  private List<String> readLines(String resource) throws IOException {
+    InputStream in = getClass().getResourceAsStream(resource);
+    if (in == null) {
+      throw new IOException("Missing test resource " + resource);
+    }
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "US-ASCII"));
+    try {
+      List<String> lines = new ArrayList<String>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+      return lines;
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static class CountingListener implements PulseLineFramer.Listener {
+    int events;
+
+    @Override
+    public void onPulseEvent(PulseEvent event) {
+      events++;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+public class HubPulseSourceTest {
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  @Test
+  public void participantsBeatClocksOnlyChangeWhenDrained() {
+    HubPulseSource source = new HubPulseSource(null, 3, 0);
+    source.onDeviceConnected(1, "A");
+    source.onDeviceConnected(2, "B");
+    assertTrue(source.isConnected(2));
+    receive(source, 1, "S512\nB75\nQ8");
+    receive(source, 1, "00\n");
+    receive(source, 2, "Q1000\nB60\n");
+
+    BeatClock first = source.getBeatClock(1);
+    BeatClock second = source.getBeatClock(2);
+    assertEquals(0, first.getBpm());
+    assertEquals(0, second.getBpm());
+
+    source.drainParticipants();
+    assertEquals(512, first.getSignal());
+    assertEquals(75, first.getBpm());
+    assertEquals(800, first.getIbi());
+    assertEquals(60, second.getBpm());
+    assertEquals(1000, second.getIbi());
+    assertEquals(0, source.getDroppedParticipantEvents());
+  }
+
+  @Test
+  public void eachParticipantHasRoomOfTheirOwn() {
+    HubPulseSource source = new HubPulseSource(null, 3, 0);
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      lines.append("B").append(60 + i).append('\n');
+    }
+    // The first participant fills their ring without taking the second one's room.
+    receive(source, 1, lines.toString());
+    receive(source, 2, "B90\n");
+    source.drainParticipants();
+
+    assertTrue(source.getDroppedParticipantEvents() > 0);
+    assertEquals(90, source.getBeatClock(2).getBpm());
+  }
+
+  private static void receive(HubPulseSource source, int participant, String data) {
+    byte[] bytes = data.getBytes(ASCII);
+    source.onDeviceReceive(participant, bytes, 0, bytes.length, 1000);
+  }
+}
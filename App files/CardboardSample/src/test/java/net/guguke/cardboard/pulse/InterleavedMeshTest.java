@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+public class InterleavedMeshTest {
+  // Two triangles' worth of positions and normals.
+  private static final float[] COORDS = {
+      0, 0, 0,  1, 0, 0,  0, 1, 0,
+      1, 1, 0,  0, 1, 0,  1, 0, 0};
+  private static final float[] NORMALS = {
+      0, 0, 1,  0, 0, 1,  0, 0, 1,
+      0, 0, 1,  0, 0, 1,  0, 0, 1};
+  private static final int[] SIZES = {3, 3};
+  private static final int STRIDE = 6 * 4;
+
+  @Test
+  public void uploadInterleavesTheAttributesIntoOneBuffer() {
+    RecordingGl gl = new RecordingGl();
+    InterleavedMesh mesh = new InterleavedMesh(new float[][] {COORDS, NORMALS}, SIZES);
+    mesh.upload(gl);
+
+    assertEquals(Arrays.asList(
+        "glGenBuffers(1)",
+        "glBindBuffer(" + GLES20.GL_ARRAY_BUFFER + ", 1)",
+        "glBufferData(" + GLES20.GL_ARRAY_BUFFER + ", " + 6 * STRIDE + ", "
+            + GLES20.GL_STATIC_DRAW + ")",
+        "glBindBuffer(" + GLES20.GL_ARRAY_BUFFER + ", 0)"),
+        gl.getCalls());
+
+    float[] uploaded = new float[6 * 6];
+    gl.getBufferContents(1).asFloatBuffer().get(uploaded);
+    for (int v = 0; v < 6; v++) {
+      for (int i = 0; i < 3; i++) {
+        assertEquals(COORDS[v * 3 + i], uploaded[v * 6 + i], 0.0f);
+        assertEquals(NORMALS[v * 3 + i], uploaded[v * 6 + 3 + i], 0.0f);
+      }
+    }
+  }
+
+  @Test
+  public void indexedMeshUploadsItsIndicesToAnElementBuffer() {
+    RecordingGl gl = new RecordingGl();
+    short[] indices = {0, 1, 2, 3, 4, 5};
+    InterleavedMesh mesh = new InterleavedMesh(new float[][] {COORDS, NORMALS}, SIZES, indices);
+    mesh.upload(gl);
+
+    assertEquals("glGenBuffers(2)", gl.getCalls().get(0));
+    assertEquals("glBufferData(" + GLES20.GL_ELEMENT_ARRAY_BUFFER + ", 12, "
+        + GLES20.GL_STATIC_DRAW + ")", gl.getCalls().get(5));
+    short[] uploaded = new short[indices.length];
+    ShortBuffer contents = gl.getBufferContents(2).asShortBuffer();
+    contents.get(uploaded);
+    assertArrayEquals(indices, uploaded);
+  }
+
+  @Test
+  public void drawingReadsFromTheBufferWithoutUploadingAgain() {
+    RecordingGl gl = new RecordingGl();
+    InterleavedMesh mesh = new InterleavedMesh(new float[][] {COORDS, NORMALS}, SIZES);
+    mesh.upload(gl);
+    gl.clear();
+
+    for (int eye = 0; eye < 2; eye++) {
+      mesh.bind();
+      mesh.setAttribute(7, 0);
+      mesh.setAttribute(8, 1);
+      mesh.draw();
+    }
+
+    assertEquals(0, gl.count("glBufferData"));
+    assertEquals(Arrays.asList(
+        "glBindBuffer(" + GLES20.GL_ARRAY_BUFFER + ", 1)",
+        "glVertexAttribPointer(7, 3, " + GLES20.GL_FLOAT + ", false, " + STRIDE + ", 0)",
+        "glVertexAttribPointer(8, 3, " + GLES20.GL_FLOAT + ", false, " + STRIDE + ", 12)",
+        "glDrawArrays(" + GLES20.GL_TRIANGLES + ", 0, 6)"),
+        gl.getCalls().subList(0, 4));
+    assertEquals(gl.getCalls().subList(0, 4), gl.getCalls().subList(4, 8));
+  }
+
+  @Test
+  public void indexedMeshIsDrawnWithElements() {
+    RecordingGl gl = new RecordingGl();
+    InterleavedMesh mesh =
+        new InterleavedMesh(new float[][] {COORDS, NORMALS}, SIZES, new short[] {0, 1, 2});
+    mesh.upload(gl);
+    gl.clear();
+
+    mesh.bind();
+    mesh.draw();
+    mesh.draw(2);
+
+    assertEquals(Arrays.asList(
+        "glBindBuffer(" + GLES20.GL_ARRAY_BUFFER + ", 1)",
+        "glBindBuffer(" + GLES20.GL_ELEMENT_ARRAY_BUFFER + ", 2)",
+        "glDrawElements(" + GLES20.GL_TRIANGLES + ", 3, " + GLES20.GL_UNSIGNED_SHORT + ", 0)",
+        "glDrawElementsInstanced(" + GLES20.GL_TRIANGLES + ", 3, " + GLES20.GL_UNSIGNED_SHORT
+            + ", 0, 2)"),
+        gl.getCalls());
+  }
+
+  @Test
+  public void singleInstanceIsAPlainDraw() {
+    RecordingGl gl = new RecordingGl();
+    InterleavedMesh mesh = new InterleavedMesh(new float[][] {COORDS, NORMALS}, SIZES);
+    mesh.upload(gl);
+    gl.clear();
+
+    mesh.draw(1);
+    mesh.draw(2);
+
+    assertEquals(Arrays.asList(
+        "glDrawArrays(" + GLES20.GL_TRIANGLES + ", 0, 6)",
+        "glDrawArraysInstanced(" + GLES20.GL_TRIANGLES + ", 0, 6, 2)"),
+        gl.getCalls());
+  }
+
+  @Test
+  public void reuploadAfterContextLossCreatesNewBuffers() {
+    InterleavedMesh mesh = new InterleavedMesh(new float[][] {COORDS, NORMALS}, SIZES);
+    RecordingGl first = new RecordingGl();
+    mesh.upload(first);
+    RecordingGl second = new RecordingGl();
+    mesh.upload(second);
+    mesh.draw();
+
+    assertEquals(1, second.count("glDrawArrays"));
+    assertEquals(0, first.count("glDrawArrays"));
+    assertEquals(6 * STRIDE, second.getBufferContents(1).remaining());
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+  // Two to the 41 nanoseconds, about 36.6 minutes, is where the buckets end.
+  private static final long RANGE_NANOS = 1L << 41;
+
+  @Test
+  public void valuesBelowSixteenNanosHaveExactBuckets() {
+    for (int nanos = 0; nanos < 16; nanos++) {
+      assertEquals(nanos, LatencyHistogram.bucketOf(nanos));
+      assertEquals(nanos, LatencyHistogram.bucketUpperBound(nanos));
+    }
+  }
+
+  @Test
+  public void powersOfTwoStartTheirFirstSubBucket() {
+    int previous = LatencyHistogram.bucketOf(15);
+    for (int exponent = 4; exponent <= 40; exponent++) {
+      long power = 1L << exponent;
+      int bucket = LatencyHistogram.bucketOf(power);
+      // Sixteen sub-buckets per power of two, the first one starting right at it.
+      assertEquals(16 * (exponent - 3), bucket);
+      assertEquals(previous + 1, bucket);
+      assertEquals(bucket - 1, LatencyHistogram.bucketOf(power - 1));
+      assertEquals(power - 1, LatencyHistogram.bucketUpperBound(bucket - 1));
+      // The last sub-bucket of this power ends right before the next one.
+      assertEquals(bucket + 15, LatencyHistogram.bucketOf(2 * power - 1));
+      assertEquals(2 * power - 1, LatencyHistogram.bucketUpperBound(bucket + 15));
+      previous = bucket + 15;
+    }
+  }
+
+  @Test
+  public void everyValueIsWithinItsBucketAndSixPercentOfItsBound() {
+    for (long nanos = 1; nanos < RANGE_NANOS; nanos = nanos * 17 / 16 + 1) {
+      int bucket = LatencyHistogram.bucketOf(nanos);
+      long upper = LatencyHistogram.bucketUpperBound(bucket);
+      assertTrue(nanos + " above " + upper, nanos <= upper);
+      assertTrue(nanos + " not above the previous bucket",
+          bucket == 0 || nanos > LatencyHistogram.bucketUpperBound(bucket - 1));
+      assertTrue(nanos + " reported as " + upper, upper - nanos <= nanos / 16);
+    }
+  }
+
+  @Test
+  public void valuesBeyondTheRangeShareTheLastBucket() {
+    int last = LatencyHistogram.bucketOf(RANGE_NANOS - 1);
+    assertEquals(RANGE_NANOS - 1, LatencyHistogram.bucketUpperBound(last));
+    assertEquals(last, LatencyHistogram.bucketOf(RANGE_NANOS));
+    assertEquals(last, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void percentilesRoundTheRankUpAndNeverExceedTheMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentileNanos(0.5));
+    for (int i = 1; i <= 10; i++) {
+      histogram.record(i);
+    }
+    // Ranks 5, 6 and 10 of 10: ceil(0.5 * 10), ceil(0.51 * 10), and the top for anything higher.
+    assertEquals(5, histogram.getPercentileNanos(0.5));
+    assertEquals(6, histogram.getPercentileNanos(0.51));
+    assertEquals(10, histogram.getPercentileNanos(0.99));
+    // A rank below one still reports the smallest value.
+    assertEquals(1, histogram.getPercentileNanos(0));
+
+    // 1000 lands in the bucket 992..1023, but nothing above 1000 was recorded.
+    histogram.record(1000);
+    assertEquals(1023, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketOf(1000)));
+    assertEquals(1000, histogram.getPercentileNanos(1.0));
+    assertEquals(1000, histogram.getMaxNanos());
+    assertEquals(11, histogram.getCount());
+    assertEquals((55 + 1000) / 11, histogram.getMeanNanos());
+  }
+
+  @Test
+  public void negativeValuesCountAsZeroAndResetClearsEverything() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    assertEquals(1, histogram.getCount());
+    assertEquals(0, histogram.getMaxNanos());
+    assertEquals(0, histogram.getPercentileNanos(1.0));
+
+    // Past the range the last bucket's bound is all that can be reported.
+    histogram.record(RANGE_NANOS * 4);
+    assertEquals(RANGE_NANOS * 4, histogram.getMaxNanos());
+    assertEquals(RANGE_NANOS - 1, histogram.getPercentileNanos(1.0));
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMeanNanos());
+    assertEquals(0, histogram.getPercentileNanos(1.0));
+  }
+
+  @Test
+  public void concurrentRecordingLosesNothing() throws InterruptedException {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final long base = t * 1000000L;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 100000; i++) {
+            histogram.record(base + i);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(400000, histogram.getCount());
+    assertEquals(3000000L + 99999, histogram.getMaxNanos());
+    assertEquals(3000000L + 99999, histogram.getPercentileNanos(1.0));
+  }
+}
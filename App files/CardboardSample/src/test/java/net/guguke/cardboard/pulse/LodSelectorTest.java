@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class LodSelectorTest {
+  // Errors of four levels of a unit radius object, finest first.
+  private static final float[] ERRORS = {0.001f, 0.01f, 0.02f, 0.08f};
+  private static final float RADIUS = 1.0f;
+  private static final float MAX_ERROR_PIXELS = 1.0f;
+  private static final float HYSTERESIS = 0.1f;
+
+  @Test
+  public void thresholdsKeepTheProjectedErrorWithinBudget() {
+    LodSelector selector = new LodSelector(ERRORS, RADIUS, MAX_ERROR_PIXELS, 0);
+    assertEquals(Float.MAX_VALUE, selector.getMaxRadius(0), 0);
+    assertEquals(100, selector.getMaxRadius(1), 1e-3f);
+    assertEquals(50, selector.getMaxRadius(2), 1e-3f);
+    assertEquals(12.5f, selector.getMaxRadius(3), 1e-3f);
+
+    // Sweep the size up and down; the drawn level's error on screen always stays in budget.
+    for (float radiusPixels = 1; radiusPixels < 1000; radiusPixels *= 1.05f) {
+      assertWithinBudget(selector, radiusPixels, 0);
+    }
+    for (float radiusPixels = 1000; radiusPixels > 1; radiusPixels /= 1.05f) {
+      assertWithinBudget(selector, radiusPixels, 0);
+    }
+  }
+
+  @Test
+  public void hysteresisBoundsTheErrorByItsMargin() {
+    LodSelector selector = new LodSelector(ERRORS, RADIUS, MAX_ERROR_PIXELS, HYSTERESIS);
+    for (float radiusPixels = 1; radiusPixels < 1000; radiusPixels *= 1.05f) {
+      assertWithinBudget(selector, radiusPixels, HYSTERESIS);
+    }
+    for (float radiusPixels = 1000; radiusPixels > 1; radiusPixels /= 1.05f) {
+      assertWithinBudget(selector, radiusPixels, HYSTERESIS);
+    }
+  }
+
+  @Test
+  public void sizeJitteringAtAThresholdDoesNotPop() {
+    LodSelector selector = new LodSelector(ERRORS, RADIUS, MAX_ERROR_PIXELS, HYSTERESIS);
+    assertEquals(1, selector.select(60));
+    int switches = selector.getSwitchCount();
+    for (int frame = 0; frame < 100; frame++) {
+      // Within 5% of the threshold between levels 1 and 2.
+      selector.select(frame % 2 == 0 ? 47.5f : 52.5f);
+    }
+    assertEquals(switches, selector.getSwitchCount());
+    assertEquals(1, selector.getLevel());
+
+    // Well past the margin it does switch.
+    assertEquals(2, selector.select(44));
+    assertEquals(1, selector.select(56));
+  }
+
+  @Test
+  public void withoutHysteresisJitterSwitchesEveryFrame() {
+    LodSelector selector = new LodSelector(ERRORS, RADIUS, MAX_ERROR_PIXELS, 0);
+    selector.select(60);
+    int switches = selector.getSwitchCount();
+    for (int frame = 0; frame < 100; frame++) {
+      selector.select(frame % 2 == 0 ? 47.5f : 52.5f);
+    }
+    assertEquals(switches + 100, selector.getSwitchCount());
+  }
+
+  @Test
+  public void startsCoarsestAndJumpsStraightToTheRightLevel() {
+    LodSelector selector = new LodSelector(ERRORS, RADIUS, MAX_ERROR_PIXELS, HYSTERESIS);
+    assertEquals(3, selector.getLevel());
+    assertEquals(0, selector.select(500));
+    assertEquals(3, selector.select(5));
+    assertEquals(2, selector.getSwitchCount());
+  }
+
+  @Test
+  public void rejectsLevelsThatGetFiner() {
+    try {
+      new LodSelector(new float[] {0.01f, 0.001f}, RADIUS, MAX_ERROR_PIXELS, HYSTERESIS);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void projectedRadiusFollowsDistanceScaleAndViewport() {
+    // A 90 degree field of view: perspective[5] = 1 / tan(45) = 1.
+    float[] perspective = MatrixMathTest.identity();
+    float[] modelView = MatrixMathTest.translation(0, 0, -10);
+
+    // At depth 10 a unit sphere covers a tenth of the half height.
+    assertEquals(50, LodSelector.projectedRadius(modelView, 0, perspective, 1, 1000), 1e-3f);
+    modelView[14] = -20;
+    assertEquals(25, LodSelector.projectedRadius(modelView, 0, perspective, 1, 1000), 1e-3f);
+    // The largest axis scale counts.
+    modelView[5] = 3;
+    assertEquals(75, LodSelector.projectedRadius(modelView, 0, perspective, 1, 1000), 1e-3f);
+    // Behind the eye it could be any size, so it gets the finest level.
+    modelView[14] = 5;
+    assertEquals(Float.MAX_VALUE,
+        LodSelector.projectedRadius(modelView, 0, perspective, 1, 1000), 0);
+  }
+
+  @Test
+  public void beatingDoesNotSwitchLevels() {
+    float[] perspective = MatrixMathTest.identity();
+    // At rest the object is 44 px, just inside the margin below the level 1 to 2 threshold.
+    float[] modelView = MatrixMathTest.translation(0, 0, -500f / 44);
+    LodSelector atRest = new LodSelector(ERRORS, RADIUS, MAX_ERROR_PIXELS, HYSTERESIS);
+    LodSelector beating = new LodSelector(ERRORS, RADIUS, MAX_ERROR_PIXELS, HYSTERESIS);
+    atRest.select(LodSelector.projectedRestRadius(modelView, 0, 1, perspective, RADIUS, 1000));
+    beating.select(LodSelector.projectedRadius(modelView, 0, perspective, RADIUS, 1000));
+    int restSwitches = atRest.getSwitchCount();
+    int beatSwitches = beating.getSwitchCount();
+
+    // The heart scales by up to a third in x and y on every beat, as in MainActivity.
+    int beats = 10;
+    for (int frame = 0; frame < beats * 48; frame++) {
+      float pulse = (float) (Math.cos(2 * Math.PI * frame / 48) + 1) / 2;
+      float scale = 1 + pulse / 3;
+      modelView[0] = scale;
+      modelView[5] = scale;
+      assertEquals(2, atRest.select(
+          LodSelector.projectedRestRadius(modelView, 0, scale, perspective, RADIUS, 1000)));
+      beating.select(LodSelector.projectedRadius(modelView, 0, perspective, RADIUS, 1000));
+    }
+    assertEquals(restSwitches, atRest.getSwitchCount());
+    // Sized with the beat, the level flips up and back down on each one.
+    assertTrue(beating.getSwitchCount() - beatSwitches >= 2 * beats);
+  }
+
+  @Test
+  public void restRadiusLeavesOutTheTransientScale() {
+    float[] perspective = MatrixMathTest.identity();
+    float[] modelView = MatrixMathTest.translation(0, 0, -10);
+    modelView[0] = 1.25f;
+    modelView[5] = 1.25f;
+    assertEquals(62.5f, LodSelector.projectedRadius(modelView, 0, perspective, 1, 1000), 1e-3f);
+    assertEquals(50,
+        LodSelector.projectedRestRadius(modelView, 0, 1.25f, perspective, 1, 1000), 1e-3f);
+    modelView[14] = 5;
+    assertEquals(Float.MAX_VALUE,
+        LodSelector.projectedRestRadius(modelView, 0, 1.25f, perspective, 1, 1000), 0);
+  }
+
+  /** Selects a level and checks that its error stays within the budget plus a margin. */
+  private static void assertWithinBudget(LodSelector selector, float radiusPixels,
+      float margin) {
+    int level = selector.select(radiusPixels);
+    float errorPixels = ERRORS[level] * radiusPixels / RADIUS;
+    assertTrue("level " + level + " at " + radiusPixels + " px is off by " + errorPixels + " px",
+        errorPixels <= MAX_ERROR_PIXELS * (1 + margin) + 1e-4f);
+  }
+}
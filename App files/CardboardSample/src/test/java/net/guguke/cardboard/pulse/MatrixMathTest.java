@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class MatrixMathTest {
+  private static final float EPSILON = 1e-5f;
+
+  @Test
+  public void identityLeavesMatricesAlone() {
+    float[] m = randomMatrix(new Random(1));
+    float[] result = new float[16];
+    MatrixMath.multiplyMM(result, 0, identity(), 0, m, 0);
+    assertArrayEquals(m, result, 0.0f);
+    MatrixMath.multiplyMM(result, 0, m, 0, identity(), 0);
+    assertArrayEquals(m, result, 0.0f);
+  }
+
+  @Test
+  public void translationIsInTheLastColumn() {
+    float[] point = new float[4];
+    MatrixMath.multiplyMV(point, 0, translation(1, 2, 3), 0, new float[] {0, 0, 0, 1}, 0);
+    assertArrayEquals(new float[] {1, 2, 3, 1}, point, 0.0f);
+
+    // Directions don't move.
+    MatrixMath.multiplyMV(point, 0, translation(1, 2, 3), 0, new float[] {0, 1, 0, 0}, 0);
+    assertArrayEquals(new float[] {0, 1, 0, 0}, point, 0.0f);
+  }
+
+  @Test
+  public void rightHandSideIsAppliedFirst() {
+    // Rotate a quarter turn about y, then move along x.
+    float[] m = new float[16];
+    MatrixMath.multiplyMM(m, 0, translation(5, 0, 0), 0, rotationY(90), 0);
+    float[] point = new float[4];
+    MatrixMath.multiplyMV(point, 0, m, 0, new float[] {1, 0, 0, 1}, 0);
+    assertArrayEquals(new float[] {5, 0, -1, 1}, point, EPSILON);
+
+    MatrixMath.multiplyMM(m, 0, rotationY(90), 0, translation(5, 0, 0), 0);
+    MatrixMath.multiplyMV(point, 0, m, 0, new float[] {1, 0, 0, 1}, 0);
+    assertArrayEquals(new float[] {0, 0, -6, 1}, point, EPSILON);
+  }
+
+  @Test
+  public void matchesTheDefinitionOfTheProduct() {
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      float[] lhs = randomMatrix(random);
+      float[] rhs = randomMatrix(random);
+      float[] vector = {random.nextFloat(), random.nextFloat(), random.nextFloat(), 1};
+      float[] result = new float[16];
+      MatrixMath.multiplyMM(result, 0, lhs, 0, rhs, 0);
+      assertArrayEquals(referenceMM(lhs, rhs), result, EPSILON);
+      float[] v = new float[4];
+      MatrixMath.multiplyMV(v, 0, lhs, 0, vector, 0);
+      assertArrayEquals(referenceMV(lhs, vector), v, EPSILON);
+    }
+  }
+
+  @Test
+  public void honorsOffsets() {
+    Random random = new Random(7);
+    float[] arena = new float[64];
+    float[] lhs = randomMatrix(random);
+    float[] rhs = randomMatrix(random);
+    System.arraycopy(lhs, 0, arena, 16, 16);
+    System.arraycopy(rhs, 0, arena, 32, 16);
+    MatrixMath.multiplyMM(arena, 48, arena, 16, arena, 32);
+    float[] result = new float[16];
+    System.arraycopy(arena, 48, result, 0, 16);
+    assertArrayEquals(referenceMM(lhs, rhs), result, EPSILON);
+    // Nothing outside the result was written.
+    for (int i = 0; i < 16; i++) {
+      assertEquals(0.0f, arena[i], 0.0f);
+    }
+  }
+
+  static float[] identity() {
+    return translation(0, 0, 0);
+  }
+
+  static float[] translation(float x, float y, float z) {
+    return new float[] {1, 0, 0, 0,  0, 1, 0, 0,  0, 0, 1, 0,  x, y, z, 1};
+  }
+
+  static float[] rotationY(float degrees) {
+    float c = (float) Math.cos(Math.toRadians(degrees));
+    float s = (float) Math.sin(Math.toRadians(degrees));
+    return new float[] {c, 0, -s, 0,  0, 1, 0, 0,  s, 0, c, 0,  0, 0, 0, 1};
+  }
+
+  static float[] randomMatrix(Random random) {
+    float[] m = new float[16];
+    for (int i = 0; i < 16; i++) {
+      m[i] = random.nextFloat() * 4 - 2;
+    }
+    return m;
+  }
+
+  /** lhs * rhs for column-major matrices, straight from the definition, in doubles. */
+  static float[] referenceMM(float[] lhs, float[] rhs) {
+    float[] result = new float[16];
+    for (int row = 0; row < 4; row++) {
+      for (int column = 0; column < 4; column++) {
+        double sum = 0;
+        for (int k = 0; k < 4; k++) {
+          sum += (double) lhs[k * 4 + row] * rhs[column * 4 + k];
+        }
+        result[column * 4 + row] = (float) sum;
+      }
+    }
+    return result;
+  }
+
+  static float[] referenceMV(float[] lhs, float[] vector) {
+    float[] result = new float[4];
+    for (int row = 0; row < 4; row++) {
+      double sum = 0;
+      for (int k = 0; k < 4; k++) {
+        sum += (double) lhs[k * 4 + row] * vector[k];
+      }
+      result[row] = (float) sum;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+public class MeshFormatTest {
+  @Test
+  public void slicesTheSectionsOutOfTheFile() throws IOException {
+    ByteBuffer file = header(MeshFormat.VERSION, 3, 3,
+        3 * MeshFormat.BYTES_PER_VERTEX + 3 * MeshFormat.BYTES_PER_INDEX);
+    for (int v = 0; v < 3; v++) {
+      for (int i = 0; i < MeshFormat.FLOATS_PER_VERTEX; i++) {
+        file.putFloat(v * 10 + i);
+      }
+    }
+    file.putShort((short) 0).putShort((short) 1).putShort((short) 2);
+    file.flip();
+
+    MeshFormat.Sections sections = MeshFormat.read(file);
+
+    assertEquals(3, sections.vertexCount);
+    assertEquals(3, sections.indexCount);
+    assertEquals(0.5f, sections.error, 0.0f);
+    assertEquals(3 * MeshFormat.BYTES_PER_VERTEX, sections.vertices.remaining());
+    assertEquals(3 * MeshFormat.BYTES_PER_INDEX, sections.indices.remaining());
+    assertEquals(20.0f, sections.vertices.getFloat(2 * MeshFormat.BYTES_PER_VERTEX), 0.0f);
+    assertEquals(2, sections.indices.getShort(2 * MeshFormat.BYTES_PER_INDEX));
+  }
+
+  @Test
+  public void meshWithoutIndicesIsDrawnInOrder() throws IOException {
+    ByteBuffer file = header(MeshFormat.VERSION, 3, 0, 3 * MeshFormat.BYTES_PER_VERTEX);
+    file.position(file.limit());
+    file.flip();
+
+    MeshFormat.Sections sections = MeshFormat.read(file);
+    assertEquals(0, sections.indexCount);
+    InterleavedMesh mesh = MeshAsset.toMesh(sections);
+    RecordingGl gl = new RecordingGl();
+    mesh.upload(gl);
+    gl.clear();
+    mesh.bind();
+    mesh.draw();
+
+    assertEquals(Arrays.asList(
+        "glBindBuffer(" + GLES20.GL_ARRAY_BUFFER + ", 1)",
+        "glDrawArrays(" + GLES20.GL_TRIANGLES + ", 0, 3)"),
+        gl.getCalls());
+  }
+
+  @Test
+  public void rejectsTruncatedFiles() {
+    ByteBuffer file = header(MeshFormat.VERSION, 3, 3, 8);
+    file.flip();
+    assertNotReadable(file);
+  }
+
+  @Test
+  public void rejectsCountsWhoseSizeWrapsAround() {
+    // 178956971 vertices of 24 bytes are 2^32 + 8 bytes, which wraps to 8 in an int.
+    ByteBuffer file = header(MeshFormat.VERSION, 178956971, 0, 8);
+    file.flip();
+    assertNotReadable(file);
+
+    // 2^31 bytes of indices wrap to a negative size.
+    file = header(MeshFormat.VERSION, 0, 1 << 30, 8);
+    file.flip();
+    assertNotReadable(file);
+  }
+
+  @Test
+  public void rejectsNegativeCounts() {
+    ByteBuffer file = header(MeshFormat.VERSION, -1, 0, 64);
+    file.flip();
+    assertNotReadable(file);
+  }
+
+  @Test
+  public void rejectsOtherFiles() {
+    ByteBuffer file = header(MeshFormat.VERSION, 0, 0, 0);
+    file.flip();
+    file.putInt(0, 0x464c457f);
+    assertNotReadable(file);
+
+    file = header(MeshFormat.VERSION + 1, 0, 0, 0);
+    file.flip();
+    assertNotReadable(file);
+  }
+
+  @Test
+  public void readsVersionOneWithoutError() throws IOException {
+    ByteBuffer file = ByteBuffer.allocate(16 + MeshFormat.BYTES_PER_VERTEX)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    file.putInt(MeshFormat.MAGIC).putInt(1).putInt(1).putInt(0);
+    file.position(file.limit());
+    file.flip();
+
+    MeshFormat.Sections sections = MeshFormat.read(file);
+    assertEquals(1, sections.vertexCount);
+    assertEquals(0.0f, sections.error, 0.0f);
+  }
+
+  // A header followed by room for extraBytes of sections.
+  private static ByteBuffer header(int version, int vertexCount, int indexCount, int extraBytes) {
+    ByteBuffer file = ByteBuffer.allocate(MeshFormat.HEADER_BYTES + extraBytes)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    file.putInt(MeshFormat.MAGIC).putInt(version).putInt(vertexCount).putInt(indexCount)
+        .putFloat(0.5f);
+    return file;
+  }
+
+  private static void assertNotReadable(ByteBuffer file) {
+    try {
+      MeshFormat.read(file);
+      fail("Read a broken mesh file");
+    } catch (IOException expected) {
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PulseEventRingTest {
+  private final PulseEvent event = new PulseEvent();
+
+  @Test
+  public void drainsEverythingPublishedOldestFirst() {
+    PulseEventRing ring = new PulseEventRing(8);
+    RecordingListener listener = new RecordingListener();
+    assertEquals(0, ring.drain(listener));
+
+    // Laps the ring a few times.
+    for (int round = 0; round < 5; round++) {
+      publish(ring, PulseEvent.TYPE_BPM, 70 + round);
+      publish(ring, PulseEvent.TYPE_IBI, 850 + round);
+      publish(ring, PulseEvent.TYPE_SIGNAL, 512 + round);
+      assertEquals(3, ring.drain(listener));
+    }
+    assertEquals(15, listener.events.size());
+    assertEquals("B74@74", listener.events.get(12));
+    assertEquals("Q854@854", listener.events.get(13));
+    assertEquals("S516@516", listener.events.get(14));
+    assertEquals(0, ring.getDroppedEvents());
+    assertEquals(0, ring.getDroppedSignals());
+  }
+
+  @Test
+  public void signalsMakeRoomForBeatsWhenTheConsumerFallsBehind() {
+    PulseEventRing ring = new PulseEventRing(8);
+    for (int i = 0; i < 10; i++) {
+      publish(ring, PulseEvent.TYPE_SIGNAL, i);
+    }
+    // Signals stop at three quarters, beats go on to the end.
+    assertEquals(4, ring.getDroppedSignals());
+    publish(ring, PulseEvent.TYPE_IBI, 800);
+    publish(ring, PulseEvent.TYPE_BPM, 75);
+    publish(ring, PulseEvent.TYPE_IBI, 810);
+    assertEquals(1, ring.getDroppedEvents());
+
+    RecordingListener listener = new RecordingListener();
+    assertEquals(8, ring.drain(listener));
+    assertEquals("S5@5", listener.events.get(5));
+    assertEquals("Q800@800", listener.events.get(6));
+    assertEquals("B75@75", listener.events.get(7));
+    // Room again once drained.
+    publish(ring, PulseEvent.TYPE_SIGNAL, 1);
+    assertEquals(1, ring.drain(listener));
+  }
+
+  @Test
+  public void capacityMustBeAPowerOfTwo() {
+    assertEquals(16, new PulseEventRing(16).getCapacity());
+    for (int capacity : new int[] {0, 2, 12, -8}) {
+      try {
+        new PulseEventRing(capacity);
+        fail("Accepted capacity " + capacity);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void consumerSeesEveryEventThatWasntDroppedInOrder() throws InterruptedException {
+    final PulseEventRing ring = new PulseEventRing(64);
+    final int events = 1000000;
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        PulseEvent event = new PulseEvent();
+        for (int i = 0; i < events; i++) {
+          // The value and time both number the event, so a torn copy shows.
+          event.set(PulseEvent.TYPE_IBI, i, i);
+          ring.onPulseEvent(event);
+        }
+      }
+    });
+    SequenceListener consumer = new SequenceListener();
+    producer.start();
+    while (producer.isAlive()) {
+      ring.drain(consumer);
+    }
+    ring.drain(consumer);
+
+    assertEquals(null, consumer.error);
+    assertEquals(events, consumer.received + ring.getDroppedEvents());
+    assertTrue(consumer.received > 0);
+  }
+
+  private void publish(PulseEventRing ring, int type, int value) {
+    event.set(type, value, value);
+    ring.onPulseEvent(event);
+  }
+
+  private static class RecordingListener implements PulseLineFramer.Listener {
+    final List<String> events = new ArrayList<String>();
+
+    @Override
+    public void onPulseEvent(PulseEvent event) {
+      events.add((char) event.type + "" + event.value + "@" + event.timeNanos);
+    }
+  }
+
+  private static class SequenceListener implements PulseLineFramer.Listener {
+    int received;
+    int last = -1;
+    String error;
+
+    @Override
+    public void onPulseEvent(PulseEvent event) {
+      if (error == null && (event.value <= last || event.timeNanos != event.value)) {
+        error = event.value + "@" + event.timeNanos + " after " + last;
+      }
+      last = event.value;
+      received++;
+    }
+  }
+}
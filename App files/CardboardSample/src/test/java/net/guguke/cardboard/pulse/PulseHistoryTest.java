@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class PulseHistoryTest {
+  private static final long NANOS_PER_MS = 1000000L;
+  private static final long START_NANOS = 5000 * NANOS_PER_MS;
+
+  private final List<Integer> forwarded = new ArrayList<Integer>();
+  private final PulseHistory history = new PulseHistory(new PulseLineFramer.Listener() {
+    @Override
+    public void onPulseEvent(PulseEvent event) {
+      forwarded.add(event.type);
+    }
+  }, START_NANOS);
+
+  @Test
+  public void recordsSignalAndBeatsAndForwardsEverything() {
+    PulseEvent event = new PulseEvent();
+    event.set(PulseEvent.TYPE_SIGNAL, 512, START_NANOS + 2 * NANOS_PER_MS);
+    history.onPulseEvent(event);
+    event.set(PulseEvent.TYPE_BPM, 75, START_NANOS + 4 * NANOS_PER_MS);
+    history.onPulseEvent(event);
+    event.set(PulseEvent.TYPE_IBI, 800, START_NANOS + 4 * NANOS_PER_MS);
+    history.onPulseEvent(event);
+
+    assertEquals(1, history.getSampleCount());
+    assertEquals(1, history.getBeatCount());
+    assertEquals(3, forwarded.size());
+    int[] values = new int[4];
+    long[] times = new long[4];
+    assertEquals(1, history.copySamples(values, times));
+    assertEquals(512, values[0]);
+    assertEquals(START_NANOS + 2 * NANOS_PER_MS, times[0]);
+  }
+
+  @Test
+  public void copiesTheNewestSamplesOldestFirst() {
+    for (int i = 0; i < PulseHistory.SAMPLE_CAPACITY + 1000; i++) {
+      history.appendSample(i & 1023, START_NANOS + i * 2 * NANOS_PER_MS);
+    }
+    int[] values = new int[100];
+    long[] times = new long[100];
+    assertEquals(100, history.copySamples(values, times));
+    int last = PulseHistory.SAMPLE_CAPACITY + 999;
+    for (int i = 0; i < 100; i++) {
+      int index = last - 99 + i;
+      assertEquals(index & 1023, values[i]);
+      assertEquals(START_NANOS + index * 2 * NANOS_PER_MS, times[i]);
+    }
+
+    // Never more than the part of the ring the writer can't be overwriting.
+    int[] all = new int[PulseHistory.SAMPLE_CAPACITY];
+    int copied = history.copySamples(all, null);
+    assertEquals(PulseHistory.SAMPLE_CAPACITY - PulseHistory.SAMPLE_CAPACITY / 8, copied);
+    assertEquals(last & 1023, all[copied - 1]);
+  }
+
+  @Test
+  public void beatStatsMatchComputingThemDirectly() {
+    int[] ibis = {800, 820, 790, 850, 760, 900, 880, 810, 805, 795};
+    long time = START_NANOS;
+    long[] times = new long[ibis.length];
+    for (int i = 0; i < ibis.length; i++) {
+      time += ibis[i] * NANOS_PER_MS;
+      times[i] = time;
+      history.appendBeat(ibis[i], time);
+    }
+
+    PulseHistory.BeatStats stats = new PulseHistory.BeatStats();
+    // The window holds the last six beats.
+    long windowNanos = time - times[4];
+    assertTrue(history.getBeatStats(windowNanos, time, stats));
+    assertEquals(6, stats.count);
+    int min = Integer.MAX_VALUE;
+    int max = 0;
+    long sum = 0;
+    double squaredDiffs = 0;
+    for (int i = 4; i < ibis.length; i++) {
+      int bpm = 60000 / ibis[i];
+      min = Math.min(min, bpm);
+      max = Math.max(max, bpm);
+      sum += bpm;
+      if (i > 4) {
+        squaredDiffs += (ibis[i] - ibis[i - 1]) * (ibis[i] - ibis[i - 1]);
+      }
+    }
+    assertEquals(min, stats.minBpm);
+    assertEquals(max, stats.maxBpm);
+    assertEquals(sum / 6.0, stats.meanBpm, 1e-4);
+    assertEquals(Math.sqrt(squaredDiffs / 5), stats.rmssd, 1e-3);
+  }
+
+  @Test
+  public void implausibleIntervalsAndGapsAreLeftOut() {
+    history.appendBeat(800, START_NANOS + 800 * NANOS_PER_MS);
+    history.appendBeat(100, START_NANOS + 900 * NANOS_PER_MS);
+    history.appendBeat(3000, START_NANOS + 3900 * NANOS_PER_MS);
+    assertEquals(1, history.getBeatCount());
+    // Beats were lost in the 5 s before this one, so its difference to the last doesn't count.
+    history.appendBeat(850, START_NANOS + 5800 * NANOS_PER_MS);
+    history.appendBeat(900, START_NANOS + 6700 * NANOS_PER_MS);
+
+    PulseHistory.BeatStats stats = new PulseHistory.BeatStats();
+    assertTrue(history.getBeatStats(10000 * NANOS_PER_MS, START_NANOS + 6700 * NANOS_PER_MS,
+        stats));
+    assertEquals(3, stats.count);
+    assertEquals(50, stats.rmssd, 1e-4);
+  }
+
+  @Test
+  public void emptyWindowHasNoStats() {
+    history.appendBeat(800, START_NANOS);
+    PulseHistory.BeatStats stats = new PulseHistory.BeatStats();
+    assertTrue(history.getBeatStats(NANOS_PER_MS, START_NANOS + 60000 * NANOS_PER_MS, stats));
+    assertEquals(0, stats.count);
+    assertEquals(0, stats.meanBpm, 0);
+  }
+
+  @Test
+  public void readersNeverSeeTornOrOverwrittenSamples() throws Exception {
+    // Each sample's value and time both encode its index, so any mix of two laps shows up.
+    final int samples = PulseHistory.SAMPLE_CAPACITY * 6;
+    final AtomicReference<String> failure = new AtomicReference<String>();
+    Thread writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < samples; i++) {
+          history.appendSample(i, START_NANOS + i * NANOS_PER_MS);
+        }
+      }
+    });
+    Thread[] readers = new Thread[2];
+    for (int r = 0; r < readers.length; r++) {
+      readers[r] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          int[] values = new int[PulseHistory.SAMPLE_CAPACITY - PulseHistory.SAMPLE_CAPACITY / 8];
+          long[] times = new long[values.length];
+          while (history.getSampleCount() < samples && failure.get() == null) {
+            int n = history.copySamples(values, times);
+            for (int i = 0; i < n; i++) {
+              if (times[i] != START_NANOS + values[i] * NANOS_PER_MS
+                  || (i > 0 && values[i] != values[i - 1] + 1)) {
+                failure.set("Sample " + i + " of " + n + ": " + values[i] + " at " + times[i]);
+                return;
+              }
+            }
+          }
+        }
+      });
+    }
+    writer.start();
+    for (Thread reader : readers) {
+      reader.start();
+    }
+    writer.join();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertEquals(null, failure.get());
+  }
+}
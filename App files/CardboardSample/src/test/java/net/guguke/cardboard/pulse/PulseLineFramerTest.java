@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PulseLineFramerTest {
+  private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+  private final List<String> events = new ArrayList<String>();
+  private PulseLineFramer framer;
+
+  @Before
+  public void setUp() {
+    framer = new PulseLineFramer(new PulseLineFramer.Listener() {
+      @Override
+      public void onPulseEvent(PulseEvent event) {
+        events.add((char) event.type + "" + event.value + "@" + event.timeNanos);
+      }
+    });
+  }
+
+  @Test
+  public void joinsLinesSplitAcrossPackets() {
+    // The way the sketch sends them: one 20 byte notification after another.
+    byte[] stream = ascii("AT+BLEUARTTX=S512\r\nB72\r\nQ833\r\nS-3\r\n");
+    for (int offset = 0, packet = 0; offset < stream.length; offset += 20, packet++) {
+      framer.feed(stream, offset, Math.min(20, stream.length - offset), packet);
+    }
+    // Each value is stamped with the packet that completed its line.
+    assertEquals(Arrays.asList("S512@0", "B72@1", "Q833@1", "S-3@1"), events);
+  }
+
+  @Test
+  public void decodesSeveralLinesInOnePacket() {
+    feed("B72\nQ833\nS512\n", 7);
+    assertEquals(Arrays.asList("B72@7", "Q833@7", "S512@7"), events);
+  }
+
+  @Test
+  public void lineBreakSplitBetweenPacketsEndsTheLineOnce() {
+    feed("B72\r", 1);
+    feed("\nQ833\r", 2);
+    feed("\n", 3);
+    assertEquals(Arrays.asList("B72@1", "Q833@2"), events);
+  }
+
+  @Test
+  public void bareNumbersAreBeatsPerMinute() {
+    feed("AT+BLEUARTTX=72\r\n64\n-1\n", 0);
+    assertEquals(Arrays.asList("B72@0", "B64@0", "B-1@0"), events);
+  }
+
+  @Test
+  public void dropsLinesWithoutAValue() {
+    feed("AT+BLEUARTTX=\r\n#\r\n-\r\nB\nQ-\n\r\n", 0);
+    assertEquals(new ArrayList<String>(), events);
+  }
+
+  @Test
+  public void dropsMalformedLines() {
+    feed("S5x2\nOK\nB7 2\nS512\n", 0);
+    assertEquals(Arrays.asList("S512@0"), events);
+  }
+
+  @Test
+  public void dropsValuesPastIntegerRange() {
+    feed("S2147483647\nS2147483648\nS-2147483647\nS99999999999\n", 0);
+    assertEquals(Arrays.asList("S2147483647@0", "S-2147483647@0"), events);
+  }
+
+  @Test
+  public void skipsTheRestOfALineThatOverflows() {
+    // 40 digits don't fit the 32 byte line buffer. Neither the head nor the tail of the line
+    // may come out as a value.
+    feed("S1234567890123456789012345", 0);
+    feed("678901234567890\nB72\n", 1);
+    assertEquals(Arrays.asList("B72@1"), events);
+  }
+
+  @Test
+  public void resyncSkipsToTheNextLineBreak() {
+    feed("B7", 0);
+    // Packets were lost, so what comes next is the tail of some other line.
+    framer.resync();
+    feed("33\nQ833\n", 1);
+    assertEquals(Arrays.asList("Q833@1"), events);
+  }
+
+  @Test
+  public void resyncAfterOverflowStillSkipsOnlyOneLine() {
+    feed("S12345678901234567890123456789012345", 0);
+    framer.resync();
+    feed("45\nB72\n", 1);
+    assertEquals(Arrays.asList("B72@1"), events);
+  }
+
+  @Test
+  public void resetDropsThePartialLine() {
+    feed("B7", 0);
+    framer.reset();
+    feed("Q833\n", 1);
+    assertEquals(Arrays.asList("Q833@1"), events);
+  }
+
+  @Test
+  public void feedsOnlyTheGivenRange() {
+    byte[] data = ascii("xxB72\nyy");
+    framer.feed(data, 2, 4, 5);
+    assertEquals(Arrays.asList("B72@5"), events);
+  }
+
+  private void feed(String text, long nowNanos) {
+    byte[] data = ascii(text);
+    framer.feed(data, 0, data.length, nowNanos);
+  }
+
+  private static byte[] ascii(String text) {
+    return text.getBytes(US_ASCII);
+  }
+}
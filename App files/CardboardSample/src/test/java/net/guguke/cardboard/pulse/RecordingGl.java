@@ -0,0 +1,268 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Gl} without a GPU behind it. Every call is recorded as a line like
+ * {@code glBindBuffer(34962, 1)}, and the data passed to {@code glBufferData} is kept per buffer
+ * object so tests can check what was uploaded.
+ */
+class RecordingGl implements Gl {
+  private final List<String> calls = new ArrayList<String>();
+  private final Map<Integer, ByteBuffer> bufferContents = new HashMap<Integer, ByteBuffer>();
+  private final Map<Integer, Integer> boundBuffers = new HashMap<Integer, Integer>();
+  private final ArrayDeque<Integer> errors = new ArrayDeque<Integer>();
+  private final Map<String, Integer> locations = new HashMap<String, Integer>();
+  private final List<String> missingVariables = new ArrayList<String>();
+  private int nextBuffer = 1;
+
+  /** The recorded calls, in order. */
+  List<String> getCalls() {
+    return calls;
+  }
+
+  /** How many calls were made to the function with this name. */
+  int count(String function) {
+    int count = 0;
+    String prefix = function + "(";
+    for (String call : calls) {
+      if (call.startsWith(prefix)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  void clear() {
+    calls.clear();
+  }
+
+  /** Makes a later glGetError return this error, once. */
+  void addError(int error) {
+    errors.add(error);
+  }
+
+  /**
+   * Makes the program report the attribute or uniform as missing, the way a driver does for a
+   * variable the shader doesn't use.
+   */
+  void removeVariable(int program, String name) {
+    missingVariables.add(program + ":" + name);
+  }
+
+  /** The bytes last uploaded to a buffer object, in native order, or null if none were. */
+  ByteBuffer getBufferContents(int buffer) {
+    ByteBuffer contents = bufferContents.get(buffer);
+    return contents != null ? contents.duplicate().order(ByteOrder.nativeOrder()) : null;
+  }
+
+  private void record(String function, Object... args) {
+    StringBuilder call = new StringBuilder(function).append('(');
+    for (int i = 0; i < args.length; i++) {
+      if (i > 0) {
+        call.append(", ");
+      }
+      call.append(args[i]);
+    }
+    calls.add(call.append(')').toString());
+  }
+
+  @Override
+  public int glGetError() {
+    record("glGetError");
+    Integer error = errors.poll();
+    return error != null ? error : GLES20.GL_NO_ERROR;
+  }
+
+  @Override
+  public void glEnable(int cap) {
+    record("glEnable", cap);
+  }
+
+  @Override
+  public void glDisable(int cap) {
+    record("glDisable", cap);
+  }
+
+  @Override
+  public void glViewport(int x, int y, int width, int height) {
+    record("glViewport", x, y, width, height);
+  }
+
+  @Override
+  public void glClear(int mask) {
+    record("glClear", mask);
+  }
+
+  @Override
+  public void glClearDepthf(float depth) {
+    record("glClearDepthf", depth);
+  }
+
+  @Override
+  public void glUseProgram(int program) {
+    record("glUseProgram", program);
+  }
+
+  @Override
+  public int glGetAttribLocation(int program, String name) {
+    record("glGetAttribLocation", program, name);
+    return location(program, name);
+  }
+
+  @Override
+  public int glGetUniformLocation(int program, String name) {
+    record("glGetUniformLocation", program, name);
+    return location(program, name);
+  }
+
+  @Override
+  public void glUniform1i(int location, int x) {
+    record("glUniform1i", location, x);
+  }
+
+  @Override
+  public void glUniform3fv(int location, int count, float[] v, int offset) {
+    record("glUniform3fv", location, count);
+  }
+
+  @Override
+  public void glUniform4fv(int location, int count, float[] v, int offset) {
+    record("glUniform4fv", location, count);
+  }
+
+  @Override
+  public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value,
+      int offset) {
+    record("glUniformMatrix4fv", location, count);
+  }
+
+  @Override
+  public void glEnableVertexAttribArray(int index) {
+    record("glEnableVertexAttribArray", index);
+  }
+
+  @Override
+  public void glDisableVertexAttribArray(int index) {
+    record("glDisableVertexAttribArray", index);
+  }
+
+  @Override
+  public void glVertexAttrib4fv(int index, float[] values, int offset) {
+    record("glVertexAttrib4fv", index);
+  }
+
+  @Override
+  public void glGenBuffers(int n, int[] buffers, int offset) {
+    record("glGenBuffers", n);
+    for (int i = 0; i < n; i++) {
+      buffers[offset + i] = nextBuffer++;
+    }
+  }
+
+  @Override
+  public void glBindBuffer(int target, int buffer) {
+    record("glBindBuffer", target, buffer);
+    boundBuffers.put(target, buffer);
+  }
+
+  @Override
+  public void glBufferData(int target, int size, Buffer data, int usage) {
+    record("glBufferData", target, size, usage);
+    Integer buffer = boundBuffers.get(target);
+    if (buffer == null || buffer == 0) {
+      throw new IllegalStateException("No buffer bound to " + target);
+    }
+    bufferContents.put(buffer, copyBytes(data, size));
+  }
+
+  @Override
+  public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride,
+      int offset) {
+    record("glVertexAttribPointer", index, size, type, normalized, stride, offset);
+  }
+
+  @Override
+  public void glDrawArrays(int mode, int first, int count) {
+    record("glDrawArrays", mode, first, count);
+  }
+
+  @Override
+  public void glDrawElements(int mode, int count, int type, int offset) {
+    record("glDrawElements", mode, count, type, offset);
+  }
+
+  @Override
+  public void glDrawArraysInstanced(int mode, int first, int count, int instanceCount) {
+    record("glDrawArraysInstanced", mode, first, count, instanceCount);
+  }
+
+  @Override
+  public void glDrawElementsInstanced(int mode, int count, int type, int offset,
+      int instanceCount) {
+    record("glDrawElementsInstanced", mode, count, type, offset, instanceCount);
+  }
+
+  /** A location that stays the same for the program and name, or -1 if it was removed. */
+  private int location(int program, String name) {
+    String key = program + ":" + name;
+    if (missingVariables.contains(key)) {
+      return -1;
+    }
+    Integer location = locations.get(key);
+    if (location == null) {
+      location = locations.size();
+      locations.put(key, location);
+    }
+    return location;
+  }
+
+  /** Copies {@code size} bytes from the buffer's position on, as the driver would. */
+  private static ByteBuffer copyBytes(Buffer data, int size) {
+    ByteBuffer copy = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+    if (data instanceof ByteBuffer) {
+      ByteBuffer bytes = ((ByteBuffer) data).duplicate();
+      bytes.limit(bytes.position() + size);
+      copy.put(bytes);
+    } else if (data instanceof FloatBuffer) {
+      FloatBuffer floats = ((FloatBuffer) data).duplicate();
+      floats.limit(floats.position() + size / 4);
+      copy.asFloatBuffer().put(floats);
+    } else if (data instanceof ShortBuffer) {
+      ShortBuffer shorts = ((ShortBuffer) data).duplicate();
+      shorts.limit(shorts.position() + size / 2);
+      copy.asShortBuffer().put(shorts);
+    } else {
+      throw new IllegalArgumentException("Unsupported buffer " + data);
+    }
+    copy.position(0);
+    return copy;
+  }
+}
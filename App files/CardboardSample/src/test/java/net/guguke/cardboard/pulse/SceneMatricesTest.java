@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the per-frame matrix cache against computing everything per eye, the way onDrawEye did
+ * before: {@code view = eyeView * camera}, {@code modelView = view * model} and
+ * {@code mvp = perspective * modelView}.
+ */
+public class SceneMatricesTest {
+  private static final float EPSILON = 1e-4f;
+  private static final float[] LIGHT_POS_IN_WORLD_SPACE = {0.0f, 2.0f, 0.0f, 1.0f};
+
+  private final Random random = new Random(3);
+  private final float[] camera = MatrixMathTest.translation(0, 0, -0.01f);
+  private final float[] floorModel = MatrixMathTest.translation(0, -20, 0);
+  private final float[][] eyeViews = new float[2][];
+  private final float[][] perspectives = new float[2][];
+  private SceneMatrices matrices;
+
+  @Before
+  public void setUp() {
+    for (int eye = 0; eye < 2; eye++) {
+      eyeViews[eye] = MatrixMathTest.randomMatrix(random);
+      perspectives[eye] = MatrixMathTest.randomMatrix(random);
+    }
+    matrices = new SceneMatrices();
+    matrices.setCamera(camera, LIGHT_POS_IN_WORLD_SPACE);
+    matrices.setFloorModel(floorModel);
+  }
+
+  @Test
+  public void sharedProductsMatchPerEyeComputation() {
+    for (int frame = 0; frame < 10; frame++) {
+      float[] heartModel = MatrixMathTest.randomMatrix(random);
+      matrices.setHeartModel(heartModel);
+      for (int eye = 0; eye < 2; eye++) {
+        matrices.setEye(eye, eyeViews[eye], perspectives[eye]);
+      }
+      for (int eye = 0; eye < 2; eye++) {
+        float[] view = MatrixMathTest.referenceMM(eyeViews[eye], camera);
+        float[] heartModelView = MatrixMathTest.referenceMM(view, heartModel);
+        float[] floorModelView = MatrixMathTest.referenceMM(view, floorModel);
+        assertMatrix(heartModel, SceneMatrices.HEART_MODEL);
+        assertMatrix(heartModelView, SceneMatrices.HEART_MODEL_VIEW + eye * 16);
+        assertMatrix(MatrixMathTest.referenceMM(perspectives[eye], heartModelView),
+            SceneMatrices.HEART_MVP + eye * 16);
+        assertMatrix(floorModel, SceneMatrices.FLOOR_MODEL);
+        assertMatrix(floorModelView, SceneMatrices.FLOOR_MODEL_VIEW + eye * 16);
+        assertMatrix(MatrixMathTest.referenceMM(perspectives[eye], floorModelView),
+            SceneMatrices.FLOOR_MVP + eye * 16);
+        assertArrayEquals(MatrixMathTest.referenceMV(view, LIGHT_POS_IN_WORLD_SPACE),
+            slice(SceneMatrices.LIGHT_POS_IN_EYE_SPACE + eye * 4, 4), EPSILON);
+      }
+    }
+  }
+
+  @Test
+  public void eyesAreStoredSideBySide() {
+    matrices.setHeartModel(MatrixMathTest.randomMatrix(random));
+    matrices.setEye(SceneMatrices.LEFT_EYE, eyeViews[0], perspectives[0]);
+    float[] left = slice(SceneMatrices.HEART_MVP, 16);
+    matrices.setEye(SceneMatrices.RIGHT_EYE, eyeViews[1], perspectives[1]);
+
+    // Setting the right eye leaves the left one alone.
+    assertArrayEquals(left, slice(SceneMatrices.HEART_MVP, 16), 0.0f);
+  }
+
+  @Test
+  public void floorKeepsItsProductsUntilItMoves() {
+    matrices.setEye(SceneMatrices.LEFT_EYE, eyeViews[0], perspectives[0]);
+    float[] before = slice(SceneMatrices.FLOOR_MVP, 16);
+    matrices.setHeartModel(MatrixMathTest.randomMatrix(random));
+    matrices.setEye(SceneMatrices.LEFT_EYE, eyeViews[0], perspectives[0]);
+    assertArrayEquals(before, slice(SceneMatrices.FLOOR_MVP, 16), 0.0f);
+
+    float[] moved = MatrixMathTest.translation(0, -10, 0);
+    matrices.setFloorModel(moved);
+    matrices.setEye(SceneMatrices.LEFT_EYE, eyeViews[0], perspectives[0]);
+    float[] modelView =
+        MatrixMathTest.referenceMM(MatrixMathTest.referenceMM(eyeViews[0], camera), moved);
+    assertMatrix(MatrixMathTest.referenceMM(perspectives[0], modelView), SceneMatrices.FLOOR_MVP);
+  }
+
+  @Test
+  public void participantHeartsUseTheEyesLastSet() {
+    matrices.setHeartModel(MatrixMathTest.identity());
+    for (int eye = 0; eye < 2; eye++) {
+      matrices.setEye(eye, eyeViews[eye], perspectives[eye]);
+    }
+    float[] models = new float[32];
+    float[] second = MatrixMathTest.randomMatrix(random);
+    System.arraycopy(second, 0, models, 16, 16);
+    matrices.setParticipantHeart(models, 16, 2);
+
+    for (int eye = 0; eye < 2; eye++) {
+      float[] modelView =
+          MatrixMathTest.referenceMM(MatrixMathTest.referenceMM(eyeViews[eye], camera), second);
+      assertMatrix(modelView, SceneMatrices.PARTICIPANT_MODEL_VIEW + eye * 16);
+      assertMatrix(MatrixMathTest.referenceMM(perspectives[eye], modelView),
+          SceneMatrices.PARTICIPANT_MVP + eye * 16);
+    }
+  }
+
+  private void assertMatrix(float[] expected, int offset) {
+    assertArrayEquals("at " + offset, expected, slice(offset, 16), EPSILON);
+  }
+
+  private float[] slice(int offset, int length) {
+    return Arrays.copyOfRange(matrices.getArena(), offset, offset + length);
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Counts the GL commands a frame costs in each stereo mode, drawing both eyes the way
+ * MainActivity does.
+ */
+public class SceneRendererTest {
+  private static final int HEART_PROGRAM = 1;
+  private static final int FLOOR_PROGRAM = 2;
+  private static final int PARTICIPANTS = 2;
+  private static final float[] LIGHT_POS_IN_WORLD_SPACE = {0.0f, 2.0f, 0.0f, 1.0f};
+  private static final float[] TRIANGLE = {0, 0, 0, 1, 0, 0, 0, 1, 0};
+  private static final float[] NORMALS = {0, 0, 1, 0, 0, 1, 0, 0, 1};
+  private static final float[] COLORS = {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+
+  private RecordingGl gl;
+  private SceneMatrices sceneMatrices;
+  private SceneRenderer renderer;
+
+  @Before
+  public void setUp() {
+    gl = new RecordingGl();
+    sceneMatrices = new SceneMatrices();
+    sceneMatrices.setCamera(MatrixMathTest.translation(0, 0, 0.01f), LIGHT_POS_IN_WORLD_SPACE);
+    sceneMatrices.setFloorModel(MatrixMathTest.translation(0, -20, 0));
+    renderer = new SceneRenderer(gl,
+        sceneMatrices, new GlErrorChecker(gl, GlErrorChecker.MODE_OFF, 1, null), PARTICIPANTS);
+
+    InterleavedMesh heart =
+        new InterleavedMesh(new float[][] {TRIANGLE, NORMALS}, new int[] {3, 3}, new short[] {
+            0, 1, 2});
+    heart.upload(gl);
+    InterleavedMesh floor =
+        new InterleavedMesh(new float[][] {TRIANGLE, NORMALS, COLORS}, new int[] {3, 3, 4});
+    floor.upload(gl);
+    renderer.setHeartMesh(heart);
+    renderer.setFloorMesh(floor);
+  }
+
+  @Test
+  public void instancedModeDrawsEachMeshOnceForBothEyes() {
+    renderer.setUp(program(HEART_PROGRAM, true), program(FLOOR_PROGRAM, true),
+        SceneRenderer.STEREO_INSTANCED);
+    assertEquals(1, gl.count("glEnable"));
+    assertTrue(gl.getCalls().contains("glEnable(" + SceneRenderer.GL_CLIP_DISTANCE0_EXT + ")"));
+    // Both programs draw both instances from here on.
+    assertEquals(2, gl.count("glUniform1i"));
+
+    gl.clear();
+    drawFrame(SceneRenderer.STEREO_INSTANCED);
+
+    assertEquals(1, gl.count("glDrawElementsInstanced"));
+    assertEquals(1, gl.count("glDrawArraysInstanced"));
+    assertEquals(0, gl.count("glDrawElements") + gl.count("glDrawArrays"));
+    assertEquals(2, gl.count("glUseProgram"));
+    assertEquals(1, gl.count("glViewport"));
+    assertEquals(0, gl.count("glUniform1i"));
+    // Model, ModelView and MVP for the heart, ModelView and MVP for the floor.
+    assertEquals(5, gl.count("glUniformMatrix4fv"));
+    assertTrue(gl.getCalls().contains("glUniformMatrix4fv(" + location(HEART_PROGRAM, "u_MVP")
+        + ", 2)"));
+  }
+
+  @Test
+  public void viewportsModeBindsAndUploadsOncePerFrame() {
+    renderer.setUp(program(HEART_PROGRAM, true), program(FLOOR_PROGRAM, true),
+        SceneRenderer.STEREO_VIEWPORTS);
+    assertEquals(0, gl.count("glEnable"));
+
+    gl.clear();
+    drawFrame(SceneRenderer.STEREO_VIEWPORTS);
+
+    assertEquals(2, gl.count("glDrawElements"));
+    assertEquals(2, gl.count("glDrawArrays"));
+    assertEquals(2, gl.count("glUseProgram"));
+    assertEquals(5, gl.count("glUniformMatrix4fv"));
+    // Each draw picks its eye and viewport.
+    assertEquals(4, gl.count("glUniform1i"));
+    assertEquals(4, gl.count("glViewport"));
+    assertTrue(gl.getCalls().contains("glViewport(640, 0, 640, 720)"));
+  }
+
+  @Test
+  public void singlePassHalvesTheProgramBindsAndUploadsOfTwoPasses() {
+    int[] twoPass = frameCost(SceneRenderer.STEREO_TWO_PASS, 0);
+    int[] instanced = frameCost(SceneRenderer.STEREO_INSTANCED, 0);
+    int[] viewports = frameCost(SceneRenderer.STEREO_VIEWPORTS, 0);
+
+    // Draw calls, program binds, matrix and light uploads, other state changes.
+    assertEquals(4, twoPass[0]);
+    assertEquals(2, instanced[0]);
+    assertEquals(4, viewports[0]);
+    assertEquals(4, twoPass[1]);
+    assertEquals(2, instanced[1]);
+    assertEquals(2, viewports[1]);
+    assertTrue(instanced[2] < twoPass[2]);
+    assertEquals(instanced[2], viewports[2]);
+    assertTrue(instanced[3] < twoPass[3]);
+  }
+
+  @Test
+  public void participantsAddOneDrawEachPerPassOrInstance() {
+    int[] twoPass = frameCost(SceneRenderer.STEREO_TWO_PASS, PARTICIPANTS);
+    int[] instanced = frameCost(SceneRenderer.STEREO_INSTANCED, PARTICIPANTS);
+    int[] viewports = frameCost(SceneRenderer.STEREO_VIEWPORTS, PARTICIPANTS);
+
+    assertEquals(4 + 2 * PARTICIPANTS, twoPass[0]);
+    assertEquals(2 + PARTICIPANTS, instanced[0]);
+    assertEquals(4 + 2 * PARTICIPANTS, viewports[0]);
+    assertEquals(2, instanced[1]);
+    assertTrue(instanced[2] * 2 <= twoPass[2]);
+  }
+
+  /**
+   * Sets up a mode and draws a frame in it.
+   *
+   * @return Counts of draw calls, program binds, uniform uploads and other state changes.
+   */
+  private int[] frameCost(int stereoMode, int participants) {
+    setUp();
+    boolean singlePass = stereoMode != SceneRenderer.STEREO_TWO_PASS;
+    renderer.setUp(program(HEART_PROGRAM, singlePass), program(FLOOR_PROGRAM, singlePass),
+        stereoMode);
+    for (int i = 0; i < participants; i++) {
+      System.arraycopy(MatrixMathTest.translation(i + 1, 0, 0), 0,
+          renderer.getParticipantModels(), i * 16, 16);
+    }
+    renderer.setParticipantCount(participants);
+    gl.clear();
+    drawFrame(stereoMode);
+    return new int[] {
+        gl.count("glDrawElements") + gl.count("glDrawArrays")
+            + gl.count("glDrawElementsInstanced") + gl.count("glDrawArraysInstanced"),
+        gl.count("glUseProgram"),
+        gl.count("glUniformMatrix4fv") + gl.count("glUniform3fv") + gl.count("glUniform4fv"),
+        gl.count("glEnable") + gl.count("glDisable") + gl.count("glViewport")
+            + gl.count("glClear") + gl.count("glBindBuffer") + gl.count("glVertexAttribPointer")
+            + gl.count("glEnableVertexAttribArray") + gl.count("glDisableVertexAttribArray")
+            + gl.count("glUniform1i")};
+  }
+
+  /** Draws both eyes of a 1280x720 screen, as MainActivity does in the mode. */
+  private void drawFrame(int stereoMode) {
+    sceneMatrices.setHeartModel(MatrixMathTest.identity());
+    renderer.onHeartModelChanged();
+    for (int eye = 0; eye < 2; eye++) {
+      sceneMatrices.setEye(eye, MatrixMathTest.translation(eye == 0 ? 0.03f : -0.03f, 0, 0),
+          MatrixMathTest.identity());
+    }
+    if (stereoMode != SceneRenderer.STEREO_TWO_PASS) {
+      renderer.drawBothEyes(0, 640, 0, 640, 720);
+      return;
+    }
+    for (int eye = 0; eye < 2; eye++) {
+      // The Cardboard viewport sets the viewport and scissor itself.
+      sceneMatrices.setEye(SceneMatrices.LEFT_EYE,
+          MatrixMathTest.translation(eye == 0 ? 0.03f : -0.03f, 0, 0), MatrixMathTest.identity());
+      renderer.drawEye();
+    }
+  }
+
+  /** Looks up a program's parameters, without u_Eye unless it is a single-pass program. */
+  private SceneProgram program(int program, boolean singlePass) {
+    if (!singlePass) {
+      gl.removeVariable(program, "u_Eye");
+    }
+    return new SceneProgram(gl, program);
+  }
+
+  private int location(int program, String name) {
+    return gl.glGetUniformLocation(program, name);
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class SessionRecorderTest {
+  private static final long START_NANOS = 123456789000L;
+  private static final long NANOS_PER_SAMPLE = 2000000L;
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void readsBackWhatWasRecorded() throws Exception {
+    File file = folder.newFile("session.bin");
+    CountingListener listener = new CountingListener();
+    SessionRecorder recorder = new SessionRecorder(listener, file, START_NANOS);
+    PulseEvent event = new PulseEvent();
+    float[] quaternion = new float[4];
+    // A minute at 500 Hz fills the buffers several times over.
+    int samples = 30000;
+    for (int i = 0; i < samples; i++) {
+      long time = START_NANOS + i * NANOS_PER_SAMPLE;
+      if (i % 100 == 0) {
+        // Far faster than the sensor still, but leaves the writer time to keep up so that
+        // nothing is dropped.
+        Thread.sleep(1);
+      }
+      event.set(PulseEvent.TYPE_SIGNAL, signal(i), time);
+      recorder.onPulseEvent(event);
+      if (i % 8 == 0) {
+        rotation(i, quaternion);
+        recorder.recordHeadRotation(quaternion, time + 1000);
+      }
+      if (i % 400 == 0) {
+        event.set(PulseEvent.TYPE_BPM, 70 + i % 11, time);
+        recorder.onPulseEvent(event);
+        event.set(PulseEvent.TYPE_IBI, 850 - i % 13, time);
+        recorder.onPulseEvent(event);
+      }
+    }
+    recorder.close();
+    assertEquals(0, recorder.getDroppedRecords());
+    assertEquals(file.length(), recorder.getBytesWritten());
+    assertEquals(samples + samples / 400 * 2, listener.events);
+
+    SessionReader reader = new SessionReader(file);
+    assertEquals(START_NANOS, reader.getStartNanos());
+    assertTrue(Math.abs(reader.getStartWallMillis() - System.currentTimeMillis()) < 60000);
+    SessionReader.Record record = new SessionReader.Record();
+    float[] expected = new float[4];
+    for (int i = 0; i < samples; i++) {
+      long time = START_NANOS + i * NANOS_PER_SAMPLE;
+      assertTrue(reader.next(record));
+      assertEquals(SessionFormat.TYPE_SIGNAL, record.type);
+      assertEquals(signal(i), record.value);
+      assertEquals(time, record.timeNanos);
+      if (i % 8 == 0) {
+        assertTrue(reader.next(record));
+        assertEquals(SessionFormat.TYPE_HEAD_ROTATION, record.type);
+        assertEquals(time + 1000, record.timeNanos);
+        rotation(i, expected);
+        assertArrayEquals(expected, record.quaternion, 1 / SessionFormat.QUATERNION_SCALE);
+      }
+      if (i % 400 == 0) {
+        assertTrue(reader.next(record));
+        assertEquals(SessionFormat.TYPE_BPM, record.type);
+        assertEquals(70 + i % 11, record.value);
+        assertTrue(reader.next(record));
+        assertEquals(SessionFormat.TYPE_IBI, record.type);
+        assertEquals(850 - i % 13, record.value);
+      }
+    }
+    assertFalse(reader.next(record));
+  }
+
+  @Test
+  public void keepsExtremeValuesAndTimes() throws IOException {
+    File file = folder.newFile("session.bin");
+    SessionRecorder recorder = new SessionRecorder(new CountingListener(), file, START_NANOS);
+    recorder.recordSignal(Integer.MAX_VALUE, START_NANOS);
+    recorder.recordSignal(Integer.MIN_VALUE, START_NANOS + 3600 * 1000000000L);
+    // Events from before the recording started, e.g. queued while it was being set up.
+    recorder.recordValue(SessionFormat.TYPE_IBI, -1, START_NANOS - 5000);
+    recorder.recordHeadRotation(new float[] {-1, 1, -2, 2}, START_NANOS);
+    recorder.close();
+
+    SessionReader reader = new SessionReader(file);
+    SessionReader.Record record = new SessionReader.Record();
+    assertTrue(reader.next(record));
+    assertEquals(Integer.MAX_VALUE, record.value);
+    assertTrue(reader.next(record));
+    assertEquals(Integer.MIN_VALUE, record.value);
+    assertEquals(START_NANOS + 3600 * 1000000000L, record.timeNanos);
+    assertTrue(reader.next(record));
+    assertEquals(-1, record.value);
+    assertEquals(START_NANOS - 5000, record.timeNanos);
+    assertTrue(reader.next(record));
+    // Components are clamped to the unit range.
+    assertArrayEquals(new float[] {-1, 1, -1, 1}, record.quaternion, 0);
+    assertFalse(reader.next(record));
+  }
+
+  @Test
+  public void aRecordCutShortEndsTheSession() throws IOException {
+    File file = folder.newFile("session.bin");
+    SessionRecorder recorder = new SessionRecorder(new CountingListener(), file, START_NANOS);
+    recorder.recordSignal(500, START_NANOS);
+    recorder.recordSignal(100000, START_NANOS + NANOS_PER_SAMPLE);
+    recorder.close();
+    // As if the app died while the last record was being written.
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(raf.length() - 1);
+    } finally {
+      raf.close();
+    }
+
+    SessionReader reader = new SessionReader(file);
+    SessionReader.Record record = new SessionReader.Record();
+    assertTrue(reader.next(record));
+    assertEquals(500, record.value);
+    assertFalse(reader.next(record));
+    assertFalse(reader.next(record));
+  }
+
+  @Test
+  public void rejectsFilesItDoesNotUnderstand() throws IOException {
+    File file = folder.newFile("session.bin");
+    SessionRecorder recorder = new SessionRecorder(new CountingListener(), file, START_NANOS);
+    recorder.recordSignal(500, START_NANOS);
+    recorder.close();
+
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      // An unknown record type, then a newer version and finally no magic.
+      raf.seek(SessionFormat.HEADER_BYTES);
+      raf.write('X');
+      assertReadFails(file, "Unknown record type");
+      raf.seek(4);
+      raf.write(SessionFormat.VERSION + 1);
+      assertReadFails(file, "Unsupported session version");
+      raf.seek(0);
+      raf.write(0);
+      assertReadFails(file, "Not a session file");
+    } finally {
+      raf.close();
+    }
+  }
+
+  @Test
+  public void nothingIsRecordedAfterClosing() throws IOException {
+    File file = folder.newFile("session.bin");
+    SessionRecorder recorder = new SessionRecorder(new CountingListener(), file, START_NANOS);
+    recorder.close();
+    recorder.recordSignal(500, START_NANOS);
+    assertEquals(1, recorder.getDroppedRecords());
+    assertEquals(SessionFormat.HEADER_BYTES, file.length());
+  }
+
+  private static void assertReadFails(File file, String message) {
+    try {
+      SessionReader reader = new SessionReader(file);
+      reader.next(new SessionReader.Record());
+      fail("Expected: " + message);
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+    }
+  }
+
+  // A sawtooth with a jump at every beat, so deltas go both ways.
+  private static int signal(int sample) {
+    return 300 + (sample % 400) * 3 / 2;
+  }
+
+  private static void rotation(int sample, float[] quaternion) {
+    double angle = sample * 1e-3;
+    quaternion[0] = (float) (0.3 * Math.sin(angle));
+    quaternion[1] = (float) (0.6 * Math.cos(angle));
+    quaternion[2] = -0.2f;
+    quaternion[3] = (float) Math.sqrt(1 - quaternion[0] * quaternion[0]
+        - quaternion[1] * quaternion[1] - quaternion[2] * quaternion[2]);
+  }
+
+  private static class CountingListener implements PulseLineFramer.Listener {
+    int events;
+
+    @Override
+    public void onPulseEvent(PulseEvent event) {
+      events++;
+    }
+  }
+}
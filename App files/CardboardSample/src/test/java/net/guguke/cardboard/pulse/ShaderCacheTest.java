@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ShaderCacheTest {
+  private static final String VERTEX = "vertex";
+  private static final String PASSTHROUGH = "passthrough";
+  private static final String GRID = "grid";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void sameSourcesGiveTheSameProgram() {
+    FakeCompiler compiler = new FakeCompiler(false);
+    ShaderCache cache = new ShaderCache(null);
+
+    int program = cache.getProgram(compiler, VERTEX, PASSTHROUGH);
+    assertEquals(program, cache.getProgram(compiler, VERTEX, PASSTHROUGH));
+    assertEquals(1, cache.getCompiles());
+    assertEquals(1, cache.getCacheHits());
+    assertEquals(1, compiler.links);
+  }
+
+  @Test
+  public void programsSharingASourceCompileItOnce() {
+    FakeCompiler compiler = new FakeCompiler(false);
+    ShaderCache cache = new ShaderCache(null);
+
+    int heart = cache.getProgram(compiler, VERTEX, PASSTHROUGH);
+    int floor = cache.getProgram(compiler, VERTEX, GRID);
+    assertNotEquals(heart, floor);
+    assertEquals(Arrays.asList(VERTEX, PASSTHROUGH, GRID), compiler.compiledSources);
+  }
+
+  @Test
+  public void releasingDeletesEveryShaderOnce() {
+    FakeCompiler compiler = new FakeCompiler(false);
+    ShaderCache cache = new ShaderCache(null);
+    cache.getProgram(compiler, VERTEX, PASSTHROUGH);
+    cache.getProgram(compiler, VERTEX, GRID);
+
+    cache.releaseShaders(compiler);
+    assertEquals(3, compiler.deletedShaders.size());
+    assertTrue(compiler.deletedShaders.containsAll(compiler.shaders));
+    // Programs built before are still handed out; nothing is deleted twice.
+    cache.releaseShaders(compiler);
+    assertEquals(3, compiler.deletedShaders.size());
+    cache.getProgram(compiler, VERTEX, GRID);
+    assertEquals(1, cache.getCacheHits());
+  }
+
+  @Test
+  public void clearForgetsTheIdsOfTheOldContext() {
+    FakeCompiler oldContext = new FakeCompiler(false);
+    ShaderCache cache = new ShaderCache(null);
+    int program = cache.getProgram(oldContext, VERTEX, PASSTHROUGH);
+
+    cache.clear();
+    FakeCompiler newContext = new FakeCompiler(false);
+    newContext.nextId = 100;
+    assertNotEquals(program, cache.getProgram(newContext, VERTEX, PASSTHROUGH));
+    assertEquals(2, newContext.compiledSources.size());
+    assertEquals(0, cache.getCacheHits());
+  }
+
+  @Test
+  public void newContextLoadsTheSavedBinary() throws IOException {
+    File dir = folder.newFolder();
+    ShaderCache cache = new ShaderCache(dir);
+    cache.getProgram(new FakeCompiler(true), VERTEX, PASSTHROUGH);
+    assertEquals(1, dir.listFiles().length);
+
+    cache.clear();
+    FakeCompiler newContext = new FakeCompiler(true);
+    int program = cache.getProgram(newContext, VERTEX, PASSTHROUGH);
+    assertEquals(1, cache.getBinaryLoads());
+    assertEquals(0, newContext.compiledSources.size());
+    assertEquals(Arrays.asList(VERTEX + "+" + PASSTHROUGH), newContext.loadedBinaries);
+    assertEquals(program, cache.getProgram(newContext, VERTEX, PASSTHROUGH));
+
+    // And so does the next launch.
+    ShaderCache nextLaunch = new ShaderCache(dir);
+    nextLaunch.getProgram(new FakeCompiler(true), VERTEX, PASSTHROUGH);
+    assertEquals(1, nextLaunch.getBinaryLoads());
+    assertEquals(0, nextLaunch.getCompiles());
+  }
+
+  @Test
+  public void rejectedBinaryIsCompiledAndReplaced() throws IOException {
+    File dir = folder.newFolder();
+    new ShaderCache(dir).getProgram(new FakeCompiler(true), VERTEX, PASSTHROUGH);
+
+    FakeCompiler updatedDriver = new FakeCompiler(true);
+    updatedDriver.rejectBinaries = true;
+    ShaderCache cache = new ShaderCache(dir);
+    cache.getProgram(updatedDriver, VERTEX, PASSTHROUGH);
+    assertEquals(0, cache.getBinaryLoads());
+    assertEquals(1, cache.getCompiles());
+    assertEquals(1, dir.listFiles().length);
+  }
+
+  @Test
+  public void corruptBinaryIsDeletedAndCompiled() throws IOException {
+    File dir = folder.newFolder();
+    new ShaderCache(dir).getProgram(new FakeCompiler(false), VERTEX, PASSTHROUGH);
+    assertEquals(0, dir.listFiles().length);
+    new ShaderCache(dir).getProgram(new FakeCompiler(true), VERTEX, PASSTHROUGH);
+    File binary = dir.listFiles()[0];
+    FileOutputStream out = new FileOutputStream(binary);
+    out.write(new byte[] {1, 2, 3});
+    out.close();
+
+    FakeCompiler compiler = new FakeCompiler(false);
+    ShaderCache cache = new ShaderCache(dir);
+    cache.getProgram(compiler, VERTEX, PASSTHROUGH);
+    assertFalse(binary.exists());
+    assertEquals(1, cache.getCompiles());
+    assertEquals(0, compiler.loadedBinaries.size());
+  }
+
+  /**
+   * Hands out increasing ids and a binary holding the sources, if binaries are supported.
+   */
+  private static class FakeCompiler implements ShaderCompiler {
+    private static final int FORMAT = 7;
+
+    final boolean binariesSupported;
+    boolean rejectBinaries;
+    int nextId = 1;
+    int links;
+    final List<String> compiledSources = new ArrayList<String>();
+    final List<Integer> shaders = new ArrayList<Integer>();
+    final List<Integer> deletedShaders = new ArrayList<Integer>();
+    final List<String> loadedBinaries = new ArrayList<String>();
+    // What each shader or program was built from.
+    private final List<String> idSources = new ArrayList<String>();
+    private final List<Integer> ids = new ArrayList<Integer>();
+
+    FakeCompiler(boolean binariesSupported) {
+      this.binariesSupported = binariesSupported;
+    }
+
+    @Override
+    public int compileShader(int type, String source) {
+      compiledSources.add(source);
+      int shader = nextId++;
+      shaders.add(shader);
+      idSources.add(source);
+      ids.add(shader);
+      return shader;
+    }
+
+    @Override
+    public int linkProgram(int vertexShader, int fragmentShader) {
+      links++;
+      int program = nextId++;
+      ids.add(program);
+      idSources.add(sourceOf(vertexShader) + "+" + sourceOf(fragmentShader));
+      return program;
+    }
+
+    @Override
+    public void deleteShader(int shader) {
+      deletedShaders.add(shader);
+    }
+
+    @Override
+    public byte[] getProgramBinary(int program, int[] formatOut) {
+      if (!binariesSupported) {
+        return null;
+      }
+      formatOut[0] = FORMAT;
+      return sourceOf(program).getBytes();
+    }
+
+    @Override
+    public int loadProgramBinary(int format, byte[] binary) {
+      if (rejectBinaries || format != FORMAT) {
+        return 0;
+      }
+      loadedBinaries.add(new String(binary));
+      return nextId++;
+    }
+
+    private String sourceOf(int id) {
+      return idSources.get(ids.indexOf(id));
+    }
+  }
+}
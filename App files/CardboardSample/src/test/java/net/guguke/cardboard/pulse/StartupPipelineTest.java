@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the pipeline with stub assets the way MainActivity does: preparing in onCreate, and
+ * awaiting and uploading on the thread standing in for the GL thread.
+ */
+public class StartupPipelineTest {
+  private static final float[] TRIANGLE = {0, 0, 0, 1, 0, 0, 0, 1, 0};
+  private static final float[] NORMALS = {0, 0, 1, 0, 0, 1, 0, 0, 1};
+  private static final long TIMEOUT_SECONDS = 5;
+
+  private final StartupPipeline startup = new StartupPipeline(2, System.nanoTime());
+  private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+  @After
+  public void tearDown() {
+    startup.shutdown();
+  }
+
+  @Test
+  public void uploadsHappenOnTheGlThreadAfterPreparing() {
+    final Thread glThread = Thread.currentThread();
+    Future<InterleavedMesh> heart = startup.prepare("heart", new Callable<InterleavedMesh>() {
+      @Override
+      public InterleavedMesh call() throws Exception {
+        events.add("prepare heart");
+        assertNotSame(glThread, Thread.currentThread());
+        return new InterleavedMesh(new float[][] {TRIANGLE, NORMALS}, new int[] {3, 3},
+            new short[] {0, 1, 2});
+      }
+    });
+    Future<String> shaders = startup.prepare("shaders", new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        events.add("prepare shaders");
+        assertNotSame(glThread, Thread.currentThread());
+        return "void main() {}";
+      }
+    });
+
+    RecordingGl gl = new RecordingGl();
+    InterleavedMesh mesh = startup.await(heart);
+    events.add("upload heart");
+    mesh.upload(gl);
+    assertEquals("void main() {}", startup.await(shaders));
+    events.add("build programs");
+
+    assertTrue(events.indexOf("prepare heart") < events.indexOf("upload heart"));
+    assertTrue(events.indexOf("prepare shaders") < events.indexOf("build programs"));
+    // The whole mesh was there by the time it was uploaded.
+    assertEquals(3, mesh.getVertexCount());
+    // Vertices and indices.
+    assertEquals(2, gl.count("glBufferData"));
+  }
+
+  @Test
+  public void tasksRunInParallel() throws Exception {
+    // Each task waits for the other, so this only finishes if both run at once.
+    final CyclicBarrier bothRunning = new CyclicBarrier(2);
+    Callable<Integer> task = new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return bothRunning.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      }
+    };
+    Future<Integer> first = startup.prepare("first", task);
+    Future<Integer> second = startup.prepare("second", task);
+    assertEquals(1, startup.await(first) + startup.await(second));
+  }
+
+  @Test
+  public void awaitBlocksUntilTheTaskIsDone() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    Future<String> slow = startup.prepare("slow", new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        events.add("prepared");
+        return "result";
+      }
+    });
+    Thread releaser = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          return;
+        }
+        events.add("released");
+        release.countDown();
+      }
+    });
+    releaser.start();
+
+    assertEquals("result", startup.await(slow));
+    events.add("awaited");
+    releaser.join();
+    assertEquals(3, events.size());
+    assertEquals("awaited", events.get(2));
+    assertTrue(startup.getWaitNanos() > 0);
+  }
+
+  @Test
+  public void recreatedSurfaceGetsTheSameResultWithoutPreparingAgain() {
+    final AtomicInteger runs = new AtomicInteger();
+    Future<Object> floor = startup.prepare("floor", new Callable<Object>() {
+      @Override
+      public Object call() {
+        runs.incrementAndGet();
+        return new Object();
+      }
+    });
+    Object first = startup.await(floor);
+    // Everything is prepared once the first surface has it.
+    startup.shutdown();
+    assertSame(first, startup.await(floor));
+    assertEquals(1, runs.get());
+  }
+
+  @Test
+  public void failedTaskFailsTheAwait() {
+    final IOException error = new IOException("missing asset");
+    Future<Object> broken = startup.prepare("broken", new Callable<Object>() {
+      @Override
+      public Object call() throws IOException {
+        throw error;
+      }
+    });
+    try {
+      startup.await(broken);
+      fail();
+    } catch (RuntimeException e) {
+      assertSame(error, e.getCause());
+    }
+  }
+
+  @Test
+  public void interruptedAwaitStillReturnsAndKeepsTheInterrupt() {
+    Future<String> task = startup.prepare("task", new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        Thread.sleep(20);
+        return "done";
+      }
+    });
+    Thread.currentThread().interrupt();
+    assertEquals("done", startup.await(task));
+    assertTrue(Thread.interrupted());
+  }
+
+  @Test
+  public void summaryNamesEveryFinishedTask() {
+    startup.await(startup.prepare("heart meshes", new Callable<Object>() {
+      @Override
+      public Object call() {
+        return null;
+      }
+    }));
+    startup.await(startup.prepare("floor mesh", new Callable<Object>() {
+      @Override
+      public Object call() {
+        return null;
+      }
+    }));
+    String summary = startup.summary();
+    assertTrue(summary, summary.contains("heart meshes "));
+    assertTrue(summary, summary.contains("floor mesh "));
+    assertTrue(summary, summary.contains("waited "));
+  }
+}
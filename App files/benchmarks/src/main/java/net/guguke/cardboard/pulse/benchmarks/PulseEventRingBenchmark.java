@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse.benchmarks;
+
+import net.guguke.cardboard.pulse.PulseEvent;
+import net.guguke.cardboard.pulse.PulseEventRing;
+import net.guguke.cardboard.pulse.PulseLineFramer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares {@link PulseEventRing} with handing events over through a
+ * {@link ConcurrentLinkedQueue}, a fresh {@link PulseEvent} per event, bounded to the same
+ * capacity by a counter.
+ *
+ * <p>The {@code frame} groups publish a frame's worth of events and drain them on one thread,
+ * the cost of the hand-off itself. The {@code ring} and {@code queue} groups run a producer and a
+ * consumer on two threads, as the Bluetooth and GL threads do, each side scored separately. Run
+ * with {@code -prof gc} to see the allocation rates.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PulseEventRingBenchmark {
+  private static final int CAPACITY = 256;
+  // What the sensor sends in a 60Hz frame, rounded up.
+  private static final int EVENTS_PER_FRAME = 16;
+
+  private final PulseEventRing ring = new PulseEventRing(CAPACITY);
+  private final QueueHandOff queue = new QueueHandOff(CAPACITY);
+  private final PulseEvent event = new PulseEvent();
+  private final Sink sink = new Sink();
+  private int value;
+
+  @Benchmark
+  @Group("frameRing")
+  public int frameRing() {
+    for (int i = 0; i < EVENTS_PER_FRAME; i++) {
+      event.set(PulseEvent.TYPE_SIGNAL, value++ & 1023, value);
+      ring.onPulseEvent(event);
+    }
+    return ring.drain(sink);
+  }
+
+  @Benchmark
+  @Group("frameQueue")
+  public int frameQueue() {
+    for (int i = 0; i < EVENTS_PER_FRAME; i++) {
+      event.set(PulseEvent.TYPE_SIGNAL, value++ & 1023, value);
+      queue.onPulseEvent(event);
+    }
+    return queue.drain(sink);
+  }
+
+  @Benchmark
+  @Group("ring")
+  @GroupThreads(1)
+  public void ringPublish() {
+    event.set(PulseEvent.TYPE_SIGNAL, value++ & 1023, value);
+    ring.onPulseEvent(event);
+  }
+
+  @Benchmark
+  @Group("ring")
+  @GroupThreads(1)
+  public int ringDrain() {
+    return ring.drain(sink);
+  }
+
+  @Benchmark
+  @Group("queue")
+  @GroupThreads(1)
+  public void queuePublish() {
+    event.set(PulseEvent.TYPE_SIGNAL, value++ & 1023, value);
+    queue.onPulseEvent(event);
+  }
+
+  @Benchmark
+  @Group("queue")
+  @GroupThreads(1)
+  public int queueDrain() {
+    return queue.drain(sink);
+  }
+
+  /** The straightforward hand-off, with the ring's drop policy for a fair comparison. */
+  static class QueueHandOff implements PulseLineFramer.Listener {
+    private final ConcurrentLinkedQueue<PulseEvent> events =
+        new ConcurrentLinkedQueue<PulseEvent>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+
+    QueueHandOff(int capacity) {
+      this.capacity = capacity;
+    }
+
+    @Override
+    public void onPulseEvent(PulseEvent event) {
+      if (size.get() >= capacity) {
+        return;
+      }
+      PulseEvent copy = new PulseEvent();
+      copy.copyFrom(event);
+      events.offer(copy);
+      size.incrementAndGet();
+    }
+
+    int drain(PulseLineFramer.Listener listener) {
+      int drained = 0;
+      PulseEvent event;
+      while ((event = events.poll()) != null) {
+        listener.onPulseEvent(event);
+        drained++;
+      }
+      size.addAndGet(-drained);
+      return drained;
+    }
+  }
+
+  /** Consumes events so the JIT can't drop them. */
+  static class Sink implements PulseLineFramer.Listener {
+    int sum;
+
+    @Override
+    public void onPulseEvent(PulseEvent event) {
+      sum += event.value;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse.benchmarks;
+
+import net.guguke.cardboard.pulse.PulseEvent;
+import net.guguke.cardboard.pulse.PulseHistory;
+import net.guguke.cardboard.pulse.PulseLineFramer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append and window query throughput of {@link PulseHistory}.
+ *
+ * <p>The history starts out full: 20 minutes of beats around 72 BPM and a whole ring of 500 Hz
+ * samples, so the queries see realistic window sizes and the appends overwrite old entries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PulseHistoryBenchmark {
+  private static final long NANOS_PER_MS = 1000000L;
+  private static final long MINUTE_NANOS = 60 * 1000 * NANOS_PER_MS;
+  private static final int SAMPLE_INTERVAL_MS = 2;
+  // Ten seconds of samples.
+  private static final int COPY_SAMPLES = 5000;
+
+  private PulseHistory history;
+  private final PulseHistory.BeatStats stats = new PulseHistory.BeatStats();
+  private final int[] values = new int[COPY_SAMPLES];
+  private final long[] timesNanos = new long[COPY_SAMPLES];
+  private long sampleTimeNanos;
+  private long beatTimeNanos;
+  private int beat;
+
+  @Setup
+  public void setUp() {
+    history = new PulseHistory(new PulseLineFramer.Listener() {
+      @Override
+      public void onPulseEvent(PulseEvent event) {
+      }
+    }, 0);
+    while (beatTimeNanos < 20 * MINUTE_NANOS) {
+      appendBeat();
+    }
+    for (int i = 0; i < PulseHistory.SAMPLE_CAPACITY; i++) {
+      appendSample();
+    }
+  }
+
+  @Benchmark
+  public long appendSample() {
+    sampleTimeNanos += SAMPLE_INTERVAL_MS * NANOS_PER_MS;
+    history.appendSample((int) (sampleTimeNanos >> 20) & 1023, sampleTimeNanos);
+    return history.getSampleCount();
+  }
+
+  @Benchmark
+  public long appendBeat() {
+    // 72 BPM with some variability.
+    int ibiMs = 800 + (beat++ % 7) * 20 - 60;
+    beatTimeNanos += ibiMs * NANOS_PER_MS;
+    history.appendBeat(ibiMs, beatTimeNanos);
+    return history.getBeatCount();
+  }
+
+  @Benchmark
+  public float beatStatsLastMinute() {
+    history.getBeatStats(MINUTE_NANOS, beatTimeNanos, stats);
+    return stats.meanBpm + stats.rmssd + stats.minBpm + stats.maxBpm;
+  }
+
+  @Benchmark
+  public float beatStatsLastTenMinutes() {
+    history.getBeatStats(10 * MINUTE_NANOS, beatTimeNanos, stats);
+    return stats.meanBpm + stats.rmssd + stats.minBpm + stats.maxBpm;
+  }
+
+  @Benchmark
+  public int copyLastTenSeconds() {
+    return history.copySamples(values, timesNanos);
+  }
+}
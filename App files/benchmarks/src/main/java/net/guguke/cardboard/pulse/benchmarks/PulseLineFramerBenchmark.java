@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse.benchmarks;
+
+import net.guguke.cardboard.pulse.PulseEvent;
+import net.guguke.cardboard.pulse.PulseLineFramer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link PulseLineFramer} with decoding every notification through a String, the way
+ * the app did before with {@code BluetoothGattCharacteristic.getStringValue}.
+ *
+ * <p>Each invocation pushes the whole recorded notification stream (see {@link SensorStream}),
+ * 40 seconds of sensor output, through the decoder. Run with {@code -prof gc} to see the
+ * allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PulseLineFramerBenchmark {
+  private byte[][] packets;
+  private PulseLineFramer framer;
+  private StringDecoder stringDecoder;
+  private Sink sink;
+
+  @Setup
+  public void setUp() throws IOException {
+    packets = SensorStream.packets();
+    sink = new Sink();
+    framer = new PulseLineFramer(sink);
+    stringDecoder = new StringDecoder(sink);
+  }
+
+  @Benchmark
+  public int framer() {
+    long now = System.nanoTime();
+    for (byte[] packet : packets) {
+      framer.feed(packet, 0, packet.length, now);
+    }
+    return sink.takeSum();
+  }
+
+  @Benchmark
+  public int stringDecoding() throws UnsupportedEncodingException {
+    long now = System.nanoTime();
+    for (byte[] packet : packets) {
+      stringDecoder.feed(packet, now);
+    }
+    return sink.takeSum();
+  }
+
+  /** Sums the decoded values so none of the decoding is dead code. */
+  static final class Sink implements PulseLineFramer.Listener {
+    private int sum;
+
+    @Override
+    public void onPulseEvent(PulseEvent event) {
+      sum += event.type + event.value;
+    }
+
+    int takeSum() {
+      int result = sum;
+      sum = 0;
+      return result;
+    }
+  }
+
+  /**
+   * The String based baseline: a String per notification, a StringBuilder to join lines split
+   * across notifications, and a substring plus {@link Integer#parseInt} per line.
+   */
+  static final class StringDecoder {
+    private static final String AT_TX_PREFIX = "AT+BLEUARTTX=";
+
+    private final PulseLineFramer.Listener listener;
+    private final PulseEvent event = new PulseEvent();
+    private final StringBuilder pending = new StringBuilder();
+
+    StringDecoder(PulseLineFramer.Listener listener) {
+      this.listener = listener;
+    }
+
+    void feed(byte[] packet, long nowNanos) throws UnsupportedEncodingException {
+      pending.append(new String(packet, "UTF-8"));
+      int end;
+      while ((end = pending.indexOf("\n")) >= 0) {
+        String line = pending.substring(0, end).trim();
+        pending.delete(0, end + 1);
+        decodeLine(line, nowNanos);
+      }
+    }
+
+    private void decodeLine(String line, long nowNanos) {
+      if (line.startsWith(AT_TX_PREFIX)) {
+        line = line.substring(AT_TX_PREFIX.length());
+      }
+      if (line.isEmpty()) {
+        return;
+      }
+      int type = PulseEvent.TYPE_BPM;
+      char prefix = line.charAt(0);
+      if (prefix == PulseEvent.TYPE_BPM || prefix == PulseEvent.TYPE_IBI
+          || prefix == PulseEvent.TYPE_SIGNAL) {
+        type = prefix;
+        line = line.substring(1);
+      }
+      try {
+        event.set(type, Integer.parseInt(line), nowNanos);
+      } catch (NumberFormatException e) {
+        return;
+      }
+      listener.onPulseEvent(event);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the byte stream the pulse sensor sketches send over BLE UART, as the notification
+ * payloads the app receives.
+ *
+ * <p>{@code pulse_notifications.bin} holds 40 seconds of the recorded test trace replayed
+ * through the sketches' output: {@code S} lines every 2 ms, a {@code B} and a {@code Q} line per
+ * beat, {@code AT+BLEUARTTX=} and {@code #} lines from {@code Serialcomm.ino}, all ended with
+ * CRLF and packed into notifications of up to 20 bytes. It is written by
+ * {@code CardboardSample/src/test/golden/make_notifications.py}.
+ */
+final class SensorStream {
+  private static final String RESOURCE = "pulse_notifications.bin";
+
+  private SensorStream() {}
+
+  /** Returns the recorded notifications in the order they were received. */
+  static byte[][] packets() throws IOException {
+    InputStream in = SensorStream.class.getResourceAsStream(RESOURCE);
+    if (in == null) {
+      throw new FileNotFoundException(RESOURCE);
+    }
+    byte[] bytes;
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+      bytes = out.toByteArray();
+    } finally {
+      in.close();
+    }
+
+    // Each notification is its length in one byte followed by its payload.
+    List<byte[]> packets = new ArrayList<byte[]>();
+    for (int i = 0; i < bytes.length; ) {
+      int length = bytes[i++] & 0xff;
+      if (i + length > bytes.length) {
+        throw new EOFException(RESOURCE + " ends inside a notification");
+      }
+      byte[] packet = new byte[length];
+      System.arraycopy(bytes, i, packet, 0, length);
+      packets.add(packet);
+      i += length;
+    }
+    return packets.toArray(new byte[packets.size()][]);
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse.benchmarks;
+
+import net.guguke.cardboard.pulse.PulseEvent;
+import net.guguke.cardboard.pulse.PulseLineFramer;
+import net.guguke.cardboard.pulse.SessionRecorder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained recording throughput of {@link SessionRecorder}, to a real file through its writer
+ * thread. The sensor needs 500 records a second plus head rotations at the display rate.
+ *
+ * <p>Each iteration records into a fresh file. The records it dropped are reported next to the
+ * score as {@code droppedRecords}: anything above zero means the benchmark outran the disk, and
+ * the score counts records that were thrown away.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionRecorderBenchmark {
+  private static final long SAMPLE_INTERVAL_NANOS = 2000000L;
+  // A head rotation for every eighth sample is 62.5 Hz, a beat every 400 samples is 75 BPM.
+  private static final int SAMPLES_PER_ROTATION = 8;
+  private static final int SAMPLES_PER_BEAT = 400;
+
+  private final float[] quaternion = new float[4];
+  private long timeNanos;
+  private int sample;
+
+  /**
+   * The recorder of one iteration. Its public fields are reported with the score, per second like
+   * the score.
+   */
+  @AuxCounters
+  @State(Scope.Thread)
+  public static class Recording {
+    public long droppedRecords;
+    public long bytesWritten;
+
+    private File file;
+    private SessionRecorder recorder;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+      file = File.createTempFile("session", ".bin");
+      recorder = new SessionRecorder(new PulseLineFramer.Listener() {
+        @Override
+        public void onPulseEvent(PulseEvent event) {
+        }
+      }, file, 0);
+      droppedRecords = 0;
+      bytesWritten = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+      // Closing waits for the writer thread, so the counts cover every record of the iteration.
+      recorder.close();
+      droppedRecords = recorder.getDroppedRecords();
+      bytesWritten = recorder.getBytesWritten();
+      file.delete();
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    timeNanos = 0;
+    sample = 0;
+  }
+
+  @Benchmark
+  public void recordSignal(Recording recording) {
+    timeNanos += SAMPLE_INTERVAL_NANOS;
+    recording.recorder.recordSignal(sensorValue(sample++), timeNanos);
+  }
+
+  /** One sample with its share of head rotations and beats. */
+  @Benchmark
+  public void recordSession(Recording recording) {
+    SessionRecorder recorder = recording.recorder;
+    timeNanos += SAMPLE_INTERVAL_NANOS;
+    int i = sample++;
+    recorder.recordSignal(sensorValue(i), timeNanos);
+    if (i % SAMPLES_PER_ROTATION == 0) {
+      // A slow turn of the head about the vertical axis.
+      double angle = i * 1e-4;
+      quaternion[1] = (float) Math.sin(angle);
+      quaternion[3] = (float) Math.cos(angle);
+      recorder.recordHeadRotation(quaternion, timeNanos);
+    }
+    if (i % SAMPLES_PER_BEAT == 0) {
+      recorder.recordValue(PulseEvent.TYPE_BPM, 75, timeNanos);
+      recorder.recordValue(PulseEvent.TYPE_IBI, 800, timeNanos);
+    }
+  }
+
+  // A pulse-like sawtooth between 400 and 720.
+  private static int sensorValue(int sample) {
+    return 400 + (sample % SAMPLES_PER_BEAT) * 4 / 5;
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns an unrolled triangle soup into an indexed mesh.
+ *
+ * <p>Vertices are welded into one only when both their positions and their normals are
+ * identical, so the shading of the soup is kept: a faceted soup, with a face normal on every
+ * corner, stays faceted and only corners of coplanar neighbors are shared.
+ */
+public final class MeshCompiler {
+  private static final int COORDS_PER_VERTEX = 3;
+
+  /** An indexed triangle mesh. */
+  public static final class Mesh {
+    public final float[] coords;
+    public final float[] normals;
+    public final short[] indices;
+
+    public Mesh(float[] coords, float[] normals, short[] indices) {
+      this.coords = coords;
+      this.normals = normals;
+      this.indices = indices;
+    }
+
+    public int getVertexCount() {
+      return coords.length / COORDS_PER_VERTEX;
+    }
+  }
+
+  private MeshCompiler() {}
+
+  /**
+   * Welds duplicate vertices of a triangle soup.
+   *
+   * @param coords Three floats per vertex, three vertices per triangle.
+   * @param normals One normal per vertex of {@code coords}.
+   * @return The indexed mesh, drawing exactly the triangles and normals of the soup.
+   */
+  public static Mesh compile(float[] coords, float[] normals) {
+    int soupVertices = coords.length / COORDS_PER_VERTEX;
+    Map<Vertex, Integer> welded = new HashMap<Vertex, Integer>();
+    float[] weldedCoords = new float[coords.length];
+    float[] weldedNormals = new float[coords.length];
+    short[] indices = new short[soupVertices];
+    int vertexCount = 0;
+
+    for (int v = 0; v < soupVertices; v++) {
+      int offset = v * COORDS_PER_VERTEX;
+      Vertex vertex = new Vertex(coords, normals, offset);
+      Integer index = welded.get(vertex);
+      if (index == null) {
+        if (vertexCount > 0xFFFF) {
+          throw new IllegalArgumentException("Too many vertices for short indices");
+        }
+        index = vertexCount++;
+        welded.put(vertex, index);
+        System.arraycopy(coords, offset, weldedCoords, index * COORDS_PER_VERTEX,
+            COORDS_PER_VERTEX);
+        System.arraycopy(normals, offset, weldedNormals, index * COORDS_PER_VERTEX,
+            COORDS_PER_VERTEX);
+      }
+      indices[v] = (short) (int) index;
+    }
+
+    float[] meshCoords = new float[vertexCount * COORDS_PER_VERTEX];
+    float[] meshNormals = new float[vertexCount * COORDS_PER_VERTEX];
+    System.arraycopy(weldedCoords, 0, meshCoords, 0, meshCoords.length);
+    System.arraycopy(weldedNormals, 0, meshNormals, 0, meshNormals.length);
+    return new Mesh(meshCoords, meshNormals, indices);
+  }
+
+  /**
+   * Welds the vertices of a mesh that share a position, whatever their normals. Each welded vertex
+   * gets the normalized sum of the normals it had, so a faceted mesh becomes smooth shaded. The
+   * result has the connectivity mesh processing such as {@link MeshSimplifier} needs.
+   */
+  public static Mesh weldPositions(Mesh mesh) {
+    float[] noNormals = new float[mesh.coords.length];
+    Map<Vertex, Integer> welded = new HashMap<Vertex, Integer>();
+    int[] remap = new int[mesh.getVertexCount()];
+    float[] weldedCoords = new float[mesh.coords.length];
+    float[] normalSums = new float[mesh.coords.length];
+    int vertexCount = 0;
+    for (int v = 0; v < remap.length; v++) {
+      int offset = v * COORDS_PER_VERTEX;
+      Vertex position = new Vertex(mesh.coords, noNormals, offset);
+      Integer index = welded.get(position);
+      if (index == null) {
+        index = vertexCount++;
+        welded.put(position, index);
+        System.arraycopy(mesh.coords, offset, weldedCoords, index * COORDS_PER_VERTEX,
+            COORDS_PER_VERTEX);
+      }
+      remap[v] = index;
+      for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+        normalSums[index * COORDS_PER_VERTEX + i] += mesh.normals[offset + i];
+      }
+    }
+
+    float[] meshCoords = new float[vertexCount * COORDS_PER_VERTEX];
+    float[] meshNormals = new float[vertexCount * COORDS_PER_VERTEX];
+    System.arraycopy(weldedCoords, 0, meshCoords, 0, meshCoords.length);
+    for (int v = 0; v < vertexCount; v++) {
+      int offset = v * COORDS_PER_VERTEX;
+      normalize(normalSums[offset], normalSums[offset + 1], normalSums[offset + 2],
+          meshNormals, offset);
+    }
+    short[] indices = new short[mesh.indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = (short) remap[mesh.indices[i] & 0xFFFF];
+    }
+    return new Mesh(meshCoords, meshNormals, indices);
+  }
+
+  /**
+   * Gives every triangle of a mesh its face normal, the way the heart is meant to be shaded, and
+   * welds the result again. Counter-clockwise triangles face the viewer.
+   */
+  public static Mesh flatShade(Mesh mesh) {
+    float[] coords = new float[mesh.indices.length * COORDS_PER_VERTEX];
+    float[] normals = new float[coords.length];
+    for (int i = 0; i < mesh.indices.length; i++) {
+      System.arraycopy(mesh.coords, (mesh.indices[i] & 0xFFFF) * COORDS_PER_VERTEX, coords,
+          i * COORDS_PER_VERTEX, COORDS_PER_VERTEX);
+    }
+    for (int t = 0; t < coords.length; t += 3 * COORDS_PER_VERTEX) {
+      float abx = coords[t + 3] - coords[t];
+      float aby = coords[t + 4] - coords[t + 1];
+      float abz = coords[t + 5] - coords[t + 2];
+      float acx = coords[t + 6] - coords[t];
+      float acy = coords[t + 7] - coords[t + 1];
+      float acz = coords[t + 8] - coords[t + 2];
+      normalize(aby * acz - abz * acy, abz * acx - abx * acz, abx * acy - aby * acx, normals, t);
+      System.arraycopy(normals, t, normals, t + 3, COORDS_PER_VERTEX);
+      System.arraycopy(normals, t, normals, t + 6, COORDS_PER_VERTEX);
+    }
+    return compile(coords, normals);
+  }
+
+  // Writes (x, y, z) scaled to unit length, or leaves zeros for a zero vector.
+  private static void normalize(float x, float y, float z, float[] out, int offset) {
+    float length = (float) Math.sqrt(x * x + y * y + z * z);
+    if (length > 0) {
+      out[offset] = x / length;
+      out[offset + 1] = y / length;
+      out[offset + 2] = z / length;
+    }
+  }
+
+  /**
+   * Hash key matching vertices by the exact bits of their position and normal, except that -0 and
+   * 0 count as the same.
+   */
+  private static final class Vertex {
+    private final int[] bits = new int[2 * COORDS_PER_VERTEX];
+
+    Vertex(float[] coords, float[] normals, int offset) {
+      for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+        bits[i] = Float.floatToIntBits(coords[offset + i] + 0.0f);
+        bits[COORDS_PER_VERTEX + i] = Float.floatToIntBits(normals[offset + i] + 0.0f);
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Vertex && Arrays.equals(bits, ((Vertex) o).bits);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(bits);
+    }
+  }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the levels of detail of an indexed mesh, offline.
+ *
+ * <p>{@link #refine} smooths a coarse mesh into a denser one for close-up viewing, and
+ * {@link #simplify} decimates a dense mesh back down by clustering its vertices on a grid.
+ * {@link #error} measures how far a level strays from the mesh it was made from.
+ */
+public final class MeshSimplifier {
+  private static final int COORDS_PER_VERTEX = 3;
+
+  // How far the new vertices are pulled towards the curved surface, as in Phong tessellation.
+  private static final float SHAPE_FACTOR = 0.75f;
+  // Cell size search steps when simplifying to a triangle budget.
+  private static final int SEARCH_STEPS = 32;
+
+  private MeshSimplifier() {}
+
+  /**
+   * Splits every triangle into four. The new edge midpoints are moved onto the surface the vertex
+   * normals describe, so the mesh gets rounder instead of just denser.
+   */
+  public static MeshCompiler.Mesh refine(MeshCompiler.Mesh mesh) {
+    int vertexCount = mesh.getVertexCount();
+    int triangleCount = mesh.indices.length / 3;
+    // Every edge adds one vertex; a closed mesh has 3/2 edges per triangle.
+    int maxVertices = vertexCount + triangleCount * 3;
+    float[] coords = new float[maxVertices * COORDS_PER_VERTEX];
+    float[] normals = new float[maxVertices * COORDS_PER_VERTEX];
+    System.arraycopy(mesh.coords, 0, coords, 0, mesh.coords.length);
+    System.arraycopy(mesh.normals, 0, normals, 0, mesh.normals.length);
+
+    Map<Long, Integer> midpoints = new HashMap<Long, Integer>();
+    int[] indices = new int[mesh.indices.length * 4];
+    int count = vertexCount;
+    for (int t = 0; t < triangleCount; t++) {
+      int a = index(mesh, t * 3);
+      int b = index(mesh, t * 3 + 1);
+      int c = index(mesh, t * 3 + 2);
+      int[] mid = new int[3];
+      int[][] edges = {{a, b}, {b, c}, {c, a}};
+      for (int e = 0; e < 3; e++) {
+        int p = edges[e][0];
+        int q = edges[e][1];
+        Long key = (long) Math.min(p, q) << 32 | Math.max(p, q);
+        Integer m = midpoints.get(key);
+        if (m == null) {
+          m = count++;
+          midpoints.put(key, m);
+          midpoint(coords, normals, p, q, m);
+        }
+        mid[e] = m;
+      }
+      int out = t * 12;
+      setTriangle(indices, out, a, mid[0], mid[2]);
+      setTriangle(indices, out + 3, mid[0], b, mid[1]);
+      setTriangle(indices, out + 6, mid[2], mid[1], c);
+      setTriangle(indices, out + 9, mid[0], mid[1], mid[2]);
+    }
+    return build(coords, normals, count, indices, indices.length);
+  }
+
+  /**
+   * Decimates a mesh to at most the given number of triangles by welding all vertices that fall
+   * into the same cell of a uniform grid. The grid is the finest one that meets the budget.
+   */
+  public static MeshCompiler.Mesh simplify(MeshCompiler.Mesh mesh, int maxTriangles) {
+    if (mesh.indices.length / 3 <= maxTriangles) {
+      return mesh;
+    }
+    float[] bounds = bounds(mesh);
+    float extent = Math.max(bounds[3] - bounds[0],
+        Math.max(bounds[4] - bounds[1], bounds[5] - bounds[2]));
+    // Binary search the cell size; coarser cells always leave fewer triangles.
+    float fine = 0;
+    float coarse = extent;
+    MeshCompiler.Mesh best = cluster(mesh, bounds, coarse);
+    for (int i = 0; i < SEARCH_STEPS; i++) {
+      float cell = (fine + coarse) / 2;
+      MeshCompiler.Mesh candidate = cluster(mesh, bounds, cell);
+      if (candidate.indices.length / 3 <= maxTriangles) {
+        best = candidate;
+        coarse = cell;
+      } else {
+        fine = cell;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Returns the largest distance from a vertex of {@code original} to the surface of
+   * {@code simplified}, a one-sided Hausdorff distance in model units.
+   */
+  public static float error(MeshCompiler.Mesh original, MeshCompiler.Mesh simplified) {
+    float[] closest = new float[COORDS_PER_VERTEX];
+    float maxDistanceSquared = 0;
+    for (int v = 0; v < original.getVertexCount(); v++) {
+      float px = original.coords[v * 3];
+      float py = original.coords[v * 3 + 1];
+      float pz = original.coords[v * 3 + 2];
+      float minDistanceSquared = Float.MAX_VALUE;
+      for (int i = 0; i < simplified.indices.length; i += 3) {
+        closestPointOnTriangle(px, py, pz, simplified.coords, index(simplified, i),
+            index(simplified, i + 1), index(simplified, i + 2), closest);
+        float dx = px - closest[0];
+        float dy = py - closest[1];
+        float dz = pz - closest[2];
+        minDistanceSquared = Math.min(minDistanceSquared, dx * dx + dy * dy + dz * dz);
+      }
+      maxDistanceSquared = Math.max(maxDistanceSquared, minDistanceSquared);
+    }
+    return (float) Math.sqrt(maxDistanceSquared);
+  }
+
+  private static MeshCompiler.Mesh cluster(MeshCompiler.Mesh mesh, float[] bounds, float cell) {
+    int vertexCount = mesh.getVertexCount();
+    Map<Long, Integer> cells = new HashMap<Long, Integer>();
+    int[] remap = new int[vertexCount];
+    float[] means = new float[vertexCount * COORDS_PER_VERTEX];
+    float[] normals = new float[vertexCount * COORDS_PER_VERTEX];
+    int[] members = new int[vertexCount];
+    int count = 0;
+    for (int v = 0; v < vertexCount; v++) {
+      long key = 0;
+      for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+        long c = cell > 0 ? (long) ((mesh.coords[v * 3 + i] - bounds[i]) / cell) : 0;
+        key = key << 21 | (c & 0x1FFFFF);
+      }
+      Integer target = cells.get(key);
+      if (target == null) {
+        target = count++;
+        cells.put(key, target);
+      }
+      remap[v] = target;
+      members[target]++;
+      for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+        means[target * 3 + i] += mesh.coords[v * 3 + i];
+        normals[target * 3 + i] += mesh.normals[v * 3 + i];
+      }
+    }
+    for (int v = 0; v < count; v++) {
+      for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+        means[v * 3 + i] /= members[v];
+      }
+    }
+    // Keep the vertex of each cell closest to the cell's mean. Unlike the mean itself it lies on
+    // the surface, so convex parts don't shrink.
+    float[] coords = new float[count * COORDS_PER_VERTEX];
+    float[] nearest = new float[count];
+    Arrays.fill(nearest, Float.MAX_VALUE);
+    for (int v = 0; v < vertexCount; v++) {
+      int target = remap[v];
+      float distanceSquared = 0;
+      for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+        float d = mesh.coords[v * 3 + i] - means[target * 3 + i];
+        distanceSquared += d * d;
+      }
+      if (distanceSquared < nearest[target]) {
+        nearest[target] = distanceSquared;
+        System.arraycopy(mesh.coords, v * 3, coords, target * 3, COORDS_PER_VERTEX);
+      }
+    }
+
+    // Drop the triangles that collapsed, and duplicates of the ones that remain.
+    int[] indices = new int[mesh.indices.length];
+    int indexCount = 0;
+    Set<Triangle> seen = new HashSet<Triangle>();
+    for (int i = 0; i < mesh.indices.length; i += 3) {
+      int a = remap[index(mesh, i)];
+      int b = remap[index(mesh, i + 1)];
+      int c = remap[index(mesh, i + 2)];
+      if (a == b || b == c || c == a || !seen.add(new Triangle(a, b, c))) {
+        continue;
+      }
+      setTriangle(indices, indexCount, a, b, c);
+      indexCount += 3;
+    }
+    return build(coords, normals, count, indices, indexCount);
+  }
+
+  // Copies the used vertices into a compact mesh, dropping any no triangle refers to.
+  private static MeshCompiler.Mesh build(float[] coords, float[] normals, int vertexCount,
+      int[] indices, int indexCount) {
+    int[] remap = new int[vertexCount];
+    int used = 0;
+    for (int i = 0; i < indexCount; i++) {
+      if (remap[indices[i]] == 0) {
+        remap[indices[i]] = ++used;
+      }
+    }
+    if (used > 0xFFFF + 1) {
+      throw new IllegalArgumentException("Too many vertices for short indices: " + used);
+    }
+    float[] meshCoords = new float[used * COORDS_PER_VERTEX];
+    float[] meshNormals = new float[used * COORDS_PER_VERTEX];
+    for (int v = 0; v < vertexCount; v++) {
+      if (remap[v] == 0) {
+        continue;
+      }
+      int offset = (remap[v] - 1) * COORDS_PER_VERTEX;
+      System.arraycopy(coords, v * COORDS_PER_VERTEX, meshCoords, offset, COORDS_PER_VERTEX);
+      float x = normals[v * 3];
+      float y = normals[v * 3 + 1];
+      float z = normals[v * 3 + 2];
+      float length = (float) Math.sqrt(x * x + y * y + z * z);
+      if (length > 0) {
+        meshNormals[offset] = x / length;
+        meshNormals[offset + 1] = y / length;
+        meshNormals[offset + 2] = z / length;
+      }
+    }
+    short[] meshIndices = new short[indexCount];
+    for (int i = 0; i < indexCount; i++) {
+      meshIndices[i] = (short) (remap[indices[i]] - 1);
+    }
+    return new MeshCompiler.Mesh(meshCoords, meshNormals, meshIndices);
+  }
+
+  // Writes the vertex between p and q, pulled towards the tangent planes at both ends.
+  private static void midpoint(float[] coords, float[] normals, int p, int q, int m) {
+    float[] projected = new float[COORDS_PER_VERTEX];
+    for (int end = 0; end < 2; end++) {
+      int v = end == 0 ? p : q;
+      float distance = 0;
+      for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+        float middle = (coords[p * 3 + i] + coords[q * 3 + i]) / 2;
+        distance += (middle - coords[v * 3 + i]) * normals[v * 3 + i];
+      }
+      for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+        float middle = (coords[p * 3 + i] + coords[q * 3 + i]) / 2;
+        projected[i] += (middle - distance * normals[v * 3 + i]) / 2;
+      }
+    }
+    for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+      float middle = (coords[p * 3 + i] + coords[q * 3 + i]) / 2;
+      coords[m * 3 + i] = (1 - SHAPE_FACTOR) * middle + SHAPE_FACTOR * projected[i];
+      // Normalized when the mesh is built.
+      normals[m * 3 + i] = normals[p * 3 + i] + normals[q * 3 + i];
+    }
+  }
+
+  // Finds the point of triangle abc closest to p, after Ericson's Real-Time Collision Detection.
+  private static void closestPointOnTriangle(float px, float py, float pz, float[] coords,
+      int a, int b, int c, float[] out) {
+    float ax = coords[a * 3];
+    float ay = coords[a * 3 + 1];
+    float az = coords[a * 3 + 2];
+    float abx = coords[b * 3] - ax;
+    float aby = coords[b * 3 + 1] - ay;
+    float abz = coords[b * 3 + 2] - az;
+    float acx = coords[c * 3] - ax;
+    float acy = coords[c * 3 + 1] - ay;
+    float acz = coords[c * 3 + 2] - az;
+    float apx = px - ax;
+    float apy = py - ay;
+    float apz = pz - az;
+
+    float d1 = abx * apx + aby * apy + abz * apz;
+    float d2 = acx * apx + acy * apy + acz * apz;
+    if (d1 <= 0 && d2 <= 0) {
+      set(out, ax, ay, az, 0, abx, aby, abz, 0, acx, acy, acz);
+      return;
+    }
+    float bpx = apx - abx;
+    float bpy = apy - aby;
+    float bpz = apz - abz;
+    float d3 = abx * bpx + aby * bpy + abz * bpz;
+    float d4 = acx * bpx + acy * bpy + acz * bpz;
+    if (d3 >= 0 && d4 <= d3) {
+      set(out, ax, ay, az, 1, abx, aby, abz, 0, acx, acy, acz);
+      return;
+    }
+    float vc = d1 * d4 - d3 * d2;
+    if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+      set(out, ax, ay, az, d1 / (d1 - d3), abx, aby, abz, 0, acx, acy, acz);
+      return;
+    }
+    float cpx = apx - acx;
+    float cpy = apy - acy;
+    float cpz = apz - acz;
+    float d5 = abx * cpx + aby * cpy + abz * cpz;
+    float d6 = acx * cpx + acy * cpy + acz * cpz;
+    if (d6 >= 0 && d5 <= d6) {
+      set(out, ax, ay, az, 0, abx, aby, abz, 1, acx, acy, acz);
+      return;
+    }
+    float vb = d5 * d2 - d1 * d6;
+    if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+      set(out, ax, ay, az, 0, abx, aby, abz, d2 / (d2 - d6), acx, acy, acz);
+      return;
+    }
+    float va = d3 * d6 - d5 * d4;
+    if (va <= 0 && (d4 - d3) >= 0 && (d5 - d6) >= 0) {
+      float w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+      set(out, ax, ay, az, 1 - w, abx, aby, abz, w, acx, acy, acz);
+      return;
+    }
+    float denom = 1 / (va + vb + vc);
+    set(out, ax, ay, az, vb * denom, abx, aby, abz, vc * denom, acx, acy, acz);
+  }
+
+  // out = a + s * ab + t * ac
+  private static void set(float[] out, float ax, float ay, float az, float s,
+      float abx, float aby, float abz, float t, float acx, float acy, float acz) {
+    out[0] = ax + s * abx + t * acx;
+    out[1] = ay + s * aby + t * acy;
+    out[2] = az + s * abz + t * acz;
+  }
+
+  // Returns min x, y, z followed by max x, y, z.
+  private static float[] bounds(MeshCompiler.Mesh mesh) {
+    float[] bounds = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+        -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+    for (int v = 0; v < mesh.getVertexCount(); v++) {
+      for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+        bounds[i] = Math.min(bounds[i], mesh.coords[v * 3 + i]);
+        bounds[i + 3] = Math.max(bounds[i + 3], mesh.coords[v * 3 + i]);
+      }
+    }
+    return bounds;
+  }
+
+  private static int index(MeshCompiler.Mesh mesh, int i) {
+    return mesh.indices[i] & 0xFFFF;
+  }
+
+  private static void setTriangle(int[] indices, int offset, int a, int b, int c) {
+    indices[offset] = a;
+    indices[offset + 1] = b;
+    indices[offset + 2] = c;
+  }
+
+  /** A triangle, equal to its rotations so the same face is only kept once. */
+  private static final class Triangle {
+    private final int a;
+    private final int b;
+    private final int c;
+
+    Triangle(int a, int b, int c) {
+      // Rotate the smallest index to the front, keeping the winding.
+      if (a < b && a < c) {
+        this.a = a;
+        this.b = b;
+        this.c = c;
+      } else if (b < c) {
+        this.a = b;
+        this.b = c;
+        this.c = a;
+      } else {
+        this.a = c;
+        this.b = a;
+        this.c = b;
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Triangle)) {
+        return false;
+      }
+      Triangle other = (Triangle) o;
+      return a == other.a && b == other.b && c == other.c;
+    }
+
+    @Override
+    public int hashCode() {
+      return (a * 31 + b) * 31 + c;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes meshes in the binary {@link MeshFormat} the app loads its assets from.
+ */
+public final class MeshWriter {
+  private MeshWriter() {}
+
+  /**
+   * Writes a mesh in the mesh format.
+   */
+  public static void write(MeshCompiler.Mesh mesh, OutputStream out) throws IOException {
+    write(mesh, 0, out);
+  }
+
+  /**
+   * Writes one level of detail of a mesh in the mesh format.
+   *
+   * <p>Indices that only count up from zero, as those of a flat shaded mesh where no two triangles
+   * share a corner, are left out, and the app draws the vertices in order instead.
+   *
+   * @param error The level's distance to the full mesh, see {@link MeshSimplifier#error}.
+   */
+  public static void write(MeshCompiler.Mesh mesh, float error, OutputStream out)
+      throws IOException {
+    int vertexCount = mesh.getVertexCount();
+    short[] indices = isSequential(mesh) ? new short[0] : mesh.indices;
+    ByteBuffer bb = ByteBuffer.allocate(MeshFormat.HEADER_BYTES
+        + vertexCount * MeshFormat.BYTES_PER_VERTEX
+        + indices.length * MeshFormat.BYTES_PER_INDEX);
+    bb.order(ByteOrder.LITTLE_ENDIAN);
+    bb.putInt(MeshFormat.MAGIC);
+    bb.putInt(MeshFormat.VERSION);
+    bb.putInt(vertexCount);
+    bb.putInt(indices.length);
+    bb.putFloat(error);
+    for (int v = 0; v < vertexCount; v++) {
+      for (int i = 0; i < 3; i++) {
+        bb.putFloat(mesh.coords[v * 3 + i]);
+      }
+      for (int i = 0; i < 3; i++) {
+        bb.putFloat(mesh.normals[v * 3 + i]);
+      }
+    }
+    for (short index : indices) {
+      bb.putShort(index);
+    }
+    out.write(bb.array());
+  }
+
+  private static boolean isSequential(MeshCompiler.Mesh mesh) {
+    if (mesh.indices.length != mesh.getVertexCount()) {
+      return false;
+    }
+    for (int i = 0; i < mesh.indices.length; i++) {
+      if ((mesh.indices[i] & 0xFFFF) != i) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
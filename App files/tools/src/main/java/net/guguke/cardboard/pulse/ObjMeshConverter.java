@@ -0,0 +1,204 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+
+/**
+ * Converts Wavefront OBJ files into the binary {@link MeshFormat}.
+ *
+ * <p>Only {@code v}, {@code vn} and {@code f} lines are used. Polygons are triangulated as fans
+ * and vertices are welded by {@link MeshCompiler}. Part of the desktop tools module, not the
+ * app:
+ *
+ * <pre>
+ *   java net.guguke.cardboard.pulse.ObjMeshConverter heart.obj src/main/assets/heart.mesh
+ * </pre>
+ *
+ * <p>With {@code --lods}, the OBJ is first refined for close-up viewing and then decimated into
+ * coarser levels of detail, written as {@code <prefix>_lod0.mesh} (finest) and up:
+ *
+ * <pre>
+ *   java net.guguke.cardboard.pulse.ObjMeshConverter --lods meshes/heart.obj src/main/assets/heart
+ * </pre>
+ *
+ * <p>{@code ./gradlew :tools:convertHeart} does the latter for the app's heart.
+ */
+public final class ObjMeshConverter {
+  // How often the OBJ is refined to make the finest level. Each time quadruples the triangles.
+  private static final int LOD_REFINEMENTS = 2;
+  // Triangle budgets of the coarser levels, as fractions of the finest one.
+  private static final float[] LOD_FRACTIONS = new float[] {1f / 4, 1f / 16, 1f / 48};
+
+  private ObjMeshConverter() {}
+
+  public static void main(String[] args) throws IOException {
+    boolean lods = args.length == 3 && args[0].equals("--lods");
+    if (args.length != 2 && !lods) {
+      System.err.println("Usage: ObjMeshConverter <input.obj> <output.mesh>\n"
+          + "       ObjMeshConverter --lods <input.obj> <output prefix>");
+      System.exit(1);
+    }
+    MeshCompiler.Mesh mesh;
+    Reader in = new FileReader(lods ? args[1] : args[0]);
+    try {
+      mesh = parse(in);
+    } finally {
+      in.close();
+    }
+    if (!lods) {
+      write(mesh, 0, args[1]);
+      return;
+    }
+    writeLods(mesh, args[2]);
+  }
+
+  /**
+   * Writes the levels of detail of a mesh as {@code <prefix>_lod0.mesh} (finest) and up.
+   *
+   * <p>The levels are built on the mesh welded by position alone, whose smooth normals guide the
+   * refinement, and each is written flat shaded like the OBJ. Flat shaded corners are never
+   * shared between triangles, so the levels are written without indices and drawn in order.
+   */
+  static void writeLods(MeshCompiler.Mesh mesh, String prefix) throws IOException {
+    MeshCompiler.Mesh finest = MeshCompiler.weldPositions(mesh);
+    for (int i = 0; i < LOD_REFINEMENTS; i++) {
+      finest = MeshSimplifier.refine(finest);
+    }
+    write(MeshCompiler.flatShade(finest), 0, prefix + "_lod0.mesh");
+    for (int i = 0; i < LOD_FRACTIONS.length; i++) {
+      int budget = Math.round(finest.indices.length / 3 * LOD_FRACTIONS[i]);
+      MeshCompiler.Mesh level = MeshSimplifier.simplify(finest, budget);
+      write(MeshCompiler.flatShade(level), MeshSimplifier.error(finest, level),
+          prefix + "_lod" + (i + 1) + ".mesh");
+    }
+  }
+
+  private static void write(MeshCompiler.Mesh mesh, float error, String path)
+      throws IOException {
+    OutputStream out = new FileOutputStream(path);
+    try {
+      MeshWriter.write(mesh, error, out);
+    } finally {
+      out.close();
+    }
+    System.out.println(path + ": " + mesh.getVertexCount() + " vertices, "
+        + mesh.indices.length / 3 + " triangles, error " + error);
+  }
+
+  /**
+   * Reads an OBJ file and compiles it into an indexed mesh.
+   *
+   * @throws IOException if the file can't be read or has no normals for a face.
+   */
+  public static MeshCompiler.Mesh parse(Reader reader) throws IOException {
+    FloatList positions = new FloatList();
+    FloatList normals = new FloatList();
+    FloatList soupCoords = new FloatList();
+    FloatList soupNormals = new FloatList();
+
+    BufferedReader in = new BufferedReader(reader);
+    String line;
+    int lineNumber = 0;
+    while ((line = in.readLine()) != null) {
+      lineNumber++;
+      String[] parts = line.trim().split("\\s+");
+      if (parts[0].equals("v")) {
+        positions.add(parts, 1, 3);
+      } else if (parts[0].equals("vn")) {
+        normals.add(parts, 1, 3);
+      } else if (parts[0].equals("f")) {
+        if (parts.length < 4) {
+          throw new IOException("Line " + lineNumber + ": face with fewer than 3 vertices");
+        }
+        // Triangulate as a fan around the first corner.
+        for (int i = 2; i + 1 < parts.length; i++) {
+          addCorner(parts[1], positions, normals, soupCoords, soupNormals, lineNumber);
+          addCorner(parts[i], positions, normals, soupCoords, soupNormals, lineNumber);
+          addCorner(parts[i + 1], positions, normals, soupCoords, soupNormals, lineNumber);
+        }
+      }
+    }
+    return MeshCompiler.compile(soupCoords.toArray(), soupNormals.toArray());
+  }
+
+  // Appends one face corner, given as "v//vn" or "v/vt/vn", to the triangle soup.
+  private static void addCorner(String corner, FloatList positions, FloatList normals,
+      FloatList soupCoords, FloatList soupNormals, int lineNumber) throws IOException {
+    String[] refs = corner.split("/");
+    if (refs.length < 3 || refs[2].isEmpty()) {
+      throw new IOException("Line " + lineNumber + ": face corner without a normal: " + corner);
+    }
+    try {
+      soupCoords.addVector(positions, resolve(refs[0], positions.size() / 3));
+      soupNormals.addVector(normals, resolve(refs[2], normals.size() / 3));
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Line " + lineNumber + ": bad reference " + corner);
+    }
+  }
+
+  // OBJ indices are 1-based, negative ones count back from the last element.
+  private static int resolve(String ref, int count) {
+    int index = Integer.parseInt(ref);
+    return index < 0 ? count + index : index - 1;
+  }
+
+  /** A growable float array. */
+  private static final class FloatList {
+    private float[] values = new float[256];
+    private int size;
+
+    void add(String[] parts, int offset, int count) {
+      for (int i = 0; i < count; i++) {
+        add(Float.parseFloat(parts[offset + i]));
+      }
+    }
+
+    void addVector(FloatList source, int index) {
+      if (index < 0 || index * 3 + 3 > source.size) {
+        throw new IndexOutOfBoundsException();
+      }
+      for (int i = 0; i < 3; i++) {
+        add(source.values[index * 3 + i]);
+      }
+    }
+
+    void add(float value) {
+      if (size == values.length) {
+        float[] grown = new float[size * 2];
+        System.arraycopy(values, 0, grown, 0, size);
+        values = grown;
+      }
+      values[size++] = value;
+    }
+
+    int size() {
+      return size;
+    }
+
+    float[] toArray() {
+      float[] array = new float[size];
+      System.arraycopy(values, 0, array, 0, size);
+      return array;
+    }
+  }
+}
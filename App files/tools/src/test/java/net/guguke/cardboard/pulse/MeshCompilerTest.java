@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+public class MeshCompilerTest {
+  // Relative to the tools module, where Gradle runs its tests.
+  private static final File HEART_OBJ = new File("../CardboardSample/meshes/heart.obj");
+  private static final File ASSETS = new File("../CardboardSample/src/main/assets");
+  // Vertices of heart_lod0..3: three per triangle, as no flat shaded corner is shared.
+  private static final int[] HEART_LOD_VERTICES = {3840, 960, 240, 78};
+
+  // Two faces of a tetrahedron meeting at the edge (0,0,0)-(1,0,0), each corner carrying its face
+  // normal, followed by a third triangle coplanar with the first.
+  private static final float[] COORDS = {
+      0, 0, 0,  1, 0, 0,  0, 1, 0,
+      1, 0, 0,  0, 0, 0,  0, 0, -1,
+      1, 0, 0,  1, 1, 0,  0, 1, 0};
+  private static final float[] NORMALS = {
+      0, 0, 1,  0, 0, 1,  0, 0, 1,
+      0, -1, 0,  0, -1, 0,  0, -1, 0,
+      0, 0, 1,  0, 0, 1,  0, 0, 1};
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void drawsExactlyTheTrianglesAndNormalsOfTheSoup() {
+    MeshCompiler.Mesh mesh = MeshCompiler.compile(COORDS, NORMALS);
+
+    assertEquals(COORDS.length / 3, mesh.indices.length);
+    for (int i = 0; i < mesh.indices.length; i++) {
+      int v = mesh.indices[i];
+      for (int c = 0; c < 3; c++) {
+        assertEquals(COORDS[i * 3 + c], mesh.coords[v * 3 + c], 0.0f);
+        assertEquals(NORMALS[i * 3 + c], mesh.normals[v * 3 + c], 0.0f);
+      }
+    }
+  }
+
+  @Test
+  public void weldsOnlyCornersWithTheSameNormal() {
+    MeshCompiler.Mesh mesh = MeshCompiler.compile(COORDS, NORMALS);
+
+    // The shared edge's corners are split between the two faces, while the coplanar triangle
+    // reuses two corners of the first.
+    assertEquals(7, mesh.getVertexCount());
+    assertEquals(mesh.indices[1], mesh.indices[6]);
+    assertEquals(mesh.indices[2], mesh.indices[8]);
+    assertEquals(false, mesh.indices[0] == mesh.indices[4]);
+  }
+
+  @Test
+  public void weldingPositionsAveragesTheNormals() {
+    MeshCompiler.Mesh mesh = MeshCompiler.weldPositions(MeshCompiler.compile(COORDS, NORMALS));
+
+    assertEquals(5, mesh.getVertexCount());
+    assertEquals(mesh.indices[0], mesh.indices[4]);
+    int origin = mesh.indices[0];
+    float half = (float) Math.sqrt(0.5);
+    assertArrayEquals(new float[] {0, -half, half},
+        new float[] {mesh.normals[origin * 3], mesh.normals[origin * 3 + 1],
+            mesh.normals[origin * 3 + 2]},
+        1e-6f);
+  }
+
+  @Test
+  public void flatShadingRestoresTheFaceNormals() {
+    MeshCompiler.Mesh smooth =
+        MeshCompiler.weldPositions(MeshCompiler.compile(COORDS, NORMALS));
+    MeshCompiler.Mesh flat = MeshCompiler.flatShade(smooth);
+
+    assertEquals(7, flat.getVertexCount());
+    for (int i = 0; i < flat.indices.length; i++) {
+      int v = flat.indices[i];
+      for (int c = 0; c < 3; c++) {
+        assertEquals(COORDS[i * 3 + c], flat.coords[v * 3 + c], 0.0f);
+        assertEquals(NORMALS[i * 3 + c], flat.normals[v * 3 + c], 1e-6f);
+      }
+    }
+  }
+
+  @Test
+  public void heartLevelsRoundTripToTheShippedAssets() throws IOException {
+    MeshCompiler.Mesh heart;
+    Reader in = new FileReader(HEART_OBJ);
+    try {
+      heart = ObjMeshConverter.parse(in);
+    } finally {
+      in.close();
+    }
+    String prefix = new File(folder.getRoot(), "heart").getPath();
+    ObjMeshConverter.writeLods(heart, prefix);
+
+    for (int lod = 0; lod < HEART_LOD_VERTICES.length; lod++) {
+      String name = "heart_lod" + lod + ".mesh";
+      byte[] written = readFile(new File(folder.getRoot(), name));
+      MeshFormat.Sections sections = MeshFormat.read(ByteBuffer.wrap(written));
+      assertEquals(name, HEART_LOD_VERTICES[lod], sections.vertexCount);
+      // Welding found nothing to share, so the level is drawn without indices.
+      assertEquals(name, 0, sections.indexCount);
+      assertEquals(name, lod == 0, sections.error == 0);
+      assertArrayEquals(name + " is out of date, run :tools:convertHeart",
+          readFile(new File(ASSETS, name)), written);
+    }
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    RandomAccessFile in = new RandomAccessFile(file, "r");
+    try {
+      byte[] data = new byte[(int) in.length()];
+      in.readFully(data);
+      return data;
+    } finally {
+      in.close();
+    }
+  }
+}
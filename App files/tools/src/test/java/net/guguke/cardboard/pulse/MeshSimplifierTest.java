@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.guguke.cardboard.pulse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MeshSimplifierTest {
+  // A unit octahedron with outward normals, the coarsest approximation of a sphere.
+  private static final float[] OCTAHEDRON_COORDS = {
+      1, 0, 0,  -1, 0, 0,  0, 1, 0,  0, -1, 0,  0, 0, 1,  0, 0, -1};
+  private static final short[] OCTAHEDRON_INDICES = {
+      0, 2, 4,  2, 1, 4,  1, 3, 4,  3, 0, 4,
+      2, 0, 5,  1, 2, 5,  3, 1, 5,  0, 3, 5};
+
+  @Test
+  public void meshHasNoErrorAgainstItself() {
+    MeshCompiler.Mesh sphere = sphere(2);
+    assertEquals(0.0f, MeshSimplifier.error(sphere, sphere), 1e-6f);
+  }
+
+  @Test
+  public void errorIsTheFarthestVertexFromTheSurface() {
+    MeshCompiler.Mesh plane = new MeshCompiler.Mesh(
+        new float[] {-10, 0, -10,  10, 0, -10,  0, 0, 10},
+        new float[] {0, 1, 0,  0, 1, 0,  0, 1, 0},
+        new short[] {0, 1, 2});
+    MeshCompiler.Mesh bumps = new MeshCompiler.Mesh(
+        new float[] {0, 0.25f, 0,  1, -0.5f, 0,  0, 0, 1},
+        new float[] {0, 1, 0,  0, 1, 0,  0, 1, 0},
+        new short[] {0, 1, 2});
+
+    assertEquals(0.5f, MeshSimplifier.error(bumps, plane), 1e-6f);
+  }
+
+  @Test
+  public void refiningMovesTheMidpointsTowardsTheSphere() {
+    MeshCompiler.Mesh octahedron = octahedron();
+    MeshCompiler.Mesh refined = MeshSimplifier.refine(octahedron);
+
+    assertEquals(octahedron.indices.length * 4, refined.indices.length);
+    // 6 corners plus one midpoint per edge.
+    assertEquals(6 + 12, refined.getVertexCount());
+    // Straight midpoints of the octahedron's edges would be 1 - sqrt(1/2) = 0.29 inside.
+    assertEquals(0.0f, maxSphereDeviation(octahedron), 1e-6f);
+    assertTrue(maxSphereDeviation(refined) < 0.05f);
+  }
+
+  @Test
+  public void simplifyingUnderTheBudgetKeepsTheMesh() {
+    MeshCompiler.Mesh sphere = sphere(1);
+    assertSame(sphere, MeshSimplifier.simplify(sphere, sphere.indices.length / 3));
+  }
+
+  @Test
+  public void simplifyingMeetsTheBudgetWithBoundedError() {
+    MeshCompiler.Mesh sphere = sphere(3);
+    int triangles = sphere.indices.length / 3;
+    float halfError = 0;
+    float coarsestError = 0;
+    for (int budget = triangles / 2; budget >= 16; budget /= 2) {
+      MeshCompiler.Mesh level = MeshSimplifier.simplify(sphere, budget);
+      assertTrue(level.indices.length / 3 <= budget);
+      assertTrue(level.indices.length > 0);
+      float error = MeshSimplifier.error(sphere, level);
+      // Clustering never moves a point farther than across the unit sphere.
+      assertTrue("error " + error + " at " + budget, error > 0 && error < 1.0f);
+      if (budget == triangles / 2) {
+        halfError = error;
+      }
+      coarsestError = error;
+    }
+    // Half the triangles still follow the surface closely; a handful can't.
+    assertTrue(halfError < 0.1f);
+    assertTrue(coarsestError > 4 * halfError);
+  }
+
+  /** The octahedron refined {@code times} times. */
+  private static MeshCompiler.Mesh sphere(int times) {
+    MeshCompiler.Mesh mesh = octahedron();
+    for (int i = 0; i < times; i++) {
+      mesh = MeshSimplifier.refine(mesh);
+    }
+    return mesh;
+  }
+
+  private static MeshCompiler.Mesh octahedron() {
+    return new MeshCompiler.Mesh(OCTAHEDRON_COORDS.clone(), OCTAHEDRON_COORDS.clone(),
+        OCTAHEDRON_INDICES.clone());
+  }
+
+  /** The largest distance of a vertex from the unit sphere. */
+  private static float maxSphereDeviation(MeshCompiler.Mesh mesh) {
+    float max = 0;
+    for (int v = 0; v < mesh.getVertexCount(); v++) {
+      float x = mesh.coords[v * 3];
+      float y = mesh.coords[v * 3 + 1];
+      float z = mesh.coords[v * 3 + 2];
+      max = Math.max(max, Math.abs((float) Math.sqrt(x * x + y * y + z * z) - 1));
+    }
+    return max;
+  }
+}